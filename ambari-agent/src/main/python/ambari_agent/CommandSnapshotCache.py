@@ -0,0 +1,106 @@
+#!/usr/bin/env python
+
+"""
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+"""
+
+import copy
+import logging
+import threading
+
+logger = logging.getLogger(__name__)
+
+class CommandSnapshotCache():
+  """
+  Caches the configuration and cluster host info snapshots of execution
+  commands by their hash.
+
+  The server sends a snapshot in full with the first command that uses it;
+  later commands only carry the hash and are filled in from this cache. The
+  server assumes the agent caches its most recently used snapshots, see
+  ExecutionCommandSnapshots.java, so the size must not be lower than there.
+  """
+
+  CACHE_SIZE = 32
+
+  CONFIGURATIONS_HASH = 'configurationsHash'
+  CLUSTER_HOST_INFO_HASH = 'clusterHostInfoHash'
+
+  def __init__(self, cache_size=CACHE_SIZE):
+    self.cache_size = cache_size
+
+    # keys are hashes, values are [last use, snapshot]
+    self.__snapshots = {}
+    self.__use_counter = 0
+    self.__lock = threading.RLock()
+
+  def resolve(self, commands):
+    """
+    Fills in the snapshots referenced by the execution commands and caches
+    the snapshots sent in full.
+    :param commands: the execution commands of a heartbeat response
+    :return: False if a command references a snapshot which is not cached
+    """
+    resolved = True
+    for command in commands:
+      if self.CONFIGURATIONS_HASH in command:
+        snapshot = self.__resolve_snapshot(command, command[self.CONFIGURATIONS_HASH],
+                                           ['configurations', 'configuration_attributes'])
+        resolved = resolved and snapshot
+
+      if self.CLUSTER_HOST_INFO_HASH in command:
+        snapshot = self.__resolve_snapshot(command, command[self.CLUSTER_HOST_INFO_HASH],
+                                           ['clusterHostInfo'])
+        resolved = resolved and snapshot
+
+    return resolved
+
+  def clear(self):
+    with self.__lock:
+      self.__snapshots.clear()
+
+  def __resolve_snapshot(self, command, snapshot_hash, keys):
+    with self.__lock:
+      self.__use_counter += 1
+
+      if keys[0] in command:
+        snapshot = {}
+        for key in keys:
+          snapshot[key] = copy.deepcopy(command.get(key))
+        self.__snapshots[snapshot_hash] = [self.__use_counter, snapshot]
+        self.__evict()
+        return True
+
+      if snapshot_hash not in self.__snapshots:
+        logger.error("Snapshot {0} of command {1} is not cached".format(snapshot_hash,
+                                                                        command.get('taskId')))
+        return False
+
+      entry = self.__snapshots[snapshot_hash]
+      entry[0] = self.__use_counter
+
+      # commands may be changed while they run, the cached snapshot must not
+      for key, value in entry[1].iteritems():
+        if value is not None:
+          command[key] = copy.deepcopy(value)
+
+      return True
+
+  def __evict(self):
+    while len(self.__snapshots) > self.cache_size:
+      eldest = min(self.__snapshots, key=lambda snapshot_hash: self.__snapshots[snapshot_hash][0])
+      del self.__snapshots[eldest]
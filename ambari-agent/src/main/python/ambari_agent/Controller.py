@@ -43,6 +43,7 @@ from ambari_agent.NetUtil import NetUtil
 from ambari_agent.LiveStatus import LiveStatus
 from ambari_agent.AlertSchedulerHandler import AlertSchedulerHandler
 from ambari_agent.ClusterConfiguration import  ClusterConfiguration
+from ambari_agent.CommandSnapshotCache import CommandSnapshotCache
 from ambari_agent.RecoveryManager import  RecoveryManager
 from ambari_agent.HeartbeatHandlers import HeartbeatStopHandlers, bind_signal_handlers
 from ambari_agent.ExitHelper import ExitHelper
@@ -101,6 +102,9 @@ class Controller(threading.Thread):
 
     self.cluster_configuration = ClusterConfiguration(cluster_config_cache_dir)
 
+    # configuration snapshots referenced by hash from execution commands
+    self.command_snapshot_cache = CommandSnapshotCache()
+
     self.move_data_dir_mount_file()
 
     self.alert_grace_period = int(config.get('agent', 'alert_grace_period', 5))
@@ -171,6 +175,8 @@ class Controller(threading.Thread):
         logger.info("Registration Successful (response id = %s)", self.responseId)
 
         self.isRegistered = True
+        # the server sends all snapshots again after registration
+        self.command_snapshot_cache.clear()
         if 'statusCommands' in ret.keys():
           logger.debug("Got status commands on registration.")
           self.addToStatusQueue(ret['statusCommands'])
@@ -285,6 +291,16 @@ class Controller(threading.Thread):
         else:
           self.responseId = serverId
 
+        # fill in the configuration snapshots which are only referenced by
+        # hash; if one is missing, registering again makes the server send
+        # all snapshots in full
+        if 'executionCommands' in response.keys() and response['executionCommands']:
+          if not self.command_snapshot_cache.resolve(response['executionCommands']):
+            logger.error("Execution commands reference unknown configuration snapshots - repeat agent registration")
+            self.isRegistered = False
+            self.repeatRegistration = True
+            return
+
         # if the response contains configurations, update the in-memory and
         # disk-based configuration cache (execution and alert commands have this)
         self.cluster_configuration.update_configurations_from_heartbeat(response)
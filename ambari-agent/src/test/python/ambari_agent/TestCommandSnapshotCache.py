@@ -0,0 +1,72 @@
+#!/usr/bin/env python
+
+'''
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+'''
+
+from ambari_agent.CommandSnapshotCache import CommandSnapshotCache
+
+from unittest import TestCase
+
+class TestCommandSnapshotCache(TestCase):
+
+  def full_command(self, task_id):
+    return {
+      'taskId': task_id,
+      'configurationsHash': 'c1',
+      'configurations': {'hdfs-site': {'foo': 'bar'}},
+      'configuration_attributes': {},
+      'clusterHostInfoHash': 'h1',
+      'clusterHostInfo': {'slave_hosts': ['0-1']}
+    }
+
+  def test_resolve_referenced_snapshots(self):
+    cache = CommandSnapshotCache()
+    self.assertTrue(cache.resolve([self.full_command(1)]))
+
+    command = {'taskId': 2, 'configurationsHash': 'c1', 'clusterHostInfoHash': 'h1'}
+    self.assertTrue(cache.resolve([command]))
+    self.assertEqual({'hdfs-site': {'foo': 'bar'}}, command['configurations'])
+    self.assertEqual({}, command['configuration_attributes'])
+    self.assertEqual({'slave_hosts': ['0-1']}, command['clusterHostInfo'])
+
+    # changing a command does not change the cached snapshot
+    command['configurations']['hdfs-site']['foo'] = 'changed'
+    other = {'taskId': 3, 'configurationsHash': 'c1'}
+    self.assertTrue(cache.resolve([other]))
+    self.assertEqual('bar', other['configurations']['hdfs-site']['foo'])
+
+  def test_unknown_snapshot(self):
+    cache = CommandSnapshotCache()
+    self.assertFalse(cache.resolve([{'taskId': 1, 'configurationsHash': 'c1'}]))
+
+    cache.resolve([self.full_command(2)])
+    cache.clear()
+    self.assertFalse(cache.resolve([{'taskId': 3, 'configurationsHash': 'c1'}]))
+
+    # commands without hashes are left as they are
+    self.assertTrue(cache.resolve([{'taskId': 4, 'configurations': {}}]))
+
+  def test_least_recently_used_snapshot_is_evicted(self):
+    cache = CommandSnapshotCache(cache_size=2)
+    cache.resolve([{'configurationsHash': 'a', 'configurations': {}}])
+    cache.resolve([{'configurationsHash': 'b', 'configurations': {}}])
+    cache.resolve([{'configurationsHash': 'a'}])
+    cache.resolve([{'configurationsHash': 'c', 'configurations': {}}])
+
+    self.assertTrue(cache.resolve([{'configurationsHash': 'a'}]))
+    self.assertFalse(cache.resolve([{'configurationsHash': 'b'}]))
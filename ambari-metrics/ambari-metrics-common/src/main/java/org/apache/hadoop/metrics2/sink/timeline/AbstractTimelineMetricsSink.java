@@ -24,11 +24,6 @@ import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-
 public abstract class AbstractTimelineMetricsSink {
   public static final String TAGS_FOR_PREFIX_PROPERTY_PREFIX = "tagsForPrefix.";
   public static final String MAX_METRIC_ROW_CACHE_SIZE = "maxRowCacheSize";
@@ -36,7 +31,13 @@ public abstract class AbstractTimelineMetricsSink {
   public static final String METRICS_POST_TIMEOUT_SECONDS = "timeout";
   public static final String COLLECTOR_HOST_PROPERTY = "collector";
   public static final String COLLECTOR_PORT_PROPERTY = "port";
+  public static final String METRICS_COMPRESSION_PROPERTY = "compression";
+  public static final String METRICS_BATCH_SIZE_PROPERTY = "batchSize";
+  public static final String METRICS_BATCH_DELAY_PROPERTY = "batchDelay";
+  public static final String METRICS_SPILL_DIR_PROPERTY = "spillDir";
+  public static final String METRICS_MAX_SPILL_SIZE_PROPERTY = "maxSpillSize";
   public static final int DEFAULT_POST_TIMEOUT_SECONDS = 10;
+  public static final int DEFAULT_BATCH_SIZE = 1000;
 
   protected final Log LOG;
 
@@ -50,42 +51,50 @@ public abstract class AbstractTimelineMetricsSink {
         .setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
   }
 
+  protected final TimelineMetricsTransport transport = new TimelineMetricsTransport(mapper);
+
   public AbstractTimelineMetricsSink() {
     LOG = LogFactory.getLog(this.getClass());
   }
 
-  protected void emitMetrics(TimelineMetrics metrics) {
-    String connectUrl = getCollectorUri();
-    int timeout = getTimeoutSeconds() * 1000;
-    try {
-      String jsonData = mapper.writeValueAsString(metrics);
-
-      HttpURLConnection connection =
-        (HttpURLConnection) new URL(connectUrl).openConnection();
-
-      connection.setRequestMethod("POST");
-      connection.setRequestProperty("Content-Type", "application/json");
-      connection.setConnectTimeout(timeout);
-      connection.setReadTimeout(timeout);
-      connection.setDoOutput(true);
-
-      if (jsonData != null) {
-        try (OutputStream os = connection.getOutputStream()) {
-          os.write(jsonData.getBytes("UTF-8"));
-        }
-      }
+  /**
+   * Configure the transport from the sink properties. Properties which are
+   * not set (null) keep their defaults: no compression, no batching and no
+   * spilling. Compression needs a collector which accepts gzip request bodies.
+   *
+   * @param compression    gzip request bodies, true or false
+   * @param batchSize      maximum number of metrics batched into one post
+   * @param batchDelay     milliseconds metrics may wait for a batch to fill,
+   *                       0 to send the metrics of each emit right away
+   * @param spillDir       directory for metrics which could not be sent
+   * @param maxSpillSize   maximum size of the spill directory in bytes
+   */
+  protected void configureTransport(String compression, String batchSize,
+                                    String batchDelay, String spillDir,
+                                    String maxSpillSize) {
+    if (compression != null) {
+      transport.setCompressionEnabled(Boolean.parseBoolean(compression.trim()));
+    }
+    if (batchDelay != null) {
+      transport.setBatching(
+        batchSize == null ? DEFAULT_BATCH_SIZE : Integer.parseInt(batchSize.trim()),
+        Long.parseLong(batchDelay.trim()));
+    }
+    if (spillDir != null) {
+      transport.setSpillDirectory(spillDir, maxSpillSize == null ?
+        TimelineMetricsTransport.DEFAULT_MAX_SPILL_BYTES : Long.parseLong(maxSpillSize.trim()));
+    }
+  }
 
-      int statusCode = connection.getResponseCode();
+  protected void emitMetrics(TimelineMetrics metrics) {
+    transport.send(getCollectorUri(), getTimeoutSeconds() * 1000, metrics);
+  }
 
-      if (statusCode != 200) {
-        LOG.info("Unable to POST metrics to collector, " + connectUrl + ", " +
-          "statusCode = " + statusCode);
-      } else {
-        LOG.debug("Metrics posted to Collector " + connectUrl);
-      }
-    } catch (IOException e) {
-      throw new UnableToConnectException(e).setConnectUrl(connectUrl);
-    }
+  /**
+   * Send metrics held back for batching.
+   */
+  protected void flushMetrics() {
+    transport.flush(getCollectorUri(), getTimeoutSeconds() * 1000);
   }
 
   abstract protected String getCollectorUri();
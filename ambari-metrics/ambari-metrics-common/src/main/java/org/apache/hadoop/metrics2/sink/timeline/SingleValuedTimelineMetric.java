@@ -101,7 +101,7 @@ public class SingleValuedTimelineMetric {
     metric.setInstanceId(this.instanceId);
     metric.setStartTime(this.startTime);
     metric.setTimestamp(this.timestamp);
-    metric.getMetricValues().put(timestamp, value);
+    metric.getMetricSeries().append(timestamp, value != null ? value : Double.NaN);
     return metric;
   }
 }
@@ -17,7 +17,9 @@
  */
 package org.apache.hadoop.metrics2.sink.timeline;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.TreeMap;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -42,7 +44,11 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
   private long timestamp;
   private long startTime;
   private String type;
-  private TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+  // The values are held either as a map or, more compactly, as a series;
+  // the field not in use is null. See getMetricValues() / getMetricSeries(),
+  // the read-only accessors keep the representation.
+  private TreeMap<Long, Double> metricValues = null;
+  private TimelineMetricSeries metricSeries = new TimelineMetricSeries();
 
   // default
   public TimelineMetric() {
@@ -58,7 +64,15 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     setInstanceId(metric.getInstanceId());
     setHostName(metric.getHostName());
     setStartTime(metric.getStartTime());
-    setMetricValues(new TreeMap<Long, Double>(metric.getMetricValues()));
+    synchronized (metric) {
+      if (metric.metricSeries != null) {
+        setMetricSeries(new TimelineMetricSeries(metric.metricSeries));
+      } else if (metric.metricValues != null) {
+        setMetricValues(new TreeMap<Long, Double>(metric.metricValues));
+      } else {
+        setMetricSeries(new TimelineMetricSeries());
+      }
+    }
   }
 
   @XmlElement(name = "metricname")
@@ -124,17 +138,86 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     this.type = type;
   }
 
+  /**
+   * Map view of the values, kept for compatibility. If the values are held
+   * as a series they are converted to a map, which then backs the metric
+   * until {@link #getMetricSeries()} is called.
+   */
   @XmlElement(name = "metrics")
-  public TreeMap<Long, Double> getMetricValues() {
+  public synchronized TreeMap<Long, Double> getMetricValues() {
+    if (metricSeries != null) {
+      metricValues = metricSeries.toTreeMap();
+      metricSeries = null;
+    }
     return metricValues;
   }
 
-  public void setMetricValues(TreeMap<Long, Double> metricValues) {
+  public synchronized void setMetricValues(TreeMap<Long, Double> metricValues) {
     this.metricValues = metricValues;
+    this.metricSeries = null;
+  }
+
+  /**
+   * Values as a primitive array backed series, preferred over
+   * {@link #getMetricValues()} wherever values are accumulated or held for
+   * a long time. If the values are held as a map they are converted to a
+   * series, which then backs the metric until {@link #getMetricValues()} is
+   * called, so a map obtained earlier must not be used afterwards.
+   */
+  public synchronized TimelineMetricSeries getMetricSeries() {
+    if (metricSeries == null) {
+      metricSeries = TimelineMetricSeries.fromMap(metricValues);
+      metricValues = null;
+    }
+    return metricSeries;
+  }
+
+  public synchronized void setMetricSeries(TimelineMetricSeries metricSeries) {
+    this.metricSeries = metricSeries != null ? metricSeries : new TimelineMetricSeries();
+    this.metricValues = null;
+  }
+
+  /**
+   * Values as a map, without changing how the metric holds them. The map
+   * cannot be modified; if the values are held as a series it is a copy.
+   */
+  public synchronized SortedMap<Long, Double> getReadOnlyMetricValues() {
+    if (metricSeries != null) {
+      return Collections.unmodifiableSortedMap(metricSeries.toTreeMap());
+    }
+    return Collections.unmodifiableSortedMap(
+      metricValues != null ? metricValues : new TreeMap<Long, Double>());
+  }
+
+  /**
+   * Values as a series, without changing how the metric holds them. The
+   * series must not be modified; if the values are held as a map it is a
+   * copy.
+   */
+  public synchronized TimelineMetricSeries getReadOnlyMetricSeries() {
+    return metricSeries != null ? metricSeries : TimelineMetricSeries.fromMap(metricValues);
+  }
+
+  /**
+   * @return number of values, without changing how the metric holds them
+   */
+  public synchronized int getMetricValueCount() {
+    if (metricSeries != null) {
+      return metricSeries.size();
+    }
+    return metricValues != null ? metricValues.size() : 0;
+  }
+
+  public synchronized void addMetricValues(Map<Long, Double> metricValues) {
+    if (metricSeries != null) {
+      metricSeries.merge(metricValues);
+    } else {
+      this.metricValues.putAll(metricValues);
+    }
   }
 
-  public void addMetricValues(Map<Long, Double> metricValues) {
-    this.metricValues.putAll(metricValues);
+  public synchronized void addMetricValues(TimelineMetricSeries metricSeries) {
+    getMetricSeries().merge(metricSeries);
   }
 
   @Override
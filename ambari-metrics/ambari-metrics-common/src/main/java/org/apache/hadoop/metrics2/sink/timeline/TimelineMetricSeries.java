@@ -0,0 +1,293 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Time series of metric values held as a sorted array of timestamps and a
+ * parallel array of values.
+ *
+ * A TreeMap&lt;Long, Double&gt; costs close to 80 bytes per data point for the
+ * entry and the two boxed numbers; this series costs 16. Values arrive in
+ * time order in the common case, so appending is amortized constant time;
+ * out of order values are inserted and values for an existing timestamp are
+ * replaced, which keeps the semantics of {@link Map#put(Object, Object)}.
+ *
+ * Missing (null) values are stored as {@link #MISSING_VALUE}, a NaN which
+ * is told apart from {@link Double#NaN} values by its bits.
+ *
+ * This class is not thread safe.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class TimelineMetricSeries {
+
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final long MISSING_VALUE_BITS = 0x7ff8000000000001L;
+
+  /**
+   * Value stored for a null map value.
+   */
+  public static final double MISSING_VALUE = Double.longBitsToDouble(MISSING_VALUE_BITS);
+
+  private long[] timestamps;
+  private double[] values;
+  private int size = 0;
+
+  public TimelineMetricSeries() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TimelineMetricSeries(int initialCapacity) {
+    timestamps = new long[Math.max(initialCapacity, 1)];
+    values = new double[timestamps.length];
+  }
+
+  // copy constructor
+  public TimelineMetricSeries(TimelineMetricSeries series) {
+    timestamps = Arrays.copyOf(series.timestamps, Math.max(series.size, 1));
+    values = Arrays.copyOf(series.values, timestamps.length);
+    size = series.size;
+  }
+
+  /**
+   * Create a series from the entries of the map.
+   */
+  public static TimelineMetricSeries fromMap(Map<Long, Double> metricValues) {
+    if (metricValues == null) {
+      return new TimelineMetricSeries();
+    }
+
+    TimelineMetricSeries series = new TimelineMetricSeries(metricValues.size());
+    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+      Double value = entry.getValue();
+      series.append(entry.getKey(), value == null ? MISSING_VALUE : value);
+    }
+    return series;
+  }
+
+  /**
+   * @return whether the value stands for a null map value
+   */
+  public static boolean isMissing(double value) {
+    return Double.doubleToRawLongBits(value) == MISSING_VALUE_BITS;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  public double getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  public long getFirstTimestamp() {
+    return getTimestamp(0);
+  }
+
+  public long getLastTimestamp() {
+    return getTimestamp(size - 1);
+  }
+
+  /**
+   * @return the index of the timestamp, or (-(insertion point) - 1) if the
+   * series does not hold it, as {@link Arrays#binarySearch(long[], long)}
+   */
+  public int indexOf(long timestamp) {
+    return Arrays.binarySearch(timestamps, 0, size, timestamp);
+  }
+
+  /**
+   * Add a value, replacing any value already held for the timestamp.
+   */
+  public void append(long timestamp, double value) {
+    if (size == 0 || timestamp > timestamps[size - 1]) {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      values[size] = value;
+      size++;
+      return;
+    }
+
+    int index = indexOf(timestamp);
+    if (index >= 0) {
+      values[index] = value;
+      return;
+    }
+
+    int insertionPoint = -index - 1;
+    ensureCapacity(size + 1);
+    System.arraycopy(timestamps, insertionPoint, timestamps, insertionPoint + 1, size - insertionPoint);
+    System.arraycopy(values, insertionPoint, values, insertionPoint + 1, size - insertionPoint);
+    timestamps[insertionPoint] = timestamp;
+    values[insertionPoint] = value;
+    size++;
+  }
+
+  /**
+   * Merge the other series into this one. Values of the other series win
+   * for timestamps present in both.
+   */
+  public void merge(TimelineMetricSeries other) {
+    if (other == null || other.size == 0) {
+      return;
+    }
+
+    // the common case, newer values for the same metric
+    if (size == 0 || other.timestamps[0] > timestamps[size - 1]) {
+      ensureCapacity(size + other.size);
+      System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+      System.arraycopy(other.values, 0, values, size, other.size);
+      size += other.size;
+      return;
+    }
+
+    long[] mergedTimestamps = new long[size + other.size];
+    double[] mergedValues = new double[mergedTimestamps.length];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < size || j < other.size) {
+      if (j == other.size || (i < size && timestamps[i] < other.timestamps[j])) {
+        mergedTimestamps[k] = timestamps[i];
+        mergedValues[k++] = values[i++];
+      } else {
+        if (i < size && timestamps[i] == other.timestamps[j]) {
+          i++;
+        }
+        mergedTimestamps[k] = other.timestamps[j];
+        mergedValues[k++] = other.values[j++];
+      }
+    }
+
+    timestamps = mergedTimestamps;
+    values = mergedValues;
+    size = k;
+  }
+
+  /**
+   * Merge the entries of the map into this series.
+   */
+  public void merge(Map<Long, Double> metricValues) {
+    if (metricValues != null && !metricValues.isEmpty()) {
+      merge(fromMap(metricValues));
+    }
+  }
+
+  /**
+   * Keep only the values with timestamps in [startTime, endTime].
+   */
+  public void retain(long startTime, long endTime) {
+    int from = indexOf(startTime);
+    from = from < 0 ? -from - 1 : from;
+    int to = indexOf(endTime);
+    to = to < 0 ? -to - 1 : to + 1;
+
+    if (from >= to) {
+      clear();
+      return;
+    }
+
+    if (from > 0) {
+      System.arraycopy(timestamps, from, timestamps, 0, to - from);
+      System.arraycopy(values, from, values, 0, to - from);
+    }
+    size = to - from;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Release unused capacity, for series which are held for a long time.
+   */
+  public void trimToSize() {
+    if (timestamps.length > size && size > 0) {
+      timestamps = Arrays.copyOf(timestamps, size);
+      values = Arrays.copyOf(values, size);
+    }
+  }
+
+  /**
+   * @return a new map with the values of this series, missing values are
+   * returned as null
+   */
+  public TreeMap<Long, Double> toTreeMap() {
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    for (int i = 0; i < size; i++) {
+      metricValues.put(timestamps[i], isMissing(values[i]) ? null : values[i]);
+    }
+    return metricValues;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > timestamps.length) {
+      int newCapacity = Math.max(capacity, timestamps.length + (timestamps.length >> 1));
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    TimelineMetricSeries series = (TimelineMetricSeries) o;
+    if (size != series.size) return false;
+    for (int i = 0; i < size; i++) {
+      if (timestamps[i] != series.timestamps[i]) return false;
+      if (Double.compare(values[i], series.values[i]) != 0) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = size;
+    for (int i = 0; i < size; i++) {
+      result = 31 * result + (int) (timestamps[i] ^ (timestamps[i] >>> 32));
+      long bits = Double.doubleToLongBits(values[i]);
+      result = 31 * result + (int) (bits ^ (bits >>> 32));
+    }
+    return result;
+  }
+}
@@ -88,7 +88,7 @@ public class TimelineMetrics {
     }
 
     if (metricToMerge != null) {
-      metricToMerge.addMetricValues(metric.getMetricValues());
+      metricToMerge.addMetricValues(metric.getReadOnlyMetricSeries());
       if (metricToMerge.getTimestamp() > metric.getTimestamp()) {
         metricToMerge.setTimestamp(metric.getTimestamp());
       }
@@ -114,7 +114,8 @@ public class TimelineMetrics {
     }
 
     if (metricToMerge != null) {
-      metricToMerge.getMetricValues().put(metric.getTimestamp(), metric.getValue());
+      metricToMerge.getMetricSeries().append(metric.getTimestamp(),
+        metric.getValue() != null ? metric.getValue() : Double.NaN);
       if (metricToMerge.getTimestamp() > metric.getTimestamp()) {
         metricToMerge.setTimestamp(metric.getTimestamp());
       }
@@ -0,0 +1,485 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sends metrics from a sink to the collector.
+ *
+ * <ul>
+ * <li>Responses are read to the end so that the JDK keeps the connection
+ * alive and reuses it for the next post instead of opening a new one.</li>
+ * <li>Request bodies are gzip compressed.</li>
+ * <li>Metrics of several emit calls can be batched into one post, bounded
+ * by the number of metrics and the time the first of them waited.</li>
+ * <li>Posts which fail because the collector is unreachable or overloaded
+ * are spilled to a local directory, bounded in size, and replayed on a
+ * background thread once the collector accepts metrics again.</li>
+ * </ul>
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class TimelineMetricsTransport {
+
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsTransport.class);
+
+  public static final long DEFAULT_MAX_SPILL_BYTES = 64 * 1024 * 1024;
+  static final String SPILL_FILE_PREFIX = "metrics-";
+  static final String GZIP_SUFFIX = ".json.gz";
+  static final String JSON_SUFFIX = ".json";
+  // spilled posts replayed after each successful post
+  static final int MAX_REPLAYS_PER_SEND = 10;
+  private static final long REPLAY_THREAD_KEEP_ALIVE_SECONDS = 60;
+  static final int DEFAULT_RETRY_AFTER_SECONDS = 30;
+
+  private final ObjectMapper mapper;
+
+  // off by default, collectors without the gzip request filter reject it
+  private boolean compressionEnabled = false;
+  private int maxBatchSize = 0;
+  private long maxBatchDelayMillis = 0;
+  private File spillDirectory;
+  private long maxSpillBytes = DEFAULT_MAX_SPILL_BYTES;
+
+  private final List<TimelineMetric> pendingMetrics = new ArrayList<TimelineMetric>();
+  private long pendingSince = -1;
+  // the collector asked to back off until then
+  private long retryAfterTime = 0;
+  private long spillSequence = 0;
+
+  // replays run off the emit thread, one at a time
+  private final AtomicBoolean replaying = new AtomicBoolean(false);
+  private ExecutorService replayExecutor;
+
+  private long bytesSent = 0;
+  // sizes of the serialized metrics before and after compression
+  private long serializedBytes = 0;
+  private long payloadBytes = 0;
+  private long postCount = 0;
+  private long failedPostCount = 0;
+  private long spilledPostCount = 0;
+  private long droppedSpillCount = 0;
+
+  public TimelineMetricsTransport(ObjectMapper mapper) {
+    this.mapper = mapper;
+  }
+
+  public synchronized void setCompressionEnabled(boolean compressionEnabled) {
+    this.compressionEnabled = compressionEnabled;
+  }
+
+  /**
+   * Batch metrics of emit calls until the batch holds the given number of
+   * metrics or its first metrics waited for the given delay. A delay of 0
+   * sends the metrics of each emit call right away.
+   */
+  public synchronized void setBatching(int maxBatchSize, long maxBatchDelayMillis) {
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchDelayMillis = maxBatchDelayMillis;
+  }
+
+  /**
+   * Spill posts which could not be delivered to the directory, keeping at
+   * most the given number of bytes. A null directory disables spilling.
+   */
+  public synchronized void setSpillDirectory(String spillDirectory, long maxSpillBytes) {
+    this.maxSpillBytes = maxSpillBytes;
+    if (spillDirectory == null || spillDirectory.trim().isEmpty()) {
+      this.spillDirectory = null;
+      return;
+    }
+
+    File directory = new File(spillDirectory.trim());
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      LOG.warn("Unable to create metrics spill directory " + directory + ", spilling disabled.");
+      this.spillDirectory = null;
+      return;
+    }
+    this.spillDirectory = directory;
+  }
+
+  /**
+   * Send the metrics to the collector, or add them to the pending batch.
+   *
+   * @throws UnableToConnectException if the collector could not be reached,
+   * the metrics are spilled when spilling is enabled
+   */
+  public synchronized void send(String connectUrl, int timeoutMillis, TimelineMetrics metrics) {
+    if (maxBatchDelayMillis > 0) {
+      if (metrics.getMetrics() != null) {
+        pendingMetrics.addAll(metrics.getMetrics());
+      }
+      long now = System.currentTimeMillis();
+      if (pendingSince < 0) {
+        pendingSince = now;
+      }
+      if (pendingMetrics.size() < maxBatchSize && now - pendingSince < maxBatchDelayMillis) {
+        return;
+      }
+      metrics = drainPendingMetrics();
+    }
+
+    post(connectUrl, timeoutMillis, metrics);
+  }
+
+  /**
+   * Send the pending batch right away.
+   */
+  public synchronized void flush(String connectUrl, int timeoutMillis) {
+    if (!pendingMetrics.isEmpty()) {
+      post(connectUrl, timeoutMillis, drainPendingMetrics());
+    }
+  }
+
+  private TimelineMetrics drainPendingMetrics() {
+    TimelineMetrics batch = new TimelineMetrics();
+    batch.setMetrics(new ArrayList<TimelineMetric>(pendingMetrics));
+    pendingMetrics.clear();
+    pendingSince = -1;
+    return batch;
+  }
+
+  private void post(String connectUrl, int timeoutMillis, TimelineMetrics metrics) {
+    byte[] payload;
+    try {
+      payload = serialize(metrics);
+    } catch (IOException e) {
+      LOG.error("Unable to serialize metrics.", e);
+      return;
+    }
+
+    if (spillDirectory != null && System.currentTimeMillis() < retryAfterTime) {
+      // the collector asked to back off, keep the metrics for later
+      spill(payload, compressionEnabled);
+      return;
+    }
+
+    try {
+      int statusCode = post(connectUrl, timeoutMillis, payload, compressionEnabled);
+      if (statusCode == HttpURLConnection.HTTP_OK) {
+        scheduleReplay(connectUrl, timeoutMillis);
+      } else if (statusCode == HttpURLConnection.HTTP_UNAVAILABLE) {
+        spill(payload, compressionEnabled);
+      }
+    } catch (IOException e) {
+      failedPostCount++;
+      spill(payload, compressionEnabled);
+      throw new UnableToConnectException(e).setConnectUrl(connectUrl);
+    }
+  }
+
+  private byte[] serialize(TimelineMetrics metrics) throws IOException {
+    byte[] payload = mapper.writeValueAsBytes(metrics);
+    serializedBytes += payload.length;
+
+    if (compressionEnabled) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length / 4 + 64);
+      try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+        gzip.write(payload);
+      }
+      payload = bytes.toByteArray();
+    }
+    payloadBytes += payload.length;
+    return payload;
+  }
+
+  /**
+   * @return the status code of the response
+   */
+  private int post(String connectUrl, int timeoutMillis, byte[] payload, boolean compressed)
+      throws IOException {
+    HttpURLConnection connection =
+      (HttpURLConnection) new URL(connectUrl).openConnection();
+
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Content-Type", "application/json");
+    connection.setRequestProperty("Connection", "Keep-Alive");
+    if (compressed) {
+      connection.setRequestProperty("Content-Encoding", "gzip");
+    }
+    connection.setConnectTimeout(timeoutMillis);
+    connection.setReadTimeout(timeoutMillis);
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(payload.length);
+
+    try (OutputStream os = connection.getOutputStream()) {
+      os.write(payload);
+    }
+
+    int statusCode = connection.getResponseCode();
+    synchronized (this) {
+      postCount++;
+      bytesSent += payload.length;
+    }
+
+    if (statusCode == HttpURLConnection.HTTP_OK) {
+      consume(connection.getInputStream());
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Metrics posted to Collector " + connectUrl + ", " + getStatistics());
+      }
+    } else {
+      consume(connection.getErrorStream());
+      synchronized (this) {
+        if (statusCode == HttpURLConnection.HTTP_UNAVAILABLE) {
+          int retryAfterSeconds = connection.getHeaderFieldInt("Retry-After",
+            DEFAULT_RETRY_AFTER_SECONDS);
+          retryAfterTime = System.currentTimeMillis() + retryAfterSeconds * 1000L;
+        }
+        failedPostCount++;
+      }
+      LOG.info("Unable to POST metrics to collector, " + connectUrl + ", " +
+        "statusCode = " + statusCode);
+    }
+    return statusCode;
+  }
+
+  /**
+   * Read the response to the end, which allows the connection to be reused.
+   */
+  private static void consume(InputStream in) throws IOException {
+    if (in == null) {
+      return;
+    }
+    try {
+      byte[] buffer = new byte[4096];
+      while (in.read(buffer) != -1) {
+        // discard
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private void spill(byte[] payload, boolean compressed) {
+    if (spillDirectory == null) {
+      return;
+    }
+
+    File spillFile = new File(spillDirectory, String.format("%s%020d-%06d%s",
+      SPILL_FILE_PREFIX, System.currentTimeMillis(), spillSequence++ % 1000000,
+      compressed ? GZIP_SUFFIX : JSON_SUFFIX));
+    try (OutputStream os = new FileOutputStream(spillFile)) {
+      os.write(payload);
+      spilledPostCount++;
+    } catch (IOException e) {
+      LOG.warn("Unable to spill metrics to " + spillFile, e);
+      spillFile.delete();
+      return;
+    }
+
+    // drop the oldest posts to stay within the limit
+    File[] spillFiles = listSpillFiles(spillDirectory);
+    long spillBytes = 0;
+    for (File file : spillFiles) {
+      spillBytes += file.length();
+    }
+    for (int i = 0; i < spillFiles.length - 1 && spillBytes > maxSpillBytes; i++) {
+      spillBytes -= spillFiles[i].length();
+      if (spillFiles[i].delete()) {
+        droppedSpillCount++;
+      }
+    }
+  }
+
+  /**
+   * Replay spilled posts on the replay thread, unless a replay is running
+   * already.
+   */
+  private void scheduleReplay(final String connectUrl, final int timeoutMillis) {
+    if (spillDirectory == null || !replaying.compareAndSet(false, true)) {
+      return;
+    }
+
+    if (replayExecutor == null) {
+      // the thread goes away while there is nothing to replay
+      replayExecutor = new ThreadPoolExecutor(0, 1, REPLAY_THREAD_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "timeline-metrics-spill-replay");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    }
+
+    final File directory = spillDirectory;
+    replayExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          replaySpilled(directory, connectUrl, timeoutMillis);
+        } catch (RuntimeException e) {
+          LOG.warn("Unable to replay spilled metrics.", e);
+        } finally {
+          replaying.set(false);
+        }
+      }
+    });
+  }
+
+  /**
+   * @return whether spilled posts are being replayed
+   */
+  boolean isReplaying() {
+    return replaying.get();
+  }
+
+  private void replaySpilled(File directory, String connectUrl, int timeoutMillis) {
+    File[] spillFiles = listSpillFiles(directory);
+    for (int i = 0; i < spillFiles.length && i < MAX_REPLAYS_PER_SEND; i++) {
+      File spillFile = spillFiles[i];
+      if (!spillFile.isFile()) {
+        // dropped to stay within the spill limit meanwhile
+        continue;
+      }
+      byte[] payload;
+      try {
+        payload = readFile(spillFile);
+      } catch (IOException e) {
+        LOG.warn("Unable to read spilled metrics " + spillFile + ", discarding them.", e);
+        spillFile.delete();
+        continue;
+      }
+
+      int statusCode;
+      try {
+        statusCode = post(connectUrl, timeoutMillis, payload,
+          spillFile.getName().endsWith(GZIP_SUFFIX));
+      } catch (IOException e) {
+        synchronized (this) {
+          failedPostCount++;
+        }
+        LOG.debug("Unable to replay spilled metrics " + spillFile, e);
+        return;
+      }
+      if (statusCode == HttpURLConnection.HTTP_UNAVAILABLE) {
+        return;
+      }
+      // other errors would not go away by resending
+      spillFile.delete();
+    }
+  }
+
+  private static File[] listSpillFiles(File directory) {
+    File[] spillFiles = directory.listFiles();
+    if (spillFiles == null) {
+      return new File[0];
+    }
+
+    List<File> files = new ArrayList<File>(spillFiles.length);
+    for (File file : spillFiles) {
+      if (file.isFile() && file.getName().startsWith(SPILL_FILE_PREFIX)) {
+        files.add(file);
+      }
+    }
+    spillFiles = files.toArray(new File[files.size()]);
+    // oldest first, the names start with the time of the spill
+    Arrays.sort(spillFiles);
+    return spillFiles;
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+    try (InputStream in = new FileInputStream(file)) {
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @return bytes posted to the collector, after compression
+   */
+  public synchronized long getBytesSent() {
+    return bytesSent;
+  }
+
+  /**
+   * @return ratio of the size of the serialized metrics before and after
+   * compression
+   */
+  public synchronized double getCompressionRatio() {
+    return payloadBytes == 0 ? 1.0 : (double) serializedBytes / payloadBytes;
+  }
+
+  public synchronized long getPostCount() {
+    return postCount;
+  }
+
+  public synchronized long getFailedPostCount() {
+    return failedPostCount;
+  }
+
+  /**
+   * @return number of posts waiting in the spill directory
+   */
+  public synchronized int getSpillDepth() {
+    return spillDirectory == null ? 0 : listSpillFiles(spillDirectory).length;
+  }
+
+  public synchronized long getSpilledPostCount() {
+    return spilledPostCount;
+  }
+
+  /**
+   * @return number of spilled posts dropped to stay within the spill limit
+   */
+  public synchronized long getDroppedSpillCount() {
+    return droppedSpillCount;
+  }
+
+  public synchronized int getPendingMetrics() {
+    return pendingMetrics.size();
+  }
+
+  public synchronized String getStatistics() {
+    return String.format("posts = %d, failed = %d, bytes sent = %d, " +
+        "compression ratio = %.2f, spilled = %d, dropped spills = %d, spill depth = %d",
+      postCount, failedPostCount, bytesSent, getCompressionRatio(),
+      spilledPostCount, droppedSpillCount, getSpillDepth());
+  }
+}
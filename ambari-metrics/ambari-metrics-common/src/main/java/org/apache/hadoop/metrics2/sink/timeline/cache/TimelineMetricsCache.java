@@ -22,11 +22,11 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.TreeMap;
 
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
@@ -64,7 +64,7 @@ public class TimelineMetricsCache {
     }
 
     public void putMetric(TimelineMetric metric) {
-      this.timelineMetric.addMetricValues(metric.getMetricValues());
+      this.timelineMetric.addMetricValues(metric.getReadOnlyMetricSeries());
       updateTimeDiff(metric.getStartTime());
     }
 
@@ -156,17 +156,17 @@ public class TimelineMetricsCache {
 
   private void transformMetricValuesToDerivative(TimelineMetric timelineMetric) {
     String metricName = timelineMetric.getMetricName();
-    double firstValue = timelineMetric.getMetricValues().size() > 0
-        ? timelineMetric.getMetricValues().entrySet().iterator().next().getValue() : 0;
+    TimelineMetricSeries metricSeries = timelineMetric.getMetricSeries();
+    double firstValue = metricSeries.size() > 0 ? metricSeries.getValue(0) : 0;
     Double value = counterMetricLastValue.get(metricName);
     double previousValue = value != null ? value : firstValue;
-    Map<Long, Double> metricValues = timelineMetric.getMetricValues();
-    TreeMap<Long, Double>   newMetricValues = new TreeMap<Long, Double>();
-    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
-      newMetricValues.put(entry.getKey(), entry.getValue() - previousValue);
-      previousValue = entry.getValue();
+    TimelineMetricSeries newMetricSeries = new TimelineMetricSeries(metricSeries.size());
+    for (int i = 0; i < metricSeries.size(); i++) {
+      double currentValue = metricSeries.getValue(i);
+      newMetricSeries.append(metricSeries.getTimestamp(i), currentValue - previousValue);
+      previousValue = currentValue;
     }
-    timelineMetric.setMetricValues(newMetricValues);
+    timelineMetric.setMetricSeries(newMetricSeries);
     counterMetricLastValue.put(metricName, previousValue);
   }
 
@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimelineMetricSeriesTest {
+
+  private static final double delta = 0.00001;
+
+  @Test
+  public void testAppendInAndOutOfOrder() throws Exception {
+    TimelineMetricSeries series = new TimelineMetricSeries(1);
+    series.append(10L, 1.0);
+    series.append(30L, 3.0);
+    series.append(20L, 2.0);
+    series.append(5L, 0.5);
+    series.append(20L, 2.5);
+
+    assertEquals(4, series.size());
+    assertEquals(5L, series.getFirstTimestamp());
+    assertEquals(30L, series.getLastTimestamp());
+    assertEquals(2.5, series.getValue(series.indexOf(20L)), delta);
+    assertTrue(series.indexOf(15L) < 0);
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    TimelineMetricSeries series = new TimelineMetricSeries();
+    series.append(1L, 1.0);
+    series.append(3L, 3.0);
+
+    // overlapping
+    TimelineMetricSeries other = new TimelineMetricSeries();
+    other.append(2L, 2.0);
+    other.append(3L, 30.0);
+    other.append(4L, 4.0);
+    series.merge(other);
+
+    // appended
+    other = new TimelineMetricSeries();
+    other.append(5L, 5.0);
+    series.merge(other);
+
+    TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+    expected.put(1L, 1.0);
+    expected.put(2L, 2.0);
+    expected.put(3L, 30.0);
+    expected.put(4L, 4.0);
+    expected.put(5L, 5.0);
+    assertEquals(expected, series.toTreeMap());
+  }
+
+  @Test
+  public void testMatchesTreeMap() throws Exception {
+    Random random = new Random(1);
+    TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+    TimelineMetricSeries series = new TimelineMetricSeries();
+
+    for (int i = 0; i < 1000; i++) {
+      long timestamp = random.nextInt(500);
+      double value = random.nextDouble();
+      expected.put(timestamp, value);
+      series.append(timestamp, value);
+    }
+
+    assertEquals(expected, series.toTreeMap());
+    assertEquals(series, TimelineMetricSeries.fromMap(expected));
+
+    series.retain(100L, 200L);
+    assertEquals(expected.subMap(100L, true, 200L, true), series.toTreeMap());
+
+    series.retain(300L, 400L);
+    assertTrue(series.isEmpty());
+  }
+
+  @Test
+  public void testNullValues() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1L, null);
+    values.put(2L, 2.0);
+    values.put(3L, Double.NaN);
+
+    TimelineMetricSeries series = TimelineMetricSeries.fromMap(values);
+    assertTrue(Double.isNaN(series.getValue(0)));
+    assertTrue(TimelineMetricSeries.isMissing(series.getValue(0)));
+    assertFalse(TimelineMetricSeries.isMissing(series.getValue(2)));
+
+    // NaN values stay NaN, missing values become null again
+    TreeMap<Long, Double> metricValues = series.toTreeMap();
+    assertTrue(metricValues.containsKey(1L));
+    assertNull(metricValues.get(1L));
+    assertTrue(Double.isNaN(metricValues.get(3L)));
+
+    // also after copying and merging
+    TimelineMetricSeries copy = new TimelineMetricSeries(series);
+    copy.merge(TimelineMetricSeries.fromMap(values));
+    assertEquals(metricValues, copy.toTreeMap());
+  }
+
+  @Test
+  public void testTimelineMetricViews() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    metric.getMetricSeries().append(1L, 1.0);
+    metric.getMetricSeries().append(2L, 2.0);
+
+    // map view
+    assertEquals(2, metric.getMetricValues().size());
+    metric.getMetricValues().put(3L, 3.0);
+
+    // back to the series, the copy keeps its own values
+    TimelineMetric copy = new TimelineMetric(metric);
+    metric.getMetricSeries().append(4L, 4.0);
+    assertEquals(4, metric.getMetricSeries().size());
+    assertEquals(3, copy.getMetricValues().size());
+    assertEquals(3.0, copy.getMetricValues().get(3L), delta);
+  }
+
+  @Test
+  public void testReadOnlyViewsKeepRepresentation() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    TimelineMetricSeries series = metric.getMetricSeries();
+    series.append(1L, 1.0);
+    series.append(2L, 2.0);
+
+    assertEquals(2, metric.getMetricValueCount());
+    assertEquals(2, metric.getReadOnlyMetricValues().size());
+    assertSame(series, metric.getReadOnlyMetricSeries());
+    // still held as the same series
+    assertSame(series, metric.getMetricSeries());
+
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1L, 1.0);
+    metric.setMetricValues(values);
+    assertEquals(1, metric.getReadOnlyMetricSeries().size());
+    assertEquals(1, metric.getMetricValueCount());
+    // still held as the same map
+    assertSame(values, metric.getMetricValues());
+
+    try {
+      metric.getReadOnlyMetricValues().put(3L, 3.0);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+}
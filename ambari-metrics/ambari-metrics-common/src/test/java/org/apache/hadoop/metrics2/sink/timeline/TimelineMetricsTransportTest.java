@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimelineMetricsTransportTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final ObjectMapper mapper = AbstractTimelineMetricsSink.mapper;
+  private HttpServer server;
+  private String connectUrl;
+  private volatile int statusCode = 200;
+  private final List<TimelineMetrics> received =
+    Collections.synchronizedList(new ArrayList<TimelineMetrics>());
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/ws/v1/timeline/metrics", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+          in = new GZIPInputStream(in);
+        }
+        byte[] body = readFully(in);
+        if (statusCode == 200) {
+          received.add(mapper.readValue(body, TimelineMetrics.class));
+        } else {
+          exchange.getResponseHeaders().add("Retry-After", "1");
+        }
+        exchange.sendResponseHeaders(statusCode, -1);
+        exchange.close();
+      }
+    });
+    server.start();
+    connectUrl = "http://localhost:" + server.getAddress().getPort() + "/ws/v1/timeline/metrics";
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testCompressedPost() throws Exception {
+    TimelineMetricsTransport transport = new TimelineMetricsTransport(mapper);
+    transport.setCompressionEnabled(true);
+
+    for (int i = 0; i < 3; i++) {
+      transport.send(connectUrl, 10000, createMetrics(100));
+    }
+
+    assertEquals(3, received.size());
+    assertEquals(100, received.get(0).getMetrics().size());
+    assertEquals(3, transport.getPostCount());
+    assertTrue(transport.getBytesSent() > 0);
+    assertTrue(transport.getCompressionRatio() > 2);
+  }
+
+  @Test
+  public void testBatching() throws Exception {
+    TimelineMetricsTransport transport = new TimelineMetricsTransport(mapper);
+    transport.setBatching(25, 60000);
+
+    transport.send(connectUrl, 10000, createMetrics(10));
+    transport.send(connectUrl, 10000, createMetrics(10));
+    assertEquals(0, received.size());
+    assertEquals(20, transport.getPendingMetrics());
+
+    // batch is full
+    transport.send(connectUrl, 10000, createMetrics(10));
+    assertEquals(1, received.size());
+    assertEquals(30, received.get(0).getMetrics().size());
+
+    transport.send(connectUrl, 10000, createMetrics(5));
+    transport.flush(connectUrl, 10000);
+    assertEquals(2, received.size());
+    assertEquals(0, transport.getPendingMetrics());
+  }
+
+  @Test
+  public void testSpillAndReplay() throws Exception {
+    TimelineMetricsTransport transport = new TimelineMetricsTransport(mapper);
+    transport.setSpillDirectory(temporaryFolder.getRoot().getAbsolutePath(), 1024 * 1024);
+
+    // overloaded collector
+    statusCode = 503;
+    transport.send(connectUrl, 10000, createMetrics(10));
+    assertEquals(1, transport.getSpillDepth());
+
+    // backing off, nothing is posted
+    transport.send(connectUrl, 10000, createMetrics(10));
+    assertEquals(2, transport.getSpillDepth());
+    assertEquals(1, transport.getPostCount());
+
+    // unreachable collector
+    server.stop(0);
+    Thread.sleep(1100);
+    try {
+      transport.send(connectUrl, 10000, createMetrics(10));
+      fail();
+    } catch (UnableToConnectException e) {
+      assertEquals(connectUrl, e.getConnectUrl());
+    }
+    assertEquals(3, transport.getSpillDepth());
+
+    // back again
+    setUp();
+    statusCode = 200;
+    transport.send(connectUrl, 10000, createMetrics(10));
+    // spilled posts are replayed in the background
+    long deadline = System.currentTimeMillis() + 10000;
+    while ((transport.isReplaying() || transport.getSpillDepth() > 0) &&
+        System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(4, received.size());
+    assertEquals(0, transport.getSpillDepth());
+  }
+
+  @Test
+  public void testSpillLimit() throws Exception {
+    TimelineMetricsTransport transport = new TimelineMetricsTransport(mapper);
+    transport.setCompressionEnabled(false);
+    transport.setSpillDirectory(temporaryFolder.getRoot().getAbsolutePath(), 1);
+    server.stop(0);
+
+    for (int i = 0; i < 3; i++) {
+      try {
+        transport.send(connectUrl, 10000, createMetrics(10));
+        fail();
+      } catch (UnableToConnectException e) {
+        // expected
+      }
+    }
+
+    // only the latest post is kept
+    assertEquals(1, transport.getSpillDepth());
+    assertEquals(2, transport.getDroppedSpillCount());
+  }
+
+  private static TimelineMetrics createMetrics(int count) {
+    long now = System.currentTimeMillis();
+    List<TimelineMetric> metricList = new ArrayList<TimelineMetric>(count);
+    for (int i = 0; i < count; i++) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("metric" + i);
+      metric.setHostName("host1");
+      metric.setAppId("app1");
+      metric.setStartTime(now);
+      for (int j = 0; j < 6; j++) {
+        metric.getMetricSeries().append(now + j * 10000, j);
+      }
+      metricList.add(metric);
+    }
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(metricList);
+    return metrics;
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      bytes.write(buffer, 0, read);
+    }
+    return bytes.toByteArray();
+  }
+}
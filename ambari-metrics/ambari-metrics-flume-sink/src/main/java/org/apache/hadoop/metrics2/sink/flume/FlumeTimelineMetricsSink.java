@@ -73,6 +73,11 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
   public void stop() {
     LOG.info("Stopping Flume Metrics Sink");
     scheduledExecutorService.shutdown();
+    try {
+      flushMetrics();
+    } catch (UnableToConnectException uce) {
+      LOG.warn("Unable to send metrics to collector by address:" + uce.getConnectUrl());
+    }
   }
 
   @Override
@@ -95,6 +100,11 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
         String.valueOf(TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT)));
     metricsSendInterval = Integer.parseInt(configuration.getProperty(METRICS_SEND_INTERVAL,
         String.valueOf(TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS)));
+    configureTransport(configuration.getProperty(METRICS_COMPRESSION_PROPERTY),
+        configuration.getProperty(METRICS_BATCH_SIZE_PROPERTY),
+        configuration.getProperty(METRICS_BATCH_DELAY_PROPERTY),
+        configuration.getProperty(METRICS_SPILL_DIR_PROPERTY),
+        configuration.getProperty(METRICS_MAX_SPILL_SIZE_PROPERTY));
     metricsCaches = new HashMap<String, TimelineMetricsCache>();
     String collectorHostname = configuration.getProperty(COLLECTOR_HOST_PROPERTY);
     String port = configuration.getProperty(COLLECTOR_PORT_PROPERTY);
@@ -190,7 +200,7 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
       timelineMetric.setStartTime(currentTimeMillis);
       timelineMetric.setType(ClassUtils.getShortCanonicalName(
           attributeValue, "Number"));
-      timelineMetric.getMetricValues().put(currentTimeMillis, Double.parseDouble(attributeValue));
+      timelineMetric.getMetricSeries().append(currentTimeMillis, Double.parseDouble(attributeValue));
       return timelineMetric;
     }
   }
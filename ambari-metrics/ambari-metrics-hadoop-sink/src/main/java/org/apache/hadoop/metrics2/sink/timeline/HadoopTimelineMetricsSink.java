@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.metrics2.sink.timeline;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
@@ -45,7 +47,8 @@ import org.apache.hadoop.net.DNS;
 
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
-public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink implements MetricsSink {
+public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink
+    implements MetricsSink, Closeable {
   private Map<String, Set<String>> useTagsMap = new HashMap<String, Set<String>>();
   private TimelineMetricsCache metricsCache;
   private String hostName = "UNKNOWN.example.com";
@@ -91,6 +94,11 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
     LOG.info("Collector Uri: " + collectorUri);
 
     timeoutSeconds = conf.getInt(METRICS_POST_TIMEOUT_SECONDS, DEFAULT_POST_TIMEOUT_SECONDS);
+    configureTransport(conf.getString(METRICS_COMPRESSION_PROPERTY),
+      conf.getString(METRICS_BATCH_SIZE_PROPERTY),
+      conf.getString(METRICS_BATCH_DELAY_PROPERTY),
+      conf.getString(METRICS_SPILL_DIR_PROPERTY),
+      conf.getString(METRICS_MAX_SPILL_SIZE_PROPERTY));
 
     int maxRowCacheSize = conf.getInt(MAX_METRIC_ROW_CACHE_SIZE,
       TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT);
@@ -187,7 +195,7 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
         timelineMetric.setAppId(serviceName);
         timelineMetric.setStartTime(startTime);
         timelineMetric.setType(ClassUtils.getShortCanonicalName(value, "Number"));
-        timelineMetric.getMetricValues().put(startTime, value.doubleValue());
+        timelineMetric.getMetricSeries().append(startTime, value.doubleValue());
         // Put intermediate values into the cache until it is time to send
         boolean isCounter = MetricType.COUNTER == metric.type();
         metricsCache.putTimelineMetric(timelineMetric, isCounter);
@@ -240,4 +248,17 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
   public void flush() {
     // TODO: Buffering implementation
   }
+
+  /**
+   * Called by the metrics system when the sink is stopped, sends the metrics
+   * still waiting in the batch.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flushMetrics();
+    } catch (UnableToConnectException uce) {
+      LOG.warn("Unable to send metrics to collector by address:" + uce.getConnectUrl());
+    }
+  }
 }
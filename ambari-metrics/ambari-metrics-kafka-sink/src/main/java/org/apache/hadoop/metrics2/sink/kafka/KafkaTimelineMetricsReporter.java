@@ -41,6 +41,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.metrics2.sink.timeline.AbstractTimelineMetricsSink;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.metrics2.sink.timeline.UnableToConnectException;
 import org.apache.hadoop.metrics2.sink.timeline.cache.TimelineMetricsCache;
 
 import java.net.InetAddress;
@@ -64,6 +65,11 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
   private static final String TIMELINE_METRICS_MAX_ROW_CACHE_SIZE_PROPERTY = "kafka.timeline.metrics.maxRowCacheSize";
   private static final String TIMELINE_HOST_PROPERTY = "kafka.timeline.metrics.host";
   private static final String TIMELINE_PORT_PROPERTY = "kafka.timeline.metrics.port";
+  private static final String TIMELINE_COMPRESSION_PROPERTY = "kafka.timeline.metrics.compression";
+  private static final String TIMELINE_BATCH_SIZE_PROPERTY = "kafka.timeline.metrics.batchSize";
+  private static final String TIMELINE_BATCH_DELAY_PROPERTY = "kafka.timeline.metrics.batchDelay";
+  private static final String TIMELINE_SPILL_DIR_PROPERTY = "kafka.timeline.metrics.spillDir";
+  private static final String TIMELINE_MAX_SPILL_SIZE_PROPERTY = "kafka.timeline.metrics.maxSpillSize";
   private static final String TIMELINE_REPORTER_ENABLED_PROPERTY = "kafka.timeline.metrics.reporter.enabled";
   private static final String EXCLUDED_METRICS_PROPERTY = "external.kafka.metrics.exclude.prefix";
   private static final String INCLUDED_METRICS_PROPERTY = "external.kafka.metrics.include.prefix";
@@ -119,6 +125,11 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
         String metricCollectorHost = props.getString(TIMELINE_HOST_PROPERTY, TIMELINE_DEFAULT_HOST);
         String metricCollectorPort = props.getString(TIMELINE_PORT_PROPERTY, TIMELINE_DEFAULT_PORT);
         setMetricsCache(new TimelineMetricsCache(maxRowCacheSize, metricsSendInterval));
+        configureTransport(props.getString(TIMELINE_COMPRESSION_PROPERTY, null),
+          props.getString(TIMELINE_BATCH_SIZE_PROPERTY, null),
+          props.getString(TIMELINE_BATCH_DELAY_PROPERTY, null),
+          props.getString(TIMELINE_SPILL_DIR_PROPERTY, null),
+          props.getString(TIMELINE_MAX_SPILL_SIZE_PROPERTY, null));
         collectorUri = "http://" + metricCollectorHost + ":" + metricCollectorPort + "/ws/v1/timeline/metrics";
 
         // Exclusion policy
@@ -165,6 +176,11 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
     synchronized (lock) {
       if (initialized && running) {
         reporter.stop();
+        try {
+          flushMetrics();
+        } catch (UnableToConnectException e) {
+          LOG.warn("Unable to send metrics to collector by address:" + e.getConnectUrl());
+        }
         running = false;
         LOG.info("Stopped Kafka Timeline metrics reporter");
         initializeReporter();
@@ -269,7 +285,7 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
       timelineMetric.setAppId(component);
       timelineMetric.setStartTime(currentTimeMillis);
       timelineMetric.setType(ClassUtils.getShortCanonicalName(attributeValue, "Number"));
-      timelineMetric.getMetricValues().put(currentTimeMillis, attributeValue.doubleValue());
+      timelineMetric.getMetricSeries().append(currentTimeMillis, attributeValue.doubleValue());
       return timelineMetric;
     }
 
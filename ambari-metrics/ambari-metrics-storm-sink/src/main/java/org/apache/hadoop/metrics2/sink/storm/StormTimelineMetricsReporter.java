@@ -50,6 +50,7 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
   private NimbusClient nimbusClient;
   private String applicationId;
   private int timeoutSeconds;
+  private Thread shutdownHook;
 
   public StormTimelineMetricsReporter() {
 
@@ -88,8 +89,14 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
       timeoutSeconds = cf.get(METRICS_POST_TIMEOUT_SECONDS) != null ?
         Integer.parseInt(cf.get(METRICS_POST_TIMEOUT_SECONDS).toString()) :
         DEFAULT_POST_TIMEOUT_SECONDS;
+      configureTransport(getProperty(cf, METRICS_COMPRESSION_PROPERTY),
+        getProperty(cf, METRICS_BATCH_SIZE_PROPERTY),
+        getProperty(cf, METRICS_BATCH_DELAY_PROPERTY),
+        getProperty(cf, METRICS_SPILL_DIR_PROPERTY),
+        getProperty(cf, METRICS_MAX_SPILL_SIZE_PROPERTY));
       applicationId = cf.get(APP_ID).toString();
       collectorUri = "http://" + collectorHostname + ":" + port + "/ws/v1/timeline/metrics";
+      addShutdownHook();
     } catch (Exception e) {
       LOG.warn("Could not initialize metrics collector, please specify host, " +
         "port under $STORM_HOME/conf/config.yaml ", e);
@@ -97,6 +104,31 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
 
   }
 
+  /**
+   * Cluster reporters are not told when Nimbus stops, send the metrics still
+   * waiting in the batch when the JVM exits.
+   */
+  private synchronized void addShutdownHook() {
+    if (shutdownHook != null) {
+      return;
+    }
+    shutdownHook = new Thread("storm-timeline-metrics-flush") {
+      @Override
+      public void run() {
+        try {
+          flushMetrics();
+        } catch (UnableToConnectException e) {
+          LOG.warn("Unable to connect to Metrics Collector " + e.getConnectUrl() + ". " + e.getMessage());
+        }
+      }
+    };
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  private static String getProperty(Map cf, String key) {
+    return cf.get(key) != null ? cf.get(key).toString() : null;
+  }
+
   @Override
   public void reportMetrics() throws Exception {
     List<TimelineMetric> totalMetrics = new ArrayList<TimelineMetric>(7);
@@ -155,7 +187,7 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
     timelineMetric.setStartTime(currentTimeMillis);
     timelineMetric.setType(ClassUtils.getShortCanonicalName(
       attributeValue, "Number"));
-    timelineMetric.getMetricValues().put(currentTimeMillis, Double.parseDouble(attributeValue));
+    timelineMetric.getMetricSeries().append(currentTimeMillis, Double.parseDouble(attributeValue));
     return timelineMetric;
   }
 
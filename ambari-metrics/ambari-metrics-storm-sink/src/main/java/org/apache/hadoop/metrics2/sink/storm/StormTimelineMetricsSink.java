@@ -76,6 +76,11 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
         String.valueOf(MAX_RECS_PER_NAME_DEFAULT)));
     int metricsSendInterval = Integer.parseInt(configuration.getProperty(METRICS_SEND_INTERVAL,
         String.valueOf(MAX_EVICTION_TIME_MILLIS)));
+    configureTransport(configuration.getProperty(METRICS_COMPRESSION_PROPERTY),
+        configuration.getProperty(METRICS_BATCH_SIZE_PROPERTY),
+        configuration.getProperty(METRICS_BATCH_DELAY_PROPERTY),
+        configuration.getProperty(METRICS_SPILL_DIR_PROPERTY),
+        configuration.getProperty(METRICS_MAX_SPILL_SIZE_PROPERTY));
     metricsCache = new TimelineMetricsCache(maxRowCacheSize, metricsSendInterval);
     collectorUri = "http://" + configuration.getProperty(COLLECTOR_HOST_PROPERTY) + ":" + configuration.getProperty(COLLECTOR_PORT_PROPERTY) + "/ws/v1/timeline/metrics";
   }
@@ -113,6 +118,11 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
   @Override
   public void cleanup() {
     LOG.info("Stopping Storm Metrics Sink");
+    try {
+      flushMetrics();
+    } catch (UnableToConnectException uce) {
+      LOG.warn("Unable to send metrics to collector by address:" + uce.getConnectUrl());
+    }
   }
 
   private TimelineMetric createTimelineMetric(long currentTimeMillis, String component, String attributeName, String attributeValue) {
@@ -123,7 +133,7 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     timelineMetric.setStartTime(currentTimeMillis);
     timelineMetric.setType(ClassUtils.getShortCanonicalName(
         attributeValue, "Number"));
-    timelineMetric.getMetricValues().put(currentTimeMillis, Double.parseDouble(attributeValue));
+    timelineMetric.getMetricSeries().append(currentTimeMillis, Double.parseDouble(attributeValue));
     return timelineMetric;
   }
 
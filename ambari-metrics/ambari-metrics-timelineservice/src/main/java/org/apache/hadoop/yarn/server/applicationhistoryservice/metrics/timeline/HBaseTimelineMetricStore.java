@@ -31,6 +31,7 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregatorFactory;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -57,6 +58,8 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
   static final Log LOG = LogFactory.getLog(HBaseTimelineMetricStore.class);
   private final TimelineMetricConfiguration configuration;
   private PhoenixHBaseAccessor hBaseAccessor;
+  private TimelineMetricWriteBuffer writeBuffer;
+  private TimelineMetricQueryCache queryCache;
   private static volatile boolean isInitialized = false;
   private final ScheduledExecutorService executorService =
     Executors.newSingleThreadScheduledExecutor();
@@ -82,6 +85,23 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       hBaseAccessor = new PhoenixHBaseAccessor(hbaseConf, metricsConf);
       hBaseAccessor.initMetricSchema();
 
+      int writeBufferSize = configuration.getTimelineMetricsWriteBufferSize();
+      if (writeBufferSize > 0) {
+        writeBuffer = new TimelineMetricWriteBuffer(hBaseAccessor, writeBufferSize,
+          configuration.getTimelineMetricsWriteBufferWriterThreads(),
+          configuration.getTimelineMetricsWriteBufferBatchSize(),
+          configuration.getTimelineMetricsWriteBufferFlushInterval(),
+          configuration.getTimelineMetricsWriteBufferRetryInterval());
+        writeBuffer.start();
+      }
+
+      int queryCacheSize = configuration.getTimelineMetricsQueryCacheSize();
+      if (queryCacheSize > 0) {
+        queryCache = new TimelineMetricQueryCache(queryCacheSize,
+          configuration.getTimelineMetricsQueryCacheRefreshWindows(),
+          configuration.getTimelineMetricsQueryCacheTtl());
+      }
+
       if (Boolean.parseBoolean(metricsConf.get(USE_GROUPBY_AGGREGATOR_QUERIES, "true"))) {
         LOG.info("Using group by aggregators for aggregating host and cluster metrics.");
       }
@@ -156,14 +176,18 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
 
   @Override
   protected void serviceStop() throws Exception {
+    if (writeBuffer != null) {
+      writeBuffer.stop(configuration.getTimelineMetricsWriteBufferRetryInterval());
+    }
     super.serviceStop();
   }
 
   @Override
-  public TimelineMetrics getTimelineMetrics(List<String> metricNames,
-      List<String> hostnames, String applicationId, String instanceId,
-      Long startTime, Long endTime, Precision precision, Integer limit,
-      boolean groupedByHosts) throws SQLException, IOException {
+  public TimelineMetrics getTimelineMetrics(final List<String> metricNames,
+      final List<String> hostnames, final String applicationId,
+      final String instanceId, Long startTime, Long endTime,
+      Precision precision, Integer limit, final boolean groupedByHosts)
+      throws SQLException, IOException {
 
     if (metricNames == null || metricNames.isEmpty()) {
       throw new IllegalArgumentException("No metric name filter specified.");
@@ -175,23 +199,55 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     if (limit != null && limit > PhoenixHBaseAccessor.RESULTSET_LIMIT){
       throw new IllegalArgumentException("Limit too big");
     }
-    Map<String, List<Function>> metricFunctions =
+    final Map<String, List<Function>> metricFunctions =
       parseMetricNamesToAggregationFunctions(metricNames);
 
+    TimelineMetrics metrics;
+
+    // Only time bounded queries without a limit return the same values for
+    // the same time range
+    if (queryCache != null && startTime != null && limit == null) {
+      // The partial scans of the cache use the precision of the whole range
+      if (precision == null) {
+        precision = PhoenixTransactSQL.getDefaultPrecision(new DefaultCondition(
+          new ArrayList<String>(metricFunctions.keySet()), hostnames,
+          applicationId, instanceId, startTime, endTime, null, null,
+          groupedByHosts));
+      }
+      metrics = queryCache.getTimelineMetrics(metricNames, hostnames,
+        applicationId, instanceId, startTime, endTime, precision,
+        groupedByHosts, new TimelineMetricQueryCache.MetricsFetcher() {
+          @Override
+          public TimelineMetrics fetch(long startTime, long endTime,
+              Precision precision) throws SQLException, IOException {
+            return getMetricRecords(metricFunctions, hostnames, applicationId,
+              instanceId, startTime, endTime, precision, null, groupedByHosts);
+          }
+        });
+    } else {
+      metrics = getMetricRecords(metricFunctions, hostnames, applicationId,
+        instanceId, startTime, endTime, precision, limit, groupedByHosts);
+    }
+    return postProcessMetrics(metrics);
+  }
+
+  private TimelineMetrics getMetricRecords(
+      Map<String, List<Function>> metricFunctions, List<String> hostnames,
+      String applicationId, String instanceId, Long startTime, Long endTime,
+      Precision precision, Integer limit, boolean groupedByHosts)
+      throws SQLException, IOException {
+
     Condition condition = new DefaultCondition(
       new ArrayList<String>(metricFunctions.keySet()),
       hostnames, applicationId, instanceId, startTime, endTime,
       precision, limit, groupedByHosts);
 
-    TimelineMetrics metrics;
-
     if (hostnames == null || hostnames.isEmpty()) {
-      metrics = hBaseAccessor.getAggregateMetricRecords(condition,
+      return hBaseAccessor.getAggregateMetricRecords(condition,
           metricFunctions);
     } else {
-      metrics = hBaseAccessor.getMetricRecords(condition, metricFunctions);
+      return hBaseAccessor.getMetricRecords(condition, metricFunctions);
     }
-    return postProcessMetrics(metrics);
   }
 
   private TimelineMetrics postProcessMetrics(TimelineMetrics metrics) {
@@ -304,7 +360,7 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       metric.setStartTime(metricList.get(0).getStartTime());
       TreeMap<Long, Double> metricRecords = new TreeMap<Long, Double>();
       for (TimelineMetric timelineMetric : metricList) {
-        metricRecords.putAll(timelineMetric.getMetricValues());
+        metricRecords.putAll(timelineMetric.getReadOnlyMetricValues());
       }
       metric.setMetricValues(metricRecords);
     }
@@ -320,8 +376,40 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     // Error indicated by the Sql exception
     TimelinePutResponse response = new TimelinePutResponse();
 
-    hBaseAccessor.insertMetricRecords(metrics);
+    if (writeBuffer == null || (metrics.getMetrics() != null
+        && metrics.getMetrics().size() > writeBuffer.getCapacity())) {
+      // requests larger than the whole buffer are written synchronously
+      hBaseAccessor.insertMetricRecords(metrics);
+    } else if (!writeBuffer.offer(metrics)) {
+      throw new MetricsWriteBufferFullException("Metric write buffer is full, " +
+        writeBuffer.getStatistics(),
+        configuration.getTimelineMetricsWriteBufferRetryAfter());
+    }
 
     return response;
   }
+
+  @Override
+  public TimelinePutResponse putMetricsSynchronously(TimelineMetrics metrics)
+    throws SQLException, IOException {
+
+    hBaseAccessor.insertMetricRecords(metrics);
+    return new TimelinePutResponse();
+  }
+
+  /**
+   * @return the write-behind buffer, or null if metrics are written
+   * synchronously
+   */
+  public TimelineMetricWriteBuffer getWriteBuffer() {
+    return writeBuffer;
+  }
+
+  /**
+   * @return the query result cache, or null if every query scans the
+   * metric tables
+   */
+  public TimelineMetricQueryCache getQueryCache() {
+    return queryCache;
+  }
 }
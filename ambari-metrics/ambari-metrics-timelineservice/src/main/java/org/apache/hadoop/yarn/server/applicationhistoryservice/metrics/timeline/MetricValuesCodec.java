@@ -0,0 +1,278 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compact encoding of metric values for the METRICS column of the
+ * METRIC_RECORD table.
+ *
+ * Timestamps are stored as delta-of-deltas and values as the XOR against the
+ * previous value, as described in the Gorilla paper. Regular sampling
+ * intervals and slowly changing values, which is the common case for
+ * collected metrics, take only a few bits per point.
+ *
+ * The encoded bytes are stored as Base64 text so that the existing VARCHAR
+ * column can hold both formats. Legacy rows are JSON objects, which always
+ * start with '{', a character outside of the Base64 alphabet; binary rows
+ * start with a version byte.
+ */
+public class MetricValuesCodec {
+
+  static final int VERSION_1 = 1;
+
+  private MetricValuesCodec() {
+  }
+
+  /**
+   * Encode the values using the binary format.
+   */
+  public static String encode(Map<Long, Double> metricValues) {
+    TreeMap<Long, Double> sortedValues = metricValues instanceof TreeMap ?
+      (TreeMap<Long, Double>) metricValues : new TreeMap<Long, Double>(metricValues);
+
+    BitWriter writer = new BitWriter(16 + sortedValues.size() * 4);
+    writer.writeBits(VERSION_1, 8);
+    writer.writeBits(sortedValues.size(), 32);
+
+    long previousTimestamp = 0;
+    long previousDelta = 0;
+    long previousValue = 0;
+    int previousLeading = -1;
+    int previousTrailing = 0;
+    boolean first = true;
+
+    for (Map.Entry<Long, Double> entry : sortedValues.entrySet()) {
+      long timestamp = entry.getKey();
+      Double value = entry.getValue();
+      long valueBits = Double.doubleToRawLongBits(value == null ? Double.NaN : value);
+
+      if (first) {
+        writer.writeBits(timestamp, 64);
+        writer.writeBits(valueBits, 64);
+        first = false;
+      } else {
+        // timestamps
+        long delta = timestamp - previousTimestamp;
+        long deltaOfDelta = delta - previousDelta;
+        if (deltaOfDelta == 0) {
+          writer.writeBits(0, 1);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+          writer.writeBits(0x2, 2);
+          writer.writeBits(deltaOfDelta + 63, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+          writer.writeBits(0x6, 3);
+          writer.writeBits(deltaOfDelta + 255, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+          writer.writeBits(0xE, 4);
+          writer.writeBits(deltaOfDelta + 2047, 12);
+        } else {
+          writer.writeBits(0xF, 4);
+          writer.writeBits(deltaOfDelta, 64);
+        }
+        previousDelta = delta;
+
+        // values
+        long xor = valueBits ^ previousValue;
+        if (xor == 0) {
+          writer.writeBits(0, 1);
+        } else {
+          writer.writeBits(1, 1);
+          int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+          int trailing = Long.numberOfTrailingZeros(xor);
+
+          if (previousLeading != -1 && leading >= previousLeading
+              && trailing >= previousTrailing) {
+            // the meaningful bits fit in the previous window
+            writer.writeBits(0, 1);
+            writer.writeBits(xor >>> previousTrailing,
+              64 - previousLeading - previousTrailing);
+          } else {
+            int significant = 64 - leading - trailing;
+            writer.writeBits(1, 1);
+            writer.writeBits(leading, 5);
+            writer.writeBits(significant - 1, 6);
+            writer.writeBits(xor >>> trailing, significant);
+            previousLeading = leading;
+            previousTrailing = trailing;
+          }
+        }
+      }
+
+      previousTimestamp = timestamp;
+      previousValue = valueBits;
+    }
+
+    // not encodeBase64String(), which chunks its output in older codec versions
+    return new String(Base64.encodeBase64(writer.toByteArray()), Charset.forName("US-ASCII"));
+  }
+
+  /**
+   * Decode values written either by {@link #encode(Map)} or as legacy JSON.
+   */
+  public static TreeMap<Long, Double> decode(String encoded) throws IOException {
+    if (encoded == null || encoded.isEmpty()) {
+      return new TreeMap<Long, Double>();
+    }
+
+    if (isLegacyFormat(encoded)) {
+      return PhoenixHBaseAccessor.readMetricFromJSON(encoded);
+    }
+
+    BitReader reader = new BitReader(Base64.decodeBase64(encoded));
+    int version = (int) reader.readBits(8);
+    if (version != VERSION_1) {
+      throw new IOException("Unsupported metric values encoding version " + version);
+    }
+
+    int count = (int) reader.readBits(32);
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    if (count == 0) {
+      return metricValues;
+    }
+
+    long timestamp = reader.readBits(64);
+    long valueBits = reader.readBits(64);
+    metricValues.put(timestamp, Double.longBitsToDouble(valueBits));
+
+    long delta = 0;
+    int leading = 0;
+    int trailing = 0;
+
+    for (int i = 1; i < count; i++) {
+      // timestamps
+      long deltaOfDelta;
+      if (reader.readBits(1) == 0) {
+        deltaOfDelta = 0;
+      } else if (reader.readBits(1) == 0) {
+        deltaOfDelta = reader.readBits(7) - 63;
+      } else if (reader.readBits(1) == 0) {
+        deltaOfDelta = reader.readBits(9) - 255;
+      } else if (reader.readBits(1) == 0) {
+        deltaOfDelta = reader.readBits(12) - 2047;
+      } else {
+        deltaOfDelta = reader.readBits(64);
+      }
+      delta += deltaOfDelta;
+      timestamp += delta;
+
+      // values
+      if (reader.readBits(1) == 1) {
+        if (reader.readBits(1) == 1) {
+          leading = (int) reader.readBits(5);
+          int significant = (int) reader.readBits(6) + 1;
+          trailing = 64 - leading - significant;
+        }
+        long xor = reader.readBits(64 - leading - trailing) << trailing;
+        valueBits ^= xor;
+      }
+
+      metricValues.put(timestamp, Double.longBitsToDouble(valueBits));
+    }
+
+    return metricValues;
+  }
+
+  /**
+   * @return true if the value was written as JSON
+   */
+  public static boolean isLegacyFormat(String encoded) {
+    for (int i = 0; i < encoded.length(); i++) {
+      char c = encoded.charAt(i);
+      if (!Character.isWhitespace(c)) {
+        return c == '{';
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes bits, most significant first, to a growing byte array.
+   */
+  static class BitWriter {
+    private byte[] buffer;
+    private int index = 0;
+    private int bitPosition = 0;
+
+    BitWriter(int initialCapacity) {
+      buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    void writeBits(long value, int bits) {
+      while (bits > 0) {
+        if (index == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int free = 8 - bitPosition;
+        int chunk = Math.min(free, bits);
+        int chunkValue = (int) ((value >>> (bits - chunk)) & ((1L << chunk) - 1));
+        buffer[index] |= (byte) (chunkValue << (free - chunk));
+        bitPosition += chunk;
+        bits -= chunk;
+        if (bitPosition == 8) {
+          index++;
+          bitPosition = 0;
+        }
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, bitPosition == 0 ? index : index + 1);
+    }
+  }
+
+  /**
+   * Reads bits written by {@link BitWriter}.
+   */
+  static class BitReader {
+    private final byte[] buffer;
+    private int index = 0;
+    private int bitPosition = 0;
+
+    BitReader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    long readBits(int bits) throws IOException {
+      long value = 0;
+      while (bits > 0) {
+        if (index >= buffer.length) {
+          throw new IOException("Unexpected end of encoded metric values");
+        }
+        int available = 8 - bitPosition;
+        int chunk = Math.min(available, bits);
+        int chunkValue = ((buffer[index] & 0xFF) >>> (available - chunk)) & ((1 << chunk) - 1);
+        value = (value << chunk) | chunkValue;
+        bitPosition += chunk;
+        bits -= chunk;
+        if (bitPosition == 8) {
+          index++;
+          bitPosition = 0;
+        }
+      }
+      return value;
+    }
+  }
+}
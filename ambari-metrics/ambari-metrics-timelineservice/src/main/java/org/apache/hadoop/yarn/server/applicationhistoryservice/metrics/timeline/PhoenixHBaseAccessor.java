@@ -51,12 +51,23 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATE_SAVE_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATE_SAVE_MAX_RETRIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATE_SAVE_THREADS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATE_TABLE_SPLIT_POINTS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_DAILY_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_HOUR_TABLE_TTL;
@@ -73,6 +84,7 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.OUT_OFF_BAND_DATA_TIME_ALLOWANCE;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_SPLIT_POINTS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_TTL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_VALUES_ENCODING;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.ALTER_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_AGGREGATE_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_CLUSTER_AGGREGATE_GROUPED_TABLE_SQL;
@@ -104,6 +116,8 @@ public class PhoenixHBaseAccessor {
   // it was collected. Also 2 minutes is the default aggregation interval at
   // cluster and host levels.
   static final long DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE = 300000;
+  static final int DEFAULT_AGGREGATE_SAVE_BATCH_SIZE = 10000;
+  static final int DEFAULT_AGGREGATE_SAVE_THREADS = 4;
   /**
    * 22 metrics for 2hours in SECONDS (10 second data)
    * => Reasonable upper bound on the limit such that our Precision calculation for a given time range makes sense.
@@ -111,6 +125,12 @@ public class PhoenixHBaseAccessor {
   private static final int METRICS_PER_MINUTE = 22;
   private static final int POINTS_PER_MINUTE = 6;
   public static int RESULTSET_LIMIT = (int)TimeUnit.HOURS.toMinutes(2) * METRICS_PER_MINUTE * POINTS_PER_MINUTE ;
+  /**
+   * Encodings for the METRICS column of the precision table. Rows written
+   * with either encoding can always be read.
+   */
+  static final String JSON_VALUES_ENCODING = "json";
+  static final String BINARY_VALUES_ENCODING = "binary";
 
   private static final TimelineMetricReadHelper TIMELINE_METRIC_READ_HELPER = new TimelineMetricReadHelper();
   private static ObjectMapper mapper = new ObjectMapper();
@@ -121,6 +141,10 @@ public class PhoenixHBaseAccessor {
   private final RetryCounterFactory retryCounterFactory;
   private final ConnectionProvider dataSource;
   private final long outOfBandTimeAllowance;
+  private final boolean binaryValuesEncoding;
+  private final int aggregateSaveBatchSize;
+  private final ThreadPoolExecutor aggregateSaveExecutor;
+  private final RetryCounterFactory aggregateSaveRetryCounterFactory;
 
   public PhoenixHBaseAccessor(Configuration hbaseConf,
                               Configuration metricsConf){
@@ -145,12 +169,36 @@ public class PhoenixHBaseAccessor {
       (int) SECONDS.toMillis(metricsConf.getInt(GLOBAL_RETRY_INTERVAL, 5)));
     this.outOfBandTimeAllowance = metricsConf.getLong(OUT_OFF_BAND_DATA_TIME_ALLOWANCE,
       DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE);
+    this.binaryValuesEncoding = BINARY_VALUES_ENCODING.equalsIgnoreCase(
+      metricsConf.get(PRECISION_VALUES_ENCODING, JSON_VALUES_ENCODING));
+
+    // Phoenix buffers the mutations of a connection until commit
+    this.aggregateSaveBatchSize = Math.max(1, Math.min(PHOENIX_MAX_MUTATION_STATE_SIZE - 1,
+      metricsConf.getInt(AGGREGATE_SAVE_BATCH_SIZE, DEFAULT_AGGREGATE_SAVE_BATCH_SIZE)));
+    int aggregateSaveThreads = Math.max(1,
+      metricsConf.getInt(AGGREGATE_SAVE_THREADS, DEFAULT_AGGREGATE_SAVE_THREADS));
+    this.aggregateSaveExecutor = new ThreadPoolExecutor(aggregateSaveThreads,
+      aggregateSaveThreads, 60, SECONDS, new LinkedBlockingQueue<Runnable>(),
+      new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread writer = new Thread(r, "timeline-metrics-aggregate-writer-" + count.incrementAndGet());
+          writer.setDaemon(true);
+          return writer;
+        }
+      });
+    this.aggregateSaveExecutor.allowCoreThreadTimeOut(true);
+    this.aggregateSaveRetryCounterFactory = new RetryCounterFactory(
+      metricsConf.getInt(AGGREGATE_SAVE_MAX_RETRIES, 3),
+      (int) SECONDS.toMillis(metricsConf.getInt(GLOBAL_RETRY_INTERVAL, 5)));
   }
 
   private static TimelineMetric getLastTimelineMetricFromResultSet(ResultSet rs)
     throws SQLException, IOException {
     TimelineMetric metric = TIMELINE_METRIC_READ_HELPER.getTimelineMetricCommonsFromResultSet(rs);
-    metric.setMetricValues(readLastMetricValueFromJSON(rs.getString("METRICS")));
+    metric.setMetricValues(readLastMetricValue(rs.getString("METRICS")));
     return metric;
   }
 
@@ -193,9 +241,9 @@ public class PhoenixHBaseAccessor {
     return metric;
   }
 
-  private static TreeMap<Long, Double> readLastMetricValueFromJSON(String json)
+  private static TreeMap<Long, Double> readLastMetricValue(String encoded)
       throws IOException {
-    TreeMap<Long, Double> values = readMetricFromJSON(json);
+    TreeMap<Long, Double> values = readMetricValues(encoded);
     Long lastTimeStamp = values.lastKey();
 
     TreeMap<Long, Double> valueMap = new TreeMap<Long, Double>();
@@ -208,6 +256,25 @@ public class PhoenixHBaseAccessor {
     return (TreeMap<Long, Double>) mapper.readValue(json, metricValuesTypeRef);
   }
 
+  /**
+   * Read the METRICS column of the precision table, which holds either
+   * legacy JSON or values written by {@link MetricValuesCodec}.
+   */
+  public static TreeMap<Long, Double> readMetricValues(String encoded) throws IOException {
+    return MetricValuesCodec.decode(encoded);
+  }
+
+  /**
+   * Write the METRICS column of the precision table using the configured
+   * encoding.
+   */
+  String writeMetricValues(TreeMap<Long, Double> metricValues) throws IOException {
+    if (binaryValuesEncoding) {
+      return MetricValuesCodec.encode(metricValues);
+    }
+    return TimelineUtils.dumpTimelineRecordtoJSON(metricValues);
+  }
+
   private Connection getConnectionRetryingOnException()
     throws SQLException, InterruptedException {
     RetryCounter retryCounter = retryCounterFactory.create();
@@ -385,6 +452,7 @@ public class PhoenixHBaseAccessor {
       metricRecordStmt = conn.prepareStatement(String.format(
         UPSERT_METRICS_SQL, METRICS_RECORD_TABLE_NAME));
 
+      List<TimelineMetric> batch = new ArrayList<TimelineMetric>(timelineMetrics.size());
       for (TimelineMetric metric : timelineMetrics) {
         if (Math.abs(currentTime - metric.getStartTime()) > outOfBandTimeAllowance) {
           // If timeseries start time is way in the past : discard
@@ -394,34 +462,31 @@ public class PhoenixHBaseAccessor {
           continue;
         }
 
-        metricRecordStmt.clearParameters();
-
         if (LOG.isTraceEnabled()) {
           LOG.trace("host: " + metric.getHostName() + ", " +
             "metricName = " + metric.getMetricName() + ", " +
             "values: " + metric.getMetricValues());
         }
-        double[] aggregates =  AggregatorUtils.calculateAggregates(
-          metric.getMetricValues());
-
-        metricRecordStmt.setString(1, metric.getMetricName());
-        metricRecordStmt.setString(2, metric.getHostName());
-        metricRecordStmt.setString(3, metric.getAppId());
-        metricRecordStmt.setString(4, metric.getInstanceId());
-        metricRecordStmt.setLong(5, currentTime);
-        metricRecordStmt.setLong(6, metric.getStartTime());
-        metricRecordStmt.setString(7, metric.getType());
-        metricRecordStmt.setDouble(8, aggregates[0]);
-        metricRecordStmt.setDouble(9, aggregates[1]);
-        metricRecordStmt.setDouble(10, aggregates[2]);
-        metricRecordStmt.setLong(11, (long) aggregates[3]);
-        String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-        metricRecordStmt.setString(12, json);
+        setMetricRecordParameters(metricRecordStmt, metric, currentTime);
+        metricRecordStmt.addBatch();
+        batch.add(metric);
+      }
 
-        try {
-          metricRecordStmt.executeUpdate();
-        } catch (SQLException sql) {
-          LOG.error(sql);
+      try {
+        metricRecordStmt.executeBatch();
+      } catch (SQLException e) {
+        // fall back to single upserts, so that one bad record is logged and
+        // skipped rather than failing the whole request
+        LOG.warn("Batch upsert of " + batch.size() + " metrics failed, " +
+          "upserting them one by one.", e);
+        metricRecordStmt.clearBatch();
+        for (TimelineMetric metric : batch) {
+          setMetricRecordParameters(metricRecordStmt, metric, currentTime);
+          try {
+            metricRecordStmt.executeUpdate();
+          } catch (SQLException sql) {
+            LOG.error(sql);
+          }
         }
       }
 
@@ -446,6 +511,29 @@ public class PhoenixHBaseAccessor {
     }
   }
 
+  private void setMetricRecordParameters(PreparedStatement metricRecordStmt,
+                                         TimelineMetric metric, long currentTime)
+      throws SQLException, IOException {
+
+    metricRecordStmt.clearParameters();
+
+    double[] aggregates =  AggregatorUtils.calculateAggregates(
+      metric.getMetricValues());
+
+    metricRecordStmt.setString(1, metric.getMetricName());
+    metricRecordStmt.setString(2, metric.getHostName());
+    metricRecordStmt.setString(3, metric.getAppId());
+    metricRecordStmt.setString(4, metric.getInstanceId());
+    metricRecordStmt.setLong(5, currentTime);
+    metricRecordStmt.setLong(6, metric.getStartTime());
+    metricRecordStmt.setString(7, metric.getType());
+    metricRecordStmt.setDouble(8, aggregates[0]);
+    metricRecordStmt.setDouble(9, aggregates[1]);
+    metricRecordStmt.setDouble(10, aggregates[2]);
+    metricRecordStmt.setLong(11, (long) aggregates[3]);
+    metricRecordStmt.setString(12, writeMetricValues(metric.getMetricValues()));
+  }
+
   @SuppressWarnings("unchecked")
   public TimelineMetrics getMetricRecords(
     final Condition condition, Map<String, List<Function>> metricFunctions)
@@ -794,73 +882,24 @@ public class PhoenixHBaseAccessor {
       return;
     }
 
-    Connection conn = getConnection();
-    PreparedStatement stmt = null;
-
-    long start = System.currentTimeMillis();
-    int rowCount = 0;
-
-    try {
-      stmt = conn.prepareStatement(
-        String.format(UPSERT_AGGREGATE_RECORD_SQL, phoenixTableName));
-
-      for (Map.Entry<TimelineMetric, MetricHostAggregate> metricAggregate :
-        hostAggregateMap.entrySet()) {
-
-        TimelineMetric metric = metricAggregate.getKey();
-        MetricHostAggregate hostAggregate = metricAggregate.getValue();
-
-        rowCount++;
-        stmt.clearParameters();
-        stmt.setString(1, metric.getMetricName());
-        stmt.setString(2, metric.getHostName());
-        stmt.setString(3, metric.getAppId());
-        stmt.setString(4, metric.getInstanceId());
-        stmt.setLong(5, metric.getTimestamp());
-        stmt.setString(6, metric.getType());
-        stmt.setDouble(7, hostAggregate.getSum());
-        stmt.setDouble(8, hostAggregate.getMax());
-        stmt.setDouble(9, hostAggregate.getMin());
-        stmt.setDouble(10, hostAggregate.getNumberOfSamples());
-
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          LOG.error(sql);
+    saveAggregateRecords(String.format(UPSERT_AGGREGATE_RECORD_SQL, phoenixTableName),
+      phoenixTableName, hostAggregateMap,
+      new AggregateRecordBinder<TimelineMetric, MetricHostAggregate>() {
+        @Override
+        public void bind(PreparedStatement stmt, TimelineMetric metric,
+                         MetricHostAggregate hostAggregate) throws SQLException {
+          stmt.setString(1, metric.getMetricName());
+          stmt.setString(2, metric.getHostName());
+          stmt.setString(3, metric.getAppId());
+          stmt.setString(4, metric.getInstanceId());
+          stmt.setLong(5, metric.getTimestamp());
+          stmt.setString(6, metric.getType());
+          stmt.setDouble(7, hostAggregate.getSum());
+          stmt.setDouble(8, hostAggregate.getMax());
+          stmt.setDouble(9, hostAggregate.getMin());
+          stmt.setDouble(10, hostAggregate.getNumberOfSamples());
         }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
-
-      }
-
-      conn.commit();
-
-    } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          // Ignore
-        }
-      }
-      if (conn != null) {
-        try {
-          conn.close();
-        } catch (SQLException sql) {
-          // Ignore
-        }
-      }
-    }
-
-    long end = System.currentTimeMillis();
-
-    if ((end - start) > 60000l) {
-      LOG.info("Time to save map: " + (end - start) + ", " +
-        "thread = " + Thread.currentThread().getClass());
-    }
+      });
   }
 
   /**
@@ -876,72 +915,28 @@ public class PhoenixHBaseAccessor {
       return;
     }
 
-    long start = System.currentTimeMillis();
-    String sqlStr = String.format(UPSERT_CLUSTER_AGGREGATE_SQL, METRICS_CLUSTER_AGGREGATE_TABLE_NAME);
-    Connection conn = getConnection();
-    PreparedStatement stmt = null;
-    try {
-      stmt = conn.prepareStatement(sqlStr);
-      int rowCount = 0;
-
-      for (Map.Entry<TimelineClusterMetric, MetricClusterAggregate>
-        aggregateEntry : records.entrySet()) {
-        TimelineClusterMetric clusterMetric = aggregateEntry.getKey();
-        MetricClusterAggregate aggregate = aggregateEntry.getValue();
-
-        if (LOG.isTraceEnabled()) {
-          LOG.trace("clusterMetric = " + clusterMetric + ", " +
-            "aggregate = " + aggregate);
-        }
-
-        rowCount++;
-        stmt.clearParameters();
-        stmt.setString(1, clusterMetric.getMetricName());
-        stmt.setString(2, clusterMetric.getAppId());
-        stmt.setString(3, clusterMetric.getInstanceId());
-        stmt.setLong(4, clusterMetric.getTimestamp());
-        stmt.setString(5, clusterMetric.getType());
-        stmt.setDouble(6, aggregate.getSum());
-        stmt.setInt(7, aggregate.getNumberOfHosts());
-        stmt.setDouble(8, aggregate.getMax());
-        stmt.setDouble(9, aggregate.getMin());
-
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          // we have no way to verify it works!!!
-          LOG.error(sql);
-        }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
-      }
-
-      conn.commit();
+    saveAggregateRecords(String.format(UPSERT_CLUSTER_AGGREGATE_SQL, METRICS_CLUSTER_AGGREGATE_TABLE_NAME),
+      METRICS_CLUSTER_AGGREGATE_TABLE_NAME, records,
+      new AggregateRecordBinder<TimelineClusterMetric, MetricClusterAggregate>() {
+        @Override
+        public void bind(PreparedStatement stmt, TimelineClusterMetric clusterMetric,
+                         MetricClusterAggregate aggregate) throws SQLException {
+          if (LOG.isTraceEnabled()) {
+            LOG.trace("clusterMetric = " + clusterMetric + ", " +
+              "aggregate = " + aggregate);
+          }
 
-    } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          // Ignore
+          stmt.setString(1, clusterMetric.getMetricName());
+          stmt.setString(2, clusterMetric.getAppId());
+          stmt.setString(3, clusterMetric.getInstanceId());
+          stmt.setLong(4, clusterMetric.getTimestamp());
+          stmt.setString(5, clusterMetric.getType());
+          stmt.setDouble(6, aggregate.getSum());
+          stmt.setInt(7, aggregate.getNumberOfHosts());
+          stmt.setDouble(8, aggregate.getMax());
+          stmt.setDouble(9, aggregate.getMin());
         }
-      }
-      if (conn != null) {
-        try {
-          conn.close();
-        } catch (SQLException sql) {
-          // Ignore
-        }
-      }
-    }
-    long end = System.currentTimeMillis();
-    if ((end - start) > 60000l) {
-      LOG.info("Time to save: " + (end - start) + ", " +
-        "thread = " + Thread.currentThread().getName());
-    }
+      });
   }
 
 
@@ -957,45 +952,141 @@ public class PhoenixHBaseAccessor {
       return;
     }
 
+    saveAggregateRecords(String.format(UPSERT_CLUSTER_AGGREGATE_TIME_SQL, tableName),
+      tableName, records,
+      new AggregateRecordBinder<TimelineClusterMetric, MetricHostAggregate>() {
+        @Override
+        public void bind(PreparedStatement stmt, TimelineClusterMetric clusterMetric,
+                         MetricHostAggregate aggregate) throws SQLException {
+          if (LOG.isTraceEnabled()) {
+            LOG.trace("clusterMetric = " + clusterMetric + ", " +
+              "aggregate = " + aggregate);
+          }
+
+          stmt.setString(1, clusterMetric.getMetricName());
+          stmt.setString(2, clusterMetric.getAppId());
+          stmt.setString(3, clusterMetric.getInstanceId());
+          stmt.setLong(4, clusterMetric.getTimestamp());
+          stmt.setString(5, clusterMetric.getType());
+          stmt.setDouble(6, aggregate.getSum());
+          stmt.setLong(7, aggregate.getNumberOfSamples());
+          stmt.setDouble(8, aggregate.getMax());
+          stmt.setDouble(9, aggregate.getMin());
+        }
+      });
+  }
+
+  /**
+   * Sets the parameters of an aggregate UPSERT for one record.
+   */
+  private interface AggregateRecordBinder<K, V> {
+    void bind(PreparedStatement stmt, K key, V value) throws SQLException;
+  }
+
+  /**
+   * Save the records in partitions of the configured batch size. Each
+   * partition is written and committed on its own connection, partitions
+   * are written in parallel by the aggregate writer threads. A partition
+   * whose commit fails is retried on its own, UPSERTs of the same rows
+   * are idempotent.
+   *
+   * @throws SQLException the first failure of a partition which could not
+   * be saved after all retries, the other partitions are saved regardless
+   */
+  private <K, V> void saveAggregateRecords(final String sql, String tableName,
+      Map<K, V> records, final AggregateRecordBinder<K, V> binder)
+      throws SQLException {
+
     long start = System.currentTimeMillis();
+    List<Map.Entry<K, V>> entries = new ArrayList<Map.Entry<K, V>>(records.entrySet());
+
+    List<Future<?>> partitions = new ArrayList<Future<?>>();
+    for (int from = 0; from < entries.size(); from += aggregateSaveBatchSize) {
+      final List<Map.Entry<K, V>> partition = entries.subList(from,
+        Math.min(entries.size(), from + aggregateSaveBatchSize));
+      partitions.add(aggregateSaveExecutor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          saveAggregatePartitionRetrying(sql, partition, binder);
+          return null;
+        }
+      }));
+    }
 
-    Connection conn = getConnection();
-    PreparedStatement stmt = null;
-    try {
-      stmt = conn.prepareStatement(String.format(UPSERT_CLUSTER_AGGREGATE_TIME_SQL, tableName));
-      int rowCount = 0;
+    SQLException failure = null;
+    for (Future<?> partition : partitions) {
+      try {
+        partition.get();
+      } catch (InterruptedException e) {
+        for (Future<?> other : partitions) {
+          other.cancel(true);
+        }
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted while saving aggregate records to " + tableName, e);
+      } catch (ExecutionException e) {
+        SQLException cause = e.getCause() instanceof SQLException ?
+          (SQLException) e.getCause() : new SQLException(e.getCause());
+        if (failure == null) {
+          failure = cause;
+        } else {
+          failure.setNextException(cause);
+        }
+      }
+    }
 
-      for (Map.Entry<TimelineClusterMetric, MetricHostAggregate> aggregateEntry : records.entrySet()) {
-        TimelineClusterMetric clusterMetric = aggregateEntry.getKey();
-        MetricHostAggregate aggregate = aggregateEntry.getValue();
+    long time = System.currentTimeMillis() - start;
+    String message = "Saved " + entries.size() + " aggregate records to " + tableName
+      + " in " + partitions.size() + " partitions, time = " + time + " ms, rows/s = "
+      + (time > 0 ? entries.size() * 1000L / time : entries.size());
+    if (time > 60000l) {
+      LOG.info(message);
+    } else if (LOG.isDebugEnabled()) {
+      LOG.debug(message);
+    }
 
-        if (LOG.isTraceEnabled()) {
-          LOG.trace("clusterMetric = " + clusterMetric + ", " +
-            "aggregate = " + aggregate);
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private <K, V> void saveAggregatePartitionRetrying(String sql,
+      List<Map.Entry<K, V>> partition, AggregateRecordBinder<K, V> binder)
+      throws SQLException, InterruptedException {
+    RetryCounter retryCounter = aggregateSaveRetryCounterFactory.create();
+    while (true) {
+      try {
+        saveAggregatePartition(sql, partition, binder);
+        return;
+      } catch (SQLException e) {
+        if (!retryCounter.shouldRetry()) {
+          LOG.error("Saving " + partition.size() + " aggregate records failed after "
+            + retryCounter.getMaxAttempts() + " attempts", e);
+          throw e;
         }
+        LOG.warn("Saving " + partition.size() + " aggregate records failed, retrying", e);
+      }
+      retryCounter.sleepUntilNextRetry();
+    }
+  }
+
+  private <K, V> void saveAggregatePartition(String sql,
+      List<Map.Entry<K, V>> partition, AggregateRecordBinder<K, V> binder)
+      throws SQLException {
 
-        rowCount++;
+    Connection conn = getConnection();
+    PreparedStatement stmt = null;
+    try {
+      stmt = conn.prepareStatement(sql);
+
+      for (Map.Entry<K, V> record : partition) {
         stmt.clearParameters();
-        stmt.setString(1, clusterMetric.getMetricName());
-        stmt.setString(2, clusterMetric.getAppId());
-        stmt.setString(3, clusterMetric.getInstanceId());
-        stmt.setLong(4, clusterMetric.getTimestamp());
-        stmt.setString(5, clusterMetric.getType());
-        stmt.setDouble(6, aggregate.getSum());
-        stmt.setLong(7, aggregate.getNumberOfSamples());
-        stmt.setDouble(8, aggregate.getMax());
-        stmt.setDouble(9, aggregate.getMin());
+        binder.bind(stmt, record.getKey(), record.getValue());
 
         try {
           stmt.executeUpdate();
-        } catch (SQLException sql) {
+        } catch (SQLException e) {
           // we have no way to verify it works!!!
-          LOG.error(sql);
-        }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
+          LOG.error(e);
         }
       }
 
@@ -1012,15 +1103,10 @@ public class PhoenixHBaseAccessor {
       if (conn != null) {
         try {
           conn.close();
-        } catch (SQLException sql) {
+        } catch (SQLException e) {
           // Ignore
         }
       }
     }
-    long end = System.currentTimeMillis();
-    if ((end - start) > 60000l) {
-      LOG.info("Time to save: " + (end - start) + ", " +
-        "thread = " + Thread.currentThread().getName());
-    }
   }
 }
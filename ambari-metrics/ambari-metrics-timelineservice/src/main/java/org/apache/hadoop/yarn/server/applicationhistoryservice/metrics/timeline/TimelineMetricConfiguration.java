@@ -23,10 +23,14 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
 
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configuration class that reads properties from ams-site.xml. All values
@@ -199,6 +203,48 @@ public class TimelineMetricConfiguration {
   public static final String AGGREGATE_TABLE_SPLIT_POINTS =
     "timeline.metrics.cluster.aggregate.splitpoints";
 
+  public static final String PRECISION_VALUES_ENCODING =
+    "timeline.metrics.host.precision.values.encoding";
+
+  public static final String CLUSTER_AGGREGATOR_SECOND_PARTITIONS =
+    "timeline.metrics.cluster.aggregator.second.partitions";
+
+  public static final String WRITE_BUFFER_SIZE =
+    "timeline.metrics.service.write.buffer.size";
+
+  public static final String WRITE_BUFFER_WRITER_THREADS =
+    "timeline.metrics.service.write.buffer.writer.threads";
+
+  public static final String WRITE_BUFFER_BATCH_SIZE =
+    "timeline.metrics.service.write.buffer.batch.size";
+
+  public static final String WRITE_BUFFER_FLUSH_INTERVAL =
+    "timeline.metrics.service.write.buffer.flush.interval.millis";
+
+  public static final String WRITE_BUFFER_RETRY_INTERVAL =
+    "timeline.metrics.service.write.buffer.retry.interval.millis";
+
+  public static final String WRITE_BUFFER_RETRY_AFTER =
+    "timeline.metrics.service.write.buffer.retry.after";
+
+  public static final String AGGREGATE_SAVE_BATCH_SIZE =
+    "timeline.metrics.service.aggregate.save.batch.size";
+
+  public static final String AGGREGATE_SAVE_THREADS =
+    "timeline.metrics.service.aggregate.save.threads";
+
+  public static final String AGGREGATE_SAVE_MAX_RETRIES =
+    "timeline.metrics.service.aggregate.save.max_retries";
+
+  public static final String QUERY_CACHE_SIZE =
+    "timeline.metrics.service.query.cache.size";
+
+  public static final String QUERY_CACHE_REFRESH_WINDOW =
+    "timeline.metrics.service.query.cache.refresh.window.millis";
+
+  public static final String QUERY_CACHE_TTL =
+    "timeline.metrics.service.query.cache.ttl.millis";
+
   public static final String HOST_APP_ID = "HOST";
 
   private Configuration hbaseConf;
@@ -289,6 +335,130 @@ public class TimelineMetricConfiguration {
     return 3;
   }
 
+  /**
+   * @return number of metrics held by the write-behind buffer, 0 to write
+   * metrics synchronously
+   */
+  public int getTimelineMetricsWriteBufferSize() {
+    if (metricsConf != null) {
+      return Integer.parseInt(metricsConf.get(WRITE_BUFFER_SIZE, "20000"));
+    }
+    return 20000;
+  }
+
+  public int getTimelineMetricsWriteBufferWriterThreads() {
+    if (metricsConf != null) {
+      return Integer.parseInt(metricsConf.get(WRITE_BUFFER_WRITER_THREADS, "2"));
+    }
+    return 2;
+  }
+
+  public int getTimelineMetricsWriteBufferBatchSize() {
+    if (metricsConf != null) {
+      return Integer.parseInt(metricsConf.get(WRITE_BUFFER_BATCH_SIZE, "1000"));
+    }
+    return 1000;
+  }
+
+  public long getTimelineMetricsWriteBufferFlushInterval() {
+    if (metricsConf != null) {
+      return Long.parseLong(metricsConf.get(WRITE_BUFFER_FLUSH_INTERVAL, "1000"));
+    }
+    return 1000;
+  }
+
+  public long getTimelineMetricsWriteBufferRetryInterval() {
+    if (metricsConf != null) {
+      return Long.parseLong(metricsConf.get(WRITE_BUFFER_RETRY_INTERVAL, "5000"));
+    }
+    return 5000;
+  }
+
+  /**
+   * @return seconds the sinks are asked to wait before resending metrics
+   * rejected because the write buffer is full
+   */
+  public int getTimelineMetricsWriteBufferRetryAfter() {
+    if (metricsConf != null) {
+      return Integer.parseInt(metricsConf.get(WRITE_BUFFER_RETRY_AFTER, "30"));
+    }
+    return 30;
+  }
+
+  /**
+   * @return number of query results held by the query cache, 0 to always
+   * scan the metric tables
+   */
+  public int getTimelineMetricsQueryCacheSize() {
+    if (metricsConf != null) {
+      return Integer.parseInt(metricsConf.get(QUERY_CACHE_SIZE, "100"));
+    }
+    return 100;
+  }
+
+  /**
+   * @return millis before the last scan of a cached query result from
+   * which on values are always scanned again
+   */
+  public long getTimelineMetricsQueryCacheRefreshWindow() {
+    if (metricsConf != null) {
+      return Long.parseLong(metricsConf.get(QUERY_CACHE_REFRESH_WINDOW, "120000"));
+    }
+    return 120000;
+  }
+
+  /**
+   * The aggregators may still write aggregates as old as their checkpoint
+   * cut-off interval plus the checkpoint delay, values newer than that are
+   * always scanned again.
+   *
+   * @return millis before the last scan of a cached query result from
+   * which on values are always scanned again, for each precision
+   */
+  public Map<Precision, Long> getTimelineMetricsQueryCacheRefreshWindows() {
+    long refreshWindow = getTimelineMetricsQueryCacheRefreshWindow();
+    Map<Precision, Long> refreshWindows = new EnumMap<Precision, Long>(Precision.class);
+    refreshWindows.put(Precision.SECONDS, Math.max(refreshWindow,
+      getAggregatorLatenessMillis(CLUSTER_AGGREGATOR_SECOND_SLEEP_INTERVAL, 120,
+        CLUSTER_AGGREGATOR_SECOND_CHECKPOINT_CUTOFF_MULTIPLIER, 2)));
+    refreshWindows.put(Precision.MINUTES, Math.max(refreshWindow, Math.max(
+      getAggregatorLatenessMillis(HOST_AGGREGATOR_MINUTE_SLEEP_INTERVAL, 300,
+        HOST_AGGREGATOR_MINUTE_CHECKPOINT_CUTOFF_MULTIPLIER, 3),
+      getAggregatorLatenessMillis(CLUSTER_AGGREGATOR_MINUTE_SLEEP_INTERVAL, 300,
+        CLUSTER_AGGREGATOR_MINUTE_CHECKPOINT_CUTOFF_MULTIPLIER, 2))));
+    refreshWindows.put(Precision.HOURS, Math.max(refreshWindow, Math.max(
+      getAggregatorLatenessMillis(HOST_AGGREGATOR_HOUR_SLEEP_INTERVAL, 3600,
+        HOST_AGGREGATOR_HOUR_CHECKPOINT_CUTOFF_MULTIPLIER, 2),
+      getAggregatorLatenessMillis(CLUSTER_AGGREGATOR_HOUR_SLEEP_INTERVAL, 3600,
+        CLUSTER_AGGREGATOR_HOUR_CHECKPOINT_CUTOFF_MULTIPLIER, 2))));
+    refreshWindows.put(Precision.DAYS, Math.max(refreshWindow, Math.max(
+      getAggregatorLatenessMillis(HOST_AGGREGATOR_DAILY_SLEEP_INTERVAL, 86400,
+        HOST_AGGREGATOR_DAILY_CHECKPOINT_CUTOFF_MULTIPLIER, 1),
+      getAggregatorLatenessMillis(CLUSTER_AGGREGATOR_DAILY_SLEEP_INTERVAL, 86400,
+        CLUSTER_AGGREGATOR_DAILY_CHECKPOINT_CUTOFF_MULTIPLIER, 1))));
+    return refreshWindows;
+  }
+
+  private long getAggregatorLatenessMillis(String intervalProperty, long defaultInterval,
+                                           String multiplierProperty, int defaultMultiplier) {
+    long interval = defaultInterval;
+    int multiplier = defaultMultiplier;
+    long checkpointDelay = 120;
+    if (metricsConf != null) {
+      interval = metricsConf.getLong(intervalProperty, defaultInterval);
+      multiplier = metricsConf.getInt(multiplierProperty, defaultMultiplier);
+      checkpointDelay = metricsConf.getInt(AGGREGATOR_CHECKPOINT_DELAY, 120);
+    }
+    return TimeUnit.SECONDS.toMillis(interval * multiplier + checkpointDelay);
+  }
+
+  public long getTimelineMetricsQueryCacheTtl() {
+    if (metricsConf != null) {
+      return Long.parseLong(metricsConf.get(QUERY_CACHE_TTL, "600000"));
+    }
+    return 600000;
+  }
+
   public String getTimelineServiceRpcAddress() {
     String defaultRpcAddress = "0.0.0.0:60200";
     if (metricsConf != null) {
@@ -0,0 +1,355 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of metric query results held by the collector.
+ *
+ * Dashboards ask for the same metrics over a sliding time window again and
+ * again, usually from several users at once. The result of a query is kept
+ * under its normalized metric names, hosts, app, instance and precision.
+ * A later query for an overlapping window reuses the cached values and only
+ * scans the table from the refresh point on, the values before it are taken
+ * from the cache.
+ *
+ * The newest values of a cached result may still change, since metrics
+ * arrive late and aggregates are written after their period ends. Values
+ * newer than the refresh window of the precision before the time of the
+ * scan are always scanned again. An entry which was first scanned longer
+ * than the time to live ago is not reused at all.
+ */
+public class TimelineMetricQueryCache {
+
+  private static final Log LOG = LogFactory.getLog(TimelineMetricQueryCache.class);
+  private static final long STATISTICS_LOG_INTERVAL_MILLIS = 600000;
+
+  /**
+   * Results with more values than this are not cached.
+   */
+  static final int MAX_CACHED_VALUES = 100000;
+
+  private final Map<Key, Entry> entries;
+  private final Map<Precision, Long> refreshWindows;
+  private final long ttlMillis;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong partialHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong requestedRangeMillis = new AtomicLong();
+  private final AtomicLong scannedRangeMillis = new AtomicLong();
+  private final AtomicLong lastStatisticsLogTime = new AtomicLong(System.currentTimeMillis());
+
+  /**
+   * Scans the metric tables for a time range.
+   */
+  public interface MetricsFetcher {
+    /**
+     * @return the metrics with values in [startTime, endTime], before any
+     * post processing
+     */
+    TimelineMetrics fetch(long startTime, long endTime, Precision precision)
+      throws SQLException, IOException;
+  }
+
+  public TimelineMetricQueryCache(int maxEntries, long refreshWindowMillis,
+                                  long ttlMillis) {
+    this(maxEntries, sameRefreshWindows(refreshWindowMillis), ttlMillis);
+  }
+
+  /**
+   * @param refreshWindows millis before the scan from which on values are
+   *                       always scanned again, for each precision
+   */
+  public TimelineMetricQueryCache(final int maxEntries,
+                                  Map<Precision, Long> refreshWindows,
+                                  long ttlMillis) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Cache size should be positive.");
+    }
+    this.refreshWindows = new EnumMap<Precision, Long>(refreshWindows);
+    for (Precision precision : Precision.values()) {
+      if (!this.refreshWindows.containsKey(precision)) {
+        throw new IllegalArgumentException("No refresh window for " + precision);
+      }
+    }
+    this.ttlMillis = ttlMillis;
+    this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Get the metrics of the query with values in [startTime, endTime], from
+   * the cache where possible. The returned metrics are not shared with the
+   * cache and may be changed by the caller.
+   *
+   * @param precision the precision of the query, resolved from the time
+   *                  range if null
+   */
+  public TimelineMetrics getTimelineMetrics(List<String> metricNames,
+      List<String> hostnames, String applicationId, String instanceId,
+      long startTime, long endTime, Precision precision, boolean groupedByHosts,
+      MetricsFetcher fetcher) throws SQLException, IOException {
+
+    if (precision == null) {
+      precision = Precision.getPrecision(startTime, endTime);
+    }
+    Key key = new Key(metricNames, hostnames, applicationId, instanceId,
+      precision, groupedByHosts);
+
+    long now = System.currentTimeMillis();
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+    }
+
+    // values before the refresh point are reused from the cached entry
+    long refreshPoint = startTime;
+    if (entry != null && now - entry.createTime <= ttlMillis
+        && entry.startTime <= startTime && startTime <= entry.endTime) {
+      long refreshWindow = refreshWindows.get(precision);
+      refreshPoint = Math.min(entry.endTime, entry.scanTime - refreshWindow);
+    }
+
+    TimelineMetrics metrics;
+    if (refreshPoint <= startTime) {
+      metrics = fetcher.fetch(startTime, endTime, precision);
+      misses.incrementAndGet();
+      scannedRangeMillis.addAndGet(endTime - startTime);
+      refreshPoint = startTime;
+      entry = null;
+    } else if (refreshPoint > endTime) {
+      metrics = new TimelineMetrics();
+      hits.incrementAndGet();
+    } else {
+      metrics = fetcher.fetch(refreshPoint, endTime, precision);
+      partialHits.incrementAndGet();
+      scannedRangeMillis.addAndGet(endTime - refreshPoint);
+    }
+    requestedRangeMillis.addAndGet(endTime - startTime);
+
+    if (entry != null) {
+      metrics = splice(entry.metrics, startTime, refreshPoint - 1, metrics);
+    }
+
+    if (refreshPoint <= endTime && countValues(metrics) <= MAX_CACHED_VALUES) {
+      long createTime = entry != null ? entry.createTime : now;
+      Entry updated = new Entry(copy(metrics), startTime, endTime, now, createTime);
+      synchronized (entries) {
+        entries.put(key, updated);
+      }
+    }
+
+    logStatistics(now);
+    return metrics;
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getPartialHits() {
+    return partialHits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return the share of the requested time ranges which was served from
+   * the cache instead of being scanned
+   */
+  public double getSavedScanRatio() {
+    long requested = requestedRangeMillis.get();
+    return requested == 0 ? 0 :
+      (double) (requested - scannedRangeMillis.get()) / requested;
+  }
+
+  public String getStatistics() {
+    return "entries = " + size()
+      + ", hits = " + getHits()
+      + ", partial hits = " + getPartialHits()
+      + ", misses = " + getMisses()
+      + ", saved scan ratio = " + String.format("%.2f", getSavedScanRatio());
+  }
+
+  /**
+   * Copy the cached metrics with values in [startTime, endTime] and merge
+   * the newly scanned metrics into them.
+   */
+  private static TimelineMetrics splice(TimelineMetrics cached, long startTime,
+                                        long endTime, TimelineMetrics scanned) {
+    TimelineMetrics spliced = new TimelineMetrics();
+    for (TimelineMetric metric : cached.getMetrics()) {
+      TimelineMetric copy = new TimelineMetric(metric);
+      copy.getMetricSeries().retain(startTime, endTime);
+      if (!copy.getMetricSeries().isEmpty()) {
+        copy.setStartTime(copy.getMetricSeries().getFirstTimestamp());
+        spliced.getMetrics().add(copy);
+      }
+    }
+    for (TimelineMetric metric : scanned.getMetrics()) {
+      spliced.addOrMergeTimelineMetric(metric);
+    }
+    return spliced;
+  }
+
+  private static TimelineMetrics copy(TimelineMetrics metrics) {
+    List<TimelineMetric> copies = new ArrayList<TimelineMetric>(metrics.getMetrics().size());
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      TimelineMetric copy = new TimelineMetric(metric);
+      copy.getMetricSeries().trimToSize();
+      copies.add(copy);
+    }
+    TimelineMetrics copied = new TimelineMetrics();
+    copied.setMetrics(copies);
+    return copied;
+  }
+
+  private static int countValues(TimelineMetrics metrics) {
+    int count = 0;
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      count += metric.getMetricValueCount();
+    }
+    return count;
+  }
+
+  private static Map<Precision, Long> sameRefreshWindows(long refreshWindowMillis) {
+    Map<Precision, Long> refreshWindows = new EnumMap<Precision, Long>(Precision.class);
+    for (Precision precision : Precision.values()) {
+      refreshWindows.put(precision, refreshWindowMillis);
+    }
+    return refreshWindows;
+  }
+
+  private void logStatistics(long now) {
+    long lastLogTime = lastStatisticsLogTime.get();
+    if (now - lastLogTime > STATISTICS_LOG_INTERVAL_MILLIS
+        && lastStatisticsLogTime.compareAndSet(lastLogTime, now)) {
+      LOG.info("Metric query cache: " + getStatistics());
+    }
+  }
+
+  /**
+   * Cached result of a query.
+   */
+  private static class Entry {
+    private final TimelineMetrics metrics;
+    private final long startTime;
+    private final long endTime;
+    // when the newest values were scanned
+    private final long scanTime;
+    // when the oldest values were scanned
+    private final long createTime;
+
+    private Entry(TimelineMetrics metrics, long startTime, long endTime,
+                  long scanTime, long createTime) {
+      this.metrics = metrics;
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.scanTime = scanTime;
+      this.createTime = createTime;
+    }
+  }
+
+  /**
+   * Normalized query, the order of the metric names and hosts does not
+   * matter.
+   */
+  static class Key {
+    private final List<String> metricNames;
+    private final List<String> hostnames;
+    private final String applicationId;
+    private final String instanceId;
+    private final Precision precision;
+    private final boolean groupedByHosts;
+
+    Key(List<String> metricNames, List<String> hostnames, String applicationId,
+        String instanceId, Precision precision, boolean groupedByHosts) {
+      this.metricNames = sorted(metricNames);
+      this.hostnames = sorted(hostnames);
+      this.applicationId = applicationId;
+      this.instanceId = instanceId;
+      this.precision = precision;
+      this.groupedByHosts = groupedByHosts;
+    }
+
+    private static List<String> sorted(List<String> values) {
+      if (values == null) {
+        return Collections.emptyList();
+      }
+      List<String> sorted = new ArrayList<String>(values);
+      Collections.sort(sorted);
+      return sorted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      Key key = (Key) o;
+
+      if (groupedByHosts != key.groupedByHosts) return false;
+      if (!metricNames.equals(key.metricNames)) return false;
+      if (!hostnames.equals(key.hostnames)) return false;
+      if (applicationId != null ? !applicationId.equals(key.applicationId) : key.applicationId != null)
+        return false;
+      if (instanceId != null ? !instanceId.equals(key.instanceId) : key.instanceId != null)
+        return false;
+      return precision == key.precision;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = metricNames.hashCode();
+      result = 31 * result + hostnames.hashCode();
+      result = 31 * result + (applicationId != null ? applicationId.hashCode() : 0);
+      result = 31 * result + (instanceId != null ? instanceId.hashCode() : 0);
+      result = 31 * result + precision.hashCode();
+      result = 31 * result + (groupedByHosts ? 1 : 0);
+      return result;
+    }
+  }
+}
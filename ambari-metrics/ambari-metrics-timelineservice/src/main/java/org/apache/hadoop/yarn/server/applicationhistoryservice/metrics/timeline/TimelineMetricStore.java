@@ -69,4 +69,16 @@ public interface TimelineMetricStore {
    */
   TimelinePutResponse putMetrics(TimelineMetrics metrics)
     throws SQLException, IOException;
+
+  /**
+   * Stores metric information to the timeline store, bypassing any
+   * write-behind buffering, so that the metrics can be read back as soon as
+   * this method returns.
+   *
+   * @param metrics An {@link TimelineMetrics}.
+   * @return An {@link org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse}.
+   * @throws SQLException, IOException
+   */
+  TimelinePutResponse putMetricsSynchronously(TimelineMetrics metrics)
+    throws SQLException, IOException;
 }
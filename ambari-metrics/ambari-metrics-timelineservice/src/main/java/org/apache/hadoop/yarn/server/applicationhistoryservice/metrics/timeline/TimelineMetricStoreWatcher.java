@@ -105,7 +105,9 @@ public class TimelineMetricStoreWatcher implements Runnable {
 
     Callable<TimelineMetric> task = new Callable<TimelineMetric>() {
       public TimelineMetric call() throws Exception {
-        timelineMetricStore.putMetrics(metrics);
+        // bypass the write buffer, the metric is read back right away and a
+        // full buffer is backpressure rather than a failure of the store
+        timelineMetricStore.putMetricsSynchronously(metrics);
         return timelineMetricStore.getTimelineMetric(
           FAKE_METRIC_NAME, Collections.singletonList(FAKE_HOSTNAME),
           FAKE_APP_ID, null, startTime - delay * 2 * 1000,
@@ -0,0 +1,300 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind buffer for metrics posted to the collector.
+ *
+ * Incoming metrics are accepted into a bounded in-memory buffer and the
+ * request returns immediately. Writer threads drain the buffer into batches
+ * which are upserted with a single commit, so that many small requests from
+ * the sinks become a few large writes to HBase.
+ *
+ * When HBase is slow or unavailable the writers retry their batch and the
+ * buffer fills up; once it is full, further metrics are rejected instead of
+ * blocking the request thread so the sinks can back off and resend later.
+ */
+public class TimelineMetricWriteBuffer {
+
+  private static final Log LOG = LogFactory.getLog(TimelineMetricWriteBuffer.class);
+  private static final long REJECTION_LOG_INTERVAL_MILLIS = 60000;
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+  private final BlockingQueue<TimelineMetric> buffer;
+  // guards the capacity so that a request is accepted or rejected as a whole,
+  // metrics hold their permits until they are written
+  private final Semaphore capacity;
+  private final int batchSize;
+  private final long flushIntervalMillis;
+  private final long retryIntervalMillis;
+  private final List<Thread> writers;
+  private volatile boolean running = false;
+  // offers hold the read lock, stopping takes the write lock so that no
+  // metrics are added after the writers were told to drain the buffer
+  private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+  private final AtomicLong acceptedMetrics = new AtomicLong();
+  private final AtomicLong droppedMetrics = new AtomicLong();
+  private final AtomicLong flushedMetrics = new AtomicLong();
+  private final AtomicLong flushCount = new AtomicLong();
+  private final AtomicLong failedFlushCount = new AtomicLong();
+  private final AtomicLong totalFlushTimeMillis = new AtomicLong();
+  private final AtomicLong lastFlushTimeMillis = new AtomicLong();
+  private final AtomicLong lastRejectionLogTime = new AtomicLong();
+
+  public TimelineMetricWriteBuffer(PhoenixHBaseAccessor hBaseAccessor,
+                                   int bufferSize, int writerThreads, int batchSize,
+                                   long flushIntervalMillis, long retryIntervalMillis) {
+    if (bufferSize <= 0 || writerThreads <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException("Buffer size, writer threads and " +
+        "batch size should be positive.");
+    }
+    this.hBaseAccessor = hBaseAccessor;
+    this.buffer = new ArrayBlockingQueue<TimelineMetric>(bufferSize);
+    this.capacity = new Semaphore(bufferSize);
+    this.batchSize = batchSize;
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.retryIntervalMillis = retryIntervalMillis;
+    this.writers = new ArrayList<Thread>(writerThreads);
+
+    for (int i = 0; i < writerThreads; i++) {
+      Thread writer = new Thread(new Writer(), "timeline-metrics-writer-" + (i + 1));
+      writer.setDaemon(true);
+      writers.add(writer);
+    }
+  }
+
+  public synchronized void start() {
+    if (!running) {
+      running = true;
+      for (Thread writer : writers) {
+        writer.start();
+      }
+      LOG.info("Started " + writers.size() + " metric writers, buffer size = "
+        + getCapacity() + ", batch size = " + batchSize);
+    }
+  }
+
+  /**
+   * Stop accepting metrics and wait for the writers to flush what is left
+   * in the buffer.
+   */
+  public synchronized void stop(long timeoutMillis) throws InterruptedException {
+    runningLock.writeLock().lock();
+    try {
+      if (!running) {
+        return;
+      }
+      running = false;
+    } finally {
+      runningLock.writeLock().unlock();
+    }
+
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    for (Thread writer : writers) {
+      writer.join(Math.max(deadline - System.currentTimeMillis(), 1));
+    }
+    for (Thread writer : writers) {
+      if (writer.isAlive()) {
+        writer.interrupt();
+      }
+    }
+
+    int remaining = buffer.size();
+    if (remaining > 0) {
+      droppedMetrics.addAndGet(remaining);
+      LOG.warn("Discarding " + remaining + " buffered metrics on shutdown.");
+    }
+    LOG.info("Stopped metric writers. " + getStatistics());
+  }
+
+  /**
+   * Add the metrics to the buffer.
+   *
+   * @return false if the buffer does not have room for all of the metrics,
+   * in which case none of them were added. Requests with more metrics than
+   * the capacity of the buffer are never accepted.
+   */
+  public boolean offer(TimelineMetrics metrics) {
+    List<TimelineMetric> timelineMetrics = metrics.getMetrics();
+    if (timelineMetrics == null || timelineMetrics.isEmpty()) {
+      return true;
+    }
+
+    int count = timelineMetrics.size();
+    runningLock.readLock().lock();
+    try {
+      if (!running || !capacity.tryAcquire(count)) {
+        droppedMetrics.addAndGet(count);
+        logRejection();
+        return false;
+      }
+
+      // cannot fail, the permits guarantee the free slots
+      for (TimelineMetric metric : timelineMetrics) {
+        buffer.add(metric);
+      }
+    } finally {
+      runningLock.readLock().unlock();
+    }
+    acceptedMetrics.addAndGet(count);
+    return true;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public int getCapacity() {
+    return buffer.size() + buffer.remainingCapacity();
+  }
+
+  /**
+   * @return number of metrics waiting to be written
+   */
+  public int getDepth() {
+    return buffer.size();
+  }
+
+  public long getAcceptedMetrics() {
+    return acceptedMetrics.get();
+  }
+
+  /**
+   * @return number of metrics rejected because the buffer was full, or
+   * discarded on shutdown
+   */
+  public long getDroppedMetrics() {
+    return droppedMetrics.get();
+  }
+
+  public long getFlushedMetrics() {
+    return flushedMetrics.get();
+  }
+
+  public long getFailedFlushCount() {
+    return failedFlushCount.get();
+  }
+
+  public long getLastFlushTimeMillis() {
+    return lastFlushTimeMillis.get();
+  }
+
+  public long getAverageFlushTimeMillis() {
+    long flushes = flushCount.get();
+    return flushes == 0 ? 0 : totalFlushTimeMillis.get() / flushes;
+  }
+
+  public String getStatistics() {
+    return "depth = " + getDepth() + "/" + getCapacity()
+      + ", accepted = " + getAcceptedMetrics()
+      + ", flushed = " + getFlushedMetrics()
+      + ", dropped = " + getDroppedMetrics()
+      + ", failed flushes = " + getFailedFlushCount()
+      + ", last flush = " + getLastFlushTimeMillis() + " ms"
+      + ", average flush = " + getAverageFlushTimeMillis() + " ms";
+  }
+
+  private void logRejection() {
+    long now = System.currentTimeMillis();
+    long lastLogTime = lastRejectionLogTime.get();
+    if (now - lastLogTime > REJECTION_LOG_INTERVAL_MILLIS
+        && lastRejectionLogTime.compareAndSet(lastLogTime, now)) {
+      LOG.warn("Metric write buffer is full, rejecting metrics. " + getStatistics());
+    }
+  }
+
+  /**
+   * Write the batch, retrying until it succeeds or the buffer is stopped.
+   * The permits of the batch are released once it is written or discarded.
+   */
+  private void write(List<TimelineMetric> batch) throws InterruptedException {
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(batch);
+
+    while (true) {
+      long start = System.currentTimeMillis();
+      try {
+        hBaseAccessor.insertMetricRecords(metrics);
+        capacity.release(batch.size());
+
+        long flushTime = System.currentTimeMillis() - start;
+        flushedMetrics.addAndGet(batch.size());
+        flushCount.incrementAndGet();
+        totalFlushTimeMillis.addAndGet(flushTime);
+        lastFlushTimeMillis.set(flushTime);
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Wrote " + batch.size() + " metrics in " + flushTime
+            + " ms, " + getStatistics());
+        }
+        return;
+      } catch (Exception e) {
+        failedFlushCount.incrementAndGet();
+        if (!running) {
+          capacity.release(batch.size());
+          droppedMetrics.addAndGet(batch.size());
+          LOG.error("Failed to write " + batch.size() + " metrics on shutdown, " +
+            "discarding them.", e);
+          return;
+        }
+        LOG.error("Failed to write " + batch.size() + " metrics, retrying in "
+          + retryIntervalMillis + " ms. " + getStatistics(), e);
+        Thread.sleep(retryIntervalMillis);
+      }
+    }
+  }
+
+  private class Writer implements Runnable {
+    @Override
+    public void run() {
+      List<TimelineMetric> batch = new ArrayList<TimelineMetric>(batchSize);
+      try {
+        while (running || !buffer.isEmpty()) {
+          TimelineMetric metric = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+          if (metric == null) {
+            continue;
+          }
+          batch.add(metric);
+          buffer.drainTo(batch, batchSize - 1);
+
+          write(batch);
+          batch = new ArrayList<TimelineMetric>(batchSize);
+        }
+      } catch (InterruptedException e) {
+        capacity.release(batch.size());
+        droppedMetrics.addAndGet(batch.size());
+        LOG.warn("Metric writer interrupted, discarding " + batch.size() + " metrics.");
+      }
+    }
+  }
+}
@@ -21,12 +21,13 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_APP_IDS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_APP_ID;
 
@@ -40,8 +41,10 @@ public class TimelineMetricAppAggregator {
   private static final Log LOG = LogFactory.getLog(TimelineMetricAppAggregator.class);
   // Lookup to check candidacy of an app
   private final List<String> appIdsToAggregate;
-  // Map to lookup apps on a host
-  private Map<String, List<String>> hostedAppsMap = new HashMap<String, List<String>>();
+  // Map to lookup apps on a host, updated concurrently by partitioned
+  // cluster aggregation
+  private ConcurrentHashMap<String, CopyOnWriteArrayList<String>> hostedAppsMap =
+    new ConcurrentHashMap<String, CopyOnWriteArrayList<String>>();
 
   Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics;
 
@@ -72,7 +75,7 @@ public class TimelineMetricAppAggregator {
   public void destroy() {
     LOG.debug("Cleanup aggregated data as well as in-memory state.");
     aggregateClusterMetrics = null;
-    hostedAppsMap = new HashMap<String, List<String>>();
+    hostedAppsMap = new ConcurrentHashMap<String, CopyOnWriteArrayList<String>>();
   }
 
   /**
@@ -85,6 +88,18 @@ public class TimelineMetricAppAggregator {
    */
   public void processTimelineClusterMetric(TimelineClusterMetric clusterMetric,
                                            String hostname, Double metricValue) {
+    processTimelineClusterMetric(clusterMetric, hostname, metricValue,
+      aggregateClusterMetrics);
+  }
+
+  /**
+   * Same as {@link #processTimelineClusterMetric(TimelineClusterMetric, String, Double)}
+   * but aggregates into the specified map, which allows partitions of
+   * cluster metrics to be aggregated concurrently.
+   */
+  public void processTimelineClusterMetric(TimelineClusterMetric clusterMetric,
+                                           String hostname, Double metricValue,
+                                           Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics) {
 
     String appId = clusterMetric.getAppId();
     if (appId == null) {
@@ -95,31 +110,54 @@ public class TimelineMetricAppAggregator {
     if (appId.equalsIgnoreCase(HOST_APP_ID)) {
       // Candidate metric, update app aggregates
       if (hostedAppsMap.containsKey(hostname)) {
-        updateAppAggregatesFromHostMetric(clusterMetric, hostname, metricValue);
+        updateAppAggregatesFromHostMetric(clusterMetric, hostname, metricValue,
+          aggregateClusterMetrics);
       }
     } else {
-      // Build the hostedapps map if not a host metric
-      // Check app candidacy for host aggregation
-      if (appIdsToAggregate.contains(appId)) {
-        List<String> appIds = hostedAppsMap.get(hostname);
-        if (appIds == null) {
-          appIds = new ArrayList<String>();
-          hostedAppsMap.put(hostname, appIds);
-        }
-        if (!appIds.contains(appId)) {
-          appIds.add(appId);
-          LOG.info("Adding appId to hosted apps: appId = " +
-            clusterMetric.getAppId() + ", hostname = " + hostname);
+      updateHostedApps(appId, hostname);
+    }
+  }
+
+  /**
+   * Build the hosted apps map if not a host metric. Partitioned aggregation
+   * calls this while reading metrics and aggregates host metrics for the
+   * hosted apps once all metrics were read.
+   */
+  public void updateHostedApps(String appId, String hostname) {
+    if (appId == null || appId.equalsIgnoreCase(HOST_APP_ID)) {
+      return;
+    }
+
+    // Check app candidacy for host aggregation
+    if (appIdsToAggregate.contains(appId)) {
+      CopyOnWriteArrayList<String> appIds = hostedAppsMap.get(hostname);
+      if (appIds == null) {
+        appIds = new CopyOnWriteArrayList<String>();
+        CopyOnWriteArrayList<String> existing = hostedAppsMap.putIfAbsent(hostname, appIds);
+        if (existing != null) {
+          appIds = existing;
         }
       }
+      if (appIds.addIfAbsent(appId)) {
+        LOG.info("Adding appId to hosted apps: appId = " +
+          appId + ", hostname = " + hostname);
+      }
     }
   }
 
+  /**
+   * @return whether any app is configured for host aggregation
+   */
+  public boolean hasAppsToAggregate() {
+    return !appIdsToAggregate.isEmpty();
+  }
+
   /**
    * Build a cluster app metric from a host metric
    */
   private void updateAppAggregatesFromHostMetric(TimelineClusterMetric clusterMetric,
-                                                 String hostname, Double metricValue) {
+                                                 String hostname, Double metricValue,
+                                                 Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics) {
 
     if (aggregateClusterMetrics == null) {
       LOG.error("Aggregation requested without init call.");
@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
@@ -33,6 +34,16 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_SECOND_PARTITIONS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_APP_ID;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.SERVER_SIDE_TIMESIFT_ADJUSTMENT;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.GET_METRIC_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_RECORD_TABLE_NAME;
@@ -44,12 +55,16 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
  */
 public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggregator {
   private static final Log LOG = LogFactory.getLog(TimelineMetricClusterAggregatorSecond.class);
+  private static final int PARTITION_QUEUE_SIZE = 1000;
   public Long timeSliceIntervalMillis;
   private TimelineMetricReadHelper timelineMetricReadHelper = new TimelineMetricReadHelper(true);
   // Aggregator to perform app-level aggregates for host metrics
   private final TimelineMetricAppAggregator appAggregator;
   // 1 minute client side buffering adjustment
   private final Long serverTimeShiftAdjustment;
+  // Number of metric name partitions aggregated concurrently
+  private final int partitionCount;
+  private ExecutorService partitionExecutor;
 
   public TimelineMetricClusterAggregatorSecond(PhoenixHBaseAccessor hBaseAccessor,
                                                Configuration metricsConf,
@@ -68,6 +83,7 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     appAggregator = new TimelineMetricAppAggregator(metricsConf);
     this.timeSliceIntervalMillis = timeSliceInterval;
     this.serverTimeShiftAdjustment = Long.parseLong(metricsConf.get(SERVER_SIDE_TIMESIFT_ADJUSTMENT, "90000"));
+    this.partitionCount = Math.max(1, metricsConf.getInt(CLUSTER_AGGREGATOR_SECOND_PARTITIONS, 4));
   }
 
   @Override
@@ -78,7 +94,8 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     // Initialize app aggregates for host metrics
     appAggregator.init();
     Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
-      aggregateMetricsFromResultSet(rs, timeSlices);
+      partitionCount > 1 ? aggregateMetricsInPartitions(rs, timeSlices) :
+        aggregateMetricsFromResultSet(rs, timeSlices);
 
     LOG.info("Saving " + aggregateClusterMetrics.size() + " metric aggregates.");
     hBaseAccessor.saveClusterAggregateRecords(aggregateClusterMetrics);
@@ -131,17 +148,19 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
         // avoids issues across rows that belong to same hosts but get
         // counted as coming from different ones.
         if (metric.equalsExceptTime(nextMetric)) {
-          metric.addMetricValues(nextMetric.getMetricValues());
+          metric.addMetricValues(nextMetric.getMetricSeries());
         } else {
           // Process the current metric
-          processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
+          processAggregateClusterMetrics(aggregateClusterMetrics,
+            appAggregator.getAggregateClusterMetrics(), metric, timeSlices);
           metric = nextMetric;
         }
       }
     }
     // Process last metric
     if (metric != null) {
-      processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
+      processAggregateClusterMetrics(aggregateClusterMetrics,
+        appAggregator.getAggregateClusterMetrics(), metric, timeSlices);
     }
 
     // Add app level aggregates to save
@@ -149,16 +168,292 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     return aggregateClusterMetrics;
   }
 
+  /**
+   * Reads the result set on the calling thread and hands the rows of every
+   * metric to one of {@link #partitionCount} partitions, chosen by the hash of
+   * the metric name, which decode, slice and reduce them concurrently while
+   * reading goes on. Since all aggregates of a metric name fall into the same
+   * partition, the partition results do not overlap.
+   *
+   * The result set is ordered by metric name, so the app metrics which tell
+   * which apps a host runs may come after the host metrics to be aggregated
+   * for these apps. The reader registers the hosted apps, and the partitions
+   * keep the slices of host metrics to aggregate them for the hosted apps
+   * once all metrics were read.
+   *
+   * If any partition fails, no aggregates are returned so that the checkpoint
+   * is not moved past metrics which were not aggregated.
+   */
+  private Map<TimelineClusterMetric, MetricClusterAggregate> aggregateMetricsInPartitions(
+      ResultSet rs, List<Long[]> timeSlices) throws SQLException, IOException {
+
+    long startTime = System.currentTimeMillis();
+    ExecutorService executor = getPartitionExecutor();
+    List<AggregationPartition> partitions = new ArrayList<AggregationPartition>(partitionCount);
+    List<Future<?>> futures = new ArrayList<Future<?>>(partitionCount);
+    for (int i = 0; i < partitionCount; i++) {
+      AggregationPartition partition = new AggregationPartition(i, timeSlices);
+      partitions.add(partition);
+      futures.add(executor.submit(partition));
+    }
+
+    long readTime;
+    try {
+      PartitionedMetric metric = null;
+      while (rs.next()) {
+        TimelineMetric nextMetric = timelineMetricReadHelper.getTimelineMetricCommonsFromResultSet(rs);
+        String encodedValues = rs.getString("METRICS");
+
+        // If rows belong to same host combine them before slicing. This
+        // avoids issues across rows that belong to same hosts but get
+        // counted as coming from different ones.
+        if (metric != null && metric.metric.equalsExceptTime(nextMetric)) {
+          metric.encodedValues.add(encodedValues);
+        } else {
+          if (metric != null) {
+            dispatch(partitions, metric);
+          }
+          metric = new PartitionedMetric(nextMetric, encodedValues);
+          appAggregator.updateHostedApps(nextMetric.getAppId(), nextMetric.getHostName());
+        }
+      }
+      if (metric != null) {
+        dispatch(partitions, metric);
+      }
+      readTime = System.currentTimeMillis() - startTime;
+    } finally {
+      // always stop the partitions, even if reading failed
+      for (AggregationPartition partition : partitions) {
+        partition.finish();
+      }
+    }
+
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for cluster aggregation partitions", e);
+      } catch (ExecutionException e) {
+        throw new IOException("Cluster aggregation partition failed", e.getCause());
+      }
+    }
+
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    StringBuilder partitionTimes = new StringBuilder();
+    for (AggregationPartition partition : partitions) {
+      if (partition.failure != null) {
+        throw new IOException("Cluster aggregation partition " + partition.index
+          + " failed", partition.failure);
+      }
+      aggregateClusterMetrics.putAll(partition.aggregateClusterMetrics);
+      aggregateClusterMetrics.putAll(partition.appAggregateClusterMetrics);
+
+      partitionTimes.append(partitionTimes.length() == 0 ? "" : ", ")
+        .append(partition.metricCount).append('/')
+        .append(partition.processingTime).append('/')
+        .append(partition.waitTime);
+    }
+
+    // a partition which waited most of the time for input means reading is
+    // the bottleneck, more partitions would not help
+    LOG.info("Aggregated " + aggregateClusterMetrics.size() + " metric aggregates in "
+      + partitionCount + " partitions in " + (System.currentTimeMillis() - startTime)
+      + " ms, reading took " + readTime + " ms, metrics/processing ms/waiting ms "
+      + "per partition: " + partitionTimes + ".");
+
+    return aggregateClusterMetrics;
+  }
+
+  private void dispatch(List<AggregationPartition> partitions, PartitionedMetric metric)
+      throws IOException {
+    int index = (metric.metric.getMetricName().hashCode() & Integer.MAX_VALUE) % partitionCount;
+    partitions.get(index).add(metric);
+  }
+
+  private synchronized ExecutorService getPartitionExecutor() {
+    if (partitionExecutor == null) {
+      partitionExecutor = Executors.newFixedThreadPool(partitionCount,
+        new ThreadFactory() {
+          private final AtomicInteger threadId = new AtomicInteger(1);
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "cluster-aggregator-second-partition-"
+              + threadId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    }
+    return partitionExecutor;
+  }
+
+  /**
+   * Rows of one host metric, with the values still encoded so that the
+   * partition rather than the reading thread decodes them.
+   */
+  private static class PartitionedMetric {
+    private final TimelineMetric metric;
+    private final List<String> encodedValues = new ArrayList<String>(1);
+
+    PartitionedMetric(TimelineMetric metric, String encodedValues) {
+      this.metric = metric;
+      this.encodedValues.add(encodedValues);
+    }
+  }
+
+  /**
+   * Slices of a host metric, kept to aggregate them for the apps of the host.
+   */
+  private static class HostMetricSlices {
+    private final String hostname;
+    private final Map<TimelineClusterMetric, Double> clusterMetrics;
+
+    HostMetricSlices(String hostname, Map<TimelineClusterMetric, Double> clusterMetrics) {
+      this.hostname = hostname;
+      this.clusterMetrics = clusterMetrics;
+    }
+  }
+
+  /**
+   * Aggregates the metrics of one partition into its own maps.
+   */
+  private class AggregationPartition implements Runnable {
+    private final PartitionedMetric END_OF_INPUT = new PartitionedMetric(null, null);
+
+    private final int index;
+    private final List<Long[]> timeSlices;
+    private final BlockingQueue<PartitionedMetric> queue =
+      new LinkedBlockingQueue<PartitionedMetric>(PARTITION_QUEUE_SIZE);
+    private final Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    private final Map<TimelineClusterMetric, MetricClusterAggregate> appAggregateClusterMetrics =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    private final List<HostMetricSlices> hostMetricSlices = new ArrayList<HostMetricSlices>();
+
+    // read by the aggregating thread after the future completes
+    private volatile Throwable failure;
+    private long metricCount = 0;
+    private long processingTime = 0;
+    private long waitTime = 0;
+
+    AggregationPartition(int index, List<Long[]> timeSlices) {
+      this.index = index;
+      this.timeSlices = timeSlices;
+    }
+
+    void add(PartitionedMetric metric) throws IOException {
+      try {
+        queue.put(metric);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while queueing metrics for aggregation", e);
+      }
+    }
+
+    void finish() {
+      // the partition keeps draining after a failure, so this cannot block
+      // indefinitely
+      try {
+        queue.put(END_OF_INPUT);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        PartitionedMetric partitionedMetric;
+        long waitStart = System.currentTimeMillis();
+        try {
+          partitionedMetric = queue.take();
+        } catch (InterruptedException e) {
+          failure = e;
+          continue;
+        }
+        long start = System.currentTimeMillis();
+        waitTime += start - waitStart;
+
+        if (partitionedMetric == END_OF_INPUT) {
+          if (failure == null) {
+            aggregateHostMetricsForApps();
+          }
+          processingTime += System.currentTimeMillis() - start;
+          return;
+        }
+        if (failure != null) {
+          continue;
+        }
+
+        try {
+          TimelineMetric metric = partitionedMetric.metric;
+          for (String encodedValues : partitionedMetric.encodedValues) {
+            metric.getMetricSeries().merge(PhoenixHBaseAccessor.readMetricValues(encodedValues));
+          }
+          Map<TimelineClusterMetric, Double> clusterMetrics =
+            sliceFromTimelineMetric(metric, timeSlices);
+          updateAggregateClusterMetrics(aggregateClusterMetrics, clusterMetrics);
+          if (clusterMetrics != null && !clusterMetrics.isEmpty()
+              && HOST_APP_ID.equalsIgnoreCase(metric.getAppId())
+              && appAggregator.hasAppsToAggregate()) {
+            hostMetricSlices.add(new HostMetricSlices(metric.getHostName(), clusterMetrics));
+          }
+          metricCount++;
+        } catch (Throwable t) {
+          LOG.error("Error aggregating metrics in partition " + index, t);
+          failure = t;
+        }
+        processingTime += System.currentTimeMillis() - start;
+      }
+    }
+
+    /**
+     * Called after all metrics were read, when the hosted apps are known.
+     */
+    private void aggregateHostMetricsForApps() {
+      try {
+        for (HostMetricSlices slices : hostMetricSlices) {
+          for (Map.Entry<TimelineClusterMetric, Double> clusterMetricEntry :
+              slices.clusterMetrics.entrySet()) {
+            appAggregator.processTimelineClusterMetric(clusterMetricEntry.getKey(),
+              slices.hostname, clusterMetricEntry.getValue(), appAggregateClusterMetrics);
+          }
+        }
+      } catch (Throwable t) {
+        LOG.error("Error aggregating host metrics for apps in partition " + index, t);
+        failure = t;
+      }
+      hostMetricSlices.clear();
+    }
+  }
+
   /**
    * Slice metric values into interval specified by :
    * timeline.metrics.cluster.aggregator.minute.timeslice.interval
    * Normalize value by averaging them within the interval
    */
   private void processAggregateClusterMetrics(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
+                                              Map<TimelineClusterMetric, MetricClusterAggregate> appAggregateClusterMetrics,
                                               TimelineMetric metric, List<Long[]> timeSlices) {
     // Create time slices
     Map<TimelineClusterMetric, Double> clusterMetrics = sliceFromTimelineMetric(metric, timeSlices);
+    updateAggregateClusterMetrics(aggregateClusterMetrics, clusterMetrics);
+
+    if (clusterMetrics != null) {
+      // Update app level aggregates
+      for (Map.Entry<TimelineClusterMetric, Double> clusterMetricEntry :
+        clusterMetrics.entrySet()) {
+        appAggregator.processTimelineClusterMetric(clusterMetricEntry.getKey(),
+          metric.getHostName(), clusterMetricEntry.getValue(), appAggregateClusterMetrics);
+      }
+    }
+  }
 
+  private void updateAggregateClusterMetrics(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
+                                             Map<TimelineClusterMetric, Double> clusterMetrics) {
     if (clusterMetrics != null && !clusterMetrics.isEmpty()) {
       for (Map.Entry<TimelineClusterMetric, Double> clusterMetricEntry :
         clusterMetrics.entrySet()) {
@@ -177,8 +472,6 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
           aggregate.updateMax(avgValue);
           aggregate.updateMin(avgValue);
         }
-        // Update app level aggregates
-        appAggregator.processTimelineClusterMetric(clusterMetric, metric.getHostName(), avgValue);
       }
     }
   }
@@ -186,7 +479,8 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
   private Map<TimelineClusterMetric, Double> sliceFromTimelineMetric(
       TimelineMetric timelineMetric, List<Long[]> timeSlices) {
 
-    if (timelineMetric.getMetricValues().isEmpty()) {
+    TimelineMetricSeries metricSeries = timelineMetric.getMetricSeries();
+    if (metricSeries.isEmpty()) {
       return null;
     }
 
@@ -200,13 +494,14 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
       timeShift = 0l;
     }
 
-    for (Map.Entry<Long, Double> metric : timelineMetric.getMetricValues().entrySet()) {
+    for (int i = 0; i < metricSeries.size(); i++) {
+      double value = metricSeries.getValue(i);
       // TODO: investigate null values - pre filter
-      if (metric.getValue() == null) {
+      if (Double.isNaN(value)) {
         continue;
       }
 
-      Long timestamp = getSliceTimeForMetric(timeSlices, Long.parseLong(metric.getKey().toString()));
+      Long timestamp = getSliceTimeForMetric(timeSlices, metricSeries.getTimestamp(i));
       if (timestamp != -1) {
         // Metric is within desired time range
         TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
@@ -220,11 +515,11 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
         int count = 1;
         Double sum;
         if (!timelineClusterMetricMap.containsKey(clusterMetric)) {
-          sum = metric.getValue();
+          sum = value;
         } else {
           count++;
           Double oldValue = timelineClusterMetricMap.get(clusterMetric);
-          sum = oldValue + metric.getValue();
+          sum = oldValue + value;
         }
         timelineClusterMetricMap.put(clusterMetric, (sum / count));
       }
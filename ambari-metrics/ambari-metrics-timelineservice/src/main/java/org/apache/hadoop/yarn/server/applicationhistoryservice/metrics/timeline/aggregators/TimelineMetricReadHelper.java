@@ -41,7 +41,7 @@ public class TimelineMetricReadHelper {
       throws SQLException, IOException {
     TimelineMetric metric = getTimelineMetricCommonsFromResultSet(rs);
     TreeMap<Long, Double> sortedByTimeMetrics = new TreeMap<Long, Double>(
-        PhoenixHBaseAccessor.readMetricFromJSON(rs.getString("METRICS")));
+        PhoenixHBaseAccessor.readMetricValues(rs.getString("METRICS")));
     metric.setMetricValues(sortedByTimeMetrics);
     return metric;
   }
@@ -302,10 +302,7 @@ public class PhoenixTransactSQL {
       String metricsTable;
       String query;
       if (condition.getPrecision() == null) {
-        long endTime = condition.getEndTime() == null ? System.currentTimeMillis() : condition.getEndTime();
-        long startTime = condition.getStartTime() == null ? 0 : condition.getStartTime();
-        Precision precision = Precision.getPrecision(startTime, endTime);
-        condition.setPrecision(precision);
+        condition.setPrecision(getDefaultPrecision(condition));
       }
       switch (condition.getPrecision()) {
         case DAYS:
@@ -422,14 +419,60 @@ public class PhoenixTransactSQL {
     }
 
     long range = condition.getEndTime() - condition.getStartTime();
-    long rowsPerMetric;
 
     //Get Precision (passed in or computed) and estimate values returned based on that.
     Precision precision = condition.getPrecision();
     if (precision == null) {
-      precision = Precision.getPrecision(condition.getStartTime(), condition.getEndTime());
+      precision = getDefaultPrecision(condition);
+    }
+
+    long totalRowsRequested = estimateRowCount(condition, precision, range, false);
+    if (totalRowsRequested > PhoenixHBaseAccessor.RESULTSET_LIMIT) {
+      throw new PrecisionLimitExceededException("Requested precision (" + precision + ") for given time range causes " +
+        "result set size of " + totalRowsRequested + ", which exceeds the limit - "
+        + PhoenixHBaseAccessor.RESULTSET_LIMIT + ". Please request higher precision.");
+    }
+  }
+
+  /**
+   * Get the precision for a condition which does not request one. This is
+   * the precision of its time range, unless that would return more rows
+   * than the result set limit for the requested metrics and hosts. Then
+   * the finest coarser precision within the limit is used, so that long
+   * ranges are read from the aggregate tables instead of being rejected.
+   */
+  public static Precision getDefaultPrecision(Condition condition) {
+    long endTime = condition.getEndTime() == null ? System.currentTimeMillis() : condition.getEndTime();
+    long startTime = condition.getStartTime() == null ? 0 : condition.getStartTime();
+    Precision rangePrecision = Precision.getPrecision(startTime, endTime);
+
+    Precision precision = rangePrecision;
+    while (precision != Precision.DAYS && estimateRowCount(condition, precision,
+        endTime - startTime, true) > PhoenixHBaseAccessor.RESULTSET_LIMIT) {
+      precision = Precision.getHigherPrecision(precision);
+    }
+
+    if (precision != rangePrecision && LOG.isDebugEnabled()) {
+      LOG.debug("Using precision " + precision + " instead of " + rangePrecision
+        + " to stay within the result set limit, condition: " + condition);
     }
+    return precision;
+  }
 
+  /**
+   * Estimate the number of rows read for the condition at the given
+   * precision, one row per metric and period of the precision, and per host
+   * if countHosts is set. Hosts are only counted to choose a default
+   * precision, a requested precision is validated as before.
+   */
+  static long estimateRowCount(Condition condition, Precision precision, long range,
+                               boolean countHosts) {
+    if (condition.getMetricNames() == null
+      || condition.getMetricNames().isEmpty()) {
+      return 0;
+    }
+
+    long rowsPerMetric;
     switch (precision) {
       case DAYS:
         rowsPerMetric = TimeUnit.MILLISECONDS.toDays(range);
@@ -444,12 +487,11 @@ public class PhoenixTransactSQL {
         rowsPerMetric = TimeUnit.MILLISECONDS.toSeconds(range)/10; //10 second data in METRIC_AGGREGATE table
     }
 
-    long totalRowsRequested = rowsPerMetric * condition.getMetricNames().size();
-    if (totalRowsRequested > PhoenixHBaseAccessor.RESULTSET_LIMIT) {
-      throw new PrecisionLimitExceededException("Requested precision (" + precision + ") for given time range causes " +
-        "result set size of " + totalRowsRequested + ", which exceeds the limit - "
-        + PhoenixHBaseAccessor.RESULTSET_LIMIT + ". Please request higher precision.");
+    int hosts = 1;
+    if (countHosts && condition.getHostnames() != null && !condition.getHostnames().isEmpty()) {
+      hosts = condition.getHostnames().size();
     }
+    return rowsPerMetric * condition.getMetricNames().size() * hosts;
   }
 
   public static PreparedStatement prepareGetLatestMetricSqlStmt(
@@ -545,9 +587,7 @@ public class PhoenixTransactSQL {
     String metricsAggregateTable;
     String queryStmt;
     if (condition.getPrecision() == null) {
-      long endTime = condition.getEndTime() == null ? System.currentTimeMillis() : condition.getEndTime();
-      long startTime = condition.getStartTime() == null ? 0 : condition.getStartTime();
-      condition.setPrecision(Precision.getPrecision(startTime, endTime));
+      condition.setPrecision(getDefaultPrecision(condition));
     }
     switch (condition.getPrecision()) {
       case DAYS:
@@ -46,6 +46,8 @@ public class AHSWebApp extends WebApp implements YarnWebParams {
 
   @Override
   public void setup() {
+    // ahead of the web services, which are registered after setup()
+    filter("/ws/*").through(GzipRequestFilter.class);
     bind(YarnJacksonJaxbJsonProvider.class);
     bind(AHSWebServices.class);
     bind(TimelineWebServices.class);
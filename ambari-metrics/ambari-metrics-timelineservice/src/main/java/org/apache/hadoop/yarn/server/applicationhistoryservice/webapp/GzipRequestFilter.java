@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.webapp;
+
+import com.google.inject.Singleton;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompresses request bodies sent with "Content-Encoding: gzip", as the
+ * metrics sinks do, before they reach the web services. The decompressed
+ * body is limited to {@link #DEFAULT_MAX_INFLATED_BYTES}, or to the
+ * "maxInflatedBytes" init parameter, reading past it fails.
+ */
+@Singleton
+public class GzipRequestFilter implements Filter {
+
+  static final String CONTENT_ENCODING = "Content-Encoding";
+  static final String GZIP = "gzip";
+  static final String MAX_INFLATED_BYTES_PARAM = "maxInflatedBytes";
+  static final long DEFAULT_MAX_INFLATED_BYTES = 64 * 1024 * 1024;
+
+  private long maxInflatedBytes = DEFAULT_MAX_INFLATED_BYTES;
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    String maxInflatedBytesParam = filterConfig == null ? null :
+      filterConfig.getInitParameter(MAX_INFLATED_BYTES_PARAM);
+    if (maxInflatedBytesParam != null) {
+      maxInflatedBytes = Long.parseLong(maxInflatedBytesParam.trim());
+    }
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response,
+                       FilterChain chain) throws IOException, ServletException {
+    if (request instanceof HttpServletRequest
+        && GZIP.equalsIgnoreCase(((HttpServletRequest) request).getHeader(CONTENT_ENCODING))) {
+      request = new GzipRequestWrapper((HttpServletRequest) request, maxInflatedBytes);
+    }
+    chain.doFilter(request, response);
+  }
+
+  @Override
+  public void destroy() {
+  }
+
+  /**
+   * Serves the decompressed body and hides the encoding header, so that the
+   * request is read as a plain one further down the chain.
+   */
+  static class GzipRequestWrapper extends HttpServletRequestWrapper {
+    private final long maxInflatedBytes;
+    private ServletInputStream inputStream;
+
+    GzipRequestWrapper(HttpServletRequest request, long maxInflatedBytes) {
+      super(request);
+      this.maxInflatedBytes = maxInflatedBytes;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+      if (inputStream == null) {
+        final InputStream gzip = new GZIPInputStream(super.getInputStream());
+        inputStream = new ServletInputStream() {
+          private long inflatedBytes = 0;
+
+          @Override
+          public int read() throws IOException {
+            int b = gzip.read();
+            if (b != -1) {
+              count(1);
+            }
+            return b;
+          }
+
+          @Override
+          public int read(byte[] b, int off, int len) throws IOException {
+            int read = gzip.read(b, off, len);
+            if (read > 0) {
+              count(read);
+            }
+            return read;
+          }
+
+          private void count(int read) throws IOException {
+            inflatedBytes += read;
+            if (inflatedBytes > maxInflatedBytes) {
+              throw new IOException("Decompressed request body exceeds "
+                + maxInflatedBytes + " bytes");
+            }
+          }
+
+          @Override
+          public void close() throws IOException {
+            gzip.close();
+          }
+        };
+      }
+      return inputStream;
+    }
+
+    @Override
+    public int getContentLength() {
+      return -1;
+    }
+
+    @Override
+    public String getHeader(String name) {
+      return CONTENT_ENCODING.equalsIgnoreCase(name) ? null : super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration getHeaders(String name) {
+      return CONTENT_ENCODING.equalsIgnoreCase(name) ?
+        Collections.enumeration(Collections.emptyList()) : super.getHeaders(name);
+    }
+
+    @Override
+    public Enumeration getHeaderNames() {
+      List<Object> names = new ArrayList<Object>();
+      for (Enumeration e = super.getHeaderNames(); e.hasMoreElements(); ) {
+        Object name = e.nextElement();
+        if (!CONTENT_ENCODING.equalsIgnoreCase(String.valueOf(name))) {
+          names.add(name);
+        }
+      }
+      return Collections.enumeration(names);
+    }
+  }
+}
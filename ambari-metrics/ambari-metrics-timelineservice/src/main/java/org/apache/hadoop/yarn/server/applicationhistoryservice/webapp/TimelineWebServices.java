@@ -32,6 +32,7 @@ import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
 import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricsWriteBufferFullException;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricStore;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.EntityIdentifier;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.GenericObjectMapper;
@@ -274,6 +275,15 @@ public class TimelineWebServices {
 
       return timelineMetricStore.putMetrics(metrics);
 
+    } catch (MetricsWriteBufferFullException e) {
+      // ask the sink to back off rather than holding the request
+      LOG.debug("Rejecting metrics, " + e.getMessage());
+      throw new WebApplicationException(Response
+        .status(Response.Status.SERVICE_UNAVAILABLE)
+        .header("Retry-After", e.getRetryAfterSeconds())
+        .type(MediaType.TEXT_PLAIN)
+        .entity(e.getMessage())
+        .build());
     } catch (Exception e) {
       LOG.error("Error saving metrics.", e);
       throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
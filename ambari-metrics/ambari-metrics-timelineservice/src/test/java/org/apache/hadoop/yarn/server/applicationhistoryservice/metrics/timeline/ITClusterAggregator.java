@@ -44,7 +44,9 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import static junit.framework.Assert.assertEquals;
@@ -54,6 +56,7 @@ import static junit.framework.Assert.fail;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricTestHelper.createEmptyTimelineClusterMetric;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricTestHelper.prepareSingleTimelineMetric;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_APP_IDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_SECOND_PARTITIONS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.GET_CLUSTER_AGGREGATE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_HOURLY_TABLE_NAME;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_TABLE_NAME;
@@ -287,6 +290,55 @@ public class ITClusterAggregator extends AbstractMiniHBaseClusterTest {
     }
   }
 
+  @Test
+  public void testShouldAggregateManyMetricsInPartitions() throws Exception {
+    // GIVEN
+    Configuration conf = getConfigurationForTest(false);
+    conf.setInt(CLUSTER_AGGREGATOR_SECOND_PARTITIONS, 3);
+    TimelineMetricAggregator agg =
+      TimelineMetricAggregatorFactory.createTimelineClusterAggregatorSecond(hdb, conf);
+    TimelineMetricReadHelper readHelper = new TimelineMetricReadHelper(false);
+
+    long startTime = System.currentTimeMillis();
+    long ctime = startTime;
+    long minute = 60 * 1000;
+    int metricCount = 20;
+    for (int i = 0; i < metricCount; i++) {
+      hdb.insertMetricRecords(prepareSingleTimelineMetric(ctime, "local1",
+        "metric_" + i, i));
+      hdb.insertMetricRecords(prepareSingleTimelineMetric(ctime, "local2",
+        "metric_" + i, 2 * i));
+    }
+
+    // WHEN
+    long endTime = ctime + minute;
+    boolean success = agg.doWork(startTime, endTime);
+
+    //THEN
+    assertTrue(success);
+    Condition condition = new DefaultCondition(null, null, null, null, startTime,
+      endTime, null, null, true);
+    condition.setStatement(String.format(GET_CLUSTER_AGGREGATE_SQL,
+      PhoenixTransactSQL.getNaiveTimeRangeHint(startTime, NATIVE_TIME_RANGE_DELTA),
+      METRICS_CLUSTER_AGGREGATE_TABLE_NAME));
+
+    PreparedStatement pstmt = PhoenixTransactSQL.prepareGetMetricsSqlStmt(conn, condition);
+    ResultSet rs = pstmt.executeQuery();
+
+    Set<String> aggregatedMetrics = new HashSet<String>();
+    while (rs.next()) {
+      TimelineClusterMetric currentMetric = metricReader.fromResultSet(rs);
+      MetricClusterAggregate currentHostAggregate =
+        readHelper.getMetricClusterAggregateFromResultSet(rs);
+
+      int i = Integer.parseInt(currentMetric.getMetricName().substring("metric_".length()));
+      assertEquals(2, currentHostAggregate.getNumberOfHosts());
+      assertEquals(3.0 * i, currentHostAggregate.getSum());
+      aggregatedMetrics.add(currentMetric.getMetricName());
+    }
+    assertEquals(metricCount, aggregatedMetrics.size());
+  }
+
   @Test
   public void testAggregateDailyClusterMetrics() throws Exception {
     // GIVEN
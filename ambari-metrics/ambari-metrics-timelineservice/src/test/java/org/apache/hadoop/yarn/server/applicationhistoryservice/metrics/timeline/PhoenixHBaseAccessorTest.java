@@ -22,12 +22,15 @@ import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.metrics2.sink.timeline.Precision;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.MetricClusterAggregate;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineClusterMetric;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.ConnectionProvider;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
 import org.apache.phoenix.exception.PhoenixIOException;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.powermock.api.easymock.PowerMock;
@@ -43,8 +46,13 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATE_SAVE_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATE_SAVE_THREADS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.GLOBAL_RETRY_INTERVAL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 @RunWith(PowerMockRunner.class)
@@ -189,4 +197,55 @@ public class PhoenixHBaseAccessorTest {
     PowerMock.verifyAll();
   }
 
+  @Test
+  public void testSaveAggregateRecordsInPartitions() throws SQLException {
+    Configuration hbaseConf = new Configuration();
+    hbaseConf.setStrings(ZOOKEEPER_QUORUM, "quorum");
+    Configuration metricsConf = new Configuration();
+    metricsConf.setInt(AGGREGATE_SAVE_BATCH_SIZE, 2);
+    metricsConf.setInt(AGGREGATE_SAVE_THREADS, 2);
+    metricsConf.setInt(GLOBAL_RETRY_INTERVAL, 0);
+
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger failedCommits = new AtomicInteger(1);
+    final AtomicInteger upserts = new AtomicInteger();
+    ConnectionProvider connectionProvider = new ConnectionProvider() {
+      @Override
+      public Connection getConnection() throws SQLException {
+        connections.incrementAndGet();
+        Connection connection = EasyMock.createNiceMock(Connection.class);
+        PreparedStatement stmt = EasyMock.createNiceMock(PreparedStatement.class);
+        EasyMock.expect(connection.prepareStatement(EasyMock.anyString())).andReturn(stmt);
+        EasyMock.expect(stmt.executeUpdate()).andAnswer(new IAnswer<Integer>() {
+          @Override
+          public Integer answer() throws Throwable {
+            upserts.incrementAndGet();
+            return 1;
+          }
+        }).anyTimes();
+        connection.commit();
+        if (failedCommits.getAndDecrement() > 0) {
+          EasyMock.expectLastCall().andThrow(new SQLException("commit failed"));
+        }
+        EasyMock.replay(connection, stmt);
+        return connection;
+      }
+    };
+
+    PhoenixHBaseAccessor accessor = new PhoenixHBaseAccessor(hbaseConf, metricsConf, connectionProvider);
+
+    Map<TimelineClusterMetric, MetricClusterAggregate> records =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    for (int i = 0; i < 5; i++) {
+      records.put(new TimelineClusterMetric("metric" + i, "app", null, 1000L, "type"),
+        new MetricClusterAggregate(1.0, 1, 0.0, 1.0, 1.0));
+    }
+
+    accessor.saveClusterAggregateRecords(records);
+
+    // three partitions, the one with the failed commit is written again
+    assertEquals(4, connections.get());
+    int retried = upserts.get() - records.size();
+    assertTrue(retried == 1 || retried == 2);
+  }
 }
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMetricValuesCodec {
+  @Test
+  public void testRoundTrip() throws Exception {
+    // given
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    long time = 1431015600000L;
+    values.put(time, 0.0);
+    values.put(time + 10000, 0.0);
+    values.put(time + 20000, 1.5);
+    values.put(time + 30005, -1.5);
+    values.put(time + 40000, 1.0E100);
+    values.put(time + 3600000, Double.MIN_VALUE);
+    values.put(time + 3600001, Double.NaN);
+    values.put(time - 1, 42.0);
+
+    // when
+    String encoded = MetricValuesCodec.encode(values);
+
+    // then
+    assertThat(MetricValuesCodec.isLegacyFormat(encoded)).isFalse();
+    assertThat(MetricValuesCodec.decode(encoded)).isEqualTo(values);
+  }
+
+  @Test
+  public void testEmptyAndSingleValue() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    assertThat(MetricValuesCodec.decode(MetricValuesCodec.encode(values))).isEmpty();
+
+    values.put(1431015600000L, 3.14);
+    assertThat(MetricValuesCodec.decode(MetricValuesCodec.encode(values))).isEqualTo(values);
+  }
+
+  @Test
+  public void testDecodeLegacyJson() throws Exception {
+    // given
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1431015600000L, 1.0);
+    values.put(1431015610000L, 2.0);
+    String json = TimelineUtils.dumpTimelineRecordtoJSON(values);
+
+    // then
+    assertThat(MetricValuesCodec.isLegacyFormat(json)).isTrue();
+    assertThat(PhoenixHBaseAccessor.readMetricValues(json)).isEqualTo(values);
+  }
+
+  @Test
+  public void testRandomSeries() throws Exception {
+    Random random = new Random(1);
+    for (int i = 0; i < 100; i++) {
+      TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+      long time = Math.abs(random.nextLong() % 2000000000000L);
+      for (int j = random.nextInt(200); j > 0; j--) {
+        time += random.nextInt(20000);
+        values.put(time, random.nextBoolean() ? random.nextDouble() * 1000 : random.nextInt(10));
+      }
+      assertThat(MetricValuesCodec.decode(MetricValuesCodec.encode(values))).isEqualTo(values);
+    }
+  }
+
+  /**
+   * Compares the binary encoding against JSON for a typical two minute
+   * precision series.
+   */
+  @Test
+  public void testCompareWithJson() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    long time = 1431015600000L;
+    for (int i = 0; i < 12; i++) {
+      values.put(time + i * 10000, 1024.0 + (i % 3));
+    }
+
+    String json = TimelineUtils.dumpTimelineRecordtoJSON(values);
+    String binary = MetricValuesCodec.encode(values);
+    assertThat(binary.length()).isLessThan(json.length());
+
+    // both encodings are read back to the same values
+    assertThat(PhoenixHBaseAccessor.readMetricValues(json)).isEqualTo(values);
+    assertThat(PhoenixHBaseAccessor.readMetricValues(binary)).isEqualTo(values);
+  }
+}
@@ -29,8 +29,10 @@ import java.sql.Connection;
 import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
@@ -422,4 +424,49 @@ public class TestPhoenixTransactSQL {
     Assert.assertTrue(stmt.contains("FROM METRIC_RECORD_HOURLY"));
     verify(connection, preparedStatement);
   }
+
+  @Test
+  public void testPrepareGetMetricsNoPrecisionManyHosts() throws SQLException {
+    List<String> hostnames = new ArrayList<String>();
+    for (int i = 0; i < 200; i++) {
+      hostnames.add("h" + i);
+    }
+    Long endTime = 1407959918000L;
+    Long startTime = endTime - PhoenixTransactSQL.HOUR * 2;
+
+    // too many rows in the precision and minute tables
+    Condition condition = new DefaultCondition(
+      Arrays.asList("cpu_user", "mem_free"), hostnames,
+      "a1", "i1", startTime, endTime, null, null, false);
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
+    Capture<String> stmtCapture = new Capture<String>();
+    expect(connection.prepareStatement(EasyMock.and(EasyMock.anyString(), EasyMock.capture(stmtCapture))))
+      .andReturn(preparedStatement);
+
+    replay(connection, preparedStatement);
+    PhoenixTransactSQL.prepareGetMetricsSqlStmt(connection, condition);
+    String stmt = stmtCapture.getValue();
+    Assert.assertTrue(stmt.contains("FROM METRIC_RECORD_HOURLY"));
+    Assert.assertEquals(Precision.HOURS, condition.getPrecision());
+    verify(connection, preparedStatement);
+
+    // a requested precision is neither changed nor rejected for the hosts
+    condition = new DefaultCondition(
+      Arrays.asList("cpu_user", "mem_free"), hostnames,
+      "a1", "i1", startTime, endTime, Precision.SECONDS, null, false);
+    connection = createNiceMock(Connection.class);
+    preparedStatement = createNiceMock(PreparedStatement.class);
+    stmtCapture = new Capture<String>();
+    expect(connection.prepareStatement(EasyMock.and(EasyMock.anyString(), EasyMock.capture(stmtCapture))))
+      .andReturn(preparedStatement);
+
+    replay(connection, preparedStatement);
+    PhoenixTransactSQL.prepareGetMetricsSqlStmt(connection, condition);
+    stmt = stmtCapture.getValue();
+    Assert.assertTrue(stmt.contains("FROM METRIC_RECORD"));
+    Assert.assertFalse(stmt.contains("FROM METRIC_RECORD_"));
+    Assert.assertEquals(Precision.SECONDS, condition.getPrecision());
+    verify(connection, preparedStatement);
+  }
 }
@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestTimelineMetricQueryCache {
+
+  private static final long STEP = 10000;
+  private static final long HOUR = 3600000;
+
+  @Test
+  public void testOnlyNewestRangeIsScannedAgain() throws Exception {
+    TimelineMetricQueryCache cache = new TimelineMetricQueryCache(10, 120000, HOUR);
+    RecordingFetcher fetcher = new RecordingFetcher();
+    long now = align(System.currentTimeMillis());
+
+    TimelineMetrics metrics = query(cache, fetcher, now - HOUR, now, null);
+    assertValues(metrics, now - HOUR, now);
+    assertEquals(1, fetcher.fetches.size());
+    assertEquals(1, cache.getMisses());
+
+    // the dashboard refreshes a minute later
+    long startTime = now - HOUR + 60000;
+    long endTime = now + 60000;
+    metrics = query(cache, fetcher, startTime, endTime, null);
+    assertValues(metrics, startTime, endTime);
+    assertEquals(2, fetcher.fetches.size());
+    assertEquals(1, cache.getPartialHits());
+
+    // the values before the refresh window are taken from the cache
+    long[] fetch = fetcher.fetches.get(1);
+    assertTrue(fetch[0] > startTime);
+    assertTrue(fetch[0] < now);
+    assertEquals(endTime, fetch[1]);
+    assertTrue(cache.getSavedScanRatio() > 0);
+  }
+
+  @Test
+  public void testQueriesAreNormalized() throws Exception {
+    TimelineMetricQueryCache cache = new TimelineMetricQueryCache(10, 120000, HOUR);
+    RecordingFetcher fetcher = new RecordingFetcher();
+    long now = align(System.currentTimeMillis());
+
+    cache.getTimelineMetrics(Arrays.asList("m1", "m2"), Arrays.asList("h1", "h2"),
+      "app", null, now - HOUR, now, null, true, fetcher);
+    cache.getTimelineMetrics(Arrays.asList("m2", "m1"), Arrays.asList("h2", "h1"),
+      "app", null, now - HOUR + STEP, now, Precision.SECONDS, true, fetcher);
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getPartialHits());
+
+    // another table
+    cache.getTimelineMetrics(Arrays.asList("m1", "m2"), Arrays.asList("h1", "h2"),
+      "app", null, now - HOUR, now, Precision.MINUTES, true, fetcher);
+    assertEquals(2, cache.size());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void testReturnedMetricsAreNotShared() throws Exception {
+    TimelineMetricQueryCache cache = new TimelineMetricQueryCache(10, 120000, HOUR);
+    RecordingFetcher fetcher = new RecordingFetcher();
+    long now = align(System.currentTimeMillis());
+
+    TimelineMetrics metrics = query(cache, fetcher, now - HOUR, now, null);
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      metric.getMetricSeries().clear();
+    }
+
+    metrics = query(cache, fetcher, now - HOUR, now, null);
+    assertValues(metrics, now - HOUR, now);
+  }
+
+  @Test
+  public void testExpiredAndEvictedEntriesAreScanned() throws Exception {
+    RecordingFetcher fetcher = new RecordingFetcher();
+    long now = align(System.currentTimeMillis());
+
+    TimelineMetricQueryCache expiring = new TimelineMetricQueryCache(10, 120000, -1);
+    query(expiring, fetcher, now - HOUR, now, null);
+    query(expiring, fetcher, now - HOUR, now, null);
+    assertEquals(2, expiring.getMisses());
+
+    TimelineMetricQueryCache small = new TimelineMetricQueryCache(1, 120000, HOUR);
+    query(small, fetcher, now - HOUR, now, Precision.SECONDS);
+    query(small, fetcher, now - HOUR, now, Precision.MINUTES);
+    query(small, fetcher, now - HOUR, now, Precision.SECONDS);
+    assertEquals(1, small.size());
+    assertEquals(3, small.getMisses());
+  }
+
+  @Test
+  public void testRefreshWindowCoversAggregatorCutOff() throws Exception {
+    Map<Precision, Long> refreshWindows =
+      new TimelineMetricConfiguration().getTimelineMetricsQueryCacheRefreshWindows();
+    // cluster second aggregator: 120 s interval, cut-off multiplier 2
+    assertEquals(Long.valueOf(360000), refreshWindows.get(Precision.SECONDS));
+    // host minute aggregator: 300 s interval, cut-off multiplier 3
+    assertEquals(Long.valueOf(1020000), refreshWindows.get(Precision.MINUTES));
+
+    TimelineMetricQueryCache cache = new TimelineMetricQueryCache(10, refreshWindows, 4 * HOUR);
+    RecordingFetcher fetcher = new RecordingFetcher();
+    long now = align(System.currentTimeMillis());
+
+    query(cache, fetcher, now - 3 * HOUR, now, Precision.MINUTES);
+    query(cache, fetcher, now - 3 * HOUR, now, Precision.MINUTES);
+    assertEquals(1, cache.getPartialHits());
+    long[] fetch = fetcher.fetches.get(1);
+    assertTrue(fetch[0] <= System.currentTimeMillis() - 1020000);
+  }
+
+  private static TimelineMetrics query(TimelineMetricQueryCache cache,
+      RecordingFetcher fetcher, long startTime, long endTime,
+      Precision precision) throws Exception {
+    return cache.getTimelineMetrics(Collections.singletonList("m1"),
+      Collections.singletonList("h1"), "app", null, startTime, endTime,
+      precision, true, fetcher);
+  }
+
+  private static long align(long time) {
+    return time - time % STEP;
+  }
+
+  private static void assertValues(TimelineMetrics metrics, long startTime,
+                                   long endTime) {
+    assertEquals(1, metrics.getMetrics().size());
+    TimelineMetricSeries series = metrics.getMetrics().get(0).getMetricSeries();
+    assertEquals((endTime - startTime) / STEP + 1, series.size());
+    for (int i = 0; i < series.size(); i++) {
+      assertEquals(startTime + i * STEP, series.getTimestamp(i));
+      assertEquals(series.getTimestamp(i), series.getValue(i), 0);
+    }
+  }
+
+  /**
+   * Returns a value of m1 on h1 every STEP millis, the value is the
+   * timestamp.
+   */
+  private static class RecordingFetcher
+      implements TimelineMetricQueryCache.MetricsFetcher {
+
+    private final List<long[]> fetches = new ArrayList<long[]>();
+
+    @Override
+    public TimelineMetrics fetch(long startTime, long endTime,
+                                 Precision precision) {
+      fetches.add(new long[] { startTime, endTime });
+
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("m1");
+      metric.setHostName("h1");
+      metric.setAppId("app");
+      long first = startTime % STEP == 0 ? startTime : align(startTime) + STEP;
+      metric.setStartTime(first);
+      TimelineMetricSeries series = new TimelineMetricSeries();
+      for (long timestamp = first; timestamp <= endTime; timestamp += STEP) {
+        series.append(timestamp, timestamp);
+      }
+      metric.setMetricSeries(series);
+
+      TimelineMetrics metrics = new TimelineMetrics();
+      metrics.getMetrics().add(metric);
+      return metrics;
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.ConnectionProvider;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestTimelineMetricWriteBuffer {
+
+  private TimelineMetricWriteBuffer writeBuffer;
+
+  @After
+  public void tearDown() throws Exception {
+    if (writeBuffer != null) {
+      writeBuffer.stop(1000);
+    }
+  }
+
+  @Test
+  public void testMetricsAreWrittenInBatches() throws Exception {
+    RecordingAccessor accessor = new RecordingAccessor();
+    writeBuffer = new TimelineMetricWriteBuffer(accessor, 1000, 1, 50, 10, 10);
+
+    // hold the writer back while the buffer fills up to get full batches
+    writeBuffer.start();
+    accessor.block();
+    for (int i = 0; i < 20; i++) {
+      assertTrue(writeBuffer.offer(createMetrics(10)));
+    }
+    accessor.unblock();
+
+    waitForFlush(200);
+    assertEquals(200, accessor.getWrittenMetrics());
+    assertTrue(accessor.getMaxBatchSize() > 10);
+    assertTrue(accessor.getMaxBatchSize() <= 50);
+    assertEquals(0, writeBuffer.getDepth());
+    assertEquals(0, writeBuffer.getDroppedMetrics());
+  }
+
+  @Test
+  public void testRejectWhenFull() throws Exception {
+    RecordingAccessor accessor = new RecordingAccessor();
+    writeBuffer = new TimelineMetricWriteBuffer(accessor, 25, 1, 10, 10, 10);
+    writeBuffer.start();
+    accessor.block();
+
+    // the first metric is held by the blocked writer, the rest stays buffered
+    assertTrue(writeBuffer.offer(createMetrics(1)));
+    accessor.awaitWrite();
+    assertTrue(writeBuffer.offer(createMetrics(10)));
+    assertTrue(writeBuffer.offer(createMetrics(10)));
+
+    // all or nothing
+    assertFalse(writeBuffer.offer(createMetrics(10)));
+    assertEquals(20, writeBuffer.getDepth());
+    assertEquals(10, writeBuffer.getDroppedMetrics());
+
+    accessor.unblock();
+    waitForFlush(21);
+    assertEquals(21, accessor.getWrittenMetrics());
+    assertTrue(writeBuffer.offer(createMetrics(10)));
+  }
+
+  @Test
+  public void testCapacityIsHeldUntilWritten() throws Exception {
+    RecordingAccessor accessor = new RecordingAccessor();
+    writeBuffer = new TimelineMetricWriteBuffer(accessor, 10, 1, 10, 10, 10);
+    writeBuffer.start();
+    accessor.block();
+
+    // the writer took the metrics out of the buffer but has not written them
+    assertTrue(writeBuffer.offer(createMetrics(10)));
+    accessor.awaitWrite();
+    assertFalse(writeBuffer.offer(createMetrics(1)));
+
+    accessor.unblock();
+    waitForFlush(10);
+    assertTrue(writeBuffer.offer(createMetrics(10)));
+  }
+
+  @Test
+  public void testRetryFailedWrites() throws Exception {
+    RecordingAccessor accessor = new RecordingAccessor();
+    accessor.failures.set(3);
+    writeBuffer = new TimelineMetricWriteBuffer(accessor, 100, 2, 10, 10, 10);
+    writeBuffer.start();
+
+    assertTrue(writeBuffer.offer(createMetrics(10)));
+
+    waitForFlush(10);
+    assertEquals(10, accessor.getWrittenMetrics());
+    assertEquals(3, writeBuffer.getFailedFlushCount());
+    assertEquals(0, writeBuffer.getDroppedMetrics());
+  }
+
+  @Test
+  public void testStopFlushesBufferedMetrics() throws Exception {
+    RecordingAccessor accessor = new RecordingAccessor();
+    writeBuffer = new TimelineMetricWriteBuffer(accessor, 100, 1, 10, 10, 10);
+    writeBuffer.start();
+    accessor.block();
+    assertTrue(writeBuffer.offer(createMetrics(1)));
+    accessor.awaitWrite();
+    assertTrue(writeBuffer.offer(createMetrics(20)));
+    accessor.unblock();
+
+    writeBuffer.stop(10000);
+
+    assertEquals(21, accessor.getWrittenMetrics());
+    assertFalse(writeBuffer.offer(createMetrics(1)));
+  }
+
+  @Test
+  public void testMetricsOfferedDuringStopAreWritten() throws Exception {
+    RecordingAccessor accessor = new RecordingAccessor();
+    writeBuffer = new TimelineMetricWriteBuffer(accessor, 1000, 2, 10, 10, 10);
+    writeBuffer.start();
+
+    // offer until the buffer stops accepting, racing with stop()
+    List<Thread> senders = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      Thread sender = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          while (writeBuffer.isRunning()) {
+            writeBuffer.offer(createMetrics(1));
+          }
+        }
+      });
+      sender.start();
+      senders.add(sender);
+    }
+    Thread.sleep(50);
+    writeBuffer.stop(10000);
+    for (Thread sender : senders) {
+      sender.join(10000);
+    }
+
+    assertTrue(writeBuffer.getAcceptedMetrics() > 0);
+    assertEquals(writeBuffer.getAcceptedMetrics(), accessor.getWrittenMetrics());
+  }
+
+  private void waitForFlush(long metrics) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (writeBuffer.getFlushedMetrics() < metrics
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(metrics, writeBuffer.getFlushedMetrics());
+  }
+
+  private static TimelineMetrics createMetrics(int count) {
+    long now = System.currentTimeMillis();
+    List<TimelineMetric> metricList = new ArrayList<TimelineMetric>(count);
+    for (int i = 0; i < count; i++) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("metric" + i);
+      metric.setHostName("host1");
+      metric.setAppId("app1");
+      metric.setStartTime(now);
+      metric.getMetricValues().put(now, (double) i);
+      metricList.add(metric);
+    }
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(metricList);
+    return metrics;
+  }
+
+  /**
+   * Records the writes instead of going to HBase. Writes can be held back
+   * to simulate a slow store, and made to fail.
+   */
+  private static class RecordingAccessor extends PhoenixHBaseAccessor {
+    private final List<Integer> batchSizes =
+      Collections.synchronizedList(new ArrayList<Integer>());
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private final CountDownLatch writeStarted = new CountDownLatch(1);
+
+    RecordingAccessor() {
+      super(new Configuration(), new Configuration(), new ConnectionProvider() {
+        @Override
+        public Connection getConnection() throws SQLException {
+          return null;
+        }
+      });
+    }
+
+    void block() {
+      gate = new CountDownLatch(1);
+    }
+
+    void unblock() {
+      gate.countDown();
+    }
+
+    void awaitWrite() throws InterruptedException {
+      assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+    }
+
+    int getWrittenMetrics() {
+      int written = 0;
+      synchronized (batchSizes) {
+        for (Integer batchSize : batchSizes) {
+          written += batchSize;
+        }
+      }
+      return written;
+    }
+
+    int getMaxBatchSize() {
+      synchronized (batchSizes) {
+        return Collections.max(batchSizes);
+      }
+    }
+
+    @Override
+    public void insertMetricRecords(TimelineMetrics metrics) throws SQLException, IOException {
+      writeStarted.countDown();
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (failures.getAndDecrement() > 0) {
+        throw new SQLException("Simulated failure");
+      }
+      batchSizes.add(metrics.getMetrics().size());
+    }
+  }
+}
@@ -49,7 +49,7 @@ public class TimelineMetricStoreWatcherTest {
   public void testRunPositive() throws Exception {
     TimelineMetricStore metricStore = createNiceMock(TimelineMetricStore.class);
 
-    expect(metricStore.putMetrics(anyObject(TimelineMetrics.class)))
+    expect(metricStore.putMetricsSynchronously(anyObject(TimelineMetrics.class)))
       .andReturn(new TimelinePutResponse());
 
     // metric found
@@ -76,7 +76,7 @@ public class TimelineMetricStoreWatcherTest {
   public void testRunNegative() throws Exception {
     TimelineMetricStore metricStore = createNiceMock(TimelineMetricStore.class);
 
-    expect(metricStore.putMetrics(anyObject(TimelineMetrics.class)))
+    expect(metricStore.putMetricsSynchronously(anyObject(TimelineMetrics.class)))
       .andReturn(new TimelinePutResponse());
 
     // no metrics found
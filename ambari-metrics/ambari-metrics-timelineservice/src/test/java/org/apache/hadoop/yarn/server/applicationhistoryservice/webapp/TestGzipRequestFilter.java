@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.applicationhistoryservice.webapp;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TestGzipRequestFilter {
+
+  @Test
+  public void testDecompressesGzipBody() throws Exception {
+    byte[] body = "{\"metrics\":[]}".getBytes("UTF-8");
+    HttpServletRequest wrapped = filter(gzipRequest(body), null);
+
+    Assert.assertNull(wrapped.getHeader(GzipRequestFilter.CONTENT_ENCODING));
+    Assert.assertEquals(-1, wrapped.getContentLength());
+    Assert.assertArrayEquals(body, readFully(wrapped.getInputStream()));
+  }
+
+  @Test
+  public void testPassesPlainBody() throws Exception {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    FilterChain chain = mock(FilterChain.class);
+    ServletResponse response = mock(ServletResponse.class);
+
+    new GzipRequestFilter().doFilter(request, response, chain);
+    verify(chain).doFilter(request, response);
+  }
+
+  @Test
+  public void testInflatedSizeIsLimited() throws Exception {
+    byte[] body = new byte[1024 * 1024];
+    Arrays.fill(body, (byte) 'a');
+    HttpServletRequest wrapped = filter(gzipRequest(body), "1000");
+
+    try {
+      readFully(wrapped.getInputStream());
+      Assert.fail("Body inflated past the limit should not be read");
+    } catch (IOException expected) {
+    }
+  }
+
+  private HttpServletRequest filter(HttpServletRequest request,
+                                    String maxInflatedBytes) throws Exception {
+    FilterConfig config = mock(FilterConfig.class);
+    when(config.getInitParameter(GzipRequestFilter.MAX_INFLATED_BYTES_PARAM))
+      .thenReturn(maxInflatedBytes);
+    FilterChain chain = mock(FilterChain.class);
+    ServletResponse response = mock(ServletResponse.class);
+
+    GzipRequestFilter filter = new GzipRequestFilter();
+    filter.init(config);
+    filter.doFilter(request, response, chain);
+
+    ArgumentCaptor<ServletRequest> captor = ArgumentCaptor.forClass(ServletRequest.class);
+    verify(chain).doFilter(captor.capture(), eq(response));
+    return (HttpServletRequest) captor.getValue();
+  }
+
+  private HttpServletRequest gzipRequest(byte[] body) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+    gzip.write(body);
+    gzip.close();
+    final InputStream in = new ByteArrayInputStream(compressed.toByteArray());
+
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader(GzipRequestFilter.CONTENT_ENCODING))
+      .thenReturn(GzipRequestFilter.GZIP);
+    when(request.getInputStream()).thenReturn(new ServletInputStream() {
+      @Override
+      public int read() throws IOException {
+        return in.read();
+      }
+    });
+    return request;
+  }
+
+  private byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
@@ -143,6 +143,7 @@ public class ActionManager {
 
     List<CommandReport> reportsToProcess = new ArrayList<CommandReport>();
     Iterator<HostRoleCommand> commandIterator = commands.iterator();
+    boolean taskCompleted = false;
     //persist the action response into the db.
     for (CommandReport report : reports) {
       HostRoleCommand command = commandIterator.next();
@@ -162,9 +163,17 @@ public class ActionManager {
         continue;
       }
       reportsToProcess.add(report);
+      if (!HostRoleStatus.IN_PROGRESS.name().equals(report.getStatus())) {
+        taskCompleted = true;
+      }
     }
 
     db.updateHostRoleStates(reportsToProcess);
+
+    // let the next stage start without waiting for the scheduler to poll
+    if (taskCompleted) {
+      scheduler.awake();
+    }
   }
 
   /**
@@ -183,10 +192,9 @@ public class ActionManager {
   }
 
   public void handleLostHost(String host) {
-    //Do nothing, the task will timeout anyway.
-    //The actions can be failed faster as an optimization
-    //if action timeout happens to be much larger than
-    //heartbeat timeout.
+    //The tasks of the host are timed out by the scheduler without
+    //waiting for the action timeout, wake it up to do so.
+    scheduler.awake();
   }
 
   public long getNextRequestId() {
@@ -250,6 +258,15 @@ public class ActionManager {
 
   public void resubmitTasks(List<Long> taskIds) {
     db.resubmitTasks(taskIds);
+    scheduler.awake();
+  }
+
+  /**
+   * Wake up the scheduler after task states were changed outside of it,
+   * for example when a stage is resumed or retried by the user.
+   */
+  public void awakeScheduler() {
+    scheduler.awake();
   }
 
 }
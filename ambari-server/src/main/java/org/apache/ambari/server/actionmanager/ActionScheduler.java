@@ -73,8 +73,15 @@ import com.google.inject.persist.UnitOfWork;
 
 /**
  * This class encapsulates the action scheduler thread.
- * Action schedule frequently looks at action database and determines if
+ * Action schedule looks at action database and determines if
  * there is an action that can be scheduled.
+ * <p/>
+ * A pass over all in progress stages is made when something happened that
+ * may let the requests make progress: a request was submitted or cancelled,
+ * a task completed, a host was lost, or the previous pass changed the state
+ * of a request itself. Otherwise the scheduler only wakes up when the
+ * earliest task timeout is due, and periodically to reconcile with the
+ * database in case an event was missed.
  */
 class ActionScheduler implements Runnable {
 
@@ -122,6 +129,36 @@ class ActionScheduler implements Runnable {
    * we receive awake() request during running a scheduler iteration.
    */
   private boolean activeAwakeRequest = false;
+
+  /**
+   * The longest time between two passes over the in progress stages, see
+   * {@link Configuration#getExecutionSchedulerReconciliationInterval()}.
+   */
+  private final long reconciliationInterval;
+
+  /**
+   * The time of the last pass over the in progress stages.
+   */
+  private long lastPassTime = 0L;
+
+  /**
+   * The earliest time at which a queued or in progress task of the last pass
+   * may time out.
+   */
+  private long nextTimeoutTime = Long.MAX_VALUE;
+
+  /**
+   * Set when a pass changed the state of tasks or requests, in which case
+   * another pass is made right away as other stages may be able to proceed.
+   */
+  private boolean stateChanged = true;
+
+  /**
+   * Whether requests are exclusive, which never changes once a request is
+   * persisted. Key - request id.
+   */
+  private Cache<Long, Boolean> requestExclusiveCache;
+
   //Cache for clusterHostinfo, key - stageId-requestId
   private Cache<String, Map<String, Set<String>>> clusterHostInfoCache;
   private Cache<String, Map<String, String>> commandParamsStageCache;
@@ -140,7 +177,12 @@ class ActionScheduler implements Runnable {
     clusters = fsmObject;
     this.ambariEventPublisher = ambariEventPublisher;
     this.maxAttempts = (short) maxAttempts;
-    serverActionExecutor = new ServerActionExecutor(db, sleepTimeMilliSec);
+    serverActionExecutor = new ServerActionExecutor(db, sleepTimeMilliSec, new Runnable() {
+      @Override
+      public void run() {
+        awake();
+      }
+    });
     this.unitOfWork = unitOfWork;
     clusterHostInfoCache = CacheBuilder.newBuilder().
         expireAfterAccess(5, TimeUnit.MINUTES).
@@ -151,7 +193,12 @@ class ActionScheduler implements Runnable {
     hostParamsStageCache = CacheBuilder.newBuilder().
       expireAfterAccess(5, TimeUnit.MINUTES).
       build();
+    requestExclusiveCache = CacheBuilder.newBuilder().
+      expireAfterAccess(5, TimeUnit.MINUTES).
+      build();
     this.configuration = configuration;
+    reconciliationInterval = Math.max(sleepTimeMilliSec,
+        configuration.getExecutionSchedulerReconciliationInterval());
   }
 
   public void start() {
@@ -174,8 +221,9 @@ class ActionScheduler implements Runnable {
 
   /**
    * Should be called from another thread when we want scheduler to
-   * make a run ASAP (for example, to process desired configs of SCHs).
-   * The method is guaranteed to return quickly.
+   * make a run ASAP (for example, to process desired configs of SCHs,
+   * or when a task has completed). The method is guaranteed to return
+   * quickly.
    */
   public void awake() {
     synchronized (wakeupSyncObject) {
@@ -188,27 +236,50 @@ class ActionScheduler implements Runnable {
   public void run() {
     while (shouldRun) {
       try {
+        boolean awakened;
         synchronized (wakeupSyncObject) {
           if (!activeAwakeRequest) {
               wakeupSyncObject.wait(sleepTime);
           }
+          awakened = activeAwakeRequest;
           activeAwakeRequest = false;
         }
-        doWork();
+        if (isPassNeeded(awakened, System.currentTimeMillis())) {
+          doWork();
+        }
       } catch (InterruptedException ex) {
         LOG.warn("Scheduler thread is interrupted going to stop", ex);
         shouldRun = false;
       } catch (Exception ex) {
         LOG.warn("Exception received", ex);
         requestsInProgress.clear();
+        stateChanged = true;
       } catch (Throwable t) {
         LOG.warn("ERROR", t);
         requestsInProgress.clear();
+        stateChanged = true;
       }
     }
   }
 
+  /**
+   * Determines whether the scheduler should make a pass over the in progress
+   * stages.
+   *
+   * @param awakened {@code true} if {@link #awake()} was called since the last pass
+   * @param now      the current time
+   * @return {@code true} if a pass is needed
+   */
+  boolean isPassNeeded(boolean awakened, long now) {
+    return awakened || stateChanged
+        || now >= nextTimeoutTime
+        || now - lastPassTime >= reconciliationInterval;
+  }
+
   public void doWork() throws AmbariException {
+    long passStartTime = System.currentTimeMillis();
+    stateChanged = false;
+    nextTimeoutTime = Long.MAX_VALUE;
     try {
       unitOfWork.begin();
 
@@ -262,9 +333,7 @@ class ActionScheduler implements Runnable {
         long requestId = stage.getRequestId();
         LOG.debug("==> STAGE_i = " + i_stage + "(requestId=" + requestId + ",StageId=" + stage.getStageId() + ")");
 
-        RequestEntity request = db.getRequestEntity(requestId);
-
-        if (request.isExclusive()) {
+        if (isExclusive(requestId)) {
           if (runningRequestIds.size() > 0 ) {
             // As a result, we will wait until any previous stages are finished
             LOG.debug("Stage requires exclusive execution, but other requests are already executing. Stopping for now");
@@ -282,6 +351,7 @@ class ActionScheduler implements Runnable {
           if (!requestsInProgress.contains(requestId)) {
             requestsInProgress.add(requestId);
             db.startRequest(requestId);
+            stateChanged = true;
           }
         }
 
@@ -303,7 +373,7 @@ class ActionScheduler implements Runnable {
           // only fail the request if the role failed and the stage is not
           // skippable
           if (stats.isRoleFailed() && !stage.isSkippable()) {
-            LOG.warn("{} failed, request {} will be aborted", role, request.getRequestId());
+            LOG.warn("{} failed, request {} will be aborted", role, requestId);
 
             failed = true;
             break;
@@ -373,6 +443,9 @@ class ActionScheduler implements Runnable {
 
         LOG.debug("==> Scheduling {} tasks...", commandsToUpdate.size());
         db.bulkHostRoleScheduled(stage, commandsToUpdate);
+        if (!commandsToUpdate.isEmpty()) {
+          stateChanged = true;
+        }
 
         if (commandsToAbort.size() > 0) { // Code branch may be a bit slow, but is extremely rarely used
           LOG.debug("==> Aborting {} tasks...", commandsToAbort.size());
@@ -412,11 +485,25 @@ class ActionScheduler implements Runnable {
       requestsInProgress.retainAll(runningRequestIds);
 
     } finally {
+      lastPassTime = passStartTime;
       LOG.debug("Scheduler finished work.");
       unitOfWork.end();
     }
   }
 
+  /**
+   * Gets whether the request must not run in parallel with other requests.
+   */
+  private boolean isExclusive(long requestId) {
+    Boolean exclusive = requestExclusiveCache.getIfPresent(requestId);
+    if (exclusive == null) {
+      RequestEntity request = db.getRequestEntity(requestId);
+      exclusive = request.isExclusive();
+      requestExclusiveCache.put(requestId, exclusive);
+    }
+    return exclusive;
+  }
+
   /**
    * Returns the list of hosts that have a task assigned
    *
@@ -689,6 +776,7 @@ class ActionScheduler implements Runnable {
             processActionDeath(cluster.getClusterName(), c.getHostname(), roleStr);
           }
           status = HostRoleStatus.ABORTED;
+          stateChanged = true;
         } else if (timeOutActionNeeded(status, s, hostObj, roleStr, now, commandTimeout)) {
           // Process command timeouts
           LOG.info("Host:" + host + ", role:" + roleStr + ", actionId:" + s.getActionId() + " timed out");
@@ -697,6 +785,7 @@ class ActionScheduler implements Runnable {
             db.timeoutHostRole(host, s.getRequestId(), s.getStageId(), c.getRole());
             //Reinitialize status
             status = s.getHostRoleStatus(host, roleStr);
+            stateChanged = true;
 
             if (null != cluster) {
               transitionToFailedState(cluster.getClusterName(), c.getServiceName(), roleStr, host, now, false);
@@ -717,6 +806,15 @@ class ActionScheduler implements Runnable {
           //Need to schedule first time
           commandsToSchedule.add(c);
           LOG.trace("===>commandsToSchedule(first_time)=" + commandsToSchedule.size());
+        } else if (status.equals(HostRoleStatus.QUEUED) || status.equals(HostRoleStatus.IN_PROGRESS)) {
+          // wake up when the command may time out; a deadline which has
+          // passed is held back by another command in progress on the host,
+          // whose completion or timeout will wake up the scheduler
+          String hostName = (null == hostObj) ? null : hostObj.getHostName();
+          long timeoutTime = s.getLastAttemptTime(hostName, roleStr) + commandTimeout;
+          if (timeoutTime > now) {
+            nextTimeoutTime = Math.min(nextTimeoutTime, timeoutTime);
+          }
         }
 
         updateRoleStats(status, roleStats.get(roleStr));
@@ -732,6 +830,7 @@ class ActionScheduler implements Runnable {
    */
   private void abortOperationsForStage(Stage stage) {
     long now = System.currentTimeMillis();
+    stateChanged = true;
 
     for (String hostName : stage.getHosts()) {
       List<ExecutionCommandWrapper> commandWrappers =
@@ -1012,6 +1111,9 @@ class ActionScheduler implements Runnable {
    * @param reason why the request is being cancelled
    */
   void cancelHostRoleCommands(Collection<HostRoleCommand> hostRoleCommands, String reason) {
+    if (!hostRoleCommands.isEmpty()) {
+      stateChanged = true;
+    }
     for (HostRoleCommand hostRoleCommand : hostRoleCommands) {
       if (hostRoleCommand.getStatus() == HostRoleStatus.QUEUED) {
         // Dequeue all tasks that have been already scheduled for sending to agent
@@ -18,14 +18,18 @@
 package org.apache.ambari.server.agent;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.ambari.server.agent.AgentCommand.AgentCommandType;
 import org.slf4j.Logger;
@@ -44,6 +48,12 @@ public class ActionQueue {
 
   HashSet<String> hostsWithPendingTask = new HashSet<String>();
 
+  /**
+   * The number of queued status commands which were replaced by a newer status
+   * command for the same component before the host picked them up.
+   */
+  private final AtomicLong supersededStatusCommandCount = new AtomicLong();
+
   public ActionQueue() {
     hostQueues = new ConcurrentHashMap<String, Queue<AgentCommand>>();
   }
@@ -70,6 +80,13 @@ public class ActionQueue {
       //otherwise we got existing queue (and put nothing!)
     }
 
+    // status commands are generated for every component on every heartbeat
+    // monitor pass; while the host does not pick them up only the latest
+    // one of each component is kept instead of letting them pile up
+    if (cmd instanceof StatusCommand) {
+      removeSupersededStatusCommands(q, (StatusCommand) cmd);
+    }
+
     q.add(cmd);
   }
 
@@ -180,6 +197,83 @@ public class ActionQueue {
     return l;
   }
 
+  /**
+   * Gets the number of commands queued for all hosts.
+   *
+   * @return the number of queued commands
+   */
+  public int getTotalSize() {
+    int size = 0;
+    for (Queue<AgentCommand> q : hostQueues.values()) {
+      size += q.size();
+    }
+    return size;
+  }
+
+  /**
+   * Gets the number of commands queued per host, for the hosts which have
+   * queued commands.
+   *
+   * @return the number of queued commands by host name
+   */
+  public Map<String, Integer> getSizes() {
+    Map<String, Integer> sizes = new HashMap<String, Integer>();
+    for (Map.Entry<String, Queue<AgentCommand>> entry : hostQueues.entrySet()) {
+      int size = entry.getValue().size();
+      if (size > 0) {
+        sizes.put(entry.getKey(), size);
+      }
+    }
+    return sizes;
+  }
+
+  /**
+   * Gets the estimated heap size of the configurations and parameters of the
+   * commands queued for the given host. The size is calculated when requested,
+   * so this should not be invoked on every heartbeat.
+   *
+   * @param hostname
+   *          the host
+   * @return the estimated size in bytes
+   */
+  public long getEstimatedSize(String hostname) {
+    Queue<AgentCommand> q = getQueue(hostname);
+    if (q == null) {
+      return 0;
+    }
+
+    long size = 0;
+    for (AgentCommand command : q) {
+      size += estimateSize(command);
+    }
+    return size;
+  }
+
+  /**
+   * Gets the estimated heap size of the configurations and parameters of the
+   * commands queued for all hosts.
+   *
+   * @return the estimated size in bytes
+   * @see #getEstimatedSize(String)
+   */
+  public long getTotalEstimatedSize() {
+    long size = 0;
+    for (String hostname : hostQueues.keySet()) {
+      size += getEstimatedSize(hostname);
+    }
+    return size;
+  }
+
+  /**
+   * Gets the number of status commands which were dropped because a newer
+   * status command for the same component was queued.
+   *
+   * @return the number of superseded status commands
+   */
+  public long getSupersededStatusCommandCount() {
+    return supersededStatusCommandCount.get();
+  }
+
   /**
    * Update the cache of hosts that have pending tasks
    *
@@ -206,4 +300,80 @@ public class ActionQueue {
 
     return false;
   }
+
+  /**
+   * Removes the queued status commands for the same component as the given
+   * command. Status commands which don't identify their component are kept.
+   *
+   * @param q
+   *          the queue of the host
+   * @param cmd
+   *          the status command to be queued
+   */
+  private void removeSupersededStatusCommands(Queue<AgentCommand> q, StatusCommand cmd) {
+    if (null == cmd.getClusterName() || null == cmd.getServiceName()
+        || null == cmd.getComponentName()) {
+      return;
+    }
+
+    for (Iterator<AgentCommand> it = q.iterator(); it.hasNext();) {
+      AgentCommand queued = it.next();
+      if (queued instanceof StatusCommand) {
+        StatusCommand status = (StatusCommand) queued;
+        if (cmd.getClusterName().equals(status.getClusterName())
+            && cmd.getServiceName().equals(status.getServiceName())
+            && cmd.getComponentName().equals(status.getComponentName())) {
+          it.remove();
+          supersededStatusCommandCount.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * Estimates the heap size of the configurations and parameters carried by
+   * the command, which make up nearly all of its size.
+   */
+  private static long estimateSize(AgentCommand command) {
+    long size = 0;
+    if (command instanceof ExecutionCommand) {
+      ExecutionCommand ec = (ExecutionCommand) command;
+      size += estimateSize(ec.getConfigurations());
+      size += estimateSize(ec.getConfigurationAttributes());
+      size += estimateSize(ec.getClusterHostInfo());
+      size += estimateSize(ec.getCommandParams());
+      size += estimateSize(ec.getHostLevelParams());
+      size += estimateSize(ec.getRoleParams());
+    } else if (command instanceof StatusCommand) {
+      StatusCommand sc = (StatusCommand) command;
+      size += estimateSize(sc.getConfigurations());
+      size += estimateSize(sc.getConfigurationAttributes());
+      size += estimateSize(sc.getCommandParams());
+      size += estimateSize(sc.getHostLevelParams());
+    }
+    return size;
+  }
+
+  /**
+   * Estimates the heap size of the strings in the given maps and collections,
+   * two bytes per character.
+   */
+  private static long estimateSize(Object value) {
+    if (value instanceof String) {
+      return 2L * ((String) value).length();
+    }
+
+    long size = 0;
+    if (value instanceof Map) {
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        size += estimateSize(entry.getKey());
+        size += estimateSize(entry.getValue());
+      }
+    } else if (value instanceof Collection) {
+      for (Object item : (Collection<?>) value) {
+        size += estimateSize(item);
+      }
+    }
+    return size;
+  }
 }
@@ -44,6 +44,38 @@ public class ExecutionCommand extends AgentCommand {
     super(AgentCommandType.EXECUTION_COMMAND);
   }
 
+  /**
+   * Shallow copy constructor, the maps of the command are shared with the
+   * copy.
+   */
+  public ExecutionCommand(ExecutionCommand command) {
+    super(command.getCommandType());
+    clusterName = command.clusterName;
+    requestId = command.requestId;
+    stageId = command.stageId;
+    taskId = command.taskId;
+    commandId = command.commandId;
+    hostname = command.hostname;
+    role = command.role;
+    hostLevelParams = command.hostLevelParams;
+    roleParams = command.roleParams;
+    roleCommand = command.roleCommand;
+    clusterHostInfo = command.clusterHostInfo;
+    configurations = command.configurations;
+    configurationAttributes = command.configurationAttributes;
+    configurationTags = command.configurationTags;
+    configurationsHash = command.configurationsHash;
+    clusterHostInfoHash = command.clusterHostInfoHash;
+    forceRefreshConfigTags = command.forceRefreshConfigTags;
+    forceRefreshConfigTagsBeforeExecution = command.forceRefreshConfigTagsBeforeExecution;
+    commandParams = command.commandParams;
+    serviceName = command.serviceName;
+    serviceType = command.serviceType;
+    componentName = command.componentName;
+    kerberosCommandParams = command.kerberosCommandParams;
+    localComponents = command.localComponents;
+  }
+
   @SerializedName("clusterName")
   private String clusterName;
 
@@ -87,6 +119,21 @@ public class ExecutionCommand extends AgentCommand {
   @SerializedName("configurationTags")
   private Map<String, Map<String, String>> configurationTags;
 
+  /**
+   * Hash of the configurations and configuration attributes. Set when the
+   * command is sent to an agent, which caches the snapshot by this hash; if
+   * the agent already has the snapshot, the configurations are left out of
+   * the command.
+   */
+  @SerializedName("configurationsHash")
+  private String configurationsHash;
+
+  /**
+   * Hash of the cluster host info, see {@link #configurationsHash}.
+   */
+  @SerializedName("clusterHostInfoHash")
+  private String clusterHostInfoHash;
+
   @SerializedName("forceRefreshConfigTags")
   private Set<String> forceRefreshConfigTags = new HashSet<String>();
 
@@ -315,6 +362,22 @@ public class ExecutionCommand extends AgentCommand {
     return configurationTags;
   }
 
+  public String getConfigurationsHash() {
+    return configurationsHash;
+  }
+
+  public void setConfigurationsHash(String configurationsHash) {
+    this.configurationsHash = configurationsHash;
+  }
+
+  public String getClusterHostInfoHash() {
+    return clusterHostInfoHash;
+  }
+
+  public void setClusterHostInfoHash(String clusterHostInfoHash) {
+    this.clusterHostInfoHash = clusterHostInfoHash;
+  }
+
   /**
    * Returns  parameters for kerberos commands
    * @return  parameters for kerberos commands
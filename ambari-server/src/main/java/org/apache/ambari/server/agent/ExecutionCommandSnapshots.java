@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.inject.Singleton;
+
+/**
+ * The {@link ExecutionCommandSnapshots} class keeps track of the
+ * configuration and cluster host info snapshots which were sent to each agent.
+ * <p/>
+ * Execution commands carry the complete, expanded configurations of the
+ * cluster and the cluster host info, which are the same for nearly all of the
+ * commands sent to a host during a request. A snapshot is identified by the
+ * hash of its content; the first command which uses a snapshot carries it in
+ * full along with the hash, and the agent caches it. Later commands only carry
+ * the hash and the agent fills in the snapshot before running the command.
+ * <p/>
+ * The agent caches the {@value #AGENT_CACHE_SIZE} most recently used
+ * snapshots while the server assumes it has the {@value #MAX_SNAPSHOTS_PER_HOST}
+ * most recently used ones, so that the server never references a snapshot
+ * which the agent has evicted. The snapshots of a host are forgotten when it
+ * registers, since the agent starts with an empty cache.
+ */
+@Singleton
+public class ExecutionCommandSnapshots {
+
+  private final static Logger LOG = LoggerFactory.getLogger(ExecutionCommandSnapshots.class);
+
+  /**
+   * The number of snapshots cached by the agent, see CommandSnapshotCache.py.
+   */
+  static final int AGENT_CACHE_SIZE = 32;
+
+  /**
+   * The number of snapshots assumed to be cached by an agent.
+   */
+  static final int MAX_SNAPSHOTS_PER_HOST = AGENT_CACHE_SIZE / 2;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * Sorted maps serialize in a stable order, which makes equal content hash
+   * to the same value.
+   */
+  private final Gson gson = new GsonBuilder().serializeNulls().create();
+
+  /**
+   * The hashes of the snapshots which each host has cached, in least recently
+   * used order.
+   */
+  private final ConcurrentMap<String, Map<String, Boolean>> hostSnapshots =
+      new ConcurrentHashMap<String, Map<String, Boolean>>();
+
+  /**
+   * Gets the command to send to the specified host. The hashes of the
+   * configurations and cluster host info are set on the returned command, and
+   * the snapshots which the host already has are left out of it.
+   * <p/>
+   * The command itself is not changed since it is still referenced by its
+   * stage and may be sent again; a copy is returned instead.
+   *
+   * @param hostname
+   *          the host which the command is sent to
+   * @param command
+   *          the command to send
+   * @return the command to put in the heartbeat response
+   */
+  public ExecutionCommand prepare(String hostname, ExecutionCommand command) {
+    ExecutionCommand prepared = new ExecutionCommand(command);
+
+    Map<String, Map<String, String>> configurations = command.getConfigurations();
+    if (configurations != null && !configurations.isEmpty()) {
+      List<Object> snapshot = new ArrayList<Object>(2);
+      snapshot.add(configurations);
+      snapshot.add(command.getConfigurationAttributes());
+
+      String hash = hash(snapshot);
+      prepared.setConfigurationsHash(hash);
+      if (!markSent(hostname, hash)) {
+        prepared.setConfigurations(null);
+        prepared.setConfigurationAttributes(null);
+      }
+    }
+
+    Map<String, ? extends Collection<String>> clusterHostInfo = command.getClusterHostInfo();
+    if (clusterHostInfo != null && !clusterHostInfo.isEmpty()) {
+      String hash = hash(clusterHostInfo);
+      prepared.setClusterHostInfoHash(hash);
+      if (!markSent(hostname, hash)) {
+        prepared.setClusterHostInfo(null);
+      }
+    }
+
+    return prepared;
+  }
+
+  /**
+   * Forgets the snapshots sent to the specified host. Invoked when the agent
+   * registers since it no longer has any snapshots cached.
+   *
+   * @param hostname
+   *          the host
+   */
+  public void invalidate(String hostname) {
+    hostSnapshots.remove(hostname);
+  }
+
+  /**
+   * Marks the snapshot as the most recently used one of the host.
+   *
+   * @return {@code true} if the snapshot has to be sent, {@code false} if the
+   *         host already has it
+   */
+  boolean markSent(String hostname, String hash) {
+    Map<String, Boolean> snapshots = hostSnapshots.get(hostname);
+    if (null == snapshots) {
+      snapshots = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(
+          MAX_SNAPSHOTS_PER_HOST, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+          return size() > MAX_SNAPSHOTS_PER_HOST;
+        }
+      });
+
+      Map<String, Boolean> existing = hostSnapshots.putIfAbsent(hostname, snapshots);
+      if (null != existing) {
+        snapshots = existing;
+      }
+    }
+
+    return null == snapshots.put(hash, Boolean.TRUE);
+  }
+
+  /**
+   * Gets the SHA-256 hash of the canonical JSON representation of the
+   * snapshot.
+   */
+  String hash(Object snapshot) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(gson.toJson(canonical(snapshot)).getBytes(UTF_8));
+      return Hex.encodeHexString(digest.digest());
+    } catch (NoSuchAlgorithmException nsae) {
+      // every JVM supports SHA-256
+      LOG.error("Unable to calculate the hash of an execution command snapshot", nsae);
+      throw new IllegalStateException(nsae);
+    }
+  }
+
+  /**
+   * Copies maps into sorted maps and unordered sets into sorted lists,
+   * recursively. Lists and ordered sets keep their order, since it is sent to
+   * the agent; the role host ranges of the cluster host info index into the
+   * order of all_hosts.
+   */
+  @SuppressWarnings("unchecked")
+  private static Object canonical(Object value) {
+    if (value instanceof Map) {
+      Map<String, Object> sorted = new TreeMap<String, Object>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        sorted.put(String.valueOf(entry.getKey()), canonical(entry.getValue()));
+      }
+      return sorted;
+    }
+
+    if (value instanceof List || value instanceof LinkedHashSet
+        || value instanceof SortedSet) {
+      List<Object> list = new ArrayList<Object>(((Collection<?>) value).size());
+      for (Object item : (Collection<?>) value) {
+        list.add(canonical(item));
+      }
+      return list;
+    }
+
+    if (value instanceof Collection) {
+      List<String> sorted = new ArrayList<String>(((Collection<?>) value).size());
+      for (Object item : (Collection<?>) value) {
+        sorted.add(String.valueOf(item));
+      }
+      Collections.sort(sorted);
+      return sorted;
+    }
+
+    return value;
+  }
+}
@@ -126,6 +126,7 @@ public class HeartBeatHandler {
   private final ActionQueue actionQueue;
   private final ActionManager actionManager;
   private HeartbeatMonitor heartbeatMonitor;
+  private HeartbeatProcessor heartbeatProcessor;
 
   @Inject
   private Injector injector;
@@ -176,6 +177,13 @@ public class HeartBeatHandler {
   @Inject
   private KerberosIdentityDataFileReaderFactory kerberosIdentityDataFileReaderFactory;
 
+  /**
+   * Tracks the configuration snapshots which agents have cached, so that
+   * execution commands only carry them once.
+   */
+  @Inject
+  private ExecutionCommandSnapshots executionCommandSnapshots;
+
   private Map<String, Long> hostResponseIds = new ConcurrentHashMap<String, Long>();
 
   private Map<String, HeartBeatResponse> hostResponses = new ConcurrentHashMap<String, HeartBeatResponse>();
@@ -188,16 +196,30 @@ public class HeartBeatHandler {
     actionManager = am;
     heartbeatMonitor = new HeartbeatMonitor(fsm, aq, am, 60000, injector);
     injector.injectMembers(this);
+    heartbeatProcessor = new HeartbeatProcessor(this, fsm,
+        config.getAgentHeartbeatProcessingThreads());
   }
 
   public void start() {
     heartbeatMonitor.start();
+
+    if (config.isAgentHeartbeatAsyncProcessingEnabled()) {
+      heartbeatProcessor.start();
+    }
   }
 
   void setHeartbeatMonitor(HeartbeatMonitor heartbeatMonitor) {
     this.heartbeatMonitor = heartbeatMonitor;
   }
 
+  /**
+   * @return the processor which applies heartbeat reports when asynchronous
+   *         processing is enabled.
+   */
+  public HeartbeatProcessor getHeartbeatProcessor() {
+    return heartbeatProcessor;
+  }
+
   public HeartBeatResponse handleHeartBeat(HeartBeat heartbeat)
       throws AmbariException {
     long now = System.currentTimeMillis();
@@ -283,18 +305,23 @@ public class HeartBeatHandler {
       return createRegisterCommand();
     }
 
-    // Examine heartbeat for command reports
-    processCommandReports(heartbeat, hostname, clusterFsm, now);
+    if (heartbeatProcessor.isRunning()) {
+      // reports are coalesced per host and applied by the processor's workers
+      heartbeatProcessor.addHeartbeat(heartbeat, now);
+    } else {
+      // Examine heartbeat for command reports
+      processCommandReports(heartbeat, hostname, clusterFsm, now);
 
-    // Examine heartbeat for component live status reports
-    processStatusReports(heartbeat, hostname, clusterFsm);
+      // Examine heartbeat for component live status reports
+      processStatusReports(heartbeat, hostname, clusterFsm);
 
-    // Calculate host status
-    // NOTE: This step must be after processing command/status reports
-    processHostStatus(heartbeat, hostname);
+      // Calculate host status
+      // NOTE: This step must be after processing command/status reports
+      processHostStatus(heartbeat, hostname);
 
-    // Example heartbeat for alerts from the host or its components
-    processAlerts(heartbeat, hostname);
+      // Example heartbeat for alerts from the host or its components
+      processAlerts(heartbeat, hostname);
+    }
 
     // Send commands if node is active
     if (hostObject.getState().equals(HostState.HEALTHY)) {
@@ -845,7 +872,10 @@ public class HeartBeatHandler {
                 }
               }
             }
-            response.addExecutionCommand((ExecutionCommand) ac);
+            if (config.isAgentCommandSnapshotsEnabled()) {
+              ec = executionCommandSnapshots.prepare(hostname, ec);
+            }
+            response.addExecutionCommand(ec);
             break;
           }
           case STATUS_COMMAND: {
@@ -996,6 +1026,7 @@ public class HeartBeatHandler {
 
     Long requestId = 0L;
     hostResponseIds.put(hostname, requestId);
+    executionCommandSnapshots.invalidate(hostname);
     response.setResponseId(requestId);
     return response;
   }
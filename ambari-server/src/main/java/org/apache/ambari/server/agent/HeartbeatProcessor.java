@@ -0,0 +1,368 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.annotations.Experimental;
+import org.apache.ambari.annotations.ExperimentalFeature;
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.state.Alert;
+import org.apache.ambari.server.state.Clusters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link HeartbeatProcessor} applies the command, status and alert
+ * reports of agent heartbeats away from the agent request thread. Heartbeats
+ * are queued per host and drained by a bounded pool of workers; at most one
+ * worker handles a given host at a time so that reports are always applied in
+ * the order in which they were received.
+ * <p/>
+ * When several heartbeats from the same host are waiting, they are coalesced
+ * into a single batch:
+ * <ul>
+ * <li>command reports are applied for every heartbeat, in order</li>
+ * <li>only the most recent component status reports are applied, since they
+ * supersede any earlier ones</li>
+ * <li>the host status is calculated once for the batch</li>
+ * <li>all alerts are published as a single event</li>
+ * </ul>
+ * This service is controlled by
+ * {@link org.apache.ambari.server.configuration.Configuration#isAgentHeartbeatAsyncProcessingEnabled()}.
+ */
+@Experimental(feature = ExperimentalFeature.PARALLEL_PROCESSING)
+public class HeartbeatProcessor {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(HeartbeatProcessor.class);
+
+  /**
+   * Applies the individual heartbeat reports.
+   */
+  private final HeartBeatHandler heartBeatHandler;
+
+  private final Clusters clusterFsm;
+
+  private final int threadPoolSize;
+
+  /**
+   * Heartbeats which have not yet been applied, keyed by host name.
+   */
+  private final ConcurrentMap<String, Queue<QueuedHeartbeat>> pendingHeartbeats =
+      new ConcurrentHashMap<String, Queue<QueuedHeartbeat>>();
+
+  /**
+   * The hosts which currently have a worker scheduled or running.
+   */
+  private final Set<String> scheduledHosts =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  private volatile ExecutorService executor;
+
+  /**
+   * Queue stage metrics; the latency is the time a heartbeat waited before a
+   * worker picked it up.
+   */
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicLong queuedHeartbeatCount = new AtomicLong();
+  private final AtomicLong totalQueueLatency = new AtomicLong();
+
+  /**
+   * Apply stage metrics; the latency is the time taken to apply a coalesced
+   * batch of heartbeats.
+   */
+  private final AtomicLong processedBatchCount = new AtomicLong();
+  private final AtomicLong processedHeartbeatCount = new AtomicLong();
+  private final AtomicLong totalProcessingLatency = new AtomicLong();
+
+  public HeartbeatProcessor(HeartBeatHandler heartBeatHandler, Clusters clusterFsm,
+                            int threadPoolSize) {
+    this.heartBeatHandler = heartBeatHandler;
+    this.clusterFsm = clusterFsm;
+    this.threadPoolSize = threadPoolSize;
+  }
+
+  public synchronized void start() {
+    if (null != executor) {
+      return;
+    }
+
+    executor = new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 0L,
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+        new HeartbeatProcessorThreadFactory());
+
+    LOG.info("Started asynchronous heartbeat processing with {} threads", threadPoolSize);
+  }
+
+  public synchronized void stop() {
+    if (null == executor) {
+      return;
+    }
+
+    executor.shutdown();
+    executor = null;
+  }
+
+  public boolean isRunning() {
+    return null != executor;
+  }
+
+  /**
+   * Queues the reports of the specified heartbeat for processing.
+   *
+   * @param heartbeat
+   *          the heartbeat received from the agent.
+   * @param receivedTime
+   *          the time, in milliseconds, when the heartbeat was received.
+   */
+  public void addHeartbeat(HeartBeat heartbeat, long receivedTime) {
+    String hostname = heartbeat.getHostname();
+
+    Queue<QueuedHeartbeat> queue = pendingHeartbeats.get(hostname);
+    if (null == queue) {
+      queue = new ConcurrentLinkedQueue<QueuedHeartbeat>();
+      Queue<QueuedHeartbeat> existing = pendingHeartbeats.putIfAbsent(hostname, queue);
+      if (null != existing) {
+        queue = existing;
+      }
+    }
+
+    queue.add(new QueuedHeartbeat(heartbeat, receivedTime));
+    queueDepth.incrementAndGet();
+
+    schedule(hostname);
+  }
+
+  /**
+   * @return the number of heartbeats waiting to be applied.
+   */
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * @return the number of hosts with heartbeats waiting or being applied.
+   */
+  public int getScheduledHostCount() {
+    return scheduledHosts.size();
+  }
+
+  /**
+   * @return the number of heartbeats which have been applied.
+   */
+  public long getProcessedHeartbeatCount() {
+    return processedHeartbeatCount.get();
+  }
+
+  /**
+   * @return the number of coalesced batches which have been applied.
+   */
+  public long getProcessedBatchCount() {
+    return processedBatchCount.get();
+  }
+
+  /**
+   * @return the average time, in milliseconds, that a heartbeat waited in the
+   *         queue before being picked up by a worker.
+   */
+  public long getAverageQueueLatency() {
+    long count = queuedHeartbeatCount.get();
+    return count == 0 ? 0 : totalQueueLatency.get() / count;
+  }
+
+  /**
+   * @return the average time, in milliseconds, taken to apply a coalesced
+   *         batch of heartbeats.
+   */
+  public long getAverageProcessingLatency() {
+    long count = processedBatchCount.get();
+    return count == 0 ? 0 : totalProcessingLatency.get() / count;
+  }
+
+  /**
+   * Schedules a worker for the host unless one is already scheduled.
+   */
+  private void schedule(String hostname) {
+    ExecutorService currentExecutor = executor;
+    if (null == currentExecutor) {
+      LOG.warn("Heartbeat processing is not running; reports from {} remain queued", hostname);
+      return;
+    }
+
+    if (scheduledHosts.add(hostname)) {
+      currentExecutor.execute(new HostHeartbeatRunnable(hostname));
+    }
+  }
+
+  /**
+   * Applies a batch of heartbeats from a single host.
+   *
+   * @param hostname
+   *          the host which sent the heartbeats.
+   * @param batch
+   *          the heartbeats in the order in which they were received.
+   */
+  void processBatch(String hostname, List<QueuedHeartbeat> batch) throws Exception {
+    HeartBeat coalesced = new HeartBeat();
+    coalesced.setHostname(hostname);
+
+    List<CommandReport> reports = new ArrayList<CommandReport>();
+    List<Alert> alerts = null;
+
+    for (QueuedHeartbeat queued : batch) {
+      HeartBeat heartbeat = queued.heartbeat;
+
+      // command reports cannot be merged since each one drives the task and
+      // component state machines
+      try {
+        heartBeatHandler.processCommandReports(heartbeat, hostname, clusterFsm,
+            queued.receivedTime);
+      } catch (AmbariException exception) {
+        LOG.error("Unable to process command reports from host {}", hostname, exception);
+      }
+      reports.addAll(heartbeat.getReports());
+
+      // newer component statuses supersede older ones
+      if (!heartbeat.getComponentStatus().isEmpty()) {
+        coalesced.setComponentStatus(heartbeat.getComponentStatus());
+      }
+
+      if (null != heartbeat.getAlerts()) {
+        if (null == alerts) {
+          alerts = new ArrayList<Alert>();
+        }
+        alerts.addAll(heartbeat.getAlerts());
+      }
+    }
+
+    coalesced.setReports(reports);
+    coalesced.setAlerts(alerts);
+
+    heartBeatHandler.processStatusReports(coalesced, hostname, clusterFsm);
+
+    // NOTE: This step must be after processing command/status reports
+    heartBeatHandler.processHostStatus(coalesced, hostname);
+
+    heartBeatHandler.processAlerts(coalesced, hostname);
+  }
+
+  /**
+   * Drains the queued heartbeats of a single host.
+   */
+  private final class HostHeartbeatRunnable implements Runnable {
+
+    private final String hostname;
+
+    private HostHeartbeatRunnable(String hostname) {
+      this.hostname = hostname;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      Queue<QueuedHeartbeat> queue = pendingHeartbeats.get(hostname);
+
+      do {
+        List<QueuedHeartbeat> batch = new ArrayList<QueuedHeartbeat>();
+        long now = System.currentTimeMillis();
+
+        QueuedHeartbeat queued;
+        while (null != (queued = queue.poll())) {
+          batch.add(queued);
+          queueDepth.decrementAndGet();
+          queuedHeartbeatCount.incrementAndGet();
+          totalQueueLatency.addAndGet(now - queued.receivedTime);
+        }
+
+        if (!batch.isEmpty()) {
+          try {
+            processBatch(hostname, batch);
+          } catch (Exception exception) {
+            LOG.error("Unable to process {} heartbeat(s) from host {}", batch.size(),
+                hostname, exception);
+          }
+
+          processedBatchCount.incrementAndGet();
+          processedHeartbeatCount.addAndGet(batch.size());
+          totalProcessingLatency.addAndGet(System.currentTimeMillis() - now);
+
+          if (batch.size() > 1 && LOG.isDebugEnabled()) {
+            LOG.debug("Coalesced {} heartbeats from host {}", batch.size(), hostname);
+          }
+        }
+
+        scheduledHosts.remove(hostname);
+
+        // a heartbeat may have arrived after the queue was drained but before
+        // this host was unscheduled; pick it up rather than leaving it behind
+      } while (!queue.isEmpty() && scheduledHosts.add(hostname));
+    }
+  }
+
+  /**
+   * A heartbeat along with the time it was received.
+   */
+  static final class QueuedHeartbeat {
+    private final HeartBeat heartbeat;
+    private final long receivedTime;
+
+    QueuedHeartbeat(HeartBeat heartbeat, long receivedTime) {
+      this.heartbeat = heartbeat;
+      this.receivedTime = receivedTime;
+    }
+  }
+
+  /**
+   * A custom {@link ThreadFactory} for the threads which apply heartbeats.
+   */
+  private static final class HeartbeatProcessorThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger s_threadIdPool = new AtomicInteger(1);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "ambari-heartbeat-processor-"
+          + s_threadIdPool.getAndIncrement());
+
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
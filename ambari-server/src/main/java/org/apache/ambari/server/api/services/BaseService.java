@@ -27,6 +27,7 @@ import org.apache.ambari.server.api.services.parsers.RequestBodyParser;
 import org.apache.ambari.server.api.services.serializers.CsvSerializer;
 import org.apache.ambari.server.api.services.serializers.JsonSerializer;
 import org.apache.ambari.server.api.services.serializers.ResultSerializer;
+import org.apache.ambari.server.api.services.serializers.StreamingResultSerializer;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.utils.RetryHelper;
 import org.eclipse.jetty.util.ajax.JSON;
@@ -34,7 +35,10 @@ import org.eclipse.jetty.util.ajax.JSON;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -112,7 +116,9 @@ public abstract class BaseService {
     ResultSerializer serializer = mediaType == null ? getResultSerializer() : getResultSerializer(mediaType);
 
     Response.ResponseBuilder builder = Response.status(result.getStatus().getStatusCode()).entity(
-        serializer.serialize(result));
+        serializer instanceof StreamingResultSerializer ?
+            getStreamingEntity((StreamingResultSerializer) serializer, result) :
+            serializer.serialize(result));
 
     if (mediaType != null) {
       builder.type(mediaType);
@@ -122,6 +128,26 @@ public abstract class BaseService {
     return builder.build();
   }
 
+  /**
+   * Get an entity which serializes the result straight to the response
+   * stream when the response is written, so that the serialized result is
+   * never held in memory as a whole.
+   *
+   * @param serializer  the serializer
+   * @param result      the result to serialize
+   *
+   * @return the response entity
+   */
+  private StreamingOutput getStreamingEntity(final StreamingResultSerializer serializer,
+                                             final Result result) {
+    return new StreamingOutput() {
+      @Override
+      public void write(OutputStream out) throws IOException {
+        serializer.serialize(result, out);
+      }
+    };
+  }
+
   /**
    * Obtain the factory from which to create Request instances.
    *
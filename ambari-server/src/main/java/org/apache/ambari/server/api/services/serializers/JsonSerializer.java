@@ -37,7 +37,7 @@ import java.util.Map;
  * JSON serializer.
  * Responsible for representing a result as JSON.
  */
-public class JsonSerializer implements ResultSerializer {
+public class JsonSerializer implements StreamingResultSerializer {
 
   /**
    * Factory used to create JSON generator.
@@ -55,16 +55,8 @@ public class JsonSerializer implements ResultSerializer {
   @Override
   public Object serialize(Result result) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-
-      if (result.getStatus().isErrorState()) {
-        return serializeError(result.getStatus());
-      }
-
-      TreeNode<Resource> treeNode = result.getResultTree();
-      processNode(treeNode);
-
-      m_generator.close();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      serialize(result, bytesOut);
       return bytesOut.toString("UTF-8");
     } catch (IOException e) {
       //todo: exception handling.  Create ResultStatus 500 and call serializeError
@@ -72,15 +64,27 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
+  @Override
+  public void serialize(Result result, OutputStream out) throws IOException {
+    init(out);
+
+    if (result.getStatus().isErrorState()) {
+      writeError(result.getStatus());
+    } else {
+      TreeNode<Resource> treeNode = result.getResultTree();
+      processNode(treeNode);
+    }
+
+    // flushes the generator without closing the stream which belongs to the caller
+    m_generator.close();
+  }
+
   @Override
   public Object serializeError(ResultStatus error) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-      //m_mapper.writeValue(m_generator, error);
-      m_generator.writeStartObject();
-      m_generator.writeNumberField("status", error.getStatus().getStatus());
-      m_generator.writeStringField("message", error.getMessage());
-      m_generator.writeEndObject();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      init(bytesOut);
+      writeError(error);
       m_generator.close();
       return bytesOut.toString("UTF-8");
 
@@ -90,15 +94,20 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private ByteArrayOutputStream init() throws IOException {
-    ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-    m_generator = createJsonGenerator(bytesOut);
+  private void writeError(ResultStatus error) throws IOException {
+    //m_mapper.writeValue(m_generator, error);
+    m_generator.writeStartObject();
+    m_generator.writeNumberField("status", error.getStatus().getStatus());
+    m_generator.writeStringField("message", error.getMessage());
+    m_generator.writeEndObject();
+  }
+
+  private void init(OutputStream out) throws IOException {
+    m_generator = createJsonGenerator(out);
 
     DefaultPrettyPrinter p = new DefaultPrettyPrinter();
     p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
     m_generator.setPrettyPrinter(p);
-
-    return bytesOut;
   }
 
   private void processNode(TreeNode<Resource> node) throws IOException {
@@ -202,9 +211,10 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private JsonGenerator createJsonGenerator(ByteArrayOutputStream baos) throws IOException {
-    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(baos,
+  private JsonGenerator createJsonGenerator(OutputStream out) throws IOException {
+    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(out,
         Charset.forName("UTF-8").newEncoder()));
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 
     DefaultPrettyPrinter p = new DefaultPrettyPrinter();
     p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
@@ -295,6 +295,15 @@ public class Configuration {
   public static final String DEFAULT_EXECUTION_SCHEDULER_MISFIRE_TOLERATION = "480";
   public static final String DEFAULT_SCHEDULER_START_DELAY_SECONDS = "120";
   public static final String DEFAULT_EXECUTION_SCHEDULER_WAIT_SECONDS = "1";
+
+  /**
+   * The longest time, in seconds, between two passes of the action scheduler
+   * over all in progress stages. Passes are normally triggered by task
+   * completions and timeouts; this interval is a safety net in case an event
+   * is missed.
+   */
+  public static final String EXECUTION_SCHEDULER_RECONCILIATION_INTERVAL_KEY = "server.execution.scheduler.reconciliation.interval";
+  public static final String DEFAULT_EXECUTION_SCHEDULER_RECONCILIATION_INTERVAL_SECONDS = "30";
   public static final String SERVER_TMP_DIR_KEY = "server.tmp.dir";
   public static final String SERVER_TMP_DIR_DEFAULT = "/var/lib/ambari-server/tmp";
   public static final String EXTERNAL_SCRIPT_TIMEOUT_KEY = "server.script.timeout";
@@ -311,6 +320,8 @@ public class Configuration {
   public static final String KDC_CONNECTION_CHECK_TIMEOUT_DEFAULT = "10000";
   public static final String KERBEROS_KEYTAB_CACHE_DIR_KEY = "kerberos.keytab.cache.dir";
   public static final String KERBEROS_KEYTAB_CACHE_DIR_DEFAULT = "/var/lib/ambari-server/data/cache";
+  public static final String KERBEROS_IDENTITY_PROCESSING_THREADS_KEY = "kerberos.identity.processing.threads";
+  public static final String KERBEROS_IDENTITY_PROCESSING_THREADS_DEFAULT = "1";
 
   /**
    * Recovery related configuration
@@ -429,6 +440,26 @@ public class Configuration {
   private static final String AGENT_THREADPOOL_SIZE_KEY = "agent.threadpool.size.max";
   private static final int AGENT_THREADPOOL_SIZE_DEFAULT = 25;
 
+  /**
+   * If {@code true}, then command, status and alert reports received in agent
+   * heartbeats are coalesced per host and applied by a dedicated pool of
+   * workers instead of on the agent request thread.
+   */
+  private static final String AGENT_HEARTBEAT_ASYNC_PROCESSING_KEY = "agent.heartbeat.processing.async";
+
+  /**
+   * The number of threads which apply queued heartbeat reports.
+   */
+  private static final String AGENT_HEARTBEAT_PROCESSING_THREADS_KEY = "agent.heartbeat.processing.threads";
+  private static final int AGENT_HEARTBEAT_PROCESSING_THREADS_DEFAULT = 4;
+
+  /**
+   * If {@code true}, then configurations and cluster host info are sent to an
+   * agent only once per distinct snapshot, later execution commands reference
+   * the snapshot which the agent has cached by its hash.
+   */
+  private static final String AGENT_COMMAND_SNAPSHOTS_ENABLED_KEY = "agent.command.snapshots.enabled";
+
   private static final String VIEW_EXTRACTION_THREADPOOL_MAX_SIZE_KEY = "view.extraction.threadpool.size.max";
   private static final int VIEW_EXTRACTION_THREADPOOL_MAX_SIZE_DEFAULT = 20;
   private static final String VIEW_EXTRACTION_THREADPOOL_CORE_SIZE_KEY = "view.extraction.threadpool.size.core";
@@ -469,6 +500,15 @@ public class Configuration {
   private static final String DEFAULT_TIMELINE_METRICS_CACHE_HEAP_PERCENT = "15%";
   private static final String TIMELINE_METRICS_CACHE_USE_CUSTOM_SIZING_ENGINE = "server.timeline.metrics.cache.use.custom.sizing.engine";
 
+  // JMX Metrics Cache settings
+  private static final String JMX_METRICS_CACHE_DISABLE = "server.jmx.metrics.cache.disabled";
+  private static final String JMX_METRICS_CACHE_REFRESH_INTERVAL = "server.jmx.metrics.cache.refresh.interval.seconds";
+  private static final String DEFAULT_JMX_METRICS_CACHE_REFRESH_INTERVAL = "10";
+  private static final String JMX_METRICS_CACHE_IDLE_TIME = "server.jmx.metrics.cache.idle.seconds";
+  private static final String DEFAULT_JMX_METRICS_CACHE_IDLE_TIME = "300";
+  private static final String JMX_METRICS_CACHE_MAX_ENTRIES = "server.jmx.metrics.cache.max.entries";
+  private static final String DEFAULT_JMX_METRICS_CACHE_MAX_ENTRIES = "1000";
+
   /**
    * Governs the use of {@link Parallel} to process {@link StageEntity}
    * instances into {@link Stage}.
@@ -490,6 +530,19 @@ public class Configuration {
    */
   public static final String ALERTS_EXECUTION_SCHEDULER_THREADS_DEFAULT = "2";
 
+  /**
+   * The number of threads which dispatch the alert notifications of a single
+   * notification type. It can be set for one type by appending the type, such
+   * as {@code alerts.dispatch.threads.EMAIL}.
+   */
+  public static final String ALERTS_DISPATCH_THREADS_KEY = "alerts.dispatch.threads";
+
+  /**
+   * The default number of threads per notification type dispatching alert
+   * notifications.
+   */
+  public static final String ALERTS_DISPATCH_THREADS_DEFAULT = "2";
+
   /**
    * If {@code true} then alert information is cached and not immediately
    * persisted in the database.
@@ -517,6 +570,37 @@ public class Configuration {
    */
   public static final String ALERTS_CACHE_SIZE_DEFAULT = "50000";
 
+  /**
+   * If {@code true} then received alerts are buffered and written to the
+   * database in batches instead of on every event.
+   */
+  public static final String ALERTS_INGESTION_BATCHING_ENABLED = "alerts.ingestion.batching.enabled";
+
+  /**
+   * The interval, in milliseconds, at which buffered alerts are written to the
+   * database.
+   */
+  public static final String ALERTS_INGESTION_FLUSH_INTERVAL = "alerts.ingestion.flush.interval";
+
+  /**
+   * The default interval, in milliseconds, at which buffered alerts are
+   * written to the database.
+   */
+  public static final String ALERTS_INGESTION_FLUSH_INTERVAL_DEFAULT = "5000";
+
+  /**
+   * The interval, in seconds, at which the performance statistics of the
+   * server, such as metrics fetch times, are written to the log. {@code 0}
+   * disables the statistics log.
+   */
+  public static final String SERVER_STATISTICS_LOG_INTERVAL = "server.statistics.log.interval";
+
+  /**
+   * The default interval, in seconds, at which the performance statistics of
+   * the server are written to the log.
+   */
+  public static final String SERVER_STATISTICS_LOG_INTERVAL_DEFAULT = "300";
+
   /**
    * For HTTP Response header configuration for Ambari Server UI
    */
@@ -1829,6 +1913,16 @@ public class Configuration {
     return sleepTime*1000;
   }
 
+  /**
+   * @return the longest time, in milliseconds, between two passes of the
+   *         action scheduler over all in progress stages, default 30 seconds
+   */
+  public long getExecutionSchedulerReconciliationInterval() {
+    return Long.parseLong(properties.getProperty(
+        EXECUTION_SCHEDULER_RECONCILIATION_INTERVAL_KEY,
+        DEFAULT_EXECUTION_SCHEDULER_RECONCILIATION_INTERVAL_SECONDS)) * 1000;
+  }
+
   public Integer getExternalScriptTimeout() {
     return Integer.parseInt(properties.getProperty(EXTERNAL_SCRIPT_TIMEOUT_KEY, EXTERNAL_SCRIPT_TIMEOUT_DEFAULT));
   }
@@ -1899,6 +1993,37 @@ public class Configuration {
         AGENT_THREADPOOL_SIZE_KEY, String.valueOf(AGENT_THREADPOOL_SIZE_DEFAULT)));
   }
 
+  /**
+   * Gets whether heartbeat reports are applied asynchronously by the
+   * {@link org.apache.ambari.server.agent.HeartbeatProcessor}. The default is
+   * {@code false}.
+   *
+   * @return {@code true} if heartbeats are processed asynchronously,
+   *         {@code false} otherwise.
+   */
+  @Experimental(feature = ExperimentalFeature.PARALLEL_PROCESSING)
+  public boolean isAgentHeartbeatAsyncProcessingEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        AGENT_HEARTBEAT_ASYNC_PROCESSING_KEY, Boolean.FALSE.toString()));
+  }
+
+  /**
+   * @return number of threads which apply queued heartbeat reports, default 4
+   */
+  public int getAgentHeartbeatProcessingThreads() {
+    return Integer.parseInt(properties.getProperty(
+        AGENT_HEARTBEAT_PROCESSING_THREADS_KEY, String.valueOf(AGENT_HEARTBEAT_PROCESSING_THREADS_DEFAULT)));
+  }
+
+  /**
+   * @return whether execution commands reference configuration snapshots
+   *         already cached by the agent, default true
+   */
+  public boolean isAgentCommandSnapshotsEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        AGENT_COMMAND_SNAPSHOTS_ENABLED_KEY, Boolean.TRUE.toString()));
+  }
+
   /**
    * Get the view extraction thread pool max size.
    *
@@ -1961,6 +2086,21 @@ public class Configuration {
       ALERTS_EXECUTION_SCHEDULER_THREADS_KEY, ALERTS_EXECUTION_SCHEDULER_THREADS_DEFAULT));
   }
 
+  /**
+   * @param notificationType
+   *          the notification type, such as EMAIL or SNMP
+   * @return number of threads dispatching alert notifications of the type,
+   *         default 2
+   */
+  public int getAlertDispatchThreads(String notificationType) {
+    String threads = properties.getProperty(ALERTS_DISPATCH_THREADS_KEY + "." + notificationType);
+    if (null == threads) {
+      threads = properties.getProperty(ALERTS_DISPATCH_THREADS_KEY, ALERTS_DISPATCH_THREADS_DEFAULT);
+    }
+
+    return Integer.parseInt(threads);
+  }
+
   /**
    * Get the node recovery type DEFAULT|AUTO_START|FULL
    * @return
@@ -2050,6 +2190,17 @@ public class Configuration {
     return new File(fileName);
   }
 
+  /**
+   * Gets the number of workers used to create principals and keytab files concurrently, each
+   * worker holds its own session with the KDC.
+   *
+   * @return the number of workers, 1 processes the identities one after the other (default)
+   */
+  public int getKerberosIdentityProcessingThreads() {
+    return Integer.parseInt(properties.getProperty(
+        KERBEROS_IDENTITY_PROCESSING_THREADS_KEY, KERBEROS_IDENTITY_PROCESSING_THREADS_DEFAULT));
+  }
+
   /**
    * Gets the type of database by examining the {@link #getDatabaseUrl()} JDBC
    * URL.
@@ -2316,6 +2467,40 @@ public class Configuration {
       .getProperty(TIMELINE_METRICS_CACHE_USE_CUSTOM_SIZING_ENGINE, "true"));
   }
 
+  /**
+   * Disable caching of JMX metrics. If disabled, every request for JMX
+   * metrics reads the /jmx endpoint of each component.
+   * @return true / false
+   */
+  public boolean isJMXMetricsCacheDisabled() {
+    return Boolean.parseBoolean(properties.getProperty(JMX_METRICS_CACHE_DISABLE, "false"));
+  }
+
+  /**
+   * Interval at which cached JMX metrics are read again from their endpoint.
+   */
+  public int getJMXMetricsCacheRefreshIntervalSeconds() {
+    return Integer.parseInt(properties.getProperty(JMX_METRICS_CACHE_REFRESH_INTERVAL,
+      DEFAULT_JMX_METRICS_CACHE_REFRESH_INTERVAL));
+  }
+
+  /**
+   * Time after which a JMX endpoint that was not requested is no longer read
+   * and removed from the cache.
+   */
+  public int getJMXMetricsCacheIdleSeconds() {
+    return Integer.parseInt(properties.getProperty(JMX_METRICS_CACHE_IDLE_TIME,
+      DEFAULT_JMX_METRICS_CACHE_IDLE_TIME));
+  }
+
+  /**
+   * Max number of JMX endpoints whose metrics are cached.
+   */
+  public int getJMXMetricsCacheMaxEntries() {
+    return Integer.parseInt(properties.getProperty(JMX_METRICS_CACHE_MAX_ENTRIES,
+      DEFAULT_JMX_METRICS_CACHE_MAX_ENTRIES));
+  }
+
   /**
    * Get set of properties desribing SSO configuration (JWT)
    */
@@ -2413,6 +2598,48 @@ public class Configuration {
     return Integer.parseInt(properties.getProperty(ALERTS_CACHE_SIZE, ALERTS_CACHE_SIZE_DEFAULT));
   }
 
+  /**
+   * If {@code true}, then alerts received by the {@link AlertReceivedListener}
+   * are buffered in memory and written to the database periodically in a
+   * single transaction. Repeated results with the same state are coalesced so
+   * that only state changes and the latest timestamp and text are written.
+   * <p/>
+   * The default value is {@code false}.
+   *
+   * @return {@code true} if alert ingestion is batched, {@code false}
+   *         otherwise.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_CACHING)
+  public boolean isAlertIngestionBatchingEnabled() {
+    return Boolean.parseBoolean(
+        properties.getProperty(ALERTS_INGESTION_BATCHING_ENABLED, Boolean.FALSE.toString()));
+  }
+
+  /**
+   * Gets the interval at which buffered alerts are written to the database,
+   * if enabled.
+   *
+   * @return the flush interval in milliseconds, or
+   *         {@value #ALERTS_INGESTION_FLUSH_INTERVAL_DEFAULT} if not set.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_CACHING)
+  public long getAlertIngestionFlushInterval() {
+    return Long.parseLong(properties.getProperty(ALERTS_INGESTION_FLUSH_INTERVAL,
+        ALERTS_INGESTION_FLUSH_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * Gets the interval at which the performance statistics of the server are
+   * written to the log.
+   *
+   * @return the interval in seconds, {@code 0} if disabled, or
+   *         {@value #SERVER_STATISTICS_LOG_INTERVAL_DEFAULT} if not set.
+   */
+  public long getServerStatisticsLogInterval() {
+    return Long.parseLong(properties.getProperty(SERVER_STATISTICS_LOG_INTERVAL,
+        SERVER_STATISTICS_LOG_INTERVAL_DEFAULT));
+  }
+
   /**
    * @return number of retry attempts for api and blueprint operations
    */
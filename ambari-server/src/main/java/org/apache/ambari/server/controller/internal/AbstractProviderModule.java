@@ -29,6 +29,7 @@ import org.apache.ambari.server.controller.HostResponse;
 import org.apache.ambari.server.controller.ServiceComponentHostRequest;
 import org.apache.ambari.server.controller.ServiceComponentHostResponse;
 import org.apache.ambari.server.controller.jmx.JMXHostProvider;
+import org.apache.ambari.server.controller.jmx.JMXMetricCache;
 import org.apache.ambari.server.controller.jmx.JMXPropertyProvider;
 import org.apache.ambari.server.controller.metrics.MetricHostProvider;
 import org.apache.ambari.server.controller.metrics.MetricsPropertyProvider;
@@ -172,6 +173,9 @@ public abstract class AbstractProviderModule implements ProviderModule,
   @Inject
   TimelineMetricCacheProvider metricCacheProvider;
 
+  @Inject
+  JMXMetricCache jmxMetricCache;
+
   /**
    * The map of host components.
    */
@@ -961,7 +965,7 @@ public abstract class AbstractProviderModule implements ProviderModule,
 
     return new JMXPropertyProvider(PropertyHelper.getJMXPropertyIds(type), streamProvider,
         jmxHostProvider, metricsHostProvider, clusterNamePropertyId, hostNamePropertyId,
-        componentNamePropertyId, statePropertyId);
+        componentNamePropertyId, statePropertyId, jmxMetricCache);
   }
 
   /**
@@ -22,6 +22,7 @@ import com.google.inject.Injector;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.configuration.ComponentSSLConfiguration;
 import org.apache.ambari.server.controller.jmx.JMXHostProvider;
+import org.apache.ambari.server.controller.jmx.JMXMetricCache;
 import org.apache.ambari.server.controller.jmx.JMXPropertyProvider;
 import org.apache.ambari.server.controller.metrics.MetricHostProvider;
 import org.apache.ambari.server.controller.metrics.MetricsPropertyProvider;
@@ -81,6 +82,7 @@ public class StackDefinedPropertyProvider implements PropertyProvider {
   private final MetricHostProvider metricHostProvider;
   private final MetricsServiceProvider metricsServiceProvider;
   private TimelineMetricCacheProvider cacheProvider;
+  private JMXMetricCache jmxMetricCache;
 
   /**
    * PropertyHelper/AbstractPropertyProvider expect map of maps,
@@ -127,6 +129,7 @@ public class StackDefinedPropertyProvider implements PropertyProvider {
     defaultJmx = defaultJmxPropertyProvider;
     defaultGanglia = defaultGangliaPropertyProvider;
     cacheProvider = injector.getInstance(TimelineMetricCacheProvider.class);
+    jmxMetricCache = injector.getInstance(JMXMetricCache.class);
   }
 
   @Override
@@ -195,7 +198,7 @@ public class StackDefinedPropertyProvider implements PropertyProvider {
         JMXPropertyProvider jpp = new JMXPropertyProvider(jmxMap, streamProvider,
             jmxHostProvider, metricHostProvider,
             clusterNamePropertyId, hostNamePropertyId,
-            componentNamePropertyId, resourceStatePropertyId);
+            componentNamePropertyId, resourceStatePropertyId, jmxMetricCache);
 
         jpp.populateResources(resources, request, predicate);
       } else {
@@ -172,6 +172,7 @@ public class StageResourceProvider extends AbstractControllerResourceProvider im
           HostRoleStatus desiredStatus = HostRoleStatus.valueOf(stageStatus);
           dao.updateStageStatus(entity, desiredStatus,
               getManagementController().getActionManager());
+          getManagementController().getActionManager().awakeScheduler();
         }
       }
     }
@@ -151,6 +151,7 @@ public class UpgradeItemResourceProvider extends ReadOnlyResourceProvider {
 
         s_stageDao.updateStageStatus(stageEntity, desiredStatus,
             getManagementController().getActionManager());
+        getManagementController().getActionManager().awakeScheduler();
       }
     }
 
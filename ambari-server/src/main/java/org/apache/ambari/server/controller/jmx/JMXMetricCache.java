@@ -0,0 +1,336 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.jmx;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.controller.metrics.ThreadPoolEnabledPropertyProvider;
+import org.apache.ambari.server.controller.utilities.StreamProvider;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the parsed /jmx bean dumps of the components, shared by all of the
+ * {@link JMXPropertyProvider} instances.
+ * <p/>
+ * An endpoint is read when it is first requested and is then read again in
+ * the background once per refresh interval for as long as it keeps being
+ * requested, so that requests are served from the latest snapshot instead of
+ * each reading and parsing the endpoint. Concurrent requests for an endpoint
+ * which has no recent snapshot share a single read. Endpoints which are not
+ * requested for the idle time are no longer read and are removed.
+ */
+@Singleton
+public class JMXMetricCache {
+
+  private final static Logger LOG = LoggerFactory.getLogger(JMXMetricCache.class);
+
+  private final static ObjectReader jmxObjectReader;
+
+  static {
+    ObjectMapper jmxObjectMapper = new ObjectMapper();
+    jmxObjectMapper.configure(DeserializationConfig.Feature.USE_ANNOTATIONS, false);
+    jmxObjectReader = jmxObjectMapper.reader(JMXMetricHolder.class);
+  }
+
+  private final boolean enabled;
+
+  /**
+   * The interval, in milliseconds, at which requested endpoints are read.
+   */
+  private final long refreshInterval;
+
+  /**
+   * The time, in milliseconds, after which an endpoint which was not requested
+   * is removed.
+   */
+  private final long idleTime;
+
+  private final int maxEntries;
+
+  /**
+   * The cached endpoints keyed by their spec.
+   */
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  private ScheduledExecutorService scheduler;
+
+  // ----- Constructors ------------------------------------------------------
+
+  @Inject
+  public JMXMetricCache(Configuration configuration) {
+    this(!configuration.isJMXMetricsCacheDisabled(),
+        TimeUnit.SECONDS.toMillis(configuration.getJMXMetricsCacheRefreshIntervalSeconds()),
+        TimeUnit.SECONDS.toMillis(configuration.getJMXMetricsCacheIdleSeconds()),
+        configuration.getJMXMetricsCacheMaxEntries());
+  }
+
+  JMXMetricCache(boolean enabled, long refreshInterval, long idleTime, int maxEntries) {
+    this.enabled = enabled;
+    this.refreshInterval = refreshInterval;
+    this.idleTime = idleTime;
+    this.maxEntries = maxEntries;
+
+    if (enabled) {
+      LOG.info("Creating JMX metrics cache with refresh interval = " + refreshInterval
+          + "ms, idle = " + idleTime + "ms, max entries = " + maxEntries);
+    }
+  }
+
+  // ----- JMXMetricCache ----------------------------------------------------
+
+  /**
+   * Get the parsed bean dump of the given endpoint.
+   *
+   * @param spec            the URL of the /jmx endpoint
+   * @param streamProvider  the stream provider used to read the endpoint
+   *
+   * @return the latest snapshot of the endpoint; a snapshot is at most two
+   *         refresh intervals old
+   *
+   * @throws IOException if the endpoint has no recent snapshot and can not be read
+   */
+  public JMXMetricHolder getMetricHolder(String spec, StreamProvider streamProvider)
+      throws IOException {
+
+    if (!enabled) {
+      return read(spec, streamProvider);
+    }
+
+    long now = System.currentTimeMillis();
+
+    Entry entry = entries.get(spec);
+    if (entry == null) {
+      startScheduler();
+
+      entry = new Entry(spec, now);
+      Entry existing = entries.putIfAbsent(spec, entry);
+      if (existing == null) {
+        evictIfFull();
+      } else {
+        entry = existing;
+      }
+    }
+
+    entry.streamProvider = streamProvider;
+    entry.lastAccessTime = now;
+
+    // the background refresh keeps requested entries within one interval;
+    // anything older means the last reads failed or the endpoint is new
+    JMXMetricHolder metricHolder = entry.metricHolder;
+    if (metricHolder != null && now - entry.readTime < 2 * refreshInterval) {
+      return metricHolder;
+    }
+
+    return entry.refresh();
+  }
+
+  /**
+   * Get the number of cached endpoints.
+   *
+   * @return the number of cached endpoints
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  // ----- helper methods ----------------------------------------------------
+
+  /**
+   * Start reading the cached endpoints in the background, if not already started.
+   */
+  private synchronized void startScheduler() {
+    if (scheduler != null) {
+      return;
+    }
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "jmx-metrics-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          refreshEntries();
+        } catch (Exception e) {
+          LOG.error("Unable to refresh the cached JMX metrics", e);
+        }
+      }
+    }, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Remove the idle endpoints and read the others again if their snapshot is
+   * older than the refresh interval. The reads run on the thread pool shared
+   * by the metrics property providers.
+   */
+  void refreshEntries() {
+    long now = System.currentTimeMillis();
+
+    for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+      final Entry entry = iterator.next();
+
+      if (now - entry.lastAccessTime > idleTime) {
+        iterator.remove();
+        continue;
+      }
+
+      if (now - entry.readTime >= refreshInterval) {
+        ThreadPoolEnabledPropertyProvider.getExecutorService().submit(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              entry.refresh();
+            } catch (IOException e) {
+              LOG.debug("Unable to read JMX metrics from " + entry.spec, e);
+            }
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Remove the least recently requested endpoints while there are more than
+   * the max number of entries.
+   */
+  private void evictIfFull() {
+    while (entries.size() > maxEntries) {
+      Entry eldest = null;
+      for (Entry entry : entries.values()) {
+        if (eldest == null || entry.lastAccessTime < eldest.lastAccessTime) {
+          eldest = entry;
+        }
+      }
+
+      if (eldest == null) {
+        return;
+      }
+      entries.remove(eldest.spec, eldest);
+    }
+  }
+
+  /**
+   * Read and parse the bean dump of the given endpoint.
+   */
+  private static JMXMetricHolder read(String spec, StreamProvider streamProvider)
+      throws IOException {
+    InputStream in = streamProvider.readFrom(spec);
+    try {
+      return jmxObjectReader.readValue(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  // ----- inner class : Entry -----------------------------------------------
+
+  /**
+   * The latest snapshot of an endpoint.
+   */
+  private static class Entry {
+    private final String spec;
+
+    private volatile StreamProvider streamProvider;
+    private volatile JMXMetricHolder metricHolder;
+    private volatile long readTime;
+    private volatile long lastAccessTime;
+
+    /**
+     * The read in progress, if any; shared by the callers of {@link #refresh()}.
+     */
+    private FutureTask<JMXMetricHolder> pendingRead;
+
+    private Entry(String spec, long lastAccessTime) {
+      this.spec = spec;
+      this.lastAccessTime = lastAccessTime;
+    }
+
+    /**
+     * Read the endpoint, or wait for the read in progress.
+     */
+    private JMXMetricHolder refresh() throws IOException {
+      FutureTask<JMXMetricHolder> task;
+      boolean owner = false;
+
+      synchronized (this) {
+        if (pendingRead == null) {
+          pendingRead = new FutureTask<JMXMetricHolder>(new Callable<JMXMetricHolder>() {
+            @Override
+            public JMXMetricHolder call() throws IOException {
+              JMXMetricHolder holder = read(spec, streamProvider);
+              metricHolder = holder;
+              readTime = System.currentTimeMillis();
+              return holder;
+            }
+          });
+          owner = true;
+        }
+        task = pendingRead;
+      }
+
+      if (owner) {
+        try {
+          task.run();
+        } finally {
+          synchronized (this) {
+            pendingRead = null;
+          }
+        }
+      }
+
+      try {
+        return task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while reading JMX metrics from " + spec);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+  }
+}
@@ -34,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -98,6 +99,8 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
 
   private final String statePropertyId;
 
+  private final JMXMetricCache metricCache;
+
   // ----- Constructors ------------------------------------------------------
 
   /**
@@ -121,6 +124,36 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
                              String componentNamePropertyId,
                              String statePropertyId) {
 
+    this(componentMetrics, streamProvider, jmxHostProvider, metricHostProvider,
+        clusterNamePropertyId, hostNamePropertyId, componentNamePropertyId,
+        statePropertyId, null);
+  }
+
+  /**
+   * Create a JMX property provider which reads the JMX endpoints through the
+   * given cache.
+   *
+   * @param componentMetrics         the map of supported metrics
+   * @param streamProvider           the stream provider
+   * @param jmxHostProvider          the JMX host mapping
+   * @param metricHostProvider      the host mapping
+   * @param clusterNamePropertyId    the cluster name property id
+   * @param hostNamePropertyId       the host name property id
+   * @param componentNamePropertyId  the component name property id
+   * @param statePropertyId          the state property id
+   * @param metricCache              the JMX metric cache; null to read the
+   *                                 endpoints on every request
+   */
+  public JMXPropertyProvider(Map<String, Map<String, PropertyInfo>> componentMetrics,
+                             StreamProvider streamProvider,
+                             JMXHostProvider jmxHostProvider,
+                             MetricHostProvider metricHostProvider,
+                             String clusterNamePropertyId,
+                             String hostNamePropertyId,
+                             String componentNamePropertyId,
+                             String statePropertyId,
+                             JMXMetricCache metricCache) {
+
     super(componentMetrics, hostNamePropertyId, metricHostProvider);
 
     this.streamProvider           = streamProvider;
@@ -129,6 +162,7 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
     this.hostNamePropertyId       = hostNamePropertyId;
     this.componentNamePropertyId  = componentNamePropertyId;
     this.statePropertyId          = statePropertyId;
+    this.metricCache              = metricCache;
   }
 
   // ----- helper methods ----------------------------------------------------
@@ -146,6 +180,50 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
   @Override
   protected Resource populateResource(Resource resource, Request request, Predicate predicate, Ticket ticket)
       throws SystemException {
+    return populateResource(resource, request, predicate, ticket,
+        new HashMap<String, JMXMetricHolder>());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Each endpoint is read once for all the given resources.
+   */
+  @Override
+  protected List<Resource> populateEndpointResources(List<Resource> resources, Request request,
+                                                     Predicate predicate, Ticket ticket)
+      throws SystemException {
+
+    Map<String, JMXMetricHolder> metricHolders = new HashMap<String, JMXMetricHolder>();
+    List<Resource> keepers = new ArrayList<Resource>(resources.size());
+    for (Resource resource : resources) {
+      // if the ticket becomes invalid (timeout) then bail out
+      if (!ticket.isValid()) {
+        break;
+      }
+      Resource populated = populateResource(resource, request, predicate, ticket, metricHolders);
+      if (populated != null) {
+        keepers.add(populated);
+      }
+    }
+    return keepers;
+  }
+
+  /**
+   * Populate a resource by obtaining the requested JMX properties.
+   *
+   * @param resource      the resource to be populated
+   * @param request       the request
+   * @param predicate     the predicate
+   * @param ticket        a valid ticket
+   * @param metricHolders the endpoints read so far by spec, shared by the
+   *                      resources of an endpoint
+   *
+   * @return the populated resource; null if the resource should NOT be part of the result set for the given predicate
+   */
+  private Resource populateResource(Resource resource, Request request, Predicate predicate,
+                                    Ticket ticket, Map<String, JMXMetricHolder> metricHolders)
+      throws SystemException {
 
     Set<String> ids = getRequestPropertyIds(request, predicate);
     Set<String> unsupportedIds = new HashSet<String>();
@@ -201,45 +279,74 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
       return resource;
     }
 
-    InputStream in = null;
-
-    try {
+    for (String hostName : hostNames) {
       try {
-        for (String hostName : hostNames) {
-          try {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("Spec: " + getSpec(protocol, hostName, port, "/jmx"));
-            }
-            in = streamProvider.readFrom(getSpec(protocol, hostName, port, "/jmx"));
-            // if the ticket becomes invalid (timeout) then bail out
-            if (!ticket.isValid()) {
-              return resource;
-            }
-
-            getHadoopMetricValue(in, ids, resource, request, ticket);
-
-          } catch (IOException e) {
-            logException(e);
-          }
+        String spec = getSpec(protocol, hostName, port, "/jmx");
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Spec: " + spec);
         }
-      } finally {
-        if (in != null) {
-          in.close();
+        JMXMetricHolder metricHolder = metricHolders.get(spec);
+        if (metricHolder == null) {
+          metricHolder = getMetricHolder(spec);
+          metricHolders.put(spec, metricHolder);
         }
+        // if the ticket becomes invalid (timeout) then bail out
+        if (!ticket.isValid()) {
+          return resource;
+        }
+
+        getHadoopMetricValue(metricHolder, ids, resource, request, ticket);
+
+      } catch (IOException e) {
+        logException(e);
       }
-    } catch (IOException e) {
-      logException(e);
     }
     return resource;
   }
 
+  @Override
+  protected String getEndpoint(Resource resource) {
+    String componentName = (String) resource.getPropertyValue(componentNamePropertyId);
+    if (getComponentMetrics().get(componentName) == null) {
+      return null;
+    }
+    try {
+      String clusterName = (String) resource.getPropertyValue(clusterNamePropertyId);
+      String protocol = getJMXProtocol(clusterName, componentName);
+      String port = getPort(clusterName, componentName, protocol.equals("https"));
+      Set<String> hostNames = getHosts(resource, clusterName, componentName);
+      if (port == null || hostNames == null || hostNames.size() != 1) {
+        return null;
+      }
+      return getSpec(protocol, hostNames.iterator().next(), port, "");
+    } catch (Exception e) {
+      // populateResource reports the problem
+      return null;
+    }
+  }
+
   /**
-   * Hadoop-specific metrics fetching
+   * Get the parsed bean dump of the given JMX endpoint, from the cache if
+   * there is one.
    */
-  private void getHadoopMetricValue(InputStream in, Set<String> ids,
-                       Resource resource, Request request, Ticket ticket) throws IOException {
-    JMXMetricHolder metricHolder = jmxObjectReader.readValue(in);
+  private JMXMetricHolder getMetricHolder(String spec) throws IOException {
+    if (metricCache != null) {
+      return metricCache.getMetricHolder(spec, streamProvider);
+    }
+
+    InputStream in = streamProvider.readFrom(spec);
+    try {
+      return jmxObjectReader.readValue(in);
+    } finally {
+      in.close();
+    }
+  }
 
+  /**
+   * Hadoop-specific metrics fetching
+   */
+  private void getHadoopMetricValue(JMXMetricHolder metricHolder, Set<String> ids,
+                       Resource resource, Request request, Ticket ticket) {
     Map<String, Map<String, Object>> categories = new HashMap<String, Map<String, Object>>();
     String componentName = (String) resource.getPropertyValue(componentNamePropertyId);
 
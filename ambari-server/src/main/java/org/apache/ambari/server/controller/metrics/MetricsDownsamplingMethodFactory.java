@@ -20,12 +20,14 @@ package org.apache.ambari.server.controller.metrics;
 import com.google.common.collect.Iterators;
 import org.apache.ambari.server.controller.spi.TemporalInfo;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.SortedMap;
 
 public class MetricsDownsamplingMethodFactory {
   private static final MetricsDownsamplingMethod perSecondDownsampling = new MetricsAveragePerSecondDownsampling();
@@ -40,12 +42,9 @@ public class MetricsDownsamplingMethodFactory {
   }
 
   private static boolean mustDownsample(TimelineMetric metric) {
-    //Linear search in Map<K, V>, faster than copying the map in a TreeMap and doing ceilingEntry()
-    for (Long time : metric.getMetricValues().keySet()) {
-      if (time > 9999999999l)
-        return true;
-    }
-    return false;
+    // The series is sorted by time, so the last timestamp is the largest
+    TimelineMetricSeries metricSeries = metric.getReadOnlyMetricSeries();
+    return !metricSeries.isEmpty() && metricSeries.getLastTimestamp() > 9999999999l;
   }
 }
 
@@ -55,10 +54,11 @@ class MetricNoDownsampling extends MetricsDownsamplingMethod {
   public Number[][] reportMetricData(TimelineMetric metricData,
                                      MetricsDataTransferMethod dataTransferMethod,
                                      TemporalInfo temporalInfo) {
-    Number[][] datapointsArray = new Number[metricData.getMetricValues().size()][2];
+    SortedMap<Long, Double> metricValues = metricData.getReadOnlyMetricValues();
+    Number[][] datapointsArray = new Number[metricValues.size()][2];
     int cnt = 0;
 
-    for (Map.Entry<Long, Double> metricEntry : metricData.getMetricValues().entrySet()) {
+    for (Map.Entry<Long, Double> metricEntry : metricValues.entrySet()) {
       if (isWithinTemporalQueryRange(metricEntry.getKey(), temporalInfo)) {
         datapointsArray[cnt][0] = dataTransferMethod.getData(metricEntry.getValue());
         datapointsArray[cnt][1] = metricEntry.getKey();
@@ -111,7 +111,7 @@ class MetricsAveragePerSecondDownsampling extends MetricsDownsamplingMethod {
 
     OutOfBandAccumuloFilterList<Accumulo> cache = new OutOfBandAccumuloFilterList<Accumulo>(temporalInfo);
 
-    final Iterator<Map.Entry<Long, Double>> ci = metricData.getMetricValues().entrySet().iterator();
+    final Iterator<Map.Entry<Long, Double>> ci = metricData.getReadOnlyMetricValues().entrySet().iterator();
 
     // Skip null padding at the beginning of the series.
     Map.Entry<Long, Double> e0 = null;
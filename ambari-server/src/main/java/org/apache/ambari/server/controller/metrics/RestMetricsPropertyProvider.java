@@ -242,6 +242,29 @@ public class RestMetricsPropertyProvider extends ThreadPoolEnabledPropertyProvid
     return resource;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The port is resolved per host and component from the configuration, so
+   * the component stands in for the port rather than resolving it twice.
+   */
+  @Override
+  protected String getEndpoint(Resource resource) {
+    String resourceComponentName = (String) resource.getPropertyValue(componentNamePropertyId);
+    if (!componentName.equals(resourceComponentName)) {
+      return null;
+    }
+    try {
+      String clusterName = (String) resource.getPropertyValue(clusterNamePropertyId);
+      String hostname = getHost(resource, clusterName, resourceComponentName);
+      return hostname == null ? null :
+          resolveProtocol() + "://" + hostname + " (" + resourceComponentName + ")";
+    } catch (Exception e) {
+      // populateResource reports the problem
+      return null;
+    }
+  }
+
   @Override
   public Set<String> checkPropertyIds(Set<String> propertyIds) {
     Set<String> unsupported = new HashSet<String>();
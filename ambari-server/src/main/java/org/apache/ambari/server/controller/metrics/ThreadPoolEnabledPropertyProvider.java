@@ -25,12 +25,18 @@ import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.SystemException;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
@@ -38,6 +44,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Unites common functionality for multithreaded metrics providers
@@ -69,6 +76,14 @@ public abstract class ThreadPoolEnabledPropertyProvider extends AbstractProperty
   protected long populateTimeout = DEFAULT_POPULATE_TIMEOUT_MILLIS;
   public static final String TIMED_OUT_MSG = "Timed out waiting for metrics.";
 
+  /**
+   * Fetch statistics by provider class. Providers are created per request by
+   * StackDefinedPropertyProvider, so the statistics are kept across instances.
+   * They are logged periodically by the PropertyProviderStatisticsService.
+   */
+  private static final ConcurrentMap<Class<?>, PopulateStatistics> STATISTICS =
+      new ConcurrentHashMap<Class<?>, PopulateStatistics>();
+
   // ----- Constructors ------------------------------------------------------
 
   /**
@@ -117,65 +132,161 @@ public abstract class ThreadPoolEnabledPropertyProvider extends AbstractProperty
   public Set<Resource> populateResources(Set<Resource> resources, Request request, Predicate predicate)
       throws SystemException {
 
+    long startTime = System.currentTimeMillis();
+
     // Get a valid ticket for the request.
     Ticket ticket = new Ticket();
 
-    CompletionService<Resource> completionService =
-        new ExecutorCompletionService<Resource>(EXECUTOR_SERVICE);
+    CompletionService<List<Resource>> completionService =
+        new ExecutorCompletionService<List<Resource>>(EXECUTOR_SERVICE);
 
     // In a large cluster we could have thousands of resources to populate here.
-    // Distribute the work across multiple threads.
-    for (Resource resource : resources) {
-      completionService.submit(getPopulateResourceCallable(resource, request, predicate, ticket));
+    // The resources of an endpoint are populated by a single task, so that the
+    // endpoint is read once; different endpoints, including different ports
+    // of a host, are populated in parallel.
+    Map<String, List<Resource>> resourcesByEndpoint = getResourcesByEndpoint(resources);
+    PopulateStatistics statistics = getPopulateStatistics();
+    for (Map.Entry<String, List<Resource>> entry : resourcesByEndpoint.entrySet()) {
+      completionService.submit(getPopulateResourcesCallable(entry.getKey(), entry.getValue(),
+          request, predicate, ticket, statistics));
     }
 
     Set<Resource> keepers = new HashSet<Resource>();
     try {
-      for (int i = 0; i < resources.size(); ++ i) {
-        Future<Resource> resourceFuture =
+      for (int i = 0; i < resourcesByEndpoint.size(); ++ i) {
+        Future<List<Resource>> resourcesFuture =
             completionService.poll(populateTimeout, TimeUnit.MILLISECONDS);
 
-        if (resourceFuture == null) {
+        if (resourcesFuture == null) {
           // its been more than the populateTimeout since the last callable completed ...
           // invalidate the ticket to abort the threads and don't wait any longer
           ticket.invalidate();
+          statistics.timeoutCount.incrementAndGet();
           LOG.error(TIMED_OUT_MSG);
           break;
         } else {
           // future should already be completed... no need to wait on get
-          Resource resource = resourceFuture.get();
-          if (resource != null) {
-            keepers.add(resource);
-          }
+          keepers.addAll(resourcesFuture.get());
         }
       }
     } catch (InterruptedException e) {
       logException(e);
     } catch (ExecutionException e) {
       rethrowSystemException(e.getCause());
+    } finally {
+      long populateTime = System.currentTimeMillis() - startTime;
+      statistics.populateCount.incrementAndGet();
+      statistics.totalPopulateTime.addAndGet(populateTime);
+      statistics.lastPopulateTime = populateTime;
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("{} populated {} resources from {} endpoints in {}ms",
+            getClass().getSimpleName(), resources.size(), resourcesByEndpoint.size(), populateTime);
+      }
     }
     return keepers;
   }
 
   /**
-   * Get a callable that can be used to populate the given resource.
+   * Group the given resources by the endpoint which their metrics are read
+   * from. Resources without a known endpoint are populated on their own.
+   *
+   * @param resources  the resources to be populated
+   *
+   * @return the resources to be populated by endpoint, in the order of the
+   *         given resources
+   */
+  private Map<String, List<Resource>> getResourcesByEndpoint(Set<Resource> resources) {
+    Map<String, List<Resource>> resourcesByEndpoint = new LinkedHashMap<String, List<Resource>>();
+    int unknownEndpoints = 0;
+
+    for (Resource resource : resources) {
+      String endpoint = getEndpoint(resource);
+      if (endpoint == null) {
+        // keys of resources without an endpoint cannot clash with an URL
+        endpoint = String.valueOf(unknownEndpoints++);
+      }
+      List<Resource> endpointResources = resourcesByEndpoint.get(endpoint);
+      if (endpointResources == null) {
+        endpointResources = new ArrayList<Resource>();
+        resourcesByEndpoint.put(endpoint, endpointResources);
+      }
+      endpointResources.add(resource);
+    }
+    return resourcesByEndpoint;
+  }
+
+  /**
+   * Get the endpoint which the metrics of the given resource are read from,
+   * as protocol, host and port. Resources of the same endpoint are populated
+   * one after the other by a single task.
    *
    * @param resource  the resource to be populated
-   * @param request   the request
-   * @param predicate the predicate
-   * @param ticket    a valid ticket
    *
-   * @return a callable that can be used to populate the given resource
+   * @return the endpoint of the resource; null if it is not known, in which
+   *         case the resource is populated by a task of its own
+   */
+  protected String getEndpoint(Resource resource) {
+    return null;
+  }
+
+  /**
+   * Get a callable that can be used to populate the resources of an endpoint.
+   *
+   * @param endpoint   the endpoint of the resources
+   * @param resources  the resources to be populated
+   * @param request    the request
+   * @param predicate  the predicate
+   * @param ticket     a valid ticket
+   * @param statistics the statistics to record the fetch in
+   *
+   * @return a callable that can be used to populate the given resources
    */
-  private Callable<Resource> getPopulateResourceCallable(
-      final Resource resource, final Request request, final Predicate predicate, final Ticket ticket) {
-    return new Callable<Resource>() {
-      public Resource call() throws SystemException {
-        return populateResource(resource, request, predicate, ticket);
+  private Callable<List<Resource>> getPopulateResourcesCallable(
+      final String endpoint, final List<Resource> resources, final Request request,
+      final Predicate predicate, final Ticket ticket, final PopulateStatistics statistics) {
+    return new Callable<List<Resource>>() {
+      public List<Resource> call() throws SystemException {
+        long startTime = System.currentTimeMillis();
+        try {
+          return populateEndpointResources(resources, request, predicate, ticket);
+        } finally {
+          statistics.recordFetch(endpoint, System.currentTimeMillis() - startTime);
+        }
       }
     };
   }
 
+  /**
+   * Populate the resources of a single endpoint, one after the other.
+   * Providers which can read the endpoint once for all of its resources
+   * override this.
+   *
+   * @param resources  the resources to be populated
+   * @param request    the request
+   * @param predicate  the predicate
+   * @param ticket     a valid ticket
+   *
+   * @return the populated resources which should be part of the result set
+   */
+  protected List<Resource> populateEndpointResources(List<Resource> resources, Request request,
+                                                     Predicate predicate, Ticket ticket)
+      throws SystemException {
+
+    List<Resource> keepers = new ArrayList<Resource>(resources.size());
+    for (Resource resource : resources) {
+      // if the ticket becomes invalid (timeout) then bail out
+      if (!ticket.isValid()) {
+        break;
+      }
+      Resource populated = populateResource(resource, request, predicate, ticket);
+      if (populated != null) {
+        keepers.add(populated);
+      }
+    }
+    return keepers;
+  }
+
 
   /**
    * Populate a resource by obtaining the requested JMX properties.
@@ -205,6 +316,44 @@ public abstract class ThreadPoolEnabledPropertyProvider extends AbstractProperty
   }
 
 
+  // ----- statistics --------------------------------------------------------
+
+  /**
+   * Get the fetch statistics of all the providers of this class.
+   *
+   * @return the statistics shared by the providers of this class
+   */
+  public PopulateStatistics getPopulateStatistics() {
+    return getPopulateStatistics(getClass());
+  }
+
+  /**
+   * Get the fetch statistics of all the providers of the given class.
+   *
+   * @param providerClass  the provider class
+   *
+   * @return the statistics shared by the providers of the class
+   */
+  public static PopulateStatistics getPopulateStatistics(Class<? extends ThreadPoolEnabledPropertyProvider> providerClass) {
+    PopulateStatistics statistics = STATISTICS.get(providerClass);
+    if (statistics == null) {
+      STATISTICS.putIfAbsent(providerClass, new PopulateStatistics());
+      statistics = STATISTICS.get(providerClass);
+    }
+    return statistics;
+  }
+
+  /**
+   * Get the fetch statistics of all the provider classes which populated
+   * resources so far.
+   *
+   * @return the statistics by provider class
+   */
+  public static Map<Class<?>, PopulateStatistics> getAllPopulateStatistics() {
+    return new HashMap<Class<?>, PopulateStatistics>(STATISTICS);
+  }
+
+
   // ----- helper methods ----------------------------------------------------
 
   /**
@@ -268,6 +417,160 @@ public abstract class ThreadPoolEnabledPropertyProvider extends AbstractProperty
 
   }
 
+  // ----- inner class : PopulateStatistics ----------------------------------
+
+  /**
+   * Fetch statistics of the providers of a class, in total and by endpoint.
+   */
+  public static class PopulateStatistics {
+    /**
+     * The maximum number of endpoints tracked, bounds the memory used if
+     * endpoints keep changing.
+     */
+    private static final int MAX_ENDPOINTS = 10000;
+
+    private final AtomicLong populateCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalPopulateTime = new AtomicLong();
+    private volatile long lastPopulateTime;
+    private final FetchStatistics fetches = new FetchStatistics();
+    private final ConcurrentMap<String, FetchStatistics> endpointFetches =
+        new ConcurrentHashMap<String, FetchStatistics>();
+
+    /**
+     * Record a fetch of the resources of an endpoint.
+     *
+     * @param endpoint   the endpoint
+     * @param fetchTime  the time taken by the fetch in milliseconds
+     */
+    private void recordFetch(String endpoint, long fetchTime) {
+      fetches.record(fetchTime);
+
+      FetchStatistics statistics = endpointFetches.get(endpoint);
+      if (statistics == null && endpointFetches.size() < MAX_ENDPOINTS) {
+        endpointFetches.putIfAbsent(endpoint, new FetchStatistics());
+        statistics = endpointFetches.get(endpoint);
+      }
+      if (statistics != null) {
+        statistics.record(fetchTime);
+      }
+    }
+
+    /**
+     * Get the number of populate requests handled.
+     *
+     * @return the number of populate requests
+     */
+    public long getPopulateCount() {
+      return populateCount.get();
+    }
+
+    /**
+     * Get the number of fetch tasks run, one per endpoint and request.
+     *
+     * @return the number of fetch tasks
+     */
+    public long getFetchTaskCount() {
+      return fetches.getFetchCount();
+    }
+
+    /**
+     * Get the number of populate requests which timed out waiting for metrics.
+     *
+     * @return the number of timed out populate requests
+     */
+    public long getTimeoutCount() {
+      return timeoutCount.get();
+    }
+
+    /**
+     * Get the average time taken to populate the resources of a request.
+     *
+     * @return the average populate time in milliseconds
+     */
+    public long getAveragePopulateTime() {
+      long count = populateCount.get();
+      return count == 0 ? 0 : totalPopulateTime.get() / count;
+    }
+
+    /**
+     * Get the time taken to populate the resources of the last request.
+     *
+     * @return the last populate time in milliseconds
+     */
+    public long getLastPopulateTime() {
+      return lastPopulateTime;
+    }
+
+    /**
+     * Get the statistics of all the fetch tasks.
+     *
+     * @return the fetch statistics
+     */
+    public FetchStatistics getFetchStatistics() {
+      return fetches;
+    }
+
+    /**
+     * Get the statistics of the fetch tasks by endpoint.
+     *
+     * @return the fetch statistics by endpoint
+     */
+    public Map<String, FetchStatistics> getEndpointFetchStatistics() {
+      return Collections.<String, FetchStatistics>unmodifiableMap(endpointFetches);
+    }
+  }
+
+  /**
+   * Count and latency of fetch tasks.
+   */
+  public static class FetchStatistics {
+    private final AtomicLong fetchCount = new AtomicLong();
+    private final AtomicLong totalFetchTime = new AtomicLong();
+    private final AtomicLong maxFetchTime = new AtomicLong();
+    private volatile long lastFetchTime;
+
+    private void record(long fetchTime) {
+      fetchCount.incrementAndGet();
+      totalFetchTime.addAndGet(fetchTime);
+      lastFetchTime = fetchTime;
+
+      long max = maxFetchTime.get();
+      while (fetchTime > max && !maxFetchTime.compareAndSet(max, fetchTime)) {
+        max = maxFetchTime.get();
+      }
+    }
+
+    /**
+     * @return the number of fetches
+     */
+    public long getFetchCount() {
+      return fetchCount.get();
+    }
+
+    /**
+     * @return the average fetch time in milliseconds
+     */
+    public long getAverageFetchTime() {
+      long count = fetchCount.get();
+      return count == 0 ? 0 : totalFetchTime.get() / count;
+    }
+
+    /**
+     * @return the longest fetch time in milliseconds
+     */
+    public long getMaxFetchTime() {
+      return maxFetchTime.get();
+    }
+
+    /**
+     * @return the last fetch time in milliseconds
+     */
+    public long getLastFetchTime() {
+      return lastFetchTime;
+    }
+  }
+
   // ----- inner class : Ticket ----------------------------------------------
 
   /**
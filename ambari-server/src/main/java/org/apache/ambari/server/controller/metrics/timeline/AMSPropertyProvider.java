@@ -256,8 +256,9 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
 
         if (!timelineMetrics.getMetrics().isEmpty()) {
           for (TimelineMetric metric : timelineMetrics.getMetrics()) {
+            // values are not read here, since that would convert values
+            // held as a series in the metrics cache
             if (metric.getMetricName() != null
-                && metric.getMetricValues() != null
                 && checkMetricName(patterns, metric.getMetricName())) {
               String hostname = metric.getHostName();
               if (!metricsMap.containsKey(hostname)) {
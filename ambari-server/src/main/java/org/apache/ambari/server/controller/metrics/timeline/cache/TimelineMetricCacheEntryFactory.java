@@ -28,6 +28,7 @@ import org.apache.ambari.server.controller.spi.TemporalInfo;
 import org.apache.ambari.server.controller.utilities.StreamProvider;
 import org.apache.hadoop.metrics2.sink.timeline.Precision;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.http.client.utils.URIBuilder;
 import org.slf4j.Logger;
@@ -41,7 +42,6 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeMap;
 
 @Singleton
 public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactory {
@@ -96,6 +96,11 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
     TimelineMetricsCacheValue value = null;
 
     if (timelineMetrics != null && !timelineMetrics.getMetrics().isEmpty()) {
+      // Hold cached values as primitive series rather than boxed maps
+      for (TimelineMetric timelineMetric : timelineMetrics.getMetrics()) {
+        timelineMetric.getMetricSeries().trimToSize();
+      }
+
       value = new TimelineMetricsCacheValue(
         metricCacheKey.getTemporalInfo().getStartTime(),
         metricCacheKey.getTemporalInfo().getEndTime(),
@@ -214,12 +219,11 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
 
     if (newMetrics != null && !newMetrics.getMetrics().isEmpty()) {
       for (TimelineMetric timelineMetric : newMetrics.getMetrics()) {
-        if (LOG.isTraceEnabled()) {
-          TreeMap<Long, Double> sortedMetrics = new TreeMap<Long, Double>(timelineMetric.getMetricValues());
-
+        TimelineMetricSeries newSeries = timelineMetric.getMetricSeries();
+        if (LOG.isTraceEnabled() && !newSeries.isEmpty()) {
           LOG.trace("New metric: " + timelineMetric.getMetricName() +
-            " # " + timelineMetric.getMetricValues().size() + ", startTime = " +
-            sortedMetrics.firstKey() + ", endTime = " + sortedMetrics.lastKey());
+            " # " + newSeries.size() + ", startTime = " +
+            newSeries.getFirstTimestamp() + ", endTime = " + newSeries.getLastTimestamp());
         }
 
         TimelineMetric existingMetric = null;
@@ -232,13 +236,14 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
 
         if (existingMetric != null) {
           // Add new ones
-          existingMetric.getMetricValues().putAll(timelineMetric.getMetricValues());
+          TimelineMetricSeries existingSeries = existingMetric.getMetricSeries();
+          existingSeries.merge(newSeries);
+          existingSeries.trimToSize();
 
-          if (LOG.isTraceEnabled()) {
-            TreeMap<Long, Double> sortedMetrics = new TreeMap<Long, Double>(existingMetric.getMetricValues());
+          if (LOG.isTraceEnabled() && !existingSeries.isEmpty()) {
             LOG.trace("Merged metric: " + timelineMetric.getMetricName() + ", " +
-              "Final size: " + existingMetric.getMetricValues().size() + ", startTime = " +
-              sortedMetrics.firstKey() + ", endTime = " + sortedMetrics.lastKey());
+              "Final size: " + existingSeries.size() + ", startTime = " +
+              existingSeries.getFirstTimestamp() + ", endTime = " + existingSeries.getLastTimestamp());
           }
         } else {
           existingTimelineMetrics.getMetrics().add(timelineMetric);
@@ -253,15 +258,14 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
 
     for (TimelineMetric existingMetric : existingMetrics.getMetrics()) {
       if (removeAll) {
-        existingMetric.setMetricValues(new TreeMap<Long, Double>());
+        existingMetric.setMetricSeries(new TimelineMetricSeries());
       } else {
-        TreeMap<Long, Double> existingMetricValues = existingMetric.getMetricValues();
+        TimelineMetricSeries existingSeries = existingMetric.getMetricSeries();
         LOG.trace("Existing metric: " + existingMetric.getMetricName() +
-          " # " + existingMetricValues.size());
+          " # " + existingSeries.size());
 
         // Retain only the values that are within the [requestStartTime, requestedEndTime] window
-        existingMetricValues.headMap(requestedStartTime,false).clear();
-        existingMetricValues.tailMap(requestedEndTime, false).clear();
+        existingSeries.retain(requestedStartTime, requestedEndTime);
       }
     }
   }
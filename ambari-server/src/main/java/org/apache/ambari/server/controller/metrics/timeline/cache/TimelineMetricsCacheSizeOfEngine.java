@@ -23,11 +23,10 @@ import net.sf.ehcache.pool.impl.DefaultSizeOfEngine;
 import net.sf.ehcache.pool.sizeof.ReflectionSizeOf;
 import net.sf.ehcache.pool.sizeof.SizeOf;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Cache sizing engine that reduces reflective calls over the Object graph to
@@ -45,8 +44,8 @@ public class TimelineMetricsCacheSizeOfEngine implements SizeOfEngine {
   // Optimizations
   private volatile long timelineMetricPrimitivesApproximation = 0;
 
-  private long sizeOfMapEntry;
-  private long sizeOfMapEntryOverhead;
+  // long timestamp + double value
+  private static final long SIZE_OF_SERIES_ENTRY = 16;
 
   private TimelineMetricsCacheSizeOfEngine(SizeOfEngine underlying) {
     this.underlying = underlying;
@@ -55,16 +54,6 @@ public class TimelineMetricsCacheSizeOfEngine implements SizeOfEngine {
   public TimelineMetricsCacheSizeOfEngine() {
     this(new DefaultSizeOfEngine(DEFAULT_MAX_DEPTH, DEFAULT_ABORT_WHEN_MAX_DEPTH_EXCEEDED));
 
-    this.sizeOfMapEntry = reflectionSizeOf.sizeOf(new Long(1)) +
-      reflectionSizeOf.sizeOf(new Double(2.0));
-
-    //SizeOfMapEntryOverhead = SizeOfMapWithOneEntry - (SizeOfEmptyMap + SizeOfOneEntry)
-    TreeMap<Long,Double> map = new TreeMap<>();
-    long emptyMapSize = reflectionSizeOf.sizeOf(map);
-    map.put(new Long(1), new Double(2.0));
-    long sizeOfMapOneEntry = reflectionSizeOf.deepSizeOf(DEFAULT_MAX_DEPTH, DEFAULT_ABORT_WHEN_MAX_DEPTH_EXCEEDED, map).getCalculated();
-    this.sizeOfMapEntryOverhead =  sizeOfMapOneEntry - (emptyMapSize + this.sizeOfMapEntry);
-
     LOG.info("Creating custom sizeof engine for TimelineMetrics.");
   }
 
@@ -124,12 +113,11 @@ public class TimelineMetricsCacheSizeOfEngine implements SizeOfEngine {
         }
         size += timelineMetricPrimitivesApproximation;
 
-        Map<Long, Double> metricValues = metric.getMetricValues();
-        if (metricValues != null && !metricValues.isEmpty()) {
-          // Numeric wrapper: 12 bytes + 8 bytes Data type + 4 bytes alignment = 48 (Long, Double)
-          // Tree Map: 12 bytes for header + 20 bytes for 5 object fields : pointers + 1 byte for flag = 40
-         LOG.debug("Size of metric value: " + (sizeOfMapEntry + sizeOfMapEntryOverhead) * metricValues.size());
-          size += (sizeOfMapEntry + sizeOfMapEntryOverhead) * metricValues.size(); // Treemap size is O(1)
+        // Cached values are held as a series of a long and a double per value
+        TimelineMetricSeries metricSeries = metric.getReadOnlyMetricSeries();
+        if (!metricSeries.isEmpty()) {
+          LOG.debug("Size of metric value: " + SIZE_OF_SERIES_ENTRY * metricSeries.size());
+          size += SIZE_OF_SERIES_ENTRY * metricSeries.size();
         }
       }
       LOG.debug("Total Size of metric values in cache: " + size);
@@ -17,9 +17,14 @@
  */
 package org.apache.ambari.server.events.listeners.alerts;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.EagerSingleton;
@@ -56,6 +61,13 @@ import com.google.inject.persist.Transactional;
  * The {@link AlertReceivedListener} class handles {@link AlertReceivedEvent}
  * and updates the appropriate DAOs. It may also fire new
  * {@link AlertStateChangeEvent} when an {@link AlertState} change is detected.
+ * <p/>
+ * If {@link Configuration#isAlertIngestionBatchingEnabled()} is set, then
+ * received alerts are buffered instead of being written right away. Repeated
+ * results with the same state are coalesced in the buffer and the remaining
+ * state changes and timestamp updates are written by
+ * {@link #flushPendingAlerts()}, which is invoked periodically by the
+ * {@link org.apache.ambari.server.state.services.AlertIngestionFlushService}.
  */
 @Singleton
 @EagerSingleton
@@ -85,6 +97,39 @@ public class AlertReceivedListener {
    */
   private AlertEventPublisher m_alertEventPublisher;
 
+  /**
+   * The received alerts which have not been written yet, keyed by cluster and
+   * alert. Only used when alert ingestion is batched.
+   */
+  private final Map<String, LinkedList<ReceivedAlert>> m_pendingAlerts =
+      new LinkedHashMap<String, LinkedList<ReceivedAlert>>();
+
+  /**
+   * Serializes flushes so that the buffered alerts are written in the order
+   * they were received.
+   */
+  private final Object m_flushLock = new Object();
+
+  /**
+   * The number of alerts received, and the number of those which were
+   * coalesced with a pending alert of the same state.
+   */
+  private final AtomicLong m_receivedCount = new AtomicLong();
+  private final AtomicLong m_coalescedCount = new AtomicLong();
+
+  /**
+   * The number of alerts received at the time of the last flush.
+   */
+  private long m_receivedCountAtLastFlush = 0;
+
+  /**
+   * Ingestion statistics, updated on every flush.
+   */
+  private volatile long m_lastFlushTime = System.currentTimeMillis();
+  private volatile double m_ingestionRate = 0;
+  private volatile long m_lastFlushLag = 0;
+  private volatile long m_lastFlushDuration = 0;
+
   /**
    * Constructor.
    *
@@ -110,15 +155,215 @@ public class AlertReceivedListener {
       LOG.debug(event.toString());
     }
 
-    //play around too many commits
+    long receivedTime = System.currentTimeMillis();
     List<Alert> alerts = event.getAlerts();
+    m_receivedCount.addAndGet(alerts.size());
+
+    if (m_configuration.isAlertIngestionBatchingEnabled()) {
+      synchronized (m_pendingAlerts) {
+        for (Alert alert : alerts) {
+          addPendingAlert(new ReceivedAlert(alert, event.getClusterId(), receivedTime));
+        }
+      }
+
+      return;
+    }
+
+    List<ReceivedAlert> received = new ArrayList<ReceivedAlert>(alerts.size());
+    for (Alert alert : alerts) {
+      received.add(new ReceivedAlert(alert, event.getClusterId(), receivedTime));
+    }
+
+    processAlerts(received, new HashMap<String, AlertDefinitionEntity>());
+  }
+
+  /**
+   * Writes the alerts which were buffered since the last flush. The buffered
+   * alerts are written in rounds: the first pending alert of every cluster
+   * alert, then the second one and so on, so that the state changes of an
+   * alert are written in order. Each round is written in a single
+   * transaction.
+   */
+  @RequiresSession
+  public void flushPendingAlerts() {
+    synchronized (m_flushLock) {
+      long start = System.currentTimeMillis();
+
+      List<LinkedList<ReceivedAlert>> pending;
+      synchronized (m_pendingAlerts) {
+        pending = new ArrayList<LinkedList<ReceivedAlert>>(m_pendingAlerts.values());
+        m_pendingAlerts.clear();
+      }
+
+      // definitions do not change often; look each one up once per flush
+      Map<String, AlertDefinitionEntity> definitions = new HashMap<String, AlertDefinitionEntity>();
+
+      int written = 0;
+      long oldestReceivedTime = start;
+      while (!pending.isEmpty()) {
+        List<ReceivedAlert> round = new ArrayList<ReceivedAlert>(pending.size());
+        Iterator<LinkedList<ReceivedAlert>> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+          LinkedList<ReceivedAlert> alerts = iterator.next();
+          ReceivedAlert received = alerts.removeFirst();
+          oldestReceivedTime = Math.min(oldestReceivedTime, received.m_receivedTime);
+          round.add(received);
+
+          if (alerts.isEmpty()) {
+            iterator.remove();
+          }
+        }
+
+        try {
+          processAlerts(round, definitions);
+          written += round.size();
+        } catch (Exception exception) {
+          LOG.error("Unable to write {} received alerts to the database", round.size(),
+              exception);
+        }
+      }
+
+      long end = System.currentTimeMillis();
+      long received = m_receivedCount.get();
+      long elapsed = end - m_lastFlushTime;
+      if (elapsed > 0) {
+        m_ingestionRate = (received - m_receivedCountAtLastFlush) * 1000d / elapsed;
+      }
+
+      m_receivedCountAtLastFlush = received;
+      m_lastFlushTime = end;
+      m_lastFlushLag = end - oldestReceivedTime;
+      m_lastFlushDuration = end - start;
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(
+            "Wrote {} received alerts in {}ms; ingestion rate {}/s, flush lag {}ms, {} coalesced since startup",
+            written, m_lastFlushDuration, String.format("%.1f", m_ingestionRate),
+            m_lastFlushLag, m_coalescedCount.get());
+      }
+    }
+  }
+
+  /**
+   * Gets the number of alerts received since startup.
+   *
+   * @return the number of received alerts.
+   */
+  public long getReceivedAlertCount() {
+    return m_receivedCount.get();
+  }
 
+  /**
+   * Gets the number of received alerts which were coalesced with a buffered
+   * alert of the same state and were therefore never written on their own.
+   *
+   * @return the number of coalesced alerts.
+   */
+  public long getCoalescedAlertCount() {
+    return m_coalescedCount.get();
+  }
+
+  /**
+   * Gets the number of buffered alerts waiting for the next flush.
+   *
+   * @return the number of pending alerts.
+   */
+  public int getPendingAlertCount() {
+    synchronized (m_pendingAlerts) {
+      int count = 0;
+      for (LinkedList<ReceivedAlert> alerts : m_pendingAlerts.values()) {
+        count += alerts.size();
+      }
+
+      return count;
+    }
+  }
+
+  /**
+   * Gets the rate at which alerts were received between the last two flushes.
+   *
+   * @return the number of alerts received per second.
+   */
+  public double getIngestionRate() {
+    return m_ingestionRate;
+  }
+
+  /**
+   * Gets the time between the receipt of the oldest alert written by the last
+   * flush and the end of that flush.
+   *
+   * @return the flush lag in milliseconds.
+   */
+  public long getLastFlushLag() {
+    return m_lastFlushLag;
+  }
+
+  /**
+   * Gets how long the last flush took.
+   *
+   * @return the duration in milliseconds.
+   */
+  public long getLastFlushDuration() {
+    return m_lastFlushDuration;
+  }
+
+  /**
+   * Buffers a received alert. If the last buffered alert of the same cluster
+   * alert has the same state, then it is replaced since only the latest
+   * timestamp and text would be written for it; the time at which the state
+   * was first reported is kept. Otherwise the alert is appended so that every
+   * state change is still written.
+   * <p/>
+   * Must be invoked while holding the {@link #m_pendingAlerts} lock.
+   *
+   * @param received
+   *          the received alert.
+   */
+  private void addPendingAlert(ReceivedAlert received) {
+    Alert alert = received.m_alert;
+    String key = StringUtils.join(new Object[] { alert.getCluster(), received.m_eventClusterId,
+        alert.getName(), alert.getInstance(), alert.getService(), alert.getComponent(),
+        alert.getHostName() }, '/');
+
+    LinkedList<ReceivedAlert> alerts = m_pendingAlerts.get(key);
+    if (null == alerts) {
+      alerts = new LinkedList<ReceivedAlert>();
+      m_pendingAlerts.put(key, alerts);
+    }
+
+    ReceivedAlert last = alerts.peekLast();
+    if (null != last && last.m_alert.getState() == alert.getState()) {
+      received.m_originalTimestamp = last.m_originalTimestamp;
+      received.m_receivedTime = last.m_receivedTime;
+      alerts.removeLast();
+      m_coalescedCount.incrementAndGet();
+    }
+
+    alerts.add(received);
+  }
+
+  /**
+   * Creates or updates the current alerts and their history for the
+   * specified received alerts and publishes the resulting
+   * {@link InitialAlertEvent} and {@link AlertStateChangeEvent} instances.
+   *
+   * @param receivedAlerts
+   *          the received alerts, at most one per cluster alert.
+   * @param definitions
+   *          the definitions which were already looked up, keyed by cluster
+   *          ID and definition name.
+   */
+  private void processAlerts(List<ReceivedAlert> receivedAlerts,
+      Map<String, AlertDefinitionEntity> definitions) {
+    //play around too many commits
     Map<Alert, AlertCurrentEntity> toCreate = new HashMap<Alert, AlertCurrentEntity>();
     Map<Alert, AlertCurrentEntity> toMerge = new HashMap<Alert, AlertCurrentEntity>();
     Map<Alert, AlertCurrentEntity> toCreateHistoryAndMerge = new HashMap<Alert, AlertCurrentEntity>();
     Map<Alert, AlertState> oldStates = new HashMap<Alert, AlertState>();
 
-    for (Alert alert : alerts) {
+    for (ReceivedAlert received : receivedAlerts) {
+      Alert alert = received.m_alert;
+
       // jobs that were running when a service/component/host was changed
       // which invalidate the alert should not be reported
       if (!isValid(alert)) {
@@ -128,11 +373,15 @@ public class AlertReceivedListener {
       Long clusterId = getClusterIdByName(alert.getCluster());
       if (clusterId == null) {
         //check event
-        clusterId = event.getClusterId();
+        clusterId = received.m_eventClusterId;
       }
 
-      AlertDefinitionEntity definition = m_definitionDao.findByName(clusterId,
-        alert.getName());
+      String definitionKey = clusterId + "/" + alert.getName();
+      AlertDefinitionEntity definition = definitions.get(definitionKey);
+      if (null == definition && !definitions.containsKey(definitionKey)) {
+        definition = m_definitionDao.findByName(clusterId, alert.getName());
+        definitions.put(definitionKey, definition);
+      }
 
       if (null == definition) {
         LOG.warn(
@@ -163,12 +412,13 @@ public class AlertReceivedListener {
 
       if (null == current) {
         AlertHistoryEntity history = createHistory(clusterId, definition, alert);
+        history.setAlertTimestamp(received.m_originalTimestamp);
 
         current = new AlertCurrentEntity();
         current.setMaintenanceState(MaintenanceState.OFF);
         current.setAlertHistory(history);
         current.setLatestTimestamp(alert.getTimestamp());
-        current.setOriginalTimestamp(alert.getTimestamp());
+        current.setOriginalTimestamp(received.m_originalTimestamp);
 
         toCreate.put(alert, current);
 
@@ -192,9 +442,10 @@ public class AlertReceivedListener {
         // insert history, update current
         AlertHistoryEntity history = createHistory(clusterId,
           oldHistory.getAlertDefinition(), alert);
+        history.setAlertTimestamp(received.m_originalTimestamp);
 
         current.setLatestTimestamp(alert.getTimestamp());
-        current.setOriginalTimestamp(alert.getTimestamp());
+        current.setOriginalTimestamp(received.m_originalTimestamp);
         current.setLatestText(alert.getText());
 
         current.setAlertHistory(history);
@@ -405,4 +656,31 @@ public class AlertReceivedListener {
 
     return history;
   }
+
+  /**
+   * An alert along with the cluster of the event it was received in and
+   * when it was received.
+   */
+  private static final class ReceivedAlert {
+    private final Alert m_alert;
+    private final long m_eventClusterId;
+
+    /**
+     * When the alert, or the first alert it was coalesced with, was received.
+     */
+    private long m_receivedTime;
+
+    /**
+     * The timestamp of the alert, or of the first alert it was coalesced
+     * with, which is when its state was first reported.
+     */
+    private long m_originalTimestamp;
+
+    private ReceivedAlert(Alert alert, long eventClusterId, long receivedTime) {
+      m_alert = alert;
+      m_eventClusterId = eventClusterId;
+      m_receivedTime = receivedTime;
+      m_originalTimestamp = alert.getTimestamp();
+    }
+  }
 }
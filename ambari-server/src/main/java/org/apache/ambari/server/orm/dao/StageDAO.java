@@ -250,13 +250,18 @@ public class StageDAO {
 
   /**
    * Update the given stage entity with the desired status.
+   * <p/>
+   * The caller should wake up the scheduler with
+   * {@link ActionManager#awakeScheduler()} once the transaction is committed,
+   * so that the changed tasks are scheduled without waiting for the next
+   * reconciliation pass.
    *
    * @param stage
    *          the stage entity to update
    * @param desiredStatus
    *          the desired stage status
-   * @param controller
-   *          the ambari management controller
+   * @param actionManager
+   *          the action manager
    *
    * @throws java.lang.IllegalArgumentException
    *           if the transition to the desired status is not a legal transition
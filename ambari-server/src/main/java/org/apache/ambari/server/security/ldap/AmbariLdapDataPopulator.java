@@ -17,10 +17,12 @@
  */
 package org.apache.ambari.server.security.ldap;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -86,6 +88,7 @@ public class AmbariLdapDataPopulator {
   private static final String UID_ATTRIBUTE          = "uid";
   private static final String OBJECT_CLASS_ATTRIBUTE = "objectClass";
   private static final int USERS_PAGE_SIZE = 500;
+  private static final int MEMBERS_BATCH_SIZE = 100;
 
   /**
    * Construct an AmbariLdapDataPopulator.
@@ -346,8 +349,14 @@ public class AmbariLdapDataPopulator {
       groupMemberAttributes = new HashSet<String>();
     }
 
+    // resolve most user members with a few searches, the rest one by one
+    final Map<String, LdapUserDto> groupMembers = getLdapUsersByMemberAttrs(group.getMemberAttributes());
+
     for (String memberAttributeValue: group.getMemberAttributes()) {
-      LdapUserDto groupMember = getLdapUserByMemberAttr(memberAttributeValue);
+      LdapUserDto groupMember = groupMembers.get(memberAttributeValue);
+      if (groupMember == null) {
+        groupMember = getLdapUserByMemberAttr(memberAttributeValue);
+      }
       if (groupMember != null) {
         externalMembers.add(groupMember.getUserName());
       } else {
@@ -441,6 +450,60 @@ public class AmbariLdapDataPopulator {
     return (filteredLdapUsers.isEmpty()) ? null : filteredLdapUsers.iterator().next();
   }
 
+  /**
+   * Get the LDAP user members for the given member attributes, searching for
+   * the users of up to {@value #MEMBERS_BATCH_SIZE} member attributes at once.
+   * Member attributes are either user names or user DNs; DNs are matched by
+   * their user name and compared with the DN of the found user. Member
+   * attributes which can't be resolved this way (e.g. groups) are left out.
+   *
+   * @param memberAttributeValues  the member attribute values
+   *
+   * @return map of member attribute value to user
+   */
+  protected Map<String, LdapUserDto> getLdapUsersByMemberAttrs(Collection<String> memberAttributeValues) {
+    final Map<String, LdapUserDto> members = new HashMap<String, LdapUserDto>();
+    final String usernameAttribute = ldapServerProperties.getUsernameAttribute();
+
+    // user name -> member attribute values referring to it
+    final Map<String, List<String>> memberAttributesByName = new LinkedHashMap<String, List<String>>();
+    for (String memberAttributeValue : memberAttributeValues) {
+      final String userName = getMemberUserName(memberAttributeValue);
+      if (userName != null) {
+        List<String> values = memberAttributesByName.get(userName);
+        if (values == null) {
+          values = new ArrayList<String>();
+          memberAttributesByName.put(userName, values);
+        }
+        values.add(memberAttributeValue);
+      }
+    }
+
+    final List<String> userNames = new ArrayList<String>(memberAttributesByName.keySet());
+    for (int i = 0; i < userNames.size(); i += MEMBERS_BATCH_SIZE) {
+      final OrFilter userNameFilter = new OrFilter();
+      for (String userName : userNames.subList(i, Math.min(i + MEMBERS_BATCH_SIZE, userNames.size()))) {
+        userNameFilter.or(new EqualsFilter(usernameAttribute, userName));
+      }
+      final Filter filter = new AndFilter()
+        .and(new EqualsFilter(OBJECT_CLASS_ATTRIBUTE, ldapServerProperties.getUserObjectClass()))
+        .and(userNameFilter);
+
+      for (LdapUserDto user : searchLdapUsers(ldapServerProperties.getBaseDN(), filter.encode(),
+          ldapServerProperties.isPaginationEnabled())) {
+        final List<String> values = user.getUserName() == null ? null : memberAttributesByName.get(user.getUserName());
+        if (values != null) {
+          for (String value : values) {
+            if (!isMemberAttributeBaseDn(value) || normalizeDn(value).equals(normalizeDn(user.getDn()))) {
+              members.put(value, user);
+            }
+          }
+        }
+      }
+    }
+    return members;
+  }
+
   /**
    * Get the LDAP group member for the given member attribute.
    *
@@ -490,6 +553,41 @@ public class AmbariLdapDataPopulator {
     }
   }
 
+  /**
+   * Gets the user name a member attribute refers to: the value itself, or
+   * the value of the leading user name attribute of a DN.
+   *
+   * @return the user name; null if it can't be told from the member attribute
+   */
+  private String getMemberUserName(String memberAttributeValue) {
+    if (memberAttributeValue == null) {
+      return null;
+    }
+    if (!isMemberAttributeBaseDn(memberAttributeValue)) {
+      return memberAttributeValue;
+    }
+    final String userNamePrefix = ldapServerProperties.getUsernameAttribute() + "=";
+    // member DNs are lowercased, attribute names are case insensitive;
+    // escaped characters in the relative DN are left to the lookup by DN
+    if (!memberAttributeValue.regionMatches(true, 0, userNamePrefix, 0, userNamePrefix.length())
+        || memberAttributeValue.contains("\\")) {
+      return null;
+    }
+    final int end = memberAttributeValue.indexOf(',');
+    final String userName = (end == -1)
+      ? memberAttributeValue.substring(userNamePrefix.length())
+      : memberAttributeValue.substring(userNamePrefix.length(), end);
+    return userName.trim().isEmpty() ? null : userName.trim();
+  }
+
+  /**
+   * Normalizes a lower case DN for comparison by removing the spaces around
+   * the separators of its relative DNs.
+   */
+  private static String normalizeDn(String dn) {
+    return dn == null ? null : dn.replaceAll("\\s*([,=])\\s*", "$1").trim();
+  }
+
   /**
    * Determines that the member attribute can be used as a 'dn'
    */
@@ -528,7 +626,20 @@ public class AmbariLdapDataPopulator {
   private Set<LdapGroupDto> getFilteredLdapGroups(String baseDn, Filter filter) {
     final Set<LdapGroupDto> groups = new HashSet<LdapGroupDto>();
     final LdapTemplate ldapTemplate = loadLdapTemplate();
-    ldapTemplate.search(baseDn, filter.encode(), new LdapGroupContextMapper(groups, ldapServerProperties));
+    final LdapGroupContextMapper ldapGroupContextMapper = new LdapGroupContextMapper(groups, ldapServerProperties);
+    final String encodedFilter = filter.encode();
+
+    if (ldapServerProperties.isPaginationEnabled()) {
+      // large directories limit the number of results returned at once
+      PagedResultsDirContextProcessor processor = createPagingProcessor();
+      SearchControls searchControls = new SearchControls();
+      searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+      do {
+        ldapTemplate.search(baseDn, encodedFilter, searchControls, ldapGroupContextMapper, processor);
+      } while (processor.getCookie().getCookie() != null);
+    } else {
+      ldapTemplate.search(baseDn, encodedFilter, ldapGroupContextMapper);
+    }
     return groups;
   }
 
@@ -552,25 +663,29 @@ public class AmbariLdapDataPopulator {
   }
 
   private Set<LdapUserDto> getFilteredLdapUsers(String baseDn, Filter filter) {
+    return searchLdapUsers(baseDn, filter.encode(), configuration.getLdapServerProperties().isPaginationEnabled());
+  }
+
+  private Set<LdapUserDto> searchLdapUsers(String baseDn, String encodedFilter, boolean paginationEnabled) {
     final Set<LdapUserDto> users = new HashSet<LdapUserDto>();
     final LdapTemplate ldapTemplate = loadLdapTemplate();
     PagedResultsDirContextProcessor processor = createPagingProcessor();
     SearchControls searchControls = new SearchControls();
     searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
     LdapUserContextMapper ldapUserContextMapper = new LdapUserContextMapper(ldapServerProperties);
-    String encodedFilter = filter.encode();
 
     do {
-      List dtos = configuration.getLdapServerProperties().isPaginationEnabled() ?
+      List dtos = paginationEnabled ?
         ldapTemplate.search(baseDn, encodedFilter, searchControls, ldapUserContextMapper, processor) :
         ldapTemplate.search(baseDn, encodedFilter, searchControls, ldapUserContextMapper);
-      for (Object dto : dtos) {
-        if (dto != null) {
-          users.add((LdapUserDto)dto);
+      if (dtos != null) {
+        for (Object dto : dtos) {
+          if (dto != null) {
+            users.add((LdapUserDto)dto);
+          }
         }
       }
-    } while (configuration.getLdapServerProperties().isPaginationEnabled()
-      && processor.getCookie().getCookie() != null);
+    } while (paginationEnabled && processor.getCookie().getCookie() != null);
     return users;
   }
 
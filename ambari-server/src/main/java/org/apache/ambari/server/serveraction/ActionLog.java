@@ -89,10 +89,14 @@ public class ActionLog {
   private void write(StringBuffer buffer, String message) {
     if (message != null) {
       Date date = new Date();
-      buffer.append(dateFormat.format(date));
-      buffer.append(" - ");
-      buffer.append(message);
-      buffer.append("\n");
+
+      // Keep the lines of concurrent writers apart
+      synchronized (buffer) {
+        buffer.append(dateFormat.format(date));
+        buffer.append(" - ");
+        buffer.append(message);
+        buffer.append("\n");
+      }
     }
   }
 
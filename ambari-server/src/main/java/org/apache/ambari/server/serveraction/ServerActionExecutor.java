@@ -101,6 +101,11 @@ public class ServerActionExecutor {
    */
   private boolean activeAwakeRequest = false;
 
+  /**
+   * Invoked when a task has completed, may be null.
+   */
+  private final Runnable taskCompletedCallback;
+
   /**
    * A reference to the Thread handling the work for this ServerActionExecutor
    */
@@ -124,9 +129,22 @@ public class ServerActionExecutor {
    * @param sleepTimeMS the time (in milliseconds) to wait between polling the database for more tasks
    */
   public ServerActionExecutor(ActionDBAccessor db, long sleepTimeMS) {
+    this(db, sleepTimeMS, null);
+  }
+
+  /**
+   * Creates a new ServerActionExecutor
+   *
+   * @param db                    the ActionDBAccessor to use to read and update tasks
+   * @param sleepTimeMS           the time (in milliseconds) to wait between polling the database for more tasks
+   * @param taskCompletedCallback invoked when a task has completed, so that the action scheduler
+   *                              can proceed without waiting for its next poll; may be null
+   */
+  public ServerActionExecutor(ActionDBAccessor db, long sleepTimeMS, Runnable taskCompletedCallback) {
     serverHostName = StageUtils.getHostName();
     this.db = db;
     this.sleepTimeMS = (sleepTimeMS < 1) ? POLLING_TIMEOUT_MS : sleepTimeMS;
+    this.taskCompletedCallback = taskCompletedCallback;
   }
 
   /**
@@ -331,6 +349,11 @@ public class ServerActionExecutor {
 
     db.updateHostRoleState(null, hostRoleCommand.getRequestId(),
         hostRoleCommand.getStageId(), executionCommand.getRole(), commandReport);
+
+    if (taskCompletedCallback != null
+        && !HostRoleStatus.IN_PROGRESS.name().equals(commandReport.getStatus())) {
+      taskCompletedCallback.run();
+    }
   }
 
   /**
@@ -35,10 +35,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -81,8 +81,11 @@ public class CreateKeytabFilesServerAction extends KerberosServerAction {
   /**
    * A map of data used to track what has been processed in order to optimize the creation of keytabs
    * such as knowing when to create a cached keytab file or use a cached keytab file.
+   * <p/>
+   * The identities of a principal are always processed by the same worker, so only this map needs
+   * to be safe for concurrent use.
    */
-  Map<String, Set<String>> visitedIdentities = new HashMap<String, Set<String>>();
+  Map<String, Set<String>> visitedIdentities = new ConcurrentHashMap<String, Set<String>>();
 
   /**
    * Called to execute this action.  Upon invocation, calls
@@ -103,6 +106,17 @@ public class CreateKeytabFilesServerAction extends KerberosServerAction {
     return processIdentities(requestSharedDataContext);
   }
 
+  /**
+   * Returns the number of workers to process the identities with, as configured by
+   * {@link Configuration#getKerberosIdentityProcessingThreads()}.
+   *
+   * @return the number of workers
+   */
+  @Override
+  protected int getIdentityProcessingThreadCount() {
+    return configuration.getKerberosIdentityProcessingThreads();
+  }
+
 
   /**
    * For each identity, create a keytab and append to a new or existing keytab file.
@@ -22,6 +22,7 @@ import com.google.inject.Inject;
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.agent.CommandReport;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.orm.dao.KerberosPrincipalDAO;
 import org.apache.ambari.server.orm.dao.KerberosPrincipalHostDAO;
 import org.apache.ambari.server.security.SecurePasswordHelper;
@@ -60,6 +61,12 @@ public class CreatePrincipalsServerAction extends KerberosServerAction {
   @Inject
   private SecurePasswordHelper securePasswordHelper;
 
+  /**
+   * Configuration used to get the number of workers to create principals with
+   */
+  @Inject
+  private Configuration configuration;
+
   /**
    * Called to execute this action.  Upon invocation, calls
    * {@link org.apache.ambari.server.serveraction.kerberos.KerberosServerAction#processIdentities(java.util.Map)}
@@ -79,6 +86,17 @@ public class CreatePrincipalsServerAction extends KerberosServerAction {
     return processIdentities(requestSharedDataContext);
   }
 
+  /**
+   * Returns the number of workers to process the identities with, as configured by
+   * {@link Configuration#getKerberosIdentityProcessingThreads()}.
+   *
+   * @return the number of workers
+   */
+  @Override
+  protected int getIdentityProcessingThreadCount() {
+    return configuration.getKerberosIdentityProcessingThreads();
+  }
+
 
   /**
    * For each identity, generate a unique password create a new or update an existing principal in
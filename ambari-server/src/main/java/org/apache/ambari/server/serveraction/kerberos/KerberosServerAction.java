@@ -35,8 +35,23 @@ import static org.apache.ambari.server.serveraction.kerberos.KerberosIdentityDat
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * KerberosServerAction is an abstract class to be implemented by Kerberos-related
@@ -126,6 +141,11 @@ public abstract class KerberosServerAction extends AbstractServerAction {
 
   private static final Logger LOG = LoggerFactory.getLogger(KerberosServerAction.class);
 
+  /**
+   * The interval, in seconds, at which the progress of concurrently processed identities is reported
+   */
+  private static final long PROGRESS_REPORT_INTERVAL_SECONDS = 10;
+
   /**
    * The Cluster that this ServerAction implementation is executing on
    */
@@ -234,7 +254,7 @@ public abstract class KerberosServerAction extends AbstractServerAction {
       Object map = requestSharedDataContext.get(PRINCIPAL_PASSWORD_MAP);
 
       if (map == null) {
-        map = new HashMap<String, String>();
+        map = new ConcurrentHashMap<String, String>();
         requestSharedDataContext.put(PRINCIPAL_PASSWORD_MAP, map);
       }
 
@@ -260,7 +280,7 @@ public abstract class KerberosServerAction extends AbstractServerAction {
       Object map = requestSharedDataContext.get(PRINCIPAL_KEY_NUMBER_MAP);
 
       if (map == null) {
-        map = new HashMap<String, String>();
+        map = new ConcurrentHashMap<String, Integer>();
         requestSharedDataContext.put(PRINCIPAL_KEY_NUMBER_MAP, map);
       }
 
@@ -322,6 +342,18 @@ public abstract class KerberosServerAction extends AbstractServerAction {
     return getDataDirectoryPath(getCommandParameters());
   }
 
+  /**
+   * Returns the number of workers used to process the identities concurrently.
+   * <p/>
+   * Each worker holds its own open {@link KerberosOperationHandler}, and so its own session with
+   * the KDC. By default the identities are processed one after the other.
+   *
+   * @return the number of workers; 1 or less to process the identities one after the other
+   */
+  protected int getIdentityProcessingThreadCount() {
+    return 1;
+  }
+
   /**
    * Iterates through the Kerberos identity metadata from the
    * {@link org.apache.ambari.server.serveraction.kerberos.KerberosIdentityDataFileReader} and calls
@@ -331,6 +363,9 @@ public abstract class KerberosServerAction extends AbstractServerAction {
    * {@link KerberosIdentityDataFileReader} to parse
    * the relative identity.dat file and iterate through its "records".  Each "record" is process using
    * {@link #processRecord(Map, String, KerberosOperationHandler, Map, Map)}.
+   * <p/>
+   * If {@link #getIdentityProcessingThreadCount()} is greater than 1, the records are processed
+   * concurrently, see {@link #processRecordsConcurrently(Iterable, int, KerberosOperationHandler, KDCType, PrincipalKeyCredential, String, Map, Map)}.
    *
    * @param requestSharedDataContext a Map to be used a shared data among all ServerActions related
    *                                 to a given request
@@ -402,14 +437,21 @@ public abstract class KerberosServerAction extends AbstractServerAction {
             KerberosIdentityDataFileReader reader = null;
             try {
               reader = kerberosIdentityDataFileReaderFactory.createKerberosIdentityDataFileReader(identityDataFile);
-              for (Map<String, String> record : reader) {
-                // Process the current record
-                commandReport = processRecord(record, defaultRealm, handler, kerberosConfiguration, requestSharedDataContext);
-
-                // If the principal processor returns a CommandReport, than it is time to stop since
-                // an error condition has probably occurred, else all is assumed to be well.
-                if (commandReport != null) {
-                  break;
+              int threadCount = getIdentityProcessingThreadCount();
+
+              if (threadCount > 1) {
+                commandReport = processRecordsConcurrently(reader, threadCount, handler, kdcType,
+                    administratorCredential, defaultRealm, kerberosConfiguration, requestSharedDataContext);
+              } else {
+                for (Map<String, String> record : reader) {
+                  // Process the current record
+                  commandReport = processRecord(record, defaultRealm, handler, kerberosConfiguration, requestSharedDataContext);
+
+                  // If the principal processor returns a CommandReport, than it is time to stop since
+                  // an error condition has probably occurred, else all is assumed to be well.
+                  if (commandReport != null) {
+                    break;
+                  }
                 }
               }
             } catch (AmbariException e) {
@@ -521,4 +563,320 @@ public abstract class KerberosServerAction extends AbstractServerAction {
 
     return commandReport;
   }
+
+  /**
+   * Processes the identity records using a bounded number of workers.
+   * <p/>
+   * Records sharing a principal or a keytab file on a host are grouped and the records of a group
+   * are processed by a single worker, in the order in which they appear in the identity data file.
+   * This way a principal is created before its keytab files and a keytab file is never written by
+   * two workers at once.
+   * <p/>
+   * Each worker processes groups using its own {@link KerberosOperationHandler}, opened once and
+   * reused for all of its records; the first worker uses the already opened
+   * <code>operationHandler</code>. Once a record yields a CommandReport or fails, no further groups
+   * are started and that CommandReport or failure is returned. The number of processed records and the throughput
+   * are written to the action log while the workers run.
+   *
+   * @param records                  the identity records to process
+   * @param threadCount              the number of workers
+   * @param operationHandler         an open KerberosOperationHandler to be used by the first worker
+   * @param kdcType                  the KDCType used to create handlers for the other workers
+   * @param administratorCredential  the KDC administrator credential used to open the handlers
+   * @param defaultRealm             a String declaring the default Kerberos realm
+   * @param kerberosConfiguration    a Map of configuration properties from kerberos-env
+   * @param requestSharedDataContext a Map to be used a shared data among all ServerActions related
+   *                                 to a given request
+   * @return a CommandReport, indicating an error condition; or null, indicating a success condition
+   * @throws AmbariException if an error occurs while processing the identity records
+   */
+  private CommandReport processRecordsConcurrently(Iterable<Map<String, String>> records, int threadCount,
+                                                   final KerberosOperationHandler operationHandler,
+                                                   final KDCType kdcType,
+                                                   final PrincipalKeyCredential administratorCredential,
+                                                   final String defaultRealm,
+                                                   final Map<String, String> kerberosConfiguration,
+                                                   final Map<String, Object> requestSharedDataContext)
+      throws AmbariException {
+
+    final ConcurrentLinkedQueue<List<Map<String, String>>> groups =
+        new ConcurrentLinkedQueue<List<Map<String, String>>>(groupRecords(records, defaultRealm));
+
+    int recordCount = 0;
+    for (List<Map<String, String>> group : groups) {
+      recordCount += group.size();
+    }
+
+    int workerCount = Math.min(threadCount, groups.size());
+    if (workerCount == 0) {
+      return null;
+    }
+
+    String message = String.format("Processing %d identities in %d groups using %d workers",
+        recordCount, groups.size(), workerCount);
+    actionLog.writeStdOut(message);
+    LOG.info(message);
+
+    // Create the shared maps up front so that the workers do not race to create them
+    getPrincipalPasswordMap(requestSharedDataContext);
+    getPrincipalKeyNumberMap(requestSharedDataContext);
+
+    final AtomicInteger processedCount = new AtomicInteger();
+    final AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Kerberos Identity Processing Thread " + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    long startTime = System.currentTimeMillis();
+    CommandReport commandReport = null;
+
+    try {
+      CompletionService<CommandReport> completionService = new ExecutorCompletionService<CommandReport>(executor);
+      for (int i = 0; i < workerCount; i++) {
+        final boolean useOpenHandler = (i == 0);
+
+        completionService.submit(new Callable<CommandReport>() {
+          @Override
+          public CommandReport call() throws Exception {
+            KerberosOperationHandler handler = null;
+
+            try {
+              handler = useOpenHandler
+                  ? operationHandler
+                  : openKerberosOperationHandler(kdcType, administratorCredential, defaultRealm, kerberosConfiguration);
+
+              List<Map<String, String>> group;
+              while ((group = groups.poll()) != null) {
+                for (Map<String, String> record : group) {
+                  CommandReport report = processRecord(record, defaultRealm, handler, kerberosConfiguration, requestSharedDataContext);
+                  processedCount.incrementAndGet();
+
+                  if (report != null) {
+                    // Stop the other workers from starting any further groups
+                    groups.clear();
+                    return report;
+                  }
+                }
+              }
+              return null;
+            } catch (Exception e) {
+              // Stop the other workers from starting any further groups, as the serial processing
+              // stops at the first failure
+              groups.clear();
+              throw e;
+            } finally {
+              // The handler opened by the caller is closed by the caller
+              if (!useOpenHandler && (handler != null)) {
+                try {
+                  handler.close();
+                } catch (KerberosOperationException e) {
+                  // Ignore this...
+                }
+              }
+            }
+          }
+        });
+      }
+
+      // Take the workers as they finish so that a failure surfaces without waiting for the others
+      for (int i = 0; i < workerCount; i++) {
+        Future<CommandReport> future = completionService.poll(PROGRESS_REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        while (future == null) {
+          logProgress(processedCount.get(), recordCount, startTime);
+          future = completionService.poll(PROGRESS_REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+
+        CommandReport report = future.get();
+        if ((report != null) && (commandReport == null)) {
+          commandReport = report;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      groups.clear();
+      throw new AmbariException("Interrupted while processing the identities", e);
+    } catch (ExecutionException e) {
+      groups.clear();
+      Throwable cause = e.getCause();
+      if (cause instanceof AmbariException) {
+        throw new AmbariException(cause.getMessage(), cause);
+      }
+      message = String.format("Failed to process the identities: %s", cause.getMessage());
+      actionLog.writeStdErr(message);
+      LOG.error(message, cause);
+      throw new AmbariException(message, cause);
+    } finally {
+      // The first worker uses the caller's handler, which must not be closed while it is in use
+      awaitTermination(executor);
+    }
+
+    logProgress(processedCount.get(), recordCount, startTime);
+    return commandReport;
+  }
+
+  /**
+   * Groups the identity records so that records sharing an evaluated principal or a keytab file on
+   * a host end up in the same group.
+   * <p/>
+   * Records without a principal are skipped since there is nothing to process for them. Within a
+   * group the records keep the order of the identity data file.
+   *
+   * @param records      the identity records
+   * @param defaultRealm a String declaring the default Kerberos realm
+   * @return the groups of records, in the order their first record appears in
+   */
+  static List<List<Map<String, String>>> groupRecords(Iterable<Map<String, String>> records, String defaultRealm) {
+    // A union-find structure over principal and keytab file keys
+    Map<String, String> parents = new HashMap<String, String>();
+    List<Map<String, String>> principalRecords = new ArrayList<Map<String, String>>();
+    List<String> recordKeys = new ArrayList<String>();
+
+    for (Map<String, String> record : records) {
+      String principal = (record == null) ? null : record.get(KerberosIdentityDataFileReader.PRINCIPAL);
+
+      if (principal != null) {
+        String host = record.get(KerberosIdentityDataFileReader.HOSTNAME);
+        String principalKey = "principal:" + principal.replace("_HOST", host).replace("_REALM", defaultRealm);
+        String keytabFilePath = record.get(KerberosIdentityDataFileReader.KEYTAB_FILE_PATH);
+
+        String root = findRoot(parents, principalKey);
+        if ((keytabFilePath != null) && !keytabFilePath.isEmpty()) {
+          String keytabRoot = findRoot(parents, String.format("keytab:%s|%s", host, keytabFilePath));
+          if (!keytabRoot.equals(root)) {
+            parents.put(keytabRoot, root);
+          }
+        }
+
+        principalRecords.add(record);
+        recordKeys.add(principalKey);
+      }
+    }
+
+    Map<String, List<Map<String, String>>> groups = new LinkedHashMap<String, List<Map<String, String>>>();
+    for (int i = 0; i < principalRecords.size(); i++) {
+      String root = findRoot(parents, recordKeys.get(i));
+      List<Map<String, String>> group = groups.get(root);
+
+      if (group == null) {
+        group = new ArrayList<Map<String, String>>();
+        groups.put(root, group);
+      }
+
+      group.add(principalRecords.get(i));
+    }
+
+    return new ArrayList<List<Map<String, String>>>(groups.values());
+  }
+
+  /**
+   * Finds the representative key of the set the key belongs to, adding the key as a set of its own
+   * if it has not been seen yet.
+   *
+   * @param parents the parent of each known key, a representative key is its own parent
+   * @param key     the key to find the representative of
+   * @return the representative key
+   */
+  private static String findRoot(Map<String, String> parents, String key) {
+    String root = key;
+    String parent = parents.get(root);
+
+    while ((parent != null) && !parent.equals(root)) {
+      root = parent;
+      parent = parents.get(root);
+    }
+
+    if (parent == null) {
+      parents.put(root, root);
+    }
+
+    // Compress the path so later lookups are direct
+    while (!key.equals(root)) {
+      String next = parents.get(key);
+      parents.put(key, root);
+      key = next;
+    }
+
+    return root;
+  }
+
+  /**
+   * Creates and opens a KerberosOperationHandler for a worker processing identities concurrently.
+   *
+   * @param kdcType                 the relevant KDCType
+   * @param administratorCredential the KDC administrator credential
+   * @param defaultRealm            a String declaring the default Kerberos realm
+   * @param kerberosConfiguration   a Map of configuration properties from kerberos-env
+   * @return an open KerberosOperationHandler
+   * @throws AmbariException if the handler cannot be found or opened
+   */
+  private KerberosOperationHandler openKerberosOperationHandler(KDCType kdcType,
+                                                                PrincipalKeyCredential administratorCredential,
+                                                                String defaultRealm,
+                                                                Map<String, String> kerberosConfiguration)
+      throws AmbariException {
+    KerberosOperationHandler handler = kerberosOperationHandlerFactory.getKerberosOperationHandler(kdcType);
+    if (handler == null) {
+      String message = String.format("Failed to process the identities, a KDC operation handler was not found for the KDC type of : %s",
+          kdcType.toString());
+      actionLog.writeStdErr(message);
+      LOG.error(message);
+      throw new AmbariException(message);
+    }
+
+    try {
+      handler.open(administratorCredential, defaultRealm, kerberosConfiguration);
+    } catch (KerberosOperationException e) {
+      String message = String.format("Failed to process the identities, could not properly open the KDC operation handler: %s",
+          e.getMessage());
+      actionLog.writeStdErr(message);
+      LOG.error(message);
+      throw new AmbariException(message, e);
+    }
+
+    return handler;
+  }
+
+  /**
+   * Shuts down the executor and waits for the running workers to finish their current group.
+   * <p/>
+   * The interrupted status of the calling thread is kept.
+   *
+   * @param executor the executor running the workers
+   */
+  private static void awaitTermination(ExecutorService executor) {
+    boolean interrupted = Thread.interrupted();
+    executor.shutdown();
+
+    while (!executor.isTerminated()) {
+      try {
+        executor.awaitTermination(PROGRESS_REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Writes the number of processed identities and the throughput to the action log.
+   *
+   * @param processedCount the number of processed identity records
+   * @param recordCount    the total number of identity records
+   * @param startTime      the time the processing started at, in milliseconds
+   */
+  private void logProgress(int processedCount, int recordCount, long startTime) {
+    long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+    String message = String.format("Processed %d of %d identities in %d seconds (%.1f identities/s)",
+        processedCount, recordCount, TimeUnit.MILLISECONDS.toSeconds(elapsed), processedCount * 1000.0 / elapsed);
+    actionLog.writeStdOut(message);
+    LOG.info(message);
+  }
 }
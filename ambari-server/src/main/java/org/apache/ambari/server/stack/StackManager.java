@@ -19,10 +19,21 @@
 package org.apache.ambari.server.stack;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 
@@ -78,6 +89,13 @@ public class StackManager {
    */
   private Map<String, StackInfo> stackMap = new HashMap<String, StackInfo>();
 
+  /**
+   * Executor used to parse the stack and common service directories. Only the
+   * parsing of the definition files is done in parallel; stacks and services
+   * are resolved against each other on the calling thread.
+   */
+  private ExecutorService parsingExecutor;
+
   /**
    * Constructor. Initialize stack manager.
    *
@@ -112,8 +130,21 @@ public class StackManager {
     stackMap = new HashMap<String, StackInfo>();
     stackContext = new StackContext(metaInfoDAO, actionMetadata, osFamily);
 
-    Map<String, ServiceModule> commonServiceModules = parseCommonServicesDirectory(commonServicesRoot);
-    Map<String, StackModule> stackModules = parseStackDirectory(stackRoot);
+    Map<String, ServiceModule> commonServiceModules;
+    Map<String, StackModule> stackModules;
+
+    long startTime = System.currentTimeMillis();
+    parsingExecutor = createParsingExecutor();
+    try {
+      commonServiceModules = parseCommonServicesDirectory(commonServicesRoot);
+      stackModules = parseStackDirectory(stackRoot);
+    } finally {
+      parsingExecutor.shutdownNow();
+      parsingExecutor = null;
+    }
+
+    LOG.info("Parsed {} stacks and {} common services in {}ms", stackModules.size(),
+        commonServiceModules.size(), System.currentTimeMillis() - startTime);
 
     fullyResolveCommonServices(stackModules, commonServiceModules);
     fullyResolveStacks(stackModules, commonServiceModules);
@@ -290,33 +321,57 @@ public class StackManager {
     Map<String, ServiceModule> commonServiceModules = new HashMap<String, ServiceModule>();
 
     if(commonServicesRoot != null) {
-      File[] commonServiceFiles = commonServicesRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
-      for (File commonService : commonServiceFiles) {
+      List<Future<Map<String, ServiceModule>>> futures = new ArrayList<Future<Map<String, ServiceModule>>>();
+
+      for (File commonService : listSorted(commonServicesRoot)) {
         if (commonService.isFile()) {
           continue;
         }
-        for (File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
-          String serviceName = serviceFolder.getParentFile().getName();
-          String serviceVersion = serviceFolder.getName();
-          ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
-          ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
-          if (metaInfoXml != null) {
-            if (metaInfoXml.isValid()) {
-              for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
-                ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
-
-                String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
-                commonServiceModules.put(commonServiceKey, serviceModule);
-              }
-            } else {
-              ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
-              serviceModule.setValid(false);
-              serviceModule.setErrors(metaInfoXml.getErrors());
-              commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
-              metaInfoXml.setSchemaVersion(null);
+        for (final File serviceFolder : listSorted(commonService)) {
+          futures.add(parsingExecutor.submit(new Callable<Map<String, ServiceModule>>() {
+            @Override
+            public Map<String, ServiceModule> call() throws Exception {
+              return parseCommonService(serviceFolder);
             }
-          }
+          }));
+        }
+      }
+
+      // merge in directory order so that the result does not depend on which
+      // directory finished parsing first
+      for (Future<Map<String, ServiceModule>> future : futures) {
+        commonServiceModules.putAll(getParsed(future));
+      }
+    }
+    return commonServiceModules;
+  }
+
+  /**
+   * Parse a single common service version directory.
+   *
+   * @param serviceFolder  the common service version directory to parse
+   * @return map of common service id to the common service modules defined in the directory
+   * @throws AmbariException if unable to parse the common service
+   */
+  private Map<String, ServiceModule> parseCommonService(File serviceFolder) throws AmbariException {
+    Map<String, ServiceModule> commonServiceModules = new LinkedHashMap<String, ServiceModule>();
+
+    ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
+    ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
+    if (metaInfoXml != null) {
+      if (metaInfoXml.isValid()) {
+        for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
+          ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
+
+          String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
+          commonServiceModules.put(commonServiceKey, serviceModule);
         }
+      } else {
+        ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
+        serviceModule.setValid(false);
+        serviceModule.setErrors(metaInfoXml.getErrors());
+        commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
+        metaInfoXml.setSchemaVersion(null);
       }
     }
     return commonServiceModules;
@@ -331,30 +386,96 @@ public class StackManager {
    */
   private Map<String, StackModule> parseStackDirectory(File stackRoot) throws AmbariException {
     Map<String, StackModule> stackModules = new HashMap<String, StackModule>();
+    Map<String, Future<StackModule>> futures = new LinkedHashMap<String, Future<StackModule>>();
 
-    File[] stackFiles = stackRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
-    for (File stack : stackFiles) {
+    for (File stack : listSorted(stackRoot)) {
       if (stack.isFile()) {
         continue;
       }
-      for (File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+      for (final File stackFolder : listSorted(stack)) {
         if (stackFolder.isFile()) {
           continue;
         }
         String stackName = stackFolder.getParentFile().getName();
         String stackVersion = stackFolder.getName();
-
-        StackModule stackModule = new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
         String stackKey = stackName + StackManager.PATH_DELIMITER + stackVersion;
-        stackModules.put(stackKey, stackModule);
-        stackMap.put(stackKey, stackModule.getModuleInfo());
+
+        futures.put(stackKey, parsingExecutor.submit(new Callable<StackModule>() {
+          @Override
+          public StackModule call() throws Exception {
+            return new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
+          }
+        }));
       }
     }
 
+    for (Map.Entry<String, Future<StackModule>> entry : futures.entrySet()) {
+      StackModule stackModule = getParsed(entry.getValue());
+      stackModules.put(entry.getKey(), stackModule);
+      stackMap.put(entry.getKey(), stackModule.getModuleInfo());
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find stack definitions under " +
           "stackRoot = " + stackRoot.getAbsolutePath());
     }
     return stackModules;
   }
+
+  /**
+   * List the stack definition files of the specified directory in name order.
+   *
+   * @param directory  the directory to list
+   * @return the sorted files of the directory
+   */
+  private File[] listSorted(File directory) {
+    File[] files = directory.listFiles(AmbariMetaInfo.FILENAME_FILTER);
+    if (files == null) {
+      return new File[0];
+    }
+    Arrays.sort(files);
+    return files;
+  }
+
+  /**
+   * Wait for a parsing task to complete and get its result.
+   *
+   * @param future  the parsing task
+   * @return the result of the parsing task
+   * @throws AmbariException if the parsing task failed or the thread was interrupted
+   */
+  private <T> T getParsed(Future<T> future) throws AmbariException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while parsing the stack definitions", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof AmbariException) {
+        throw (AmbariException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new AmbariException("Unable to parse the stack definitions", cause);
+    }
+  }
+
+  /**
+   * Create the executor used to parse the stack definition directories.
+   *
+   * @return a thread pool sized to the number of available processors
+   */
+  private ExecutorService createParsingExecutor() {
+    final AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Stack Definition Parsing Thread " + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
 }
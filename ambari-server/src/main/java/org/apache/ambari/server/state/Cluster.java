@@ -468,11 +468,46 @@ public interface Cluster {
   Service addService(String serviceName) throws AmbariException;
 
   /**
-   * Get lock to control access to cluster structure
+   * Get lock to control access to cluster structure.
+   * <p/>
+   * Locks must always be acquired in the following order to prevent
+   * deadlocks:
+   * <ol>
+   * <li>the cluster-global lock</li>
+   * <li>a service lock, see {@link #getServiceLock(String)}</li>
+   * <li>a host lock, see {@link #getHostLock(String)}</li>
+   * <li>the internal lock of a service, component or host component</li>
+   * </ol>
+   * A thread holding a service or host lock must never try to acquire the
+   * cluster-global lock.
+   *
    * @return cluster-global lock
    */
   ReadWriteLock getClusterGlobalLock();
 
+  /**
+   * Get the lock which controls access to the structure of a single service
+   * and its host components. Holding the read lock guarantees that none of the
+   * service's host components are removed, without blocking operations on
+   * other services.
+   *
+   * @param serviceName
+   *          the name of the service
+   * @return the lock for the service, never {@code null}
+   */
+  ReadWriteLock getServiceLock(String serviceName);
+
+  /**
+   * Get the lock which serializes cluster state changes that are scoped to a
+   * single host, such as host version transitions. Locks are striped, so
+   * several hosts may share the same lock.
+   *
+   * @param hostName
+   *          the name of the host
+   * @return the lock for the host, never {@code null}
+   */
+  ReadWriteLock getHostLock(String hostName);
+
   /**
    * Fetch desired configs for list of hosts in cluster
    * @param hostIds
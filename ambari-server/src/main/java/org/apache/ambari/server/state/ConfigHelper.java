@@ -406,6 +406,76 @@ public class ConfigHelper {
     staleConfigsCache.invalidateAll();
   }
 
+  /**
+   * Invalidates the cached isStale values of the host components which can be
+   * affected by a change of the given configuration types. Configuration types
+   * which are neither a dependency of a service nor a configuration type of
+   * one of its components don't change whether its host components are stale,
+   * so the cached values of those host components are kept.
+   *
+   * @param cluster the cluster whose configurations changed
+   * @param configTypes the changed configuration types
+   */
+  public void invalidateStaleConfigsCache(Cluster cluster, Collection<String> configTypes) {
+    if (configTypes.isEmpty()) {
+      return;
+    }
+
+    if (configTypes.contains(Configuration.GLOBAL_CONFIG_TAG)) {
+      // global properties are checked against all services of the stack
+      invalidateStaleConfigsCache();
+      return;
+    }
+
+    StackId stackId = cluster.getDesiredStackVersion();
+    for (Service service : cluster.getServices().values()) {
+      Collection<ServiceComponent> components = service.getServiceComponents().values();
+      try {
+        ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
+            stackId.getStackVersion(), service.getName());
+
+        if (isAffectedByConfigTypes(serviceInfo, components, configTypes)) {
+          invalidateStaleConfigsCache(components);
+        }
+      } catch (AmbariException e) {
+        LOG.debug("Unable to find service {} in stack {}, invalidating its stale configs",
+            service.getName(), stackId);
+        invalidateStaleConfigsCache(components);
+      }
+    }
+  }
+
+  /**
+   * Determines whether any of the given configuration types is a dependency of
+   * the service or a configuration type of one of its components.
+   */
+  private boolean isAffectedByConfigTypes(ServiceInfo serviceInfo,
+      Collection<ServiceComponent> components, Collection<String> configTypes) {
+    for (String type : configTypes) {
+      if (serviceInfo.hasConfigDependency(type)) {
+        return true;
+      }
+
+      for (ServiceComponent component : components) {
+        ComponentInfo componentInfo = serviceInfo.getComponentByName(component.getName());
+        if (componentInfo == null || componentInfo.hasConfigType(type)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Invalidates cached isStale values for all host components of the given
+   * components.
+   */
+  private void invalidateStaleConfigsCache(Collection<ServiceComponent> components) {
+    for (ServiceComponent component : components) {
+      staleConfigsCache.invalidateAll(component.getServiceComponentHosts().values());
+    }
+  }
+
   /**
    * Invalidates cached isStale value for sch
    *
@@ -104,6 +104,12 @@ public interface Service {
    */
   ReadWriteLock getClusterGlobalLock();
 
+  /**
+   * Get lock to control access to the structure of this service
+   * @return service lock, see {@link Cluster#getServiceLock(String)}
+   */
+  ReadWriteLock getServiceLock();
+
   /**
    * Sets the maintenance state for the service
    * @param state the state
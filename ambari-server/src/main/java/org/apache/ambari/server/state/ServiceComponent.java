@@ -86,4 +86,10 @@ public interface ServiceComponent {
    * @return cluster-global lock
    */
   ReadWriteLock getClusterGlobalLock();
+
+  /**
+   * Get lock to control access to the structure of this service
+   * @return service lock, see {@link Cluster#getServiceLock(String)}
+   */
+  ReadWriteLock getServiceLock();
 }
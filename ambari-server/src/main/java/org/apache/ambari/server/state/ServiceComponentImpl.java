@@ -58,6 +58,7 @@ public class ServiceComponentImpl implements ServiceComponent {
       LoggerFactory.getLogger(ServiceComponentImpl.class);
   private final Service service;
   private final ReadWriteLock clusterGlobalLock;
+  private final ReadWriteLock serviceLock;
   private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
   private final String componentName;
   private final boolean isClientComponent;
@@ -89,6 +90,7 @@ public class ServiceComponentImpl implements ServiceComponent {
                               @Assisted String componentName, Injector injector) throws AmbariException {
     injector.injectMembers(this);
     clusterGlobalLock = service.getClusterGlobalLock();
+    serviceLock = service.getServiceLock();
     this.service = service;
     desiredStateEntity = new ServiceComponentDesiredStateEntity(  );
     desiredStateEntity.setComponentName(componentName);
@@ -124,6 +126,7 @@ public class ServiceComponentImpl implements ServiceComponent {
                               Injector injector) throws AmbariException {
     injector.injectMembers(this);
     clusterGlobalLock = service.getClusterGlobalLock();
+    serviceLock = service.getServiceLock();
     this.service = service;
     desiredStateEntity = serviceComponentDesiredStateEntity;
     this.componentName = serviceComponentDesiredStateEntity.getComponentName();
@@ -177,6 +180,11 @@ public class ServiceComponentImpl implements ServiceComponent {
     return clusterGlobalLock;
   }
 
+  @Override
+  public ReadWriteLock getServiceLock() {
+    return serviceLock;
+  }
+
   @Override
   public String getName() {
     ServiceComponentDesiredStateEntity desiredStateEntity = getDesiredStateEntity();
@@ -63,6 +63,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class ServiceImpl implements Service {
   private final ReadWriteLock clusterGlobalLock;
+  private final ReadWriteLock serviceLock;
   private ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
   // Cached entity has only 1 getter for name
   private ClusterServiceEntity serviceEntity;
@@ -113,6 +114,7 @@ public class ServiceImpl implements Service {
       Injector injector) throws AmbariException {
     injector.injectMembers(this);
     clusterGlobalLock = cluster.getClusterGlobalLock();
+    serviceLock = cluster.getServiceLock(serviceName);
     serviceEntity = new ClusterServiceEntity();
     serviceEntity.setClusterId(cluster.getClusterId());
     serviceEntity.setServiceName(serviceName);
@@ -145,6 +147,7 @@ public class ServiceImpl implements Service {
       serviceEntity, Injector injector) throws AmbariException {
     injector.injectMembers(this);
     clusterGlobalLock = cluster.getClusterGlobalLock();
+    serviceLock = cluster.getServiceLock(serviceEntity.getServiceName());
     this.serviceEntity = serviceEntity;
     this.cluster = cluster;
 
@@ -185,6 +188,11 @@ public class ServiceImpl implements Service {
     return clusterGlobalLock;
   }
 
+  @Override
+  public ReadWriteLock getServiceLock() {
+    return serviceLock;
+  }
+
   @Override
   public String getName() {
     return serviceEntity.getServiceName();
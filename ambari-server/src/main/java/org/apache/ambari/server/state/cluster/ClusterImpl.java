@@ -31,6 +31,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -133,6 +135,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.assistedinject.Assisted;
@@ -170,8 +173,13 @@ public class ClusterImpl implements Cluster {
 
   /**
    * [ HostName -> [ ... ] ]
+   * <p/>
+   * Modified only while holding the write lock of {@link #clusterGlobalLock}.
+   * The lists are never changed in place, a changed list replaces the old one
+   * and a reload replaces the whole map, so that heartbeat-driven lookups by
+   * host see a consistent list without acquiring the cluster-global lock.
    */
-  private Map<String, List<ServiceComponentHost>>
+  private volatile Map<String, List<ServiceComponentHost>>
     serviceComponentHostsByHost;
 
   /**
@@ -186,9 +194,22 @@ public class ClusterImpl implements Cluster {
 
   private final ReadWriteLock clusterGlobalLock = new ReentrantReadWriteLock();
 
-  // This is a lock for operations that do not need to be cluster global
-  private final ReentrantReadWriteLock hostTransitionStateLock = new ReentrantReadWriteLock();
-  private final Lock hostTransitionStateWriteLock = hostTransitionStateLock.writeLock();
+  /**
+   * The number of stripes used for {@link #hostLocks}.
+   */
+  private static final int HOST_LOCK_STRIPES = 64;
+
+  /**
+   * Per-service locks, see {@link #getServiceLock(String)}.
+   */
+  private final ConcurrentMap<String, ReadWriteLock> serviceLocks =
+      new ConcurrentHashMap<String, ReadWriteLock>();
+
+  /**
+   * Striped per-host locks, see {@link #getHostLock(String)}. These are used
+   * for operations that do not need to be cluster global.
+   */
+  private final Striped<ReadWriteLock> hostLocks = Striped.readWriteLock(HOST_LOCK_STRIPES);
 
   private ClusterEntity clusterEntity;
 
@@ -280,7 +301,7 @@ public class ClusterImpl implements Cluster {
     serviceComponentHosts = new HashMap<String,
       Map<String, Map<String, ServiceComponentHost>>>();
 
-    serviceComponentHostsByHost = new HashMap<String,
+    serviceComponentHostsByHost = new ConcurrentHashMap<String,
       List<ServiceComponentHost>>();
 
     desiredStackVersion = new StackId(clusterEntity.getDesiredStack());
@@ -300,6 +321,31 @@ public class ClusterImpl implements Cluster {
     return clusterGlobalLock;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadWriteLock getServiceLock(String serviceName) {
+    ReadWriteLock serviceLock = serviceLocks.get(serviceName);
+    if (null == serviceLock) {
+      serviceLock = new ReentrantReadWriteLock();
+      ReadWriteLock existing = serviceLocks.putIfAbsent(serviceName, serviceLock);
+      if (null != existing) {
+        serviceLock = existing;
+      }
+    }
+
+    return serviceLock;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadWriteLock getHostLock(String hostName) {
+    return hostLocks.get(hostName);
+  }
+
   private void loadServiceConfigTypes() throws AmbariException {
     try {
       serviceConfigTypes = collectServiceConfigTypesMapping();
@@ -353,6 +399,8 @@ public class ClusterImpl implements Cluster {
       if (svcHostsLoaded) {
         return;
       }
+      Map<String, List<ServiceComponentHost>> loadedByHost =
+          new ConcurrentHashMap<String, List<ServiceComponentHost>>();
       if (services != null) {
         for (Entry<String, Service> serviceKV : services.entrySet()) {
           /* get all the service component hosts **/
@@ -373,12 +421,7 @@ public class ClusterImpl implements Cluster {
             for (Entry<String, ServiceComponentHost> svchost : comp.getServiceComponentHosts().entrySet()) {
               String hostname = svchost.getKey();
               ServiceComponentHost svcHostComponent = svchost.getValue();
-              if (!serviceComponentHostsByHost.containsKey(hostname)) {
-                serviceComponentHostsByHost.put(hostname,
-                    new ArrayList<ServiceComponentHost>());
-              }
-              List<ServiceComponentHost> compList = serviceComponentHostsByHost.get(hostname);
-              compList.add(svcHostComponent);
+              addToHostList(loadedByHost, svcHostComponent);
 
               if (!serviceComponentHosts.get(service.getName()).get(
                   componentName).containsKey(hostname)) {
@@ -389,6 +432,7 @@ public class ClusterImpl implements Cluster {
           }
         }
       }
+      serviceComponentHostsByHost = loadedByHost;
       svcHostsLoaded = true;
     } finally {
       clusterGlobalLock.writeLock().unlock();
@@ -713,11 +757,6 @@ public class ClusterImpl implements Cluster {
             + componentName + ", hostname= " + hostname);
       }
 
-      if (!serviceComponentHostsByHost.containsKey(hostname)) {
-        serviceComponentHostsByHost.put(hostname,
-            new ArrayList<ServiceComponentHost>());
-      }
-
       if (LOG.isDebugEnabled()) {
         LOG.debug("Adding a new ServiceComponentHost" + ", clusterName="
             + getClusterName() + ", clusterId=" + getClusterId()
@@ -727,7 +766,7 @@ public class ClusterImpl implements Cluster {
 
       serviceComponentHosts.get(serviceName).get(componentName).put(hostname,
           svcCompHost);
-      serviceComponentHostsByHost.get(hostname).add(svcCompHost);
+      addToHostList(serviceComponentHostsByHost, svcCompHost);
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -809,13 +848,48 @@ public class ClusterImpl implements Cluster {
 
       serviceComponentHosts.get(serviceName).get(componentName).remove(hostname);
       if (schToRemove != null) {
-        serviceComponentHostsByHost.get(hostname).remove(schToRemove);
+        final ServiceComponentHost removed = schToRemove;
+        removeFromHostList(hostname, new Predicate<ServiceComponentHost>() {
+          @Override
+          public boolean apply(ServiceComponentHost serviceComponentHost) {
+            return serviceComponentHost.equals(removed);
+          }
+        });
       }
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
   }
 
+  /**
+   * Replaces the list of the host with a copy including the host component.
+   * Must be called with the write lock of {@link #clusterGlobalLock} held.
+   */
+  private static void addToHostList(Map<String, List<ServiceComponentHost>> byHost,
+      ServiceComponentHost serviceComponentHost) {
+    List<ServiceComponentHost> current = byHost.get(serviceComponentHost.getHostName());
+    List<ServiceComponentHost> updated = current == null
+        ? new ArrayList<ServiceComponentHost>(1)
+        : new ArrayList<ServiceComponentHost>(current);
+    updated.add(serviceComponentHost);
+    byHost.put(serviceComponentHost.getHostName(), Collections.unmodifiableList(updated));
+  }
+
+  /**
+   * Replaces the list of the host with a copy without the matching host
+   * components. Must be called with the write lock of
+   * {@link #clusterGlobalLock} held.
+   */
+  private void removeFromHostList(String hostname, Predicate<ServiceComponentHost> predicate) {
+    List<ServiceComponentHost> current = serviceComponentHostsByHost.get(hostname);
+    if (current == null || !Iterables.any(current, predicate)) {
+      return;
+    }
+    List<ServiceComponentHost> updated = new ArrayList<ServiceComponentHost>(current);
+    Iterables.removeIf(updated, predicate);
+    serviceComponentHostsByHost.put(hostname, Collections.unmodifiableList(updated));
+  }
+
   @Override
   public long getClusterId() {
     return clusterEntity.getClusterId();
@@ -825,16 +899,14 @@ public class ClusterImpl implements Cluster {
   public List<ServiceComponentHost> getServiceComponentHosts(
     String hostname) {
     loadServiceHostComponents();
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (serviceComponentHostsByHost.containsKey(hostname)) {
-        return new CopyOnWriteArrayList<ServiceComponentHost>(
-            serviceComponentHostsByHost.get(hostname));
-      }
-      return new ArrayList<ServiceComponentHost>();
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+
+    // no cluster-global lock is needed since the per-host lists are
+    // replaced instead of changed
+    List<ServiceComponentHost> serviceComponentHostsForHost = serviceComponentHostsByHost.get(hostname);
+    if (null != serviceComponentHostsForHost) {
+      return new CopyOnWriteArrayList<ServiceComponentHost>(serviceComponentHostsForHost);
     }
+    return new ArrayList<ServiceComponentHost>();
   }
 
   @Override
@@ -1457,7 +1529,8 @@ public class ClusterImpl implements Cluster {
       getClusterName(), repoVersionStackId, repositoryVersion.getVersion(),
       host.getHostName());
 
-    hostTransitionStateWriteLock.lock();
+    Lock hostWriteLock = getHostLock(host.getHostName()).writeLock();
+    hostWriteLock.lock();
     try {
       // Create one if it doesn't already exist. It will be possible to make further transitions below.
       boolean performingInitialBootstrap = false;
@@ -1497,7 +1570,7 @@ public class ClusterImpl implements Cluster {
         }
       }
     } finally {
-      hostTransitionStateWriteLock.unlock();
+      hostWriteLock.unlock();
     }
     return hostVersionEntity;
   }
@@ -1997,13 +2070,14 @@ public class ClusterImpl implements Cluster {
 
     serviceComponentHosts.remove(serviceName);
 
-    for (List<ServiceComponentHost> serviceComponents: serviceComponentHostsByHost.values()){
-      Iterables.removeIf(serviceComponents, new Predicate<ServiceComponentHost>() {
-        @Override
-        public boolean apply(ServiceComponentHost serviceComponentHost) {
-          return serviceComponentHost.getServiceName().equals(serviceName);
-        }
-      });
+    Predicate<ServiceComponentHost> ofService = new Predicate<ServiceComponentHost>() {
+      @Override
+      public boolean apply(ServiceComponentHost serviceComponentHost) {
+        return serviceComponentHost.getServiceName().equals(serviceName);
+      }
+    };
+    for (String hostname : serviceComponentHostsByHost.keySet()) {
+      removeFromHostList(hostname, ofService);
     }
   }
 
@@ -2084,10 +2158,15 @@ public class ClusterImpl implements Cluster {
         }
       }
 
+      Set<String> configTypes = new HashSet<String>();
+      for (Config config : configs) {
+        configTypes.add(config.getType());
+      }
+
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyConfigs(
           configs, user, serviceConfigVersionNote);
 
-      configHelper.invalidateStaleConfigsCache();
+      configHelper.invalidateStaleConfigsCache(this, configTypes);
       return serviceConfigVersionResponse;
     } finally {
       clusterGlobalLock.writeLock().unlock();
@@ -2295,7 +2374,14 @@ public class ClusterImpl implements Cluster {
     try {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyServiceConfigVersion(
           serviceName, version, user, note);
-      configHelper.invalidateStaleConfigsCache();
+
+      // only the configuration types of the service are changed
+      Collection<String> configTypes = serviceConfigTypes.get(serviceName);
+      if (!configTypes.isEmpty()) {
+        configHelper.invalidateStaleConfigsCache(this, configTypes);
+      } else {
+        configHelper.invalidateStaleConfigsCache();
+      }
       return serviceConfigVersionResponse;
     } finally {
       clusterGlobalLock.writeLock().unlock();
@@ -2883,8 +2969,9 @@ public class ClusterImpl implements Cluster {
       boolean staleConfig = false;
       boolean maintenanceState = false;
 
-      if (serviceComponentHostsByHost.containsKey(hostName)) {
-        for (ServiceComponentHost sch : serviceComponentHostsByHost.get(hostName)) {
+      List<ServiceComponentHost> hostComponents = serviceComponentHostsByHost.get(hostName);
+      if (hostComponents != null) {
+        for (ServiceComponentHost sch : hostComponents) {
           staleConfig = staleConfig || configHelper.isStaleConfigs(sch);
           maintenanceState = maintenanceState ||
             maintenanceStateHelper.getEffectiveState(sch) != MaintenanceState.OFF;
@@ -3232,7 +3319,8 @@ public class ClusterImpl implements Cluster {
       desiredStackVersionSet = false;
 
       serviceComponentHosts.clear();
-      serviceComponentHostsByHost.clear();
+      // the per-host lists are read without the lock, they are replaced by
+      // the next load instead of being cleared here
       svcHostsLoaded = false;
 
       clusterConfigGroups = null;
@@ -65,6 +65,7 @@ import org.apache.ambari.server.state.fsm.SingleArcTransition;
 import org.apache.ambari.server.state.fsm.StateMachine;
 import org.apache.ambari.server.state.fsm.StateMachineFactory;
 import org.apache.ambari.server.topology.TopologyManager;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -121,6 +122,10 @@ public class HostImpl implements Host {
 
   private long lastHeartbeatTime = 0L;
   private AgentEnv lastAgentEnv = null;
+
+  // In-memory health status, written to the host state entity only when it changes
+  private HostHealthStatus healthStatus;
+
   private List<DiskInfo> disksInfo = new ArrayList<DiskInfo>();
   private RecoveryReport recoveryReport = new RecoveryReport();
   private boolean persisted = false;
@@ -261,6 +266,11 @@ public class HostImpl implements Host {
       stateMachine.setCurrentState(hostStateEntity.getCurrentState());
     }
 
+    healthStatus = gson.fromJson(hostStateEntity.getHealthStatus(), HostHealthStatus.class);
+    if (healthStatus == null) {
+      healthStatus = new HostHealthStatus(HealthStatus.UNKNOWN, "");
+    }
+
   }
 
   @Override
@@ -913,33 +923,51 @@ public class HostImpl implements Host {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The health status is read on every heartbeat and for every host returned
+   * by the REST API, so it is served from memory instead of the host state
+   * entity.
+   */
   @Override
   public HostHealthStatus getHealthStatus() {
     try {
       readLock.lock();
-      HostStateEntity hostStateEntity = getHostStateEntity();
-      if (hostStateEntity != null) {
-        return gson.fromJson(hostStateEntity.getHealthStatus(), HostHealthStatus.class);
-      }
-      return null;
+      return new HostHealthStatus(healthStatus.getHealthStatus(),
+          healthStatus.getHealthReport());
     } finally {
       readLock.unlock();
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The host state entity is only written if the status or the report
+   * changed, so that repeated heartbeats with the same health do not cause a
+   * database write each.
+   */
   @Override
   public void setHealthStatus(HostHealthStatus healthStatus) {
     try {
       writeLock.lock();
-      HostStateEntity hostStateEntity = getHostStateEntity();
-      if (hostStateEntity != null) {
-        hostStateEntity.setHealthStatus(gson.toJson(healthStatus));
+      boolean changed = healthStatus.getHealthStatus() != this.healthStatus.getHealthStatus()
+          || !StringUtils.equals(healthStatus.getHealthReport(), this.healthStatus.getHealthReport());
 
-        if (healthStatus.getHealthStatus().equals(HealthStatus.UNKNOWN)) {
-          setStatus(HealthStatus.UNKNOWN.name());
-        }
+      this.healthStatus = new HostHealthStatus(healthStatus.getHealthStatus(),
+          healthStatus.getHealthReport());
 
-        saveIfPersisted();
+      if (healthStatus.getHealthStatus().equals(HealthStatus.UNKNOWN)) {
+        setStatus(HealthStatus.UNKNOWN.name());
+      }
+
+      if (changed) {
+        HostStateEntity hostStateEntity = getHostStateEntity();
+        if (hostStateEntity != null) {
+          hostStateEntity.setHealthStatus(gson.toJson(healthStatus));
+          saveIfPersisted();
+        }
       }
     } finally {
       writeLock.unlock();
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.annotations.Experimental;
+import org.apache.ambari.annotations.ExperimentalFeature;
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.listeners.alerts.AlertReceivedListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link AlertIngestionFlushService} is used to periodically write the
+ * alerts buffered by the {@link AlertReceivedListener} to the database. This
+ * service is controlled by
+ * {@link Configuration#isAlertIngestionBatchingEnabled()} and
+ * {@link Configuration#getAlertIngestionFlushInterval()}.
+ */
+@AmbariService
+@Experimental(feature = ExperimentalFeature.ALERT_CACHING)
+public class AlertIngestionFlushService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(AlertIngestionFlushService.class);
+
+  /**
+   * Configuration.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * Buffers the received alerts.
+   */
+  @Inject
+  private AlertReceivedListener m_alertReceivedListener;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Scheduler scheduler() {
+    long flushInterval = m_configuration.getAlertIngestionFlushInterval();
+    return Scheduler.newFixedDelaySchedule(flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Invokes {@link #stop()} if not enabled.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    boolean enabled = m_configuration.isAlertIngestionBatchingEnabled();
+    if (!enabled) {
+      stop();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes the buffered alerts to the database.
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    try {
+      m_alertReceivedListener.flushPendingAlerts();
+    } catch (Exception exception) {
+      LOG.error("Unable to write received alerts to the database", exception);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes the alerts which are still buffered.
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    if (m_configuration.isAlertIngestionBatchingEnabled()) {
+      runOneIteration();
+    }
+  }
+}
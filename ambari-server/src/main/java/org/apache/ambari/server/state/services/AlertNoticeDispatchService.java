@@ -21,9 +21,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Type;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -31,13 +33,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
@@ -65,8 +71,13 @@ import org.apache.ambari.server.state.AlertState;
 import org.apache.ambari.server.state.NotificationState;
 import org.apache.ambari.server.state.alert.AlertNotification;
 import org.apache.commons.io.IOUtils;
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.RuntimeSingleton;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -98,6 +109,12 @@ import com.google.inject.Provider;
  * {@link #startUp()}. If there is a problem parsing them, the service will
  * still startup normally, producing an error in logs. It will fall back to
  * simple string concatenation for {@link Notification} content in this case.
+ * <p/>
+ * Notifications are dispatched by a pool of threads per notification type,
+ * sized by {@link Configuration#getAlertDispatchThreads(String)}, so that a
+ * slow type such as a script does not hold back another. The notifications of
+ * a single target are dispatched one after the other in the order they were
+ * created, while different targets are dispatched in parallel.
  */
 @AmbariService
 public class AlertNoticeDispatchService extends AbstractScheduledService {
@@ -164,7 +181,7 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
 
   /**
    * The factory used to get an {@link NotificationDispatcher} instance to
-   * submit to the {@link #m_executor}.
+   * dispatch {@link Notification}s with.
    */
   @Inject
   private DispatchFactory m_dispatchFactory;
@@ -188,18 +205,37 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
   private Provider<AmbariMetaInfo> m_metaInfo;
 
   /**
-   * The executor responsible for dispatching.
+   * The executor responsible for dispatching all notifications, overriding
+   * the per type executors; only set by unit tests.
    */
   private Executor m_executor;
 
+  /**
+   * The executors dispatching the notifications of each notification type.
+   */
+  private final ConcurrentMap<String, Executor> m_typeExecutors = new ConcurrentHashMap<String, Executor>();
+
+  /**
+   * The queues dispatching the notifications of each target in order.
+   */
+  private final ConcurrentMap<Long, TargetDispatchQueue> m_targetQueues = new ConcurrentHashMap<Long, TargetDispatchQueue>();
+
+  /**
+   * The dispatch statistics of each notification type since they were last
+   * logged.
+   */
+  private final ConcurrentMap<String, DispatchStatistics> m_statistics = new ConcurrentHashMap<String, DispatchStatistics>();
+
+  /**
+   * The parsed Velocity templates by their source, so that each template is
+   * only parsed once.
+   */
+  private final ConcurrentMap<String, Template> m_templateCache = new ConcurrentHashMap<String, Template>();
+
   /**
    * Constructor.
    */
   public AlertNoticeDispatchService() {
-    m_executor = new ThreadPoolExecutor(0, 2, 5L, TimeUnit.MINUTES,
-        new LinkedBlockingQueue<Runnable>(), new AlertDispatchThreadFactory(),
-        new ThreadPoolExecutor.CallerRunsPolicy());
-
     GsonBuilder gsonBuilder = new GsonBuilder();
     gsonBuilder.registerTypeAdapter(AlertTargetProperties.class,
         new AlertTargetPropertyDeserializer());
@@ -271,13 +307,26 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
    */
   @Override
   protected void runOneIteration() throws Exception {
+    logDispatchStatistics();
+
     List<AlertNoticeEntity> pending = m_dao.findPendingNotices();
     if (pending.size() == 0) {
       return;
     }
 
-    LOG.info("There are {} pending alert notices about to be dispatched...",
-        pending.size());
+    // the age of the oldest alert waiting for its notice to be dispatched
+    long now = System.currentTimeMillis();
+    long oldestAlertTimestamp = now;
+    for (AlertNoticeEntity notice : pending) {
+      Long alertTimestamp = notice.getAlertHistory().getAlertTimestamp();
+      if (null != alertTimestamp && alertTimestamp < oldestAlertTimestamp) {
+        oldestAlertTimestamp = alertTimestamp;
+      }
+    }
+
+    LOG.info(
+        "There are {} pending alert notices about to be dispatched, the oldest alert is {}s old...",
+        pending.size(), TimeUnit.MILLISECONDS.toSeconds(now - oldestAlertTimestamp));
 
     Map<AlertTargetEntity, List<AlertNoticeEntity>> aggregateMap =
         new HashMap<AlertTargetEntity, List<AlertNoticeEntity>>(pending.size());
@@ -332,8 +381,7 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
           renderDigestNotificationContent(dispatcher, notification, histories, target);
 
           // dispatch
-          DispatchRunnable runnable = new DispatchRunnable(dispatcher, notification);
-          m_executor.execute(runnable);
+          dispatch(target, dispatcher, notification);
         } catch (Exception exception) {
           LOG.error("Unable to create notification for alerts", exception);
 
@@ -356,8 +404,7 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
             renderNotificationContent(dispatcher, notification, history, target);
 
             // dispatch
-            DispatchRunnable runnable = new DispatchRunnable(dispatcher, notification);
-            m_executor.execute(runnable);
+            dispatch(target, dispatcher, notification);
           } catch (Exception exception) {
             LOG.error("Unable to create notification for alert", exception);
 
@@ -380,6 +427,129 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
     return Scheduler.newFixedDelaySchedule(2, 2, TimeUnit.MINUTES);
   }
 
+  /**
+   * Queues the {@link Notification} for dispatch to its target. The
+   * notification is dispatched after the notifications queued before it for
+   * the same target, by the executor of the target's notification type.
+   *
+   * @param target
+   *          the target of the notification (not {@code null}).
+   * @param dispatcher
+   *          the dispatcher for the notification type (not {@code null}).
+   * @param notification
+   *          the notification to dispatch (not {@code null}).
+   */
+  private void dispatch(AlertTargetEntity target,
+      NotificationDispatcher dispatcher, Notification notification) {
+    String targetType = target.getNotificationType();
+
+    DispatchStatistics statistics = m_statistics.get(targetType);
+    if (null == statistics) {
+      m_statistics.putIfAbsent(targetType, new DispatchStatistics());
+      statistics = m_statistics.get(targetType);
+    }
+
+    Runnable runnable = new TimedDispatchRunnable(
+        new DispatchRunnable(dispatcher, notification), statistics);
+
+    Long targetId = target.getTargetId();
+    if (null != m_executor || null == targetId) {
+      getExecutor(targetType).execute(runnable);
+      return;
+    }
+
+    TargetDispatchQueue queue = m_targetQueues.get(targetId);
+    if (null == queue) {
+      m_targetQueues.putIfAbsent(targetId, new TargetDispatchQueue(getExecutor(targetType)));
+      queue = m_targetQueues.get(targetId);
+    }
+
+    queue.execute(runnable);
+  }
+
+  /**
+   * Gets the executor dispatching notifications of the specified type,
+   * creating it if needed.
+   *
+   * @param targetType
+   *          the notification type.
+   * @return the executor (never {@code null}).
+   */
+  private Executor getExecutor(String targetType) {
+    if (null != m_executor) {
+      return m_executor;
+    }
+
+    Executor executor = m_typeExecutors.get(targetType);
+    if (null == executor) {
+      int threads = Math.max(1, m_configuration.getAlertDispatchThreads(targetType));
+
+      // core threads are started for each task until the pool is full; an
+      // unbounded queue never lets a pool grow beyond its core threads
+      ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads,
+          threads, 5L, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(),
+          new AlertDispatchThreadFactory(targetType),
+          new ThreadPoolExecutor.CallerRunsPolicy());
+
+      threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+      executor = m_typeExecutors.putIfAbsent(targetType, threadPoolExecutor);
+      if (null == executor) {
+        executor = threadPoolExecutor;
+      } else {
+        threadPoolExecutor.shutdown();
+      }
+    }
+
+    return executor;
+  }
+
+  /**
+   * Logs and resets the dispatch statistics of each notification type which
+   * had notifications dispatched since the last time.
+   */
+  private void logDispatchStatistics() {
+    for (Entry<String, DispatchStatistics> entry : m_statistics.entrySet()) {
+      String statistics = entry.getValue().getAndReset();
+      if (null != statistics) {
+        LOG.info("Dispatched {} alert notifications: {}", entry.getKey(),
+            statistics);
+      }
+    }
+  }
+
+  /**
+   * Gets the parsed Velocity template for the specified template source,
+   * parsing it only the first time.
+   *
+   * @param source
+   *          the template source (not {@code null}).
+   * @return the template, ready to be merged.
+   */
+  private Template getTemplate(String source) {
+    Template template = m_templateCache.get(source);
+    if (null != template) {
+      return template;
+    }
+
+    RuntimeServices runtimeServices = RuntimeSingleton.getRuntimeServices();
+    try {
+      SimpleNode node = runtimeServices.parse(new StringReader(source),
+          VELOCITY_LOG_TAG);
+
+      template = new Template();
+      template.setName(VELOCITY_LOG_TAG);
+      template.setRuntimeServices(runtimeServices);
+      template.setData(node);
+      template.initDocument();
+    } catch (ParseException exception) {
+      throw new ParseErrorException(exception.getMessage());
+    }
+
+    m_templateCache.putIfAbsent(source, template);
+    return template;
+  }
+
   /**
    * Initializes a {@link Notification} instance from an
    * {@link AlertTargetEntity}. This method does most of the boilerplate work to
@@ -473,10 +643,10 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
         String bodyTemplate = template.getBody();
 
         // render the subject
-        Velocity.evaluate(velocityContext, subjectWriter, VELOCITY_LOG_TAG, subjectTemplate);
+        getTemplate(subjectTemplate).merge(velocityContext, subjectWriter);
 
         // render the body
-        Velocity.evaluate(velocityContext, bodyWriter, VELOCITY_LOG_TAG, bodyTemplate);
+        getTemplate(bodyTemplate).merge(velocityContext, bodyWriter);
       } else {
         // a null template is possible from parsing incorrectly or not
         // having the correct type defined for the target
@@ -542,10 +712,10 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
         String bodyTemplate = template.getBody();
 
         // render the subject
-        Velocity.evaluate(velocityContext, subjectWriter, VELOCITY_LOG_TAG, subjectTemplate);
+        getTemplate(subjectTemplate).merge(velocityContext, subjectWriter);
 
         // render the body
-        Velocity.evaluate(velocityContext, bodyWriter, VELOCITY_LOG_TAG, bodyTemplate);
+        getTemplate(bodyTemplate).merge(velocityContext, bodyWriter);
       } else {
         // a null template is possible from parsing incorrectly or not
         // having the correct type defined for the target
@@ -633,13 +803,28 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
 
     private static final AtomicInteger s_threadIdPool = new AtomicInteger(1);
 
+    /**
+     * The notification type dispatched by the threads.
+     */
+    private final String m_targetType;
+
+    /**
+     * Constructor.
+     *
+     * @param targetType
+     *          the notification type dispatched by the threads.
+     */
+    private AlertDispatchThreadFactory(String targetType) {
+      m_targetType = targetType;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Thread newThread(Runnable r) {
       Thread thread = new Thread(r, "alert-dispatch-"
-          + s_threadIdPool.getAndIncrement());
+          + m_targetType.toLowerCase() + "-" + s_threadIdPool.getAndIncrement());
 
       thread.setDaemon(false);
       thread.setPriority(Thread.NORM_PRIORITY - 1);
@@ -648,6 +833,165 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
     }
   }
 
+  /**
+   * The {@link TargetDispatchQueue} runs the notifications of a single target
+   * one after the other, in the order they were queued, on the executor of the
+   * target's notification type. Only one notification of the target occupies
+   * a thread of the executor at a time.
+   */
+  private static final class TargetDispatchQueue implements Executor {
+
+    /**
+     * The executor to run the notifications on.
+     */
+    private final Executor m_executor;
+
+    /**
+     * The notifications waiting for the running one to finish.
+     */
+    private final Queue<Runnable> m_queue = new ArrayDeque<Runnable>();
+
+    /**
+     * The notification currently submitted to the executor, if any.
+     */
+    private Runnable m_active;
+
+    /**
+     * Constructor.
+     *
+     * @param executor
+     *          the executor to run the notifications on.
+     */
+    private TargetDispatchQueue(Executor executor) {
+      m_executor = executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void execute(final Runnable runnable) {
+      m_queue.offer(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            runnable.run();
+          } finally {
+            scheduleNext();
+          }
+        }
+      });
+
+      if (null == m_active) {
+        scheduleNext();
+      }
+    }
+
+    /**
+     * Submits the next queued notification to the executor.
+     */
+    private synchronized void scheduleNext() {
+      m_active = m_queue.poll();
+      if (null != m_active) {
+        m_executor.execute(m_active);
+      }
+    }
+  }
+
+  /**
+   * The {@link TimedDispatchRunnable} records how long a {@link Notification}
+   * waited to be dispatched and how long the dispatch took.
+   */
+  private static final class TimedDispatchRunnable implements Runnable {
+
+    private final Runnable m_runnable;
+    private final DispatchStatistics m_statistics;
+    private final long m_queuedTime = System.currentTimeMillis();
+
+    /**
+     * Constructor.
+     *
+     * @param runnable
+     *          the dispatch to time.
+     * @param statistics
+     *          the statistics to record the times in.
+     */
+    private TimedDispatchRunnable(Runnable runnable,
+        DispatchStatistics statistics) {
+      m_runnable = runnable;
+      m_statistics = statistics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      long startTime = System.currentTimeMillis();
+      try {
+        m_runnable.run();
+      } catch (RuntimeException exception) {
+        LOG.error("Unable to dispatch an alert notification", exception);
+      } finally {
+        m_statistics.record(startTime - m_queuedTime,
+            System.currentTimeMillis() - startTime);
+      }
+    }
+  }
+
+  /**
+   * The {@link DispatchStatistics} class accumulates the queue and dispatch
+   * times of the notifications of a single notification type.
+   */
+  private static final class DispatchStatistics {
+
+    private final AtomicLong m_count = new AtomicLong();
+    private final AtomicLong m_queueMillis = new AtomicLong();
+    private final AtomicLong m_maxQueueMillis = new AtomicLong();
+    private final AtomicLong m_dispatchMillis = new AtomicLong();
+    private final AtomicLong m_maxDispatchMillis = new AtomicLong();
+
+    /**
+     * Records a dispatched notification.
+     *
+     * @param queueMillis
+     *          how long the notification waited to be dispatched.
+     * @param dispatchMillis
+     *          how long the dispatch took.
+     */
+    private void record(long queueMillis, long dispatchMillis) {
+      m_count.incrementAndGet();
+      m_queueMillis.addAndGet(queueMillis);
+      m_dispatchMillis.addAndGet(dispatchMillis);
+      updateMax(m_maxQueueMillis, queueMillis);
+      updateMax(m_maxDispatchMillis, dispatchMillis);
+    }
+
+    /**
+     * Gets a description of the recorded times and starts over.
+     *
+     * @return the description, or {@code null} if nothing was recorded.
+     */
+    private String getAndReset() {
+      long count = m_count.getAndSet(0);
+      if (count == 0) {
+        return null;
+      }
+
+      return String.format(
+          "count=%d, average queue time=%dms, max queue time=%dms, average dispatch time=%dms, max dispatch time=%dms",
+          count, m_queueMillis.getAndSet(0) / count, m_maxQueueMillis.getAndSet(0),
+          m_dispatchMillis.getAndSet(0) / count, m_maxDispatchMillis.getAndSet(0));
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+      long current = max.get();
+      while (value > current && !max.compareAndSet(current, value)) {
+        current = max.get();
+      }
+    }
+  }
+
   /**
    * The {@link AlertNoticeDispatchCallback} is used to receive a callback from
    * the dispatch framework and then update the {@link AlertNoticeEntity}
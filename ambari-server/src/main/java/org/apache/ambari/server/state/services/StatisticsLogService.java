@@ -0,0 +1,261 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.agent.ActionQueue;
+import org.apache.ambari.server.agent.HeartBeatHandler;
+import org.apache.ambari.server.agent.HeartbeatProcessor;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.controller.metrics.ThreadPoolEnabledPropertyProvider;
+import org.apache.ambari.server.controller.metrics.ThreadPoolEnabledPropertyProvider.FetchStatistics;
+import org.apache.ambari.server.controller.metrics.ThreadPoolEnabledPropertyProvider.PopulateStatistics;
+import org.apache.ambari.server.events.listeners.alerts.AlertReceivedListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+/**
+ * The {@link StatisticsLogService} periodically writes the performance
+ * statistics of the server to the log, one line per source. This service is
+ * controlled by {@link Configuration#getServerStatisticsLogInterval()}.
+ */
+@AmbariService
+public class StatisticsLogService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(StatisticsLogService.class);
+
+  /**
+   * The number of slowest metrics endpoints logged per provider.
+   */
+  private static final int SLOWEST_ENDPOINTS = 5;
+
+  /**
+   * The number of largest host command queues logged.
+   */
+  private static final int LARGEST_HOST_QUEUES = 5;
+
+  /**
+   * Configuration.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * The queue of commands waiting for the agents.
+   */
+  @Inject
+  private ActionQueue m_actionQueue;
+
+  /**
+   * The handler of agent heartbeats, which is created with the agent
+   * resources.
+   */
+  @Inject
+  private Provider<HeartBeatHandler> m_heartBeatHandlerProvider;
+
+  /**
+   * The listener which buffers and writes received alerts.
+   */
+  @Inject
+  private Provider<AlertReceivedListener> m_alertReceivedListenerProvider;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Scheduler scheduler() {
+    long interval = Math.max(m_configuration.getServerStatisticsLogInterval(), 1);
+    return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.SECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Invokes {@link #stop()} if not enabled.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    if (m_configuration.getServerStatisticsLogInterval() <= 0) {
+      stop();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes the statistics to the log.
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    try {
+      logPropertyProviderStatistics();
+    } catch (Exception exception) {
+      LOG.error("Unable to log the metrics property provider statistics", exception);
+    }
+
+    try {
+      logActionQueueStatistics();
+    } catch (Exception exception) {
+      LOG.error("Unable to log the action queue statistics", exception);
+    }
+
+    try {
+      logHeartbeatProcessorStatistics();
+    } catch (Exception exception) {
+      LOG.error("Unable to log the heartbeat processor statistics", exception);
+    }
+
+    try {
+      logAlertIngestionStatistics();
+    } catch (Exception exception) {
+      LOG.error("Unable to log the alert ingestion statistics", exception);
+    }
+  }
+
+  /**
+   * Log the fetch statistics of the metrics property providers, with their
+   * slowest endpoints.
+   */
+  private void logPropertyProviderStatistics() {
+    for (Map.Entry<Class<?>, PopulateStatistics> entry :
+        ThreadPoolEnabledPropertyProvider.getAllPopulateStatistics().entrySet()) {
+      PopulateStatistics statistics = entry.getValue();
+      FetchStatistics fetches = statistics.getFetchStatistics();
+
+      StringBuilder message = new StringBuilder();
+      message.append(entry.getKey().getSimpleName())
+          .append(": populates=").append(statistics.getPopulateCount())
+          .append(", timeouts=").append(statistics.getTimeoutCount())
+          .append(", average populate=").append(statistics.getAveragePopulateTime()).append("ms")
+          .append(", last populate=").append(statistics.getLastPopulateTime()).append("ms")
+          .append(", fetches=").append(fetches.getFetchCount())
+          .append(", average fetch=").append(fetches.getAverageFetchTime()).append("ms")
+          .append(", max fetch=").append(fetches.getMaxFetchTime()).append("ms")
+          .append(", slowest endpoints=[");
+
+      List<Map.Entry<String, FetchStatistics>> endpoints =
+          new ArrayList<Map.Entry<String, FetchStatistics>>(
+              statistics.getEndpointFetchStatistics().entrySet());
+      Collections.sort(endpoints, new Comparator<Map.Entry<String, FetchStatistics>>() {
+        @Override
+        public int compare(Map.Entry<String, FetchStatistics> e1,
+                           Map.Entry<String, FetchStatistics> e2) {
+          return Long.compare(e2.getValue().getAverageFetchTime(),
+              e1.getValue().getAverageFetchTime());
+        }
+      });
+      for (int i = 0; i < Math.min(SLOWEST_ENDPOINTS, endpoints.size()); i++) {
+        FetchStatistics endpoint = endpoints.get(i).getValue();
+        if (i > 0) {
+          message.append(", ");
+        }
+        message.append(endpoints.get(i).getKey())
+            .append(" (fetches=").append(endpoint.getFetchCount())
+            .append(", average=").append(endpoint.getAverageFetchTime()).append("ms")
+            .append(", max=").append(endpoint.getMaxFetchTime()).append("ms)");
+      }
+      message.append("]");
+
+      LOG.info(message.toString());
+    }
+  }
+
+  /**
+   * Log the size of the agent command queues in total and for the hosts with
+   * the most queued commands.
+   */
+  private void logActionQueueStatistics() {
+    List<Map.Entry<String, Integer>> hostQueues =
+        new ArrayList<Map.Entry<String, Integer>>(m_actionQueue.getSizes().entrySet());
+    Collections.sort(hostQueues, new Comparator<Map.Entry<String, Integer>>() {
+      @Override
+      public int compare(Map.Entry<String, Integer> e1, Map.Entry<String, Integer> e2) {
+        return e2.getValue().compareTo(e1.getValue());
+      }
+    });
+
+    StringBuilder message = new StringBuilder();
+    message.append("ActionQueue: queued commands=").append(m_actionQueue.getTotalSize())
+        .append(", hosts with queued commands=").append(hostQueues.size())
+        .append(", estimated size=").append(m_actionQueue.getTotalEstimatedSize()).append(" bytes")
+        .append(", superseded status commands=")
+        .append(m_actionQueue.getSupersededStatusCommandCount())
+        .append(", largest host queues=[");
+
+    for (int i = 0; i < Math.min(LARGEST_HOST_QUEUES, hostQueues.size()); i++) {
+      String hostname = hostQueues.get(i).getKey();
+      if (i > 0) {
+        message.append(", ");
+      }
+      message.append(hostname)
+          .append(" (commands=").append(hostQueues.get(i).getValue())
+          .append(", estimated size=").append(m_actionQueue.getEstimatedSize(hostname))
+          .append(" bytes)");
+    }
+    message.append("]");
+
+    LOG.info(message.toString());
+  }
+
+  /**
+   * Log the queue depth and latencies of the asynchronous heartbeat
+   * processing, if it is enabled.
+   */
+  private void logHeartbeatProcessorStatistics() {
+    HeartbeatProcessor processor = m_heartBeatHandlerProvider.get().getHeartbeatProcessor();
+    if (processor == null || !processor.isRunning()) {
+      return;
+    }
+
+    LOG.info("HeartbeatProcessor: queued heartbeats=" + processor.getQueueDepth()
+        + ", scheduled hosts=" + processor.getScheduledHostCount()
+        + ", processed heartbeats=" + processor.getProcessedHeartbeatCount()
+        + ", processed batches=" + processor.getProcessedBatchCount()
+        + ", average queue latency=" + processor.getAverageQueueLatency() + "ms"
+        + ", average processing latency=" + processor.getAverageProcessingLatency() + "ms");
+  }
+
+  /**
+   * Log the rate at which alerts are received and how far writing them lags
+   * behind.
+   */
+  private void logAlertIngestionStatistics() {
+    AlertReceivedListener listener = m_alertReceivedListenerProvider.get();
+
+    LOG.info(String.format("AlertReceivedListener: received alerts=%d, coalesced alerts=%d, "
+        + "pending alerts=%d, ingestion rate=%.1f/s, last flush lag=%dms, "
+        + "last flush duration=%dms", listener.getReceivedAlertCount(),
+        listener.getCoalescedAlertCount(), listener.getPendingAlertCount(),
+        listener.getIngestionRate(), listener.getLastFlushLag(),
+        listener.getLastFlushDuration()));
+  }
+}
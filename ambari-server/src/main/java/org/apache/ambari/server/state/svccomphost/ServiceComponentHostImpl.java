@@ -92,6 +92,13 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
       LoggerFactory.getLogger(ServiceComponentHostImpl.class);
 
   private final ReadWriteLock clusterGlobalLock;
+
+  /**
+   * The lock of the owning service; taken instead of the cluster-global lock
+   * for state changes so that host components of other services are not
+   * blocked.
+   */
+  private final ReadWriteLock serviceLock;
   private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
   private final Lock readLock = readWriteLock.readLock();
   private final Lock writeLock = readWriteLock.writeLock();
@@ -726,6 +733,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
     this.serviceComponent = serviceComponent;
     clusterGlobalLock = serviceComponent.getClusterGlobalLock();
+    serviceLock = serviceComponent.getServiceLock();
 
     HostEntity hostEntity = null;
     try {
@@ -780,6 +788,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     injector.injectMembers(this);
     this.serviceComponent = serviceComponent;
     clusterGlobalLock = serviceComponent.getClusterGlobalLock();
+    serviceLock = serviceComponent.getServiceLock();
 
     this.desiredStateEntity = desiredStateEntity;
     this.stateEntity = stateEntity;
@@ -1008,7 +1017,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
           + ", event=" + event.toString());
     }
     State oldState = getState();
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     try {
       try {
         writeLock.lock();
@@ -1031,7 +1040,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
         writeLock.unlock();
       }
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
 
     if (!oldState.equals(getState())) {
@@ -1496,7 +1505,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   @Override
   public boolean canBeRemoved() {
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     boolean schLockAcquired = false;
     try {
       // if unable to read, then writers are writing; cannot remove SCH
@@ -1508,7 +1517,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
       if (schLockAcquired) {
         readLock.unlock();
       }
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
   }
 
@@ -1517,6 +1526,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     boolean fireRemovalEvent = false;
 
     clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       writeLock.lock();
       try {
@@ -1539,6 +1549,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
         writeLock.unlock();
       }
     } finally {
+      serviceLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
 
@@ -240,6 +240,82 @@ public class TestActionScheduler {
     return null;
   }
 
+  /**
+   * Verifies that the scheduler only makes a pass when it was woken up, when
+   * the previous pass changed state, or when a task may have timed out.
+   */
+  @Test
+  public void testPassOnlyWhenNeeded() throws Exception {
+    ActionQueue aq = new ActionQueue();
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.EXECUTION_SCHEDULER_RECONCILIATION_INTERVAL_KEY, "600");
+    Configuration conf = new Configuration(properties);
+    Clusters fsm = mock(Clusters.class);
+    Cluster oneClusterMock = mock(Cluster.class);
+    Service serviceObj = mock(Service.class);
+    ServiceComponent scomp = mock(ServiceComponent.class);
+    ServiceComponentHost sch = mock(ServiceComponentHost.class);
+    UnitOfWork unitOfWork = mock(UnitOfWork.class);
+    when(fsm.getCluster(anyString())).thenReturn(oneClusterMock);
+    when(oneClusterMock.getService(anyString())).thenReturn(serviceObj);
+    when(serviceObj.getServiceComponent(anyString())).thenReturn(scomp);
+    when(scomp.getServiceComponentHost(anyString())).thenReturn(sch);
+    when(serviceObj.getCluster()).thenReturn(oneClusterMock);
+
+    Host host = mock(Host.class);
+    HashMap<String, ServiceComponentHost> hosts =
+            new HashMap<String, ServiceComponentHost>();
+    hosts.put(hostname, sch);
+    when(scomp.getServiceComponentHosts()).thenReturn(hosts);
+    when(fsm.getHost(anyString())).thenReturn(host);
+    when(host.getState()).thenReturn(HostState.HEALTHY);
+    when(host.getHostName()).thenReturn(hostname);
+
+    List<Stage> stages = new ArrayList<Stage>();
+    Stage s = StageUtils.getATestStage(1, 977, hostname, CLUSTER_HOST_INFO,
+      "{\"host_param\":\"param_value\"}", "{\"stage_param\":\"param_value\"}");
+    long lastAttemptTime = System.currentTimeMillis();
+    s.setHostRoleStatus(hostname, "NAMENODE", HostRoleStatus.QUEUED);
+    s.setLastAttemptTime(hostname, "NAMENODE", lastAttemptTime);
+    stages.add(s);
+
+    ActionDBAccessor db = mock(ActionDBAccessor.class);
+    when(db.getCommandsInProgressCount()).thenReturn(stages.size());
+    when(db.getStagesInProgress()).thenReturn(stages);
+
+    RequestEntity request = mock(RequestEntity.class);
+    when(request.isExclusive()).thenReturn(false);
+    when(db.getRequestEntity(anyLong())).thenReturn(request);
+
+    ActionScheduler scheduler = new ActionScheduler(100, 60000, db, aq, fsm,
+        3, new HostsMap((String) null), unitOfWork, null, conf);
+    scheduler.setTaskTimeoutAdjustment(false);
+
+    // starting the request is a change, so another pass follows
+    scheduler.doWork();
+    long now = System.currentTimeMillis();
+    assertTrue(scheduler.isPassNeeded(false, now));
+
+    // nothing changed, the task has not timed out yet
+    scheduler.doWork();
+    assertEquals(0, aq.size(hostname));
+    assertFalse(scheduler.isPassNeeded(false, now));
+    assertTrue(scheduler.isPassNeeded(true, now));
+
+    // the task may have timed out
+    assertFalse(scheduler.isPassNeeded(false, lastAttemptTime + 59000));
+    assertTrue(scheduler.isPassNeeded(false, lastAttemptTime + 60001));
+
+    // periodic reconciliation
+    s.setHostRoleStatus(hostname, "NAMENODE", HostRoleStatus.COMPLETED);
+    scheduler.doWork();
+    assertFalse(scheduler.isPassNeeded(false, lastAttemptTime + 60001));
+    assertTrue(scheduler.isPassNeeded(false, now + 700000));
+
+    // the request exclusivity is only read once
+    verify(db, times(1)).getRequestEntity(1L);
+  }
+
   /**
    * Test whether scheduler times out an action
    */
@@ -22,8 +22,11 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.ambari.server.agent.AgentCommand.AgentCommandType;
 import org.easymock.EasyMock;
@@ -377,4 +380,48 @@ public class TestActionQueue {
     assertEquals(4, queue.size(c6401));
     assertEquals(3, queue.size(c6402));
   }
+
+  @Test
+  public void testSupersededStatusCommands() throws Exception {
+    ActionQueue queue = new ActionQueue();
+    String c6401 = "c6401.ambari.apache.org";
+
+    queue.enqueue(c6401, createStatusCommand("DATANODE", "value"));
+    queue.enqueue(c6401, createStatusCommand("NAMENODE", "value"));
+    queue.enqueue(c6401, new StatusCommand());
+    queue.enqueue(c6401, new StatusCommand());
+    assertEquals(4, queue.size(c6401));
+
+    // only the latest status command of a component is kept
+    queue.enqueue(c6401, createStatusCommand("DATANODE", "newer value"));
+    assertEquals(4, queue.size(c6401));
+    assertEquals(1, queue.getSupersededStatusCommandCount());
+
+    // 2 bytes per character of "hdfs-site", "dfs.property" and the value
+    long expectedSize = 2 * (9 + 12 + 5) + 2 * (9 + 12 + 11);
+    assertEquals(expectedSize, queue.getEstimatedSize(c6401));
+    assertEquals(expectedSize, queue.getTotalEstimatedSize());
+    assertEquals(4, queue.getTotalSize());
+    assertEquals(Collections.singletonMap(c6401, 4), queue.getSizes());
+
+    List<AgentCommand> commands = queue.dequeueAll(c6401);
+    StatusCommand datanode = (StatusCommand) commands.get(commands.size() - 1);
+    assertEquals("newer value",
+        datanode.getConfigurations().get("hdfs-site").get("dfs.property"));
+    assertEquals(0, queue.getTotalEstimatedSize());
+    assertTrue(queue.getSizes().isEmpty());
+  }
+
+  private StatusCommand createStatusCommand(String componentName, String value) {
+    StatusCommand command = new StatusCommand();
+    command.setClusterName("c1");
+    command.setServiceName("HDFS");
+    command.setComponentName(componentName);
+
+    Map<String, Map<String, String>> configurations = new HashMap<String, Map<String, String>>();
+    configurations.put("hdfs-site", new HashMap<String, String>());
+    configurations.get("hdfs-site").put("dfs.property", value);
+    command.setConfigurations(configurations);
+    return command;
+  }
 }
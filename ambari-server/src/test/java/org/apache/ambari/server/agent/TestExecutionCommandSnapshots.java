@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class TestExecutionCommandSnapshots {
+
+  @Test
+  public void testSnapshotsSentOnce() throws Exception {
+    ExecutionCommandSnapshots snapshots = new ExecutionCommandSnapshots();
+
+    ExecutionCommand first = createCommand(1L, "value");
+    ExecutionCommand prepared = snapshots.prepare("h1", first);
+    assertSame(first.getConfigurations(), prepared.getConfigurations());
+    assertSame(first.getClusterHostInfo(), prepared.getClusterHostInfo());
+    assertNotNull(prepared.getConfigurationsHash());
+    assertNotNull(prepared.getClusterHostInfoHash());
+
+    // the original command is not changed
+    assertNull(first.getConfigurationsHash());
+
+    // same content, only the references are sent
+    ExecutionCommand second = snapshots.prepare("h1", createCommand(2L, "value"));
+    assertNull(second.getConfigurations());
+    assertNull(second.getConfigurationAttributes());
+    assertNull(second.getClusterHostInfo());
+    assertEquals(prepared.getConfigurationsHash(), second.getConfigurationsHash());
+    assertEquals(prepared.getClusterHostInfoHash(), second.getClusterHostInfoHash());
+    assertEquals(2L, second.getTaskId());
+    assertEquals(first.getConfigurationTags(), second.getConfigurationTags());
+
+    // another host does not have the snapshots yet
+    ExecutionCommand other = snapshots.prepare("h2", createCommand(3L, "value"));
+    assertNotNull(other.getConfigurations());
+    assertNotNull(other.getClusterHostInfo());
+
+    // changed configurations, the cluster host info is still cached
+    ExecutionCommand changed = snapshots.prepare("h1", createCommand(4L, "changed"));
+    assertNotNull(changed.getConfigurations());
+    assertFalse(prepared.getConfigurationsHash().equals(changed.getConfigurationsHash()));
+    assertNull(changed.getClusterHostInfo());
+
+    // the agent registers with an empty cache
+    snapshots.invalidate("h1");
+    ExecutionCommand registered = snapshots.prepare("h1", createCommand(5L, "value"));
+    assertNotNull(registered.getConfigurations());
+    assertNotNull(registered.getClusterHostInfo());
+  }
+
+  @Test
+  public void testHashIgnoresOrder() throws Exception {
+    ExecutionCommandSnapshots snapshots = new ExecutionCommandSnapshots();
+
+    Map<String, Set<String>> info = new LinkedHashMap<String, Set<String>>();
+    info.put("a", new HashSet<String>());
+    info.get("a").add("h1");
+    info.get("a").add("h2");
+    info.put("b", new HashSet<String>());
+
+    Map<String, Set<String>> reordered = new LinkedHashMap<String, Set<String>>();
+    reordered.put("b", new HashSet<String>());
+    reordered.put("a", new HashSet<String>(16, 0.5f));
+    reordered.get("a").add("h2");
+    reordered.get("a").add("h1");
+
+    assertEquals(snapshots.hash(info), snapshots.hash(reordered));
+
+    reordered.get("b").add("h3");
+    assertFalse(snapshots.hash(info).equals(snapshots.hash(reordered)));
+  }
+
+  @Test
+  public void testHashKeepsHostOrder() throws Exception {
+    ExecutionCommandSnapshots snapshots = new ExecutionCommandSnapshots();
+
+    // the role host ranges index into the order of all_hosts
+    Map<String, Set<String>> info = new HashMap<String, Set<String>>();
+    info.put("all_hosts", new LinkedHashSet<String>());
+    info.get("all_hosts").add("h1");
+    info.get("all_hosts").add("h2");
+    info.put("namenode_host", new LinkedHashSet<String>());
+    info.get("namenode_host").add("0");
+
+    Map<String, Set<String>> swapped = new HashMap<String, Set<String>>();
+    swapped.put("all_hosts", new LinkedHashSet<String>());
+    swapped.get("all_hosts").add("h2");
+    swapped.get("all_hosts").add("h1");
+    swapped.put("namenode_host", new LinkedHashSet<String>());
+    swapped.get("namenode_host").add("0");
+
+    assertFalse(snapshots.hash(info).equals(snapshots.hash(swapped)));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedSnapshotIsResent() throws Exception {
+    ExecutionCommandSnapshots snapshots = new ExecutionCommandSnapshots();
+
+    assertTrue(snapshots.markSent("h1", "hash-0"));
+    for (int i = 1; i < ExecutionCommandSnapshots.MAX_SNAPSHOTS_PER_HOST; i++) {
+      assertTrue(snapshots.markSent("h1", "hash-" + i));
+    }
+
+    // using hash-0 again makes hash-1 the eldest
+    assertFalse(snapshots.markSent("h1", "hash-0"));
+    assertTrue(snapshots.markSent("h1", "new"));
+    assertFalse(snapshots.markSent("h1", "hash-0"));
+    assertTrue(snapshots.markSent("h1", "hash-1"));
+  }
+
+  private ExecutionCommand createCommand(long taskId, String value) {
+    ExecutionCommand command = new ExecutionCommand();
+    command.setTaskId(taskId);
+    command.setHostname("h1");
+    command.setRole("DATANODE");
+
+    Map<String, Map<String, String>> configurations = new TreeMap<String, Map<String, String>>();
+    configurations.put("hdfs-site", new HashMap<String, String>());
+    configurations.get("hdfs-site").put("dfs.property", value);
+    command.setConfigurations(configurations);
+    command.setConfigurationAttributes(new TreeMap<String, Map<String, Map<String, String>>>());
+
+    Map<String, Map<String, String>> tags = new TreeMap<String, Map<String, String>>();
+    tags.put("hdfs-site", new HashMap<String, String>());
+    tags.get("hdfs-site").put("tag", "version1");
+    command.setConfigurationTags(tags);
+
+    Map<String, Set<String>> clusterHostInfo = new HashMap<String, Set<String>>();
+    clusterHostInfo.put("slave_hosts", new HashSet<String>());
+    clusterHostInfo.get("slave_hosts").add("h1");
+    clusterHostInfo.get("slave_hosts").add("h2");
+    command.setClusterHostInfo(clusterHostInfo);
+    return command;
+  }
+}
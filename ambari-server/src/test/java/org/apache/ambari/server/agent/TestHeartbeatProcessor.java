@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ambari.server.agent.HeartbeatProcessor.QueuedHeartbeat;
+import org.apache.ambari.server.state.Alert;
+import org.apache.ambari.server.state.Clusters;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests {@link HeartbeatProcessor}.
+ */
+public class TestHeartbeatProcessor {
+
+  private static final String HOSTNAME = "c6401.ambari.apache.org";
+
+  @Test
+  public void testBatchIsCoalesced() throws Exception {
+    HeartBeatHandler handler = mock(HeartBeatHandler.class);
+    Clusters clusters = mock(Clusters.class);
+    HeartbeatProcessor processor = new HeartbeatProcessor(handler, clusters, 1);
+
+    List<ComponentStatus> latestStatuses = Collections.singletonList(new ComponentStatus());
+
+    HeartBeat first = createHeartbeat(Collections.singletonList(new ComponentStatus()));
+    first.setAlerts(Collections.singletonList(new Alert()));
+    HeartBeat second = createHeartbeat(latestStatuses);
+    second.setAlerts(Collections.singletonList(new Alert()));
+    HeartBeat third = createHeartbeat(new ArrayList<ComponentStatus>());
+
+    List<QueuedHeartbeat> batch = new ArrayList<QueuedHeartbeat>();
+    batch.add(new QueuedHeartbeat(first, 1L));
+    batch.add(new QueuedHeartbeat(second, 2L));
+    batch.add(new QueuedHeartbeat(third, 3L));
+
+    processor.processBatch(HOSTNAME, batch);
+
+    // every heartbeat has its command reports applied
+    verify(handler).processCommandReports(first, HOSTNAME, clusters, 1L);
+    verify(handler).processCommandReports(second, HOSTNAME, clusters, 2L);
+    verify(handler).processCommandReports(third, HOSTNAME, clusters, 3L);
+
+    // only the latest non-empty status reports are applied, once
+    ArgumentCaptor<HeartBeat> captor = ArgumentCaptor.forClass(HeartBeat.class);
+    verify(handler, times(1)).processStatusReports(captor.capture(), eq(HOSTNAME), eq(clusters));
+    assertSame(latestStatuses, captor.getValue().getComponentStatus());
+
+    verify(handler, times(1)).processHostStatus(any(HeartBeat.class), eq(HOSTNAME));
+
+    captor = ArgumentCaptor.forClass(HeartBeat.class);
+    verify(handler, times(1)).processAlerts(captor.capture(), eq(HOSTNAME));
+    assertEquals(2, captor.getValue().getAlerts().size());
+  }
+
+  @Test
+  public void testHeartbeatsAreProcessed() throws Exception {
+    HeartBeatHandler handler = mock(HeartBeatHandler.class);
+    Clusters clusters = mock(Clusters.class);
+    HeartbeatProcessor processor = new HeartbeatProcessor(handler, clusters, 2);
+
+    assertFalse(processor.isRunning());
+    processor.start();
+    assertTrue(processor.isRunning());
+
+    for (int i = 0; i < 5; i++) {
+      processor.addHeartbeat(createHeartbeat(new ArrayList<ComponentStatus>()),
+          System.currentTimeMillis());
+    }
+
+    long timeout = System.currentTimeMillis() + 10000;
+    while (processor.getProcessedHeartbeatCount() < 5 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(50);
+    }
+
+    processor.stop();
+
+    assertEquals(5, processor.getProcessedHeartbeatCount());
+    assertEquals(0, processor.getQueueDepth());
+    verify(handler, times(5)).processCommandReports(any(HeartBeat.class), eq(HOSTNAME),
+        eq(clusters), anyLong());
+  }
+
+  private HeartBeat createHeartbeat(List<ComponentStatus> componentStatuses) {
+    HeartBeat heartbeat = new HeartBeat();
+    heartbeat.setHostname(HOSTNAME);
+    heartbeat.setComponentStatus(componentStatuses);
+    return heartbeat;
+  }
+}
@@ -27,6 +27,7 @@ import org.junit.Test;
 
 import javax.ws.rs.core.UriInfo;
 
+import java.io.ByteArrayOutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -207,6 +208,43 @@ public class JsonSerializerTest {
 
     verify(uriInfo, resource/*, resource2*/);
   }
-    
-  
+
+  @Test
+  public void testSerializeToStream() throws Exception {
+    Resource resource = createMock(Resource.class);
+
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> child = result.getResultTree().addChild(resource, "resource1");
+    child.setProperty("href", "this is an href");
+
+    Map<String, Object> mapRootProps = new LinkedHashMap<String, Object>();
+    mapRootProps.put("prop1", "value\u00e9");
+
+    Map<String, Map<String, Object>> propertyMap = new LinkedHashMap<String, Map<String, Object>>();
+    propertyMap.put(null, mapRootProps);
+
+    expect(resource.getPropertiesMap()).andReturn(propertyMap).anyTimes();
+    expect(resource.getType()).andReturn(Resource.Type.Cluster).anyTimes();
+
+    replay(resource);
+
+    String serialized = new JsonSerializer().serialize(result).toString();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JsonSerializer().serialize(result, out);
+
+    // the streamed bytes are the same as the serialized string and the stream is left open
+    assertEquals(serialized, out.toString("UTF-8"));
+    out.write('x');
+    assertEquals(serialized + "x", out.toString("UTF-8"));
+
+    // errors are streamed the same way
+    Result error = new ResultImpl(new ResultStatus(ResultStatus.STATUS.NOT_FOUND, "missing"));
+    out = new ByteArrayOutputStream();
+    new JsonSerializer().serialize(error, out);
+    assertEquals(new JsonSerializer().serializeError(error.getStatus()), out.toString("UTF-8"));
+
+    verify(resource);
+  }
 }
@@ -224,6 +224,8 @@ public class StageResourceProviderTest {
 
     dao.updateStageStatus(entities.get(0), HostRoleStatus.ABORTED, actionManager);
     EasyMock.expectLastCall().atLeastOnce();
+    actionManager.awakeScheduler();
+    EasyMock.expectLastCall().atLeastOnce();
 
     replay(dao, clusters, cluster, actionManager, managementController);
 
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.jmx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * JMX metric cache tests.
+ */
+public class JMXMetricCacheTest {
+
+  private static final String NAMENODE_SPEC = "http://host1:50070/jmx";
+  private static final String DATANODE_SPEC = "http://host1:50075/jmx";
+
+  @Test
+  public void testRequestsShareSnapshot() throws Exception {
+    CountingStreamProvider streamProvider = new CountingStreamProvider();
+    JMXMetricCache cache = new JMXMetricCache(true, 60000L, 600000L, 10);
+
+    JMXMetricHolder first = cache.getMetricHolder(NAMENODE_SPEC, streamProvider);
+    JMXMetricHolder second = cache.getMetricHolder(NAMENODE_SPEC, streamProvider);
+
+    Assert.assertNotNull(first);
+    Assert.assertSame(first, second);
+    Assert.assertEquals(1, streamProvider.reads);
+
+    cache.getMetricHolder(DATANODE_SPEC, streamProvider);
+    Assert.assertEquals(2, streamProvider.reads);
+    Assert.assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    CountingStreamProvider streamProvider = new CountingStreamProvider();
+    JMXMetricCache cache = new JMXMetricCache(false, 60000L, 600000L, 10);
+
+    cache.getMetricHolder(NAMENODE_SPEC, streamProvider);
+    cache.getMetricHolder(NAMENODE_SPEC, streamProvider);
+
+    Assert.assertEquals(2, streamProvider.reads);
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testIdleEntriesRemoved() throws Exception {
+    CountingStreamProvider streamProvider = new CountingStreamProvider();
+    JMXMetricCache cache = new JMXMetricCache(true, 60000L, 0L, 10);
+
+    cache.getMetricHolder(NAMENODE_SPEC, streamProvider);
+    Assert.assertEquals(1, cache.size());
+
+    Thread.sleep(10);
+    cache.refreshEntries();
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testLeastRecentlyRequestedEntryEvicted() throws Exception {
+    CountingStreamProvider streamProvider = new CountingStreamProvider();
+    JMXMetricCache cache = new JMXMetricCache(true, 60000L, 600000L, 1);
+
+    cache.getMetricHolder(NAMENODE_SPEC, streamProvider);
+    Thread.sleep(10);
+    cache.getMetricHolder(DATANODE_SPEC, streamProvider);
+    Assert.assertEquals(1, cache.size());
+
+    // the namenode snapshot was evicted
+    cache.getMetricHolder(NAMENODE_SPEC, streamProvider);
+    Assert.assertEquals(3, streamProvider.reads);
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadFailure() throws Exception {
+    JMXMetricCache cache = new JMXMetricCache(true, 60000L, 600000L, 10);
+    cache.getMetricHolder("http://host1:1/jmx", new CountingStreamProvider());
+  }
+
+  private static class CountingStreamProvider extends TestStreamProvider {
+    private int reads = 0;
+
+    @Override
+    public InputStream readFrom(String spec) throws IOException {
+      reads++;
+      return super.readFrom(spec);
+    }
+  }
+}
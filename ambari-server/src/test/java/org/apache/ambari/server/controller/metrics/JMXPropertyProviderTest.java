@@ -318,10 +318,23 @@ public class JMXPropertyProviderTest {
     // request with an empty set should get all supported properties
     Request request = PropertyHelper.getReadRequest(Collections.<String>emptySet());
 
+    ThreadPoolEnabledPropertyProvider.PopulateStatistics statistics =
+        ThreadPoolEnabledPropertyProvider.getPopulateStatistics(JMXPropertyProvider.class);
+    long populateCount = statistics.getPopulateCount();
+    long fetchTaskCount = statistics.getFetchTaskCount();
+
     Set<Resource> resourceSet = propertyProvider.populateResources(resources, request, null);
 
     Assert.assertEquals(NUMBER_OF_RESOURCES, resourceSet.size());
 
+    // the statistics are shared by all the providers of the class
+    Assert.assertSame(statistics, propertyProvider.getPopulateStatistics());
+    Assert.assertEquals(populateCount + 1, statistics.getPopulateCount());
+    // all the resources share an endpoint, which is read by a single task
+    Assert.assertEquals(fetchTaskCount + 1, statistics.getFetchTaskCount());
+    Assert.assertTrue(statistics.getEndpointFetchStatistics().containsKey(
+        "http://domu-12-31-39-14-ee-b3.compute-1.internal:50075"));
+
     for (Resource resource : resourceSet) {
       // see test/resources/hdfs_datanode_jmx.json for values
       Assert.assertEquals(856,  resource.getPropertyValue(PropertyHelper.getPropertyId("metrics/rpc", "ReceivedBytes")));
@@ -364,12 +377,15 @@ public class JMXPropertyProviderTest {
     // request with an empty set should get all supported properties
     Request request = PropertyHelper.getReadRequest(Collections.<String>emptySet());
 
+    long timeoutCount = propertyProvider.getPopulateStatistics().getTimeoutCount();
+
     Set<Resource> resourceSet = propertyProvider.populateResources(resources, request, null);
 
     // make sure that the thread running the stream provider has completed
     Thread.sleep(150L);
 
     Assert.assertEquals(0, resourceSet.size());
+    Assert.assertEquals(timeoutCount + 1, propertyProvider.getPopulateStatistics().getTimeoutCount());
 
     // assert that properties never get set on the resource
     Assert.assertNull(resource.getPropertyValue("metrics/rpc/ReceivedBytes"));
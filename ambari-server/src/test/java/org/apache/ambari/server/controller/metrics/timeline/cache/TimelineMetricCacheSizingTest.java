@@ -22,16 +22,19 @@ import net.sf.ehcache.pool.sizeof.SizeOf;
 import org.apache.ambari.server.controller.internal.TemporalInfoImpl;
 import org.apache.ambari.server.controller.spi.TemporalInfo;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.TreeMap;
 
 public class TimelineMetricCacheSizingTest {
 
+  private static final int METRIC_COUNT = 6;
+  private static final int VALUES_PER_METRIC = 50000;
+
   SizeOf reflectionSizeOf = new ReflectionSizeOf();
 
   private TimelineMetric getSampleTimelineMetric(String metricName) {
@@ -44,14 +47,14 @@ public class TimelineMetricCacheSizingTest {
     metric.setStartTime(System.currentTimeMillis());
     metric.setType("LONG");
 
-    // JSON dser gives a LinkedHashMap
-    TreeMap<Long, Double> valueMap = new TreeMap<>();
+    // Cached values are held as a series, see TimelineMetricCacheEntryFactory
+    TimelineMetricSeries metricSeries = new TimelineMetricSeries(VALUES_PER_METRIC);
     long now = System.currentTimeMillis();
-    for (int i = 0; i < 50000; i++) {
-      valueMap.put(new Long(now + i), new Double(1.0 + i));
+    for (int i = 0; i < VALUES_PER_METRIC; i++) {
+      metricSeries.append(now + i, 1.0 + i);
     }
 
-    metric.setMetricValues(valueMap);
+    metric.setMetricSeries(metricSeries);
 
     return metric;
   }
@@ -102,11 +105,15 @@ public class TimelineMetricCacheSizingTest {
 
     long bytesFromCustomSizeOfEngine = customSizeOfEngine.sizeOf(key, value, null).getCalculated();
 
-    long sampleSizeInMB = bytesFromReflectionEngine / (1024 * 1024);
+    // A series holds an 8 byte timestamp and an 8 byte value per data point,
+    // the sample must be at least that large for the comparison to be
+    // meaningful
+    long minimumSampleSize = (long) METRIC_COUNT * VALUES_PER_METRIC * 16;
     long discrepancyInKB = Math.abs(bytesFromCustomSizeOfEngine - bytesFromReflectionEngine) / 1024;
 
-    Assert.assertTrue("Sample size is " + sampleSizeInMB + ", expected to be" +
-        "greater that 10 MB", sampleSizeInMB > 10);
+    Assert.assertTrue("Sample size is " + bytesFromReflectionEngine + " bytes, expected " +
+        "to be at least " + minimumSampleSize + " bytes",
+        bytesFromReflectionEngine >= minimumSampleSize);
     Assert.assertTrue("Discrepancy in values is " + discrepancyInKB  + ", " +
         "expected to be less than 10K. " + "Bytes from reflection = " +
         bytesFromReflectionEngine + ", bytes from custom sizing engine = " +
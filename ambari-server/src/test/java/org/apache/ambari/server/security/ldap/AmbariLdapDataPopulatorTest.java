@@ -1563,6 +1563,106 @@ public class AmbariLdapDataPopulatorTest {
     verify(ldapTemplate, ldapServerProperties, users, configuration, processor, cookie);
   }
 
+  @Test
+  public void testGetLdapUsersByMemberAttrs() throws Exception {
+
+    Configuration configuration = createNiceMock(Configuration.class);
+    Users users = createNiceMock(Users.class);
+    LdapTemplate ldapTemplate = createNiceMock(LdapTemplate.class);
+    LdapServerProperties ldapServerProperties = createNiceMock(LdapServerProperties.class);
+    Capture<String> filterCapture = new Capture<String>();
+
+    LdapUserDto user1 = new LdapUserDto();
+    user1.setUserName("user1");
+    user1.setDn("uid=user1,ou=people,dc=example,dc=com");
+    LdapUserDto user2 = new LdapUserDto();
+    user2.setUserName("user2");
+    user2.setDn("uid=user2,ou=people,dc=example,dc=com");
+    LdapUserDto user3 = new LdapUserDto();
+    user3.setUserName("user3");
+    user3.setDn("uid=user3,ou=people,dc=example,dc=com");
+
+    List<LdapUserDto> list = new LinkedList<LdapUserDto>();
+    list.add(user1);
+    list.add(user2);
+    list.add(user3);
+
+    expect(configuration.getLdapServerProperties()).andReturn(ldapServerProperties).anyTimes();
+    expect(ldapServerProperties.isPaginationEnabled()).andReturn(false).anyTimes();
+    expect(ldapServerProperties.getUserObjectClass()).andReturn("person").anyTimes();
+    expect(ldapServerProperties.getUsernameAttribute()).andReturn("uid").anyTimes();
+    expect(ldapServerProperties.getGroupNamingAttr()).andReturn("cn").anyTimes();
+    expect(ldapServerProperties.getBaseDN()).andReturn("baseDN").anyTimes();
+
+    // all users are found with a single search
+    expect(ldapTemplate.search(eq("baseDN"), capture(filterCapture), anyObject(SearchControls.class), anyObject(ContextMapper.class))).andReturn(list).once();
+
+    replay(ldapTemplate, ldapServerProperties, users, configuration);
+
+    AmbariLdapDataPopulatorTestInstance populator = new AmbariLdapDataPopulatorTestInstance(configuration, users);
+    populator.setLdapTemplate(ldapTemplate);
+
+    Map<String, LdapUserDto> members = populator.getLdapUsersByMemberAttrs(Arrays.asList(
+        "user1",
+        "uid=user2, ou=people, dc=example, dc=com",
+        "uid=user3,ou=other,dc=example,dc=com",
+        "cn=group1,ou=groups,dc=example,dc=com"));
+
+    assertEquals(2, members.size());
+    assertEquals(user1, members.get("user1"));
+    assertEquals(user2, members.get("uid=user2, ou=people, dc=example, dc=com"));
+
+    String filter = filterCapture.getValue();
+    assertTrue(filter.startsWith("(&(objectClass=person)(|"));
+    assertTrue(filter.contains("(uid=user1)"));
+    assertTrue(filter.contains("(uid=user2)"));
+    assertTrue(filter.contains("(uid=user3)"));
+    assertFalse(filter.contains("group1"));
+
+    verify(ldapTemplate, ldapServerProperties, users, configuration);
+  }
+
+  @Test
+  public void testGetLdapUsersByMemberAttrsMixedCaseAttribute() throws Exception {
+
+    Configuration configuration = createNiceMock(Configuration.class);
+    Users users = createNiceMock(Users.class);
+    LdapTemplate ldapTemplate = createNiceMock(LdapTemplate.class);
+    LdapServerProperties ldapServerProperties = createNiceMock(LdapServerProperties.class);
+    Capture<String> filterCapture = new Capture<String>();
+
+    LdapUserDto user1 = new LdapUserDto();
+    user1.setUserName("user1");
+    user1.setDn("samaccountname=user1,ou=people,dc=example,dc=com");
+
+    List<LdapUserDto> list = new LinkedList<LdapUserDto>();
+    list.add(user1);
+
+    expect(configuration.getLdapServerProperties()).andReturn(ldapServerProperties).anyTimes();
+    expect(ldapServerProperties.isPaginationEnabled()).andReturn(false).anyTimes();
+    expect(ldapServerProperties.getUserObjectClass()).andReturn("person").anyTimes();
+    expect(ldapServerProperties.getUsernameAttribute()).andReturn("sAMAccountName").anyTimes();
+    expect(ldapServerProperties.getGroupNamingAttr()).andReturn("cn").anyTimes();
+    expect(ldapServerProperties.getBaseDN()).andReturn("baseDN").anyTimes();
+
+    // the lowercased member DN is still resolved by the batched search
+    expect(ldapTemplate.search(eq("baseDN"), capture(filterCapture), anyObject(SearchControls.class), anyObject(ContextMapper.class))).andReturn(list).once();
+
+    replay(ldapTemplate, ldapServerProperties, users, configuration);
+
+    AmbariLdapDataPopulatorTestInstance populator = new AmbariLdapDataPopulatorTestInstance(configuration, users);
+    populator.setLdapTemplate(ldapTemplate);
+
+    Map<String, LdapUserDto> members = populator.getLdapUsersByMemberAttrs(Arrays.asList(
+        "samaccountname=user1,ou=people,dc=example,dc=com"));
+
+    assertEquals(1, members.size());
+    assertEquals(user1, members.get("samaccountname=user1,ou=people,dc=example,dc=com"));
+    assertTrue(filterCapture.getValue().contains("(sAMAccountName=user1)"));
+
+    verify(ldapTemplate, ldapServerProperties, users, configuration);
+  }
+
   @Test
   public void testLdapUserContextMapper_uidIsNull() throws Exception {
     LdapServerProperties ldapServerProperties = createNiceMock(LdapServerProperties.class);
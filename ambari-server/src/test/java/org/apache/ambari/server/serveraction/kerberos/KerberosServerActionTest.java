@@ -40,7 +40,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -56,6 +59,7 @@ public class KerberosServerActionTest {
   File temporaryDirectory;
   private Injector injector;
   private KerberosServerAction action;
+  private int identityProcessingThreadCount = 1;
 
   @Before
   public void setUp() throws Exception {
@@ -82,7 +86,9 @@ public class KerberosServerActionTest {
               throws AmbariException {
             Assert.assertNotNull(requestSharedDataContext);
 
-            if (requestSharedDataContext.get("FAIL") != null) {
+            if (requestSharedDataContext.get("THROW") != null) {
+              throw new AmbariException("Failed to process " + evaluatedPrincipal);
+            } else if (requestSharedDataContext.get("FAIL") != null) {
               return createCommandReport(1, HostRoleStatus.FAILED, "{}", "ERROR", "ERROR");
             } else {
               requestSharedDataContext.put(identityRecord.get(KerberosIdentityDataFileReader.PRINCIPAL), evaluatedPrincipal);
@@ -95,6 +101,11 @@ public class KerberosServerActionTest {
               throws AmbariException, InterruptedException {
             return processIdentities(requestSharedDataContext);
           }
+
+          @Override
+          protected int getIdentityProcessingThreadCount() {
+            return identityProcessingThreadCount;
+          }
         });
 
         bind(Clusters.class).toInstance(clusters);
@@ -222,4 +233,109 @@ public class KerberosServerActionTest {
 
     verify(kerberosHelper);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testProcessIdentitiesConcurrently() throws Exception {
+    KerberosHelper kerberosHelper = injector.getInstance(KerberosHelper.class);
+    expect(kerberosHelper.getKDCAdministratorCredentials(EasyMock.anyObject(String.class)))
+        .andReturn(new PrincipalKeyCredential("principal", "password"))
+        .anyTimes();
+
+    replay(kerberosHelper);
+
+    identityProcessingThreadCount = 4;
+
+    ConcurrentMap<String, Object> sharedMap = new ConcurrentHashMap<String, Object>();
+    CommandReport report = action.processIdentities(sharedMap);
+    Assert.assertNotNull(report);
+    Assert.assertEquals(HostRoleStatus.COMPLETED.toString(), report.getStatus());
+    Assert.assertTrue(report.getStdOut().contains("Processed 10 of 10 identities"));
+
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals("principal|hostName|REALM.COM" + i, sharedMap.get("principal|_HOST|_REALM" + i));
+    }
+
+    verify(kerberosHelper);
+  }
+
+  @Test
+  public void testProcessIdentitiesConcurrentlyFail() throws Exception {
+    KerberosHelper kerberosHelper = injector.getInstance(KerberosHelper.class);
+    expect(kerberosHelper.getKDCAdministratorCredentials(EasyMock.anyObject(String.class)))
+        .andReturn(new PrincipalKeyCredential("principal", "password"))
+        .anyTimes();
+
+    replay(kerberosHelper);
+
+    identityProcessingThreadCount = 4;
+
+    ConcurrentMap<String, Object> sharedMap = new ConcurrentHashMap<String, Object>();
+    sharedMap.put("FAIL", "true");
+
+    CommandReport report = action.processIdentities(sharedMap);
+    Assert.assertNotNull(report);
+    Assert.assertEquals(HostRoleStatus.FAILED.toString(), report.getStatus());
+
+    verify(kerberosHelper);
+  }
+
+  @Test
+  public void testProcessIdentitiesConcurrentlyThrows() throws Exception {
+    KerberosHelper kerberosHelper = injector.getInstance(KerberosHelper.class);
+    expect(kerberosHelper.getKDCAdministratorCredentials(EasyMock.anyObject(String.class)))
+        .andReturn(new PrincipalKeyCredential("principal", "password"))
+        .anyTimes();
+
+    replay(kerberosHelper);
+
+    identityProcessingThreadCount = 4;
+
+    ConcurrentMap<String, Object> sharedMap = new ConcurrentHashMap<String, Object>();
+    sharedMap.put("THROW", "true");
+
+    try {
+      action.processIdentities(sharedMap);
+      Assert.fail("Expected AmbariException");
+    } catch (AmbariException e) {
+      // expected
+    }
+
+    verify(kerberosHelper);
+  }
+
+  @Test
+  public void testGroupRecords() throws Exception {
+    Map<String, String> namenode = createRecord("nn/_HOST@_REALM", "host1", "/etc/security/keytabs/nn.service.keytab");
+    Map<String, String> datanode = createRecord("dn/_HOST@_REALM", "host1", "/etc/security/keytabs/dn.service.keytab");
+    // the same principal as the namenode once evaluated
+    Map<String, String> namenodeAgain = createRecord("nn/host1@REALM.COM", "host1", "/etc/security/keytabs/nn2.service.keytab");
+    // the same keytab file as the datanode
+    Map<String, String> spnego = createRecord("HTTP/_HOST@_REALM", "host1", "/etc/security/keytabs/dn.service.keytab");
+    // the same keytab file path as the datanode, but on another host
+    Map<String, String> otherDatanode = createRecord("dn/_HOST@_REALM", "host2", "/etc/security/keytabs/dn.service.keytab");
+    // joins the namenode group through the keytab file of namenodeAgain
+    Map<String, String> nfs = createRecord("nfs/_HOST@_REALM", "host1", "/etc/security/keytabs/nn2.service.keytab");
+    // nothing to process
+    Map<String, String> noPrincipal = createRecord(null, "host1", "/etc/security/keytabs/none.keytab");
+
+    List<Map<String, String>> records = Arrays.asList(namenode, datanode, namenodeAgain, spnego,
+        otherDatanode, noPrincipal, nfs);
+
+    List<List<Map<String, String>>> expected = new ArrayList<List<Map<String, String>>>();
+    expected.add(Arrays.asList(namenode, namenodeAgain, nfs));
+    expected.add(Arrays.asList(datanode, spnego));
+    expected.add(Arrays.asList(otherDatanode));
+
+    Assert.assertEquals(expected, KerberosServerAction.groupRecords(records, "REALM.COM"));
+  }
+
+  private static Map<String, String> createRecord(String principal, String hostname, String keytabFilePath) {
+    Map<String, String> record = new HashMap<String, String>();
+    if (principal != null) {
+      record.put(KerberosIdentityDataFileReader.PRINCIPAL, principal);
+    }
+    record.put(KerberosIdentityDataFileReader.HOSTNAME, hostname);
+    record.put(KerberosIdentityDataFileReader.KEYTAB_FILE_PATH, keytabFilePath);
+    return record;
+  }
+}
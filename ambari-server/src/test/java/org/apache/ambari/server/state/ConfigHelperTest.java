@@ -687,6 +687,51 @@ public class ConfigHelperTest {
       Assert.assertTrue(configHelper.isStaleConfigs(sch));
       verify(sch);
     }
+
+    @Test
+    public void testInvalidateStaleConfigsCacheByConfigType() throws Exception {
+      Map<String, HostConfig> schReturn = new HashMap<String, HostConfig>();
+      HostConfig hc = new HostConfig();
+      hc.setDefaultVersionTag("version2");
+      schReturn.put("flume-conf", hc);
+
+      ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+      expect(sch.getActualConfigs()).andReturn(schReturn).anyTimes();
+      expect(sch.getHostName()).andReturn("h1").anyTimes();
+      expect(sch.getClusterId()).andReturn(cluster.getClusterId()).anyTimes();
+      expect(sch.getServiceName()).andReturn("FLUME").anyTimes();
+      expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").anyTimes();
+
+      ServiceComponent serviceComponent = createNiceMock(ServiceComponent.class);
+      expect(serviceComponent.getName()).andReturn("FLUME_HANDLER").anyTimes();
+      expect(serviceComponent.getServiceComponentHosts()).andReturn(
+          Collections.singletonMap("h1", sch)).anyTimes();
+
+      Service service = createNiceMock(Service.class);
+      expect(service.getName()).andReturn("FLUME").anyTimes();
+      expect(service.getServiceComponents()).andReturn(
+          Collections.singletonMap("FLUME_HANDLER", serviceComponent)).anyTimes();
+
+      Cluster mockCluster = createNiceMock(Cluster.class);
+      expect(mockCluster.getDesiredStackVersion()).andReturn(new StackId("HDP-2.0.6")).anyTimes();
+      expect(mockCluster.getServices()).andReturn(
+          Collections.singletonMap("FLUME", service)).anyTimes();
+
+      replay(sch, serviceComponent, service, mockCluster);
+
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      HostConfig hc2 = new HostConfig();
+      hc2.setDefaultVersionTag("version1");
+      schReturn.put("flume-conf", hc2);
+
+      // FLUME doesn't depend on core-site, the cached value is kept
+      configHelper.invalidateStaleConfigsCache(mockCluster, Collections.singleton("core-site"));
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      configHelper.invalidateStaleConfigsCache(mockCluster, Collections.singleton("flume-conf"));
+      Assert.assertFalse(configHelper.isStaleConfigs(sch));
+    }
   }
 
   public static class RunWithCustomModule {
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertEquals;
 import java.util.List;
 import java.util.UUID;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.events.AlertReceivedEvent;
 import org.apache.ambari.server.events.listeners.alerts.AlertReceivedListener;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
@@ -31,6 +32,7 @@ import org.apache.ambari.server.orm.dao.AlertDefinitionDAO;
 import org.apache.ambari.server.orm.dao.AlertsDAO;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
 import org.apache.ambari.server.orm.entities.AlertDefinitionEntity;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
 import org.apache.ambari.server.state.Alert;
 import org.apache.ambari.server.state.AlertState;
 import org.apache.ambari.server.state.Cluster;
@@ -259,4 +261,55 @@ public class AlertReceivedListenerTest {
     allCurrent = m_dao.findCurrent();
     assertEquals(0, allCurrent.size());
   }
+
+  /**
+   * Tests that batched alerts are coalesced and only written on flush.
+   */
+  @Test
+  public void testBatchedIngestion() {
+    m_injector.getInstance(Configuration.class).setProperty(
+        Configuration.ALERTS_INGESTION_BATCHING_ENABLED, "true");
+
+    String definitionName = ALERT_DEFINITION + "1";
+    String componentName = "DATANODE";
+
+    AlertReceivedListener listener = m_injector.getInstance(AlertReceivedListener.class);
+
+    AlertState[] states = { AlertState.OK, AlertState.OK, AlertState.CRITICAL,
+        AlertState.CRITICAL };
+
+    for (int i = 0; i < states.length; i++) {
+      Alert alert = new Alert(definitionName, null, "HDFS", componentName,
+          HOST1, states[i]);
+
+      alert.setCluster(m_cluster.getClusterName());
+      alert.setLabel(ALERT_LABEL);
+      alert.setText("HDFS " + componentName + " is " + states[i] + " " + i);
+      alert.setTimestamp(i + 1L);
+
+      listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(), alert));
+    }
+
+    // nothing is written until the flush
+    assertEquals(0, m_dao.findCurrent().size());
+    assertEquals(4, listener.getReceivedAlertCount());
+    assertEquals(2, listener.getCoalescedAlertCount());
+    assertEquals(2, listener.getPendingAlertCount());
+
+    listener.flushPendingAlerts();
+    assertEquals(0, listener.getPendingAlertCount());
+
+    // both state changes are kept, the repeated results are not
+    List<AlertHistoryEntity> history = m_dao.findAll();
+    assertEquals(2, history.size());
+
+    List<AlertCurrentEntity> allCurrent = m_dao.findCurrent();
+    assertEquals(1, allCurrent.size());
+
+    AlertCurrentEntity current = allCurrent.get(0);
+    assertEquals(AlertState.CRITICAL, current.getAlertHistory().getAlertState());
+    assertEquals(Long.valueOf(3L), current.getOriginalTimestamp());
+    assertEquals(Long.valueOf(4L), current.getLatestTimestamp());
+    assertEquals("HDFS " + componentName + " is CRITICAL 3", current.getLatestText());
+  }
 }
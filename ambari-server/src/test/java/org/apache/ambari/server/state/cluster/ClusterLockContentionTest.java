@@ -0,0 +1,392 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.cluster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.ServiceComponentNotFoundException;
+import org.apache.ambari.server.ServiceNotFoundException;
+import org.apache.ambari.server.events.listeners.upgrade.HostVersionOutOfSyncListener;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.orm.OrmTestHelper;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.Host;
+import org.apache.ambari.server.state.RepositoryVersionState;
+import org.apache.ambari.server.state.Service;
+import org.apache.ambari.server.state.ServiceComponent;
+import org.apache.ambari.server.state.ServiceComponentFactory;
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.ServiceComponentHostFactory;
+import org.apache.ambari.server.state.ServiceFactory;
+import org.apache.ambari.server.state.StackId;
+import org.apache.ambari.server.state.State;
+import org.apache.ambari.server.state.svccomphost.ServiceComponentHostOpInProgressEvent;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.persist.PersistService;
+import com.google.inject.util.Modules;
+
+/**
+ * Drives concurrent reads and writes against {@link ClusterImpl} to verify
+ * that heartbeat-driven host component updates of one service are not
+ * serialized behind structural or configuration changes elsewhere in the
+ * cluster.
+ */
+public class ClusterLockContentionTest {
+  private static final Logger LOG = LoggerFactory.getLogger(ClusterLockContentionTest.class);
+
+  private static final int NUMBER_OF_HOSTS = 10;
+  private static final int NUMBER_OF_READERS = 4;
+  private static final long TEST_DURATION_MS = 2000;
+
+  @Inject
+  private Injector injector;
+
+  @Inject
+  private Clusters clusters;
+
+  @Inject
+  private ServiceFactory serviceFactory;
+
+  @Inject
+  private ServiceComponentFactory serviceComponentFactory;
+
+  @Inject
+  private ServiceComponentHostFactory serviceComponentHostFactory;
+
+  @Inject
+  private OrmTestHelper helper;
+
+  private StackId stackId = new StackId("HDP-0.1");
+
+  private Cluster cluster;
+
+  private List<String> hostNames = new ArrayList<String>(NUMBER_OF_HOSTS);
+
+  private List<ServiceComponentHost> dataNodes = new ArrayList<ServiceComponentHost>();
+
+  private List<ServiceComponentHost> taskTrackers = new ArrayList<ServiceComponentHost>();
+
+  @Before
+  public void setup() throws Exception {
+    injector = Guice.createInjector(Modules.override(
+        new InMemoryDefaultTestModule()).with(new MockModule()));
+
+    injector.getInstance(GuiceJpaInitializer.class);
+    injector.injectMembers(this);
+    clusters.addCluster("c1", stackId);
+    cluster = clusters.getCluster("c1");
+    helper.getOrCreateRepositoryVersion(stackId, stackId.getStackVersion());
+    cluster.createClusterVersion(stackId,
+        stackId.getStackVersion(), "admin", RepositoryVersionState.UPGRADING);
+
+    for (int i = 0; i < NUMBER_OF_HOSTS; i++) {
+      String hostName = "c64-" + i;
+      hostNames.add(hostName);
+
+      clusters.addHost(hostName);
+      setOsFamily(clusters.getHost(hostName), "redhat", "6.4");
+      clusters.getHost(hostName).persist();
+      clusters.mapHostToCluster(hostName, "c1");
+    }
+
+    for (String hostName : hostNames) {
+      dataNodes.add(createNewServiceComponentHost("HDFS", "DATANODE", hostName));
+      taskTrackers.add(createNewServiceComponentHost("MAPREDUCE", "TASKTRACKER", hostName));
+    }
+
+    // populate the per-host caches up front so that lookups do not need to
+    // load them while the benchmark is running
+    ((ClusterImpl) cluster).loadServiceHostComponents();
+  }
+
+  @After
+  public void teardown() {
+    injector.getInstance(PersistService.class).stop();
+  }
+
+  /**
+   * Tests that the locks of different services are independent.
+   */
+  @Test
+  public void testServiceLocksAreIndependent() throws Exception {
+    Assert.assertSame(cluster.getServiceLock("HDFS"), cluster.getServiceLock("HDFS"));
+    Assert.assertNotSame(cluster.getServiceLock("HDFS"), cluster.getServiceLock("MAPREDUCE"));
+    Assert.assertSame(cluster.getServiceLock("HDFS"),
+        cluster.getService("HDFS").getServiceLock());
+
+    final Lock mapReduceLock = cluster.getServiceLock("MAPREDUCE").writeLock();
+    assertCompletesWhileLocked(mapReduceLock, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        applyStatusUpdates();
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Tests that host component state updates and lookups by host do not wait
+   * for a holder of the cluster-global write lock.
+   */
+  @Test
+  public void testStatusUpdatesDoNotBlockOnClusterWriter() throws Exception {
+    final Lock clusterWriteLock = cluster.getClusterGlobalLock().writeLock();
+    assertCompletesWhileLocked(clusterWriteLock, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        applyStatusUpdates();
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Looks host components up by host, without the cluster-global lock, while
+   * another thread removes and adds host components and invalidates the
+   * cached data. Every lookup must see a consistent list: the DataNode of the
+   * host exactly once and the TaskTracker at most once.
+   */
+  @Test
+  public void testHostComponentListsStayConsistent() throws Exception {
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicLong lookups = new AtomicLong();
+    final AtomicLong changes = new AtomicLong();
+
+    ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_READERS + 1);
+    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+    futures.add(executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        while (running.get()) {
+          for (ServiceComponentHost taskTracker : taskTrackers) {
+            cluster.removeServiceComponentHost(taskTracker);
+          }
+          for (ServiceComponentHost taskTracker : taskTrackers) {
+            ((ClusterImpl) cluster).addServiceComponentHost(taskTracker);
+          }
+          cluster.invalidateData();
+          changes.incrementAndGet();
+        }
+        return null;
+      }
+    }));
+
+    for (int i = 0; i < NUMBER_OF_READERS; i++) {
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          while (running.get()) {
+            for (String hostName : hostNames) {
+              assertConsistent(hostName, cluster.getServiceComponentHosts(hostName));
+              lookups.incrementAndGet();
+            }
+          }
+          return null;
+        }
+      }));
+    }
+
+    Thread.sleep(TEST_DURATION_MS);
+    running.set(false);
+
+    try {
+      for (Future<Void> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    LOG.info("{} host component lookups during {} removals, additions and invalidations",
+        lookups.get(), changes.get());
+
+    Assert.assertTrue(changes.get() > 0);
+    for (String hostName : hostNames) {
+      List<ServiceComponentHost> hostComponents = cluster.getServiceComponentHosts(hostName);
+      assertConsistent(hostName, hostComponents);
+      Assert.assertEquals(2, hostComponents.size());
+    }
+  }
+
+  private static void assertConsistent(String hostName, List<ServiceComponentHost> hostComponents) {
+    int dataNodes = 0;
+    int taskTrackers = 0;
+    for (ServiceComponentHost hostComponent : hostComponents) {
+      Assert.assertEquals(hostName, hostComponent.getHostName());
+      if ("DATANODE".equals(hostComponent.getServiceComponentName())) {
+        dataNodes++;
+      } else if ("TASKTRACKER".equals(hostComponent.getServiceComponentName())) {
+        taskTrackers++;
+      } else {
+        Assert.fail("Unexpected host component " + hostComponent.getServiceComponentName());
+      }
+    }
+    Assert.assertEquals("DataNodes on " + hostName + ": " + hostComponents, 1, dataNodes);
+    Assert.assertTrue("TaskTrackers on " + hostName + ": " + hostComponents, taskTrackers <= 1);
+  }
+
+  /**
+   * Performs the cluster reads and host component writes which a heartbeat
+   * with HDFS status reports would.
+   */
+  private void applyStatusUpdates() throws Exception {
+    for (ServiceComponentHost dataNode : dataNodes) {
+      List<ServiceComponentHost> hostComponents = cluster.getServiceComponentHosts(
+          dataNode.getHostName());
+
+      Assert.assertEquals(2, hostComponents.size());
+
+      dataNode.handleEvent(new ServiceComponentHostOpInProgressEvent(
+          dataNode.getServiceComponentName(), dataNode.getHostName(),
+          System.currentTimeMillis()));
+    }
+  }
+
+  /**
+   * Holds the specified lock on another thread and asserts that the callable
+   * completes in the meantime.
+   */
+  private void assertCompletesWhileLocked(final Lock lock, Callable<Void> callable)
+      throws Exception {
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> holder = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          lock.lock();
+          try {
+            locked.countDown();
+            release.await();
+          } finally {
+            lock.unlock();
+          }
+          return null;
+        }
+      });
+
+      Assert.assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+      try {
+        executor.submit(callable).get(10, TimeUnit.SECONDS);
+      } finally {
+        release.countDown();
+      }
+
+      holder.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void setOsFamily(Host host, String osFamily, String osVersion) {
+    Map<String, String> hostAttributes = new HashMap<String, String>(2);
+    hostAttributes.put("os_family", osFamily);
+    hostAttributes.put("os_release_version", osVersion);
+    host.setHostAttributes(hostAttributes);
+  }
+
+  private ServiceComponentHost createNewServiceComponentHost(String svc,
+      String svcComponent, String hostName) throws AmbariException {
+    Service s = installService(svc);
+    ServiceComponent sc = addServiceComponent(s, svcComponent);
+
+    ServiceComponentHost sch = serviceComponentHostFactory.createNew(sc,
+        hostName);
+
+    sc.addServiceComponentHost(sch);
+    sch.setDesiredState(State.INSTALLED);
+    sch.setState(State.INSTALLED);
+    sch.setDesiredStackVersion(stackId);
+    sch.setStackVersion(stackId);
+
+    sch.persist();
+    return sch;
+  }
+
+  private Service installService(String serviceName) throws AmbariException {
+    Service service = null;
+
+    try {
+      service = cluster.getService(serviceName);
+    } catch (ServiceNotFoundException e) {
+      service = serviceFactory.createNew(cluster, serviceName);
+      cluster.addService(service);
+      service.persist();
+    }
+
+    return service;
+  }
+
+  private ServiceComponent addServiceComponent(Service service,
+      String componentName) throws AmbariException {
+    ServiceComponent serviceComponent = null;
+    try {
+      serviceComponent = service.getServiceComponent(componentName);
+    } catch (ServiceComponentNotFoundException e) {
+      serviceComponent = serviceComponentFactory.createNew(service,
+          componentName);
+      service.addServiceComponent(serviceComponent);
+      serviceComponent.setDesiredState(State.INSTALLED);
+      serviceComponent.persist();
+    }
+
+    return serviceComponent;
+  }
+
+  /**
+   * Mocks out listeners which would otherwise slow the threads down.
+   */
+  private class MockModule implements Module {
+    @Override
+    public void configure(Binder binder) {
+      binder.bind(HostVersionOutOfSyncListener.class).toInstance(
+          EasyMock.createNiceMock(HostVersionOutOfSyncListener.class));
+    }
+  }
+}
@@ -107,4 +107,40 @@ public class HostImplTest {
 
     verify(hostEntity, hostStateEntity, injector, hostDAO);
   }
+
+  @Test
+  public void testSetHealthStatusOnlySavesChanges() throws Exception {
+
+    HostEntity hostEntity = createNiceMock(HostEntity.class);
+    HostStateEntity hostStateEntity = createNiceMock(HostStateEntity.class);
+    HostDAO hostDAO  = createNiceMock(HostDAO.class);
+    HostStateDAO hostStateDAO  = createNiceMock(HostStateDAO.class);
+    Injector injector = createNiceMock(Injector.class);
+
+    Gson gson = new Gson();
+
+    expect(injector.getInstance(Gson.class)).andReturn(gson).anyTimes();
+    expect(injector.getInstance(HostDAO.class)).andReturn(hostDAO).anyTimes();
+    expect(injector.getInstance(HostStateDAO.class)).andReturn(hostStateDAO).anyTimes();
+    expect(hostEntity.getHostName()).andReturn("host1").anyTimes();
+    expect(hostEntity.getHostId()).andReturn(1L).anyTimes();
+    expect(hostEntity.getHostStateEntity()).andReturn(hostStateEntity).anyTimes();
+    expect(hostStateDAO.findByHostId(1L)).andReturn(hostStateEntity).anyTimes();
+    expect(hostStateDAO.merge(hostStateEntity)).andReturn(hostStateEntity).times(2);
+
+    replay(hostEntity, hostStateEntity, injector, hostDAO, hostStateDAO);
+    HostImpl host = new HostImpl(hostEntity, true, injector);
+
+    assertEquals(HostHealthStatus.HealthStatus.UNKNOWN, host.getHealthStatus().getHealthStatus());
+
+    // repeated heartbeats with the same health are only kept in memory
+    host.setHealthStatus(new HostHealthStatus(HostHealthStatus.HealthStatus.HEALTHY, ""));
+    host.setHealthStatus(new HostHealthStatus(HostHealthStatus.HealthStatus.HEALTHY, ""));
+    host.setHealthStatus(new HostHealthStatus(HostHealthStatus.HealthStatus.HEALTHY, "report"));
+
+    assertEquals(HostHealthStatus.HealthStatus.HEALTHY, host.getHealthStatus().getHealthStatus());
+    assertEquals("report", host.getHealthStatus().getHealthReport());
+
+    verify(hostEntity, hostStateEntity, injector, hostDAO, hostStateDAO);
+  }
 }
\ No newline at end of file
@@ -26,6 +26,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
@@ -267,6 +268,42 @@ public class AlertNoticeDispatchServiceTest extends AlertNoticeDispatchService {
     assertEquals(2, notifications.size());
   }
 
+  /**
+   * Tests that notices are dispatched by the notification type's own threads
+   * when no executor is set, in the order they were created for a target.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testDispatchPerTargetQueue() throws Exception {
+    MockSnmpDispatcher dispatcher = new MockSnmpDispatcher();
+
+    EasyMock.expect(m_dao.findPendingNotices()).andReturn(getSnmpMockNotices()).once();
+    EasyMock.expect(m_dao.merge(EasyMock.anyObject(AlertNoticeEntity.class))).andReturn(
+        null).atLeastOnce();
+    EasyMock.expect(m_dispatchFactory.getDispatcher("SNMP")).andReturn(
+        dispatcher).atLeastOnce();
+
+    EasyMock.replay(m_dao, m_dispatchFactory);
+
+    // "startup" the service so that its initialization is done
+    AlertNoticeDispatchService service = m_injector.getInstance(AlertNoticeDispatchService.class);
+    service.startUp();
+    service.runOneIteration();
+
+    // wait for the dispatch threads
+    for (int i = 0; i < 100 && dispatcher.getNotifications().size() < 2; i++) {
+      Thread.sleep(100);
+    }
+
+    EasyMock.verify(m_dao, m_dispatchFactory);
+
+    List<Notification> notifications = dispatcher.getNotifications();
+    assertEquals(2, notifications.size());
+    assertTrue(notifications.get(0).CallbackIds.contains(ALERT_NOTICE_UUID_1));
+    assertTrue(notifications.get(1).CallbackIds.contains(ALERT_NOTICE_UUID_2));
+  }
+
   /**
    * Tests that a failed dispatch invokes the callback to mark the UUIDs of the
    * notices as FAILED.
@@ -495,7 +532,7 @@ public class AlertNoticeDispatchServiceTest extends AlertNoticeDispatchService {
   private static final class MockSnmpDispatcher implements
       NotificationDispatcher {
 
-    private List<Notification> m_notifications = new ArrayList<Notification>();
+    private List<Notification> m_notifications = Collections.synchronizedList(new ArrayList<Notification>());
 
     /**
      * {@inheritDoc}
@@ -18,15 +18,19 @@
 
 package org.apache.ambari.view.filebrowser;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.FileNameMap;
 import java.net.URLConnection;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -47,8 +51,10 @@ import javax.ws.rs.core.UriInfo;
 import javax.xml.bind.annotation.XmlElement;
 
 import com.google.gson.Gson;
+import org.apache.ambari.view.filebrowser.utils.FilePrefetcher;
 import org.apache.ambari.view.filebrowser.utils.NotFoundFormattedException;
 import org.apache.ambari.view.filebrowser.utils.ServiceFormattedException;
+import org.apache.ambari.view.filebrowser.utils.StreamTransfer;
 import org.apache.ambari.view.utils.hdfs.HdfsApi;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
@@ -61,12 +67,25 @@ import org.json.simple.JSONObject;
  */
 public class DownloadService extends HdfsService {
 
+  /**
+   * Count of the next files read ahead while the current one is written
+   */
+  private static final int PREFETCH_FILES = 2;
+
+  /**
+   * Count of bytes read ahead from each of the next files
+   */
+  private static final long PREFETCH_BYTES = 4 * 1024 * 1024;
+
+  private static final int PARTIAL_CONTENT = 206;
+  private static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
   public DownloadService(ViewContext context) {
     super(context);
   }
 
   /**
-   * Download entire file
+   * Download entire file, or the byte range of the Range header
    * @param path path to file
    * @param download download as octet strem or as file mime type
    * @param checkperm used to check if the file can be downloaded. Takes precedence when both download and checkperm
@@ -86,13 +105,37 @@ public class DownloadService extends HdfsService {
       FileStatus status = api.getFileStatus(path);
       FSDataInputStream fs = api.open(path);
       if(checkperm) {
+        fs.close();
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("allowed", true);
         return Response.ok(jsonObject)
           .header("Content-Type", MediaType.APPLICATION_JSON)
           .build();
       }
-      ResponseBuilder result = Response.ok(fs);
+      long length = status.getLen();
+      long[] range = null;
+      List<String> rangeHeaders = headers == null ? null : headers.getRequestHeader("Range");
+      if (rangeHeaders != null && rangeHeaders.size() == 1) {
+        range = parseRange(rangeHeaders.get(0), length);
+      }
+      if (range != null && range[0] >= length) {
+        fs.close();
+        return Response.status(REQUESTED_RANGE_NOT_SATISFIABLE)
+          .header("Content-Range", "bytes */" + length)
+          .build();
+      }
+
+      ResponseBuilder result;
+      if (range != null) {
+        long rangeLength = range[1] - range[0] + 1;
+        result = Response.status(PARTIAL_CONTENT)
+          .entity(streamFile(fs, path, range[0], rangeLength))
+          .header("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length)
+          .header(HttpHeaders.CONTENT_LENGTH, rangeLength);
+      } else {
+        result = Response.ok(streamFile(fs, path, 0, -1));
+      }
+      result.header("Accept-Ranges", "bytes");
       if (download) {
         result.header("Content-Disposition",
           "inline; filename=\"" + status.getPath().getName() + "\"").type(MediaType.APPLICATION_OCTET_STREAM);
@@ -112,17 +155,73 @@ public class DownloadService extends HdfsService {
     }
   }
 
-  private void zipFile(ZipOutputStream zip, String path) {
+  /**
+   * Parse a single byte range
+   * @param header value of the Range header
+   * @param length length of the file
+   * @return first and last byte of the range, null if the header should be ignored
+   */
+  static long[] parseRange(String header, long length) {
+    if (header == null || !header.startsWith("bytes=") || header.contains(",")) {
+      return null;
+    }
+    String spec = header.substring("bytes=".length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    String first = spec.substring(0, dash).trim();
+    String last = spec.substring(dash + 1).trim();
     try {
-      FSDataInputStream in = getApi(context).open(path);
-      zip.putNextEntry(new ZipEntry(path.substring(1)));
-      byte[] chunk = new byte[1024];
+      long start;
+      long end = length - 1;
+      if (first.isEmpty()) {
+        if (last.isEmpty()) {
+          return null;
+        }
+        // suffix range: the last bytes of the file
+        start = Math.max(0, length - Long.parseLong(last));
+      } else {
+        start = Long.parseLong(first);
+        if (!last.isEmpty()) {
+          long requestedEnd = Long.parseLong(last);
+          if (requestedEnd < start) {
+            return null;
+          }
+          end = Math.min(requestedEnd, end);
+        }
+      }
+      return new long[] { start, end };
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
 
-      int readLen = 0;
-      while(readLen != -1) {
-        zip.write(chunk, 0, readLen);
-        readLen = in.read(chunk);
+  private StreamingOutput streamFile(final FSDataInputStream in, final String path,
+                                     final long start, final long length) {
+    return new StreamingOutput() {
+      public void write(OutputStream output) throws IOException {
+        StreamTransfer.Transfer transfer = StreamTransfer.start(path);
+        try {
+          if (start > 0) {
+            in.seek(start);
+          }
+          transfer.add(StreamTransfer.copy(in, output, length));
+        } finally {
+          in.close();
+          transfer.finish();
+        }
       }
+    };
+  }
+
+  private long zipFile(ZipOutputStream zip, FilePrefetcher prefetcher, String path) {
+    long bytes = 0;
+    InputStream in = null;
+    try {
+      in = prefetcher.open(path);
+      zip.putNextEntry(new ZipEntry(path.substring(1)));
+      bytes = StreamTransfer.copy(in, zip, -1);
     } catch (IOException ex) {
       logger.error("Error zipping file " + path.substring(1) + " (file ignored): "
           + ex.getMessage());
@@ -131,6 +230,13 @@ public class DownloadService extends HdfsService {
           + ex.getMessage();
       logger.error(msg);
     } finally {
+      try {
+        if (in != null) {
+          in.close();
+        }
+      } catch (IOException ex) {
+        logger.error("Error closing file " + path.substring(1) + ": " + ex.getMessage());
+      }
       try {
         zip.closeEntry();
       } catch (IOException ex) {
@@ -138,6 +244,31 @@ public class DownloadService extends HdfsService {
             + ex.getMessage());
       }
     }
+    return bytes;
+  }
+
+  /**
+   * Start reading the next files of the queue in background
+   * @param prefetcher prefetcher of the download
+   * @param files queue of the download
+   */
+  private void prefetchNextFiles(FilePrefetcher prefetcher, Queue<FileStatus> files) {
+    int scheduled = 0;
+    for (FileStatus next : files) {
+      if (scheduled >= PREFETCH_FILES) {
+        break;
+      }
+      if (!next.isDirectory()) {
+        prefetcher.schedule(getPath(next));
+        scheduled++;
+      }
+    }
+  }
+
+  private static String getPath(FileStatus status) {
+    return org.apache.hadoop.fs.Path
+        .getPathWithoutSchemeAndAuthority(status.getPath())
+        .toString();
   }
 
   private void zipDirectory(ZipOutputStream zip, String path) {
@@ -172,19 +303,24 @@ public class DownloadService extends HdfsService {
         name = new File(request.entries[0]).getName() + ".zip";
       }
 
+      final String zipName = name;
       StreamingOutput result = new StreamingOutput() {
         public void write(OutputStream output) throws IOException,
             ServiceFormattedException {
-          ZipOutputStream zip = new ZipOutputStream(output);
+          ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(output, StreamTransfer.BUFFER_SIZE));
+          // deflating is the bottleneck of large downloads
+          zip.setLevel(Deflater.BEST_SPEED);
+          HdfsApi api = getApi(context);
+          FilePrefetcher prefetcher = new FilePrefetcher(api, PREFETCH_BYTES);
+          StreamTransfer.Transfer transfer = StreamTransfer.start(zipName);
           try {
-            HdfsApi api = getApi(context);
-            Queue<String> files = new LinkedList<String>();
+            Queue<FileStatus> files = new LinkedList<FileStatus>();
             for (String file : request.entries) {
-              files.add(file);
+              files.add(api.getFileStatus(file));
             }
             while (!files.isEmpty()) {
-              String path = files.poll();
-              FileStatus status = api.getFileStatus(path);
+              FileStatus status = files.poll();
+              String path = getPath(status);
               if (status.isDirectory()) {
                 FileStatus[] subdir;
                 try {
@@ -195,20 +331,21 @@ public class DownloadService extends HdfsService {
                   continue;
                 }
                 for (FileStatus file : subdir) {
-                  files.add(org.apache.hadoop.fs.Path
-                      .getPathWithoutSchemeAndAuthority(file.getPath())
-                      .toString());
+                  files.add(file);
                 }
                 zipDirectory(zip, path);
               } else {
-                zipFile(zip, path);
+                prefetchNextFiles(prefetcher, files);
+                transfer.add(zipFile(zip, prefetcher, path));
               }
             }
           } catch (Exception ex) {
             logger.error("Error occurred: " + ex.getMessage());
             throw new ServiceFormattedException(ex.getMessage(), ex);
           } finally {
+            prefetcher.close();
             zip.close();
+            transfer.finish();
           }
         }
       };
@@ -235,25 +372,33 @@ public class DownloadService extends HdfsService {
       StreamingOutput result = new StreamingOutput() {
         public void write(OutputStream output) throws IOException,
             ServiceFormattedException {
-          FSDataInputStream in = null;
-          for (String path : request.entries) {
-            try {
-              try {
-                in = getApi(context).open(path);
-              } catch (AccessControlException ex) {
-                logger.error("Error in opening file {}. Ignoring concat of this files : {}", path.substring(1), ex.getMessage());
-                continue;
+          FilePrefetcher prefetcher = new FilePrefetcher(getApi(context), PREFETCH_BYTES);
+          StreamTransfer.Transfer transfer = StreamTransfer.start("concatResult.txt");
+          try {
+            for (int i = 0; i < request.entries.length; i++) {
+              String path = request.entries[i];
+              for (int next = i + 1; next < request.entries.length && next <= i + PREFETCH_FILES; next++) {
+                prefetcher.schedule(request.entries[next]);
               }
-              byte[] chunk = new byte[1024];
-              while (in.read(chunk) != -1) {
-                output.write(chunk);
+              InputStream in = null;
+              try {
+                try {
+                  in = prefetcher.open(path);
+                } catch (AccessControlException ex) {
+                  logger.error("Error in opening file {}. Ignoring concat of this files : {}", path.substring(1), ex.getMessage());
+                  continue;
+                }
+                transfer.add(StreamTransfer.copy(in, output, -1));
+              } catch (Exception ex) {
+                throw new ServiceFormattedException(ex.getMessage(), ex);
+              } finally {
+                if (in != null)
+                  in.close();
               }
-            } catch (Exception ex) {
-              throw new ServiceFormattedException(ex.getMessage(), ex);
-            } finally {
-              if (in != null)
-                in.close();
             }
+          } finally {
+            prefetcher.close();
+            transfer.finish();
           }
         }
       };
@@ -271,6 +416,25 @@ public class DownloadService extends HdfsService {
     }
   }
 
+  /**
+   * Get transfer rate statistics of the downloads
+   * @return response with statistics
+   */
+  @GET
+  @Path("/statistics")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response statistics() {
+    try {
+      JSONObject json = new JSONObject();
+      json.putAll(StreamTransfer.getStatistics());
+      return Response.ok(json).build();
+    } catch (WebApplicationException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new ServiceFormattedException(ex.getMessage(), ex);
+    }
+  }
+
   // ===============================
   // Download files by unique link
 
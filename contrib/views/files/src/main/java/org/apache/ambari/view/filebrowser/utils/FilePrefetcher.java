@@ -0,0 +1,273 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.filebrowser.utils;
+
+import org.apache.ambari.view.utils.hdfs.HdfsApi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens the next files of a download and reads their beginning in
+ * background, while the current file is being written.
+ * Not thread-safe, used by a single download.
+ */
+public class FilePrefetcher {
+  private static final Logger logger = LoggerFactory.getLogger(FilePrefetcher.class);
+
+  private static final int PREFETCH_THREADS = 4;
+
+  private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS,
+      60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "files-view-prefetch-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  static {
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  private final HdfsApi api;
+  private final long maxBytes;
+  private final Map<String, PrefetchTask> prefetched = new HashMap<String, PrefetchTask>();
+
+  /**
+   * Constructor
+   * @param api HdfsApi to open the files with
+   * @param maxBytes count of bytes to read ahead from each file
+   */
+  public FilePrefetcher(HdfsApi api, long maxBytes) {
+    this.api = api;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Start reading the file in background, if not started yet
+   * @param path path of the file
+   */
+  public void schedule(final String path) {
+    if (prefetched.containsKey(path)) {
+      return;
+    }
+    PrefetchTask task = new PrefetchTask(path);
+    task.future = executor.submit(task);
+    prefetched.put(path, task);
+  }
+
+  /**
+   * Open the file, from the data read ahead if it was scheduled
+   * @param path path of the file
+   * @return input stream of the file
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  public InputStream open(String path) throws IOException, InterruptedException {
+    PrefetchTask task = prefetched.remove(path);
+    if (task == null) {
+      return api.open(path);
+    }
+    try {
+      return task.future.get();
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Release the files which were read ahead but not opened.
+   * A task which is still reading closes its file itself when done.
+   */
+  public void close() {
+    for (PrefetchTask task : prefetched.values()) {
+      if (!task.release()) {
+        task.future.cancel(false);
+        continue;
+      }
+      try {
+        task.future.get().close();
+      } catch (Exception ex) {
+        logger.debug("Error closing prefetched file " + task.path + ": " + ex.getMessage());
+      }
+    }
+    prefetched.clear();
+  }
+
+  /**
+   * Reads ahead a file, the stream is handed over either to the download
+   * or, if the download was closed meanwhile, closed by the task.
+   */
+  private class PrefetchTask implements Callable<InputStream> {
+    private final String path;
+    private Future<InputStream> future;
+    private boolean released;
+    private boolean delivered;
+
+    private PrefetchTask(String path) {
+      this.path = path;
+    }
+
+    @Override
+    public InputStream call() throws Exception {
+      synchronized (this) {
+        if (released) {
+          return null;
+        }
+      }
+      InputStream in = PrefetchedInputStream.prefetch(api.open(path), maxBytes);
+      synchronized (this) {
+        if (!released) {
+          delivered = true;
+          return in;
+        }
+      }
+      in.close();
+      return null;
+    }
+
+    /**
+     * Stop handing over the stream.
+     * @return true if the stream was already handed over and has to be closed by the caller
+     */
+    private synchronized boolean release() {
+      released = true;
+      return delivered;
+    }
+  }
+
+  /**
+   * Serves the bytes read ahead, then continues with the file stream
+   */
+  static class PrefetchedInputStream extends InputStream {
+    private final List<byte[]> chunks;
+    private final int lastChunkLength;
+    private InputStream in;
+    private int chunkIndex;
+    private int chunkOffset;
+
+    private PrefetchedInputStream(List<byte[]> chunks, int lastChunkLength, InputStream in) {
+      this.chunks = chunks;
+      this.lastChunkLength = lastChunkLength;
+      this.in = in;
+    }
+
+    /**
+     * Read up to maxBytes of the stream into pooled buffers
+     * @param in stream of the file, closed when read to the end
+     * @param maxBytes count of bytes to read ahead
+     * @return stream of the whole file
+     * @throws IOException
+     */
+    static PrefetchedInputStream prefetch(InputStream in, long maxBytes) throws IOException {
+      List<byte[]> chunks = new ArrayList<byte[]>();
+      int chunkLength = 0;
+      long total = 0;
+      try {
+        while (total < maxBytes) {
+          if (chunks.isEmpty() || chunkLength == StreamTransfer.BUFFER_SIZE) {
+            chunks.add(StreamTransfer.acquireBuffer());
+            chunkLength = 0;
+          }
+          int read = in.read(chunks.get(chunks.size() - 1), chunkLength,
+              (int) Math.min(StreamTransfer.BUFFER_SIZE - chunkLength, maxBytes - total));
+          if (read == -1) {
+            in.close();
+            in = null;
+            break;
+          }
+          chunkLength += read;
+          total += read;
+        }
+      } catch (IOException ex) {
+        for (byte[] chunk : chunks) {
+          StreamTransfer.releaseBuffer(chunk);
+        }
+        in.close();
+        throw ex;
+      }
+      return new PrefetchedInputStream(chunks, chunkLength, in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      int read = read(single, 0, 1);
+      return read == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      while (chunkIndex < chunks.size()) {
+        int chunkLength = chunkIndex == chunks.size() - 1 ? lastChunkLength : StreamTransfer.BUFFER_SIZE;
+        if (chunkOffset < chunkLength) {
+          int count = Math.min(length, chunkLength - chunkOffset);
+          System.arraycopy(chunks.get(chunkIndex), chunkOffset, buffer, offset, count);
+          chunkOffset += count;
+          return count;
+        }
+        StreamTransfer.releaseBuffer(chunks.get(chunkIndex));
+        chunks.set(chunkIndex, null);
+        chunkIndex++;
+        chunkOffset = 0;
+      }
+      return in == null ? -1 : in.read(buffer, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (; chunkIndex < chunks.size(); chunkIndex++) {
+        StreamTransfer.releaseBuffer(chunks.get(chunkIndex));
+        chunks.set(chunkIndex, null);
+      }
+      if (in != null) {
+        in.close();
+        in = null;
+      }
+    }
+  }
+}
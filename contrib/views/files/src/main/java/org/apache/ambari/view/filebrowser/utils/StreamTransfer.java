@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.filebrowser.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies download streams through large pooled buffers and keeps
+ * transfer rate statistics of the downloads
+ */
+public class StreamTransfer {
+  private static final Logger logger = LoggerFactory.getLogger(StreamTransfer.class);
+
+  public static final int BUFFER_SIZE = 256 * 1024;
+  private static final int MAX_POOLED_BUFFERS = 32;
+
+  private static final BlockingQueue<byte[]> bufferPool = new ArrayBlockingQueue<byte[]>(MAX_POOLED_BUFFERS);
+
+  private static final AtomicLong transfers = new AtomicLong();
+  private static final AtomicLong activeTransfers = new AtomicLong();
+  private static final AtomicLong transferredBytes = new AtomicLong();
+  private static final AtomicLong transferNanos = new AtomicLong();
+
+  private StreamTransfer() {
+  }
+
+  /**
+   * Take a buffer from the pool, a new one is allocated if the pool is empty
+   * @return buffer of BUFFER_SIZE bytes
+   */
+  public static byte[] acquireBuffer() {
+    byte[] buffer = bufferPool.poll();
+    return buffer != null ? buffer : new byte[BUFFER_SIZE];
+  }
+
+  /**
+   * Return a buffer to the pool, it is dropped if the pool is full
+   * @param buffer buffer taken by acquireBuffer
+   */
+  public static void releaseBuffer(byte[] buffer) {
+    if (buffer != null && buffer.length == BUFFER_SIZE) {
+      bufferPool.offer(buffer);
+    }
+  }
+
+  /**
+   * Copy the stream
+   * @param in input stream
+   * @param out output stream
+   * @param limit maximum count of bytes to copy, negative to copy all
+   * @return count of bytes copied
+   * @throws IOException
+   */
+  public static long copy(InputStream in, OutputStream out, long limit) throws IOException {
+    byte[] buffer = acquireBuffer();
+    long copied = 0;
+    try {
+      while (limit < 0 || copied < limit) {
+        int toRead = limit < 0 ? buffer.length : (int) Math.min(buffer.length, limit - copied);
+        int read = in.read(buffer, 0, toRead);
+        if (read == -1) {
+          break;
+        }
+        out.write(buffer, 0, read);
+        copied += read;
+      }
+    } finally {
+      releaseBuffer(buffer);
+    }
+    return copied;
+  }
+
+  /**
+   * Start measuring a download
+   * @param name name of the download for the log
+   * @return transfer to add the bytes to and to finish
+   */
+  public static Transfer start(String name) {
+    activeTransfers.incrementAndGet();
+    return new Transfer(name);
+  }
+
+  /**
+   * Transfer statistics since the start of the server
+   * @return map of statistics
+   */
+  public static Map<String, Object> getStatistics() {
+    long bytes = transferredBytes.get();
+    long nanos = transferNanos.get();
+    Map<String, Object> statistics = new HashMap<String, Object>();
+    statistics.put("transfers", transfers.get());
+    statistics.put("activeTransfers", activeTransfers.get());
+    statistics.put("bytes", bytes);
+    statistics.put("averageRateBytesPerSecond", nanos == 0 ? 0 : bytes * TimeUnit.SECONDS.toNanos(1) / nanos);
+    statistics.put("pooledBuffers", bufferPool.size());
+    return statistics;
+  }
+
+  /**
+   * Single download
+   */
+  public static class Transfer {
+    private final String name;
+    private final long startTime = System.nanoTime();
+    private long bytes;
+    private boolean finished;
+
+    private Transfer(String name) {
+      this.name = name;
+    }
+
+    public void add(long count) {
+      bytes += count;
+    }
+
+    public void finish() {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      long nanos = System.nanoTime() - startTime;
+      activeTransfers.decrementAndGet();
+      transfers.incrementAndGet();
+      transferredBytes.addAndGet(bytes);
+      transferNanos.addAndGet(nanos);
+
+      long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+      logger.info("Downloaded {} bytes of {} in {} ms ({} KB/s)", bytes, name, millis,
+          millis == 0 ? bytes / 1024 : bytes * 1000 / 1024 / millis);
+    }
+  }
+}
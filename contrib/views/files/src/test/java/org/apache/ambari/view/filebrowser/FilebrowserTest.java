@@ -23,10 +23,12 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +36,7 @@ import java.util.Map;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.ambari.view.ViewContext;
@@ -147,6 +150,36 @@ public class FilebrowserTest{
     Assert.assertEquals(200, response2.getStatus());
   }
 
+  @Test
+  public void testRangeDownload() throws Exception {
+    uploadFile("/tmp/", "testRange", ".tmp", "Hello world");
+
+    Response response = fileBrowserService.download().browse("/tmp/testRange.tmp", true, false,
+        createRangeHeaders("bytes=6-"), uriInfo);
+    Assert.assertEquals(206, response.getStatus());
+    Assert.assertEquals("bytes 6-10/11", response.getMetadata().getFirst("Content-Range"));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ((StreamingOutput) response.getEntity()).write(output);
+    Assert.assertEquals("world", output.toString());
+
+    response = fileBrowserService.download().browse("/tmp/testRange.tmp", true, false,
+        createRangeHeaders("bytes=11-"), uriInfo);
+    Assert.assertEquals(416, response.getStatus());
+
+    Assert.assertArrayEquals(new long[] { 0, 4 }, DownloadService.parseRange("bytes=0-4", 11));
+    Assert.assertArrayEquals(new long[] { 8, 10 }, DownloadService.parseRange("bytes=-3", 11));
+    Assert.assertArrayEquals(new long[] { 2, 10 }, DownloadService.parseRange("bytes=2-100", 11));
+    Assert.assertNull(DownloadService.parseRange("bytes=0-1,3-4", 11));
+    Assert.assertNull(DownloadService.parseRange("bytes=4-2", 11));
+  }
+
+  private HttpHeaders createRangeHeaders(String range) {
+    HttpHeaders headers = createNiceMock(HttpHeaders.class);
+    expect(headers.getRequestHeader("Range")).andReturn(Collections.singletonList(range)).anyTimes();
+    replay(headers);
+    return headers;
+  }
+
   private void createDirectoryWithFiles(String dirPath) throws Exception {
     FileOperationService.MkdirRequest request = new FileOperationService.MkdirRequest();
     request.path = dirPath;
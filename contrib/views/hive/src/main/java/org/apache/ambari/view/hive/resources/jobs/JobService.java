@@ -31,6 +31,7 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +67,8 @@ public class JobService extends BaseService {
       LoggerFactory.getLogger(JobService.class);
   private Aggregator aggregator;
 
+  private static final int KEEP_ALIVE_ROWS = 10000;
+
   protected synchronized JobResourceManager getResourceManager() {
     if (resourceManager == null) {
       SharedObjectsFactory connectionsFactory = getSharedObjectsFactory();
@@ -138,14 +141,14 @@ public class JobService extends BaseService {
   @GET
   @Path("{jobId}/results/csv")
   @Produces("text/csv")
-  public Response getResultsCSV(@PathParam("jobId") String jobId,
+  public Response getResultsCSV(@PathParam("jobId") final String jobId,
                                 @Context HttpServletResponse response,
                                 @QueryParam("fileName") String fileName,
                                 @QueryParam("columns") final String requestedColumns) {
     try {
-      JobController jobController = getResourceManager().readController(jobId);
-      final Cursor resultSet = jobController.getResults();
-      resultSet.selectColumns(requestedColumns);
+      final String searchId = getResultsSearchId(null, requestedColumns);
+      final ResultsBuffer.Reader reader = openResultsReader(jobId, searchId, requestedColumns);
+      final List<ColumnDescription> schema = reader.getSchema();
 
       StreamingOutput stream = new StreamingOutput() {
         @Override
@@ -153,18 +156,19 @@ public class JobService extends BaseService {
           Writer writer = new BufferedWriter(new OutputStreamWriter(os));
           CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT);
           try {
-
-            try {
-              csvPrinter.printRecord(resultSet.getHeadersRow().getRow());
-            } catch (HiveClientException e) {
-              LOG.error("Error on reading results header", e);
+            List<String> header = new ArrayList<String>(schema.size());
+            for (ColumnDescription column : schema) {
+              header.add(column.getName());
             }
+            csvPrinter.printRecord(header);
 
-            while (resultSet.hasNext()) {
-              csvPrinter.printRecord(resultSet.next().getRow());
-              writer.flush();
+            long rows = 0;
+            while (reader.hasNext()) {
+              csvPrinter.printRecord(reader.next());
+              keepResultsAlive(jobId, searchId, ++rows);
             }
           } finally {
+            reader.close();
             writer.close();
           }
         }
@@ -179,8 +183,123 @@ public class JobService extends BaseService {
           build();
     } catch (WebApplicationException ex) {
       throw ex;
-    } catch (ItemNotFound itemNotFound) {
-      throw new NotFoundFormattedException(itemNotFound.getMessage(), itemNotFound);
+    } catch (Exception ex) {
+      throw new ServiceFormattedException(ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Get job results in json format
+   */
+  @GET
+  @Path("{jobId}/results/json")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getResultsJSON(@PathParam("jobId") final String jobId,
+                                 @QueryParam("fileName") String fileName,
+                                 @QueryParam("columns") final String requestedColumns) {
+    try {
+      final String searchId = getResultsSearchId(null, requestedColumns);
+      final ResultsBuffer.Reader reader = openResultsReader(jobId, searchId, requestedColumns);
+      final List<ColumnDescription> schema = reader.getSchema();
+
+      StreamingOutput stream = new StreamingOutput() {
+        @Override
+        public void write(OutputStream os) throws IOException, WebApplicationException {
+          Writer writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
+          try {
+            List<Map<String, Object>> columns = new ArrayList<Map<String, Object>>(schema.size());
+            for (ColumnDescription column : schema) {
+              Map<String, Object> columnJson = new JSONObject();
+              columnJson.put("name", column.getName());
+              columnJson.put("type", column.getType());
+              columns.add(columnJson);
+            }
+            writer.write("{\"schema\":");
+            JSONValue.writeJSONString(columns, writer);
+            writer.write(",\"rows\":[");
+
+            long rows = 0;
+            while (reader.hasNext()) {
+              if (rows > 0) {
+                writer.write(",");
+              }
+              JSONValue.writeJSONString(Arrays.asList(reader.next()), writer);
+              keepResultsAlive(jobId, searchId, ++rows);
+            }
+            writer.write("]}");
+          } finally {
+            reader.close();
+            writer.close();
+          }
+        }
+      };
+
+      if (fileName == null || fileName.isEmpty()) {
+        fileName = "results.json";
+      }
+
+      return Response.ok(stream).
+          header("Content-Disposition", String.format("attachment; filename=\"%s\"", fileName)).
+          build();
+    } catch (WebApplicationException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new ServiceFormattedException(ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Results are shared only by the requests of the same search reading the same columns
+   */
+  private static String getResultsSearchId(String searchId, String requestedColumns) {
+    if (searchId == null) {
+      searchId = ResultsPaginationController.DEFAULT_SEARCH_ID;
+    }
+    if (requestedColumns == null || requestedColumns.isEmpty()) {
+      return searchId;
+    }
+    return searchId + "#columns:" + requestedColumns;
+  }
+
+  private ResultsBuffer.Reader openResultsReader(final String jobId, String searchId,
+                                                 final String requestedColumns) {
+    return ResultsPaginationController.getInstance(context)
+        .openReader(jobId, searchId, new Callable<Cursor>() {
+          @Override
+          public Cursor call() throws Exception {
+            try {
+              Cursor cursor = getResourceManager().readController(jobId).getResults();
+              cursor.selectColumns(requestedColumns);
+              return cursor;
+            } catch (ItemNotFound itemNotFound) {
+              throw new NotFoundFormattedException(itemNotFound.getMessage(), itemNotFound);
+            }
+          }
+        });
+  }
+
+  /**
+   * Long downloads renew the expiration time of the results they read
+   */
+  private void keepResultsAlive(String jobId, String searchId, long rows) {
+    if (rows % KEEP_ALIVE_ROWS == 0) {
+      ResultsPaginationController.getInstance(context).keepAlive(jobId, searchId);
+    }
+  }
+
+  /**
+   * Get memory used by the results of this view instance
+   */
+  @GET
+  @Path("results/statistics")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getResultsStatistics() {
+    try {
+      JSONObject object = new JSONObject();
+      object.putAll(ResultsPaginationController.getInstance(context).getStatistics());
+      return Response.ok(object).build();
+    } catch (WebApplicationException ex) {
+      throw ex;
     } catch (Exception ex) {
       throw new ServiceFormattedException(ex.getMessage(), ex);
     }
@@ -286,7 +405,7 @@ public class JobService extends BaseService {
       }
 
       return ResultsPaginationController.getInstance(context)
-           .request(jobId, searchId, true, fromBeginning, count, format,
+           .request(jobId, getResultsSearchId(searchId, requestedColumns), true, fromBeginning, count, format,
                new Callable<Cursor>() {
                  @Override
                  public Cursor call() throws Exception {
@@ -311,9 +430,10 @@ public class JobService extends BaseService {
   @Path("{jobId}/results/keepAlive")
   public Response keepAliveResults(@PathParam("jobId") String jobId,
                              @QueryParam("first") String fromBeginning,
-                             @QueryParam("count") Integer count) {
+                             @QueryParam("count") Integer count,
+                             @QueryParam("columns") String requestedColumns) {
     try {
-      if (!ResultsPaginationController.getInstance(context).keepAlive(jobId, ResultsPaginationController.DEFAULT_SEARCH_ID)) {
+      if (!ResultsPaginationController.getInstance(context).keepAlive(jobId, getResultsSearchId(null, requestedColumns))) {
         throw new NotFoundFormattedException("Results already expired", null);
       }
       return Response.ok().build();
@@ -0,0 +1,495 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive.resources.jobs;
+
+import org.apache.ambari.view.hive.client.ColumnDescription;
+import org.apache.ambari.view.hive.client.Cursor;
+import org.apache.ambari.view.hive.client.HiveClientException;
+import org.apache.ambari.view.hive.utils.ServiceFormattedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Results Buffer
+ * Reads the rows of a cursor ahead of its readers in the background.
+ *
+ * Fetched rows are kept in memory while the memory budget shared by the
+ * buffers of a view instance allows it, the rest of the rows is spilled to a
+ * local file while the disk budget allows it. All rows fetched so far can be
+ * read again by a new reader, so a download of the full result does not query
+ * HiveServer2 again for the rows that were already paged through.
+ *
+ * When the disk budget is exhausted the buffer stops fetching. The first
+ * reader reaching the end of the buffered rows then reads the rest of the
+ * rows straight from the cursor, other readers fail there.
+ */
+public class ResultsBuffer {
+  private final static Logger LOG =
+      LoggerFactory.getLogger(ResultsBuffer.class);
+
+  private static final int FETCH_SIZE = 50;
+
+  private final Cursor cursor;
+  private final ArrayList<ColumnDescription> schema;
+  private final Executor executor;
+  private final int prefetchRows;
+  private final AtomicLong memoryUsed;
+  private final long memoryLimit;
+  private final AtomicLong diskUsed;
+  private final long diskLimit;
+
+  private final List<Object[]> memoryRows = new ArrayList<Object[]>();
+  private long memoryBytes;
+  private File spillFile;
+  private ObjectOutputStream spillStream;
+  private long spilledBytes;
+  private long rowCount;
+  private long fetchTarget;
+  private boolean fetching;
+  private boolean done;
+  private boolean capped;
+  private ArrayList<Object[]> overflowRows;
+  private Reader cursorOwner;
+  private int openReaders;
+  private boolean closeRequested;
+  private boolean closed;
+  private RuntimeException error;
+
+  private final Reader pageReader;
+
+  /**
+   * @param cursor cursor to read the rows from, only used by the prefetch
+   *               task from now on
+   * @param executor executor running the prefetch task
+   * @param prefetchRows how many rows to fetch ahead of the furthest reader
+   * @param memoryUsed memory used by the buffers of the view instance
+   * @param memoryLimit memory the buffers of the view instance may use,
+   *                    further rows are spilled to disk
+   * @param diskUsed estimated size of the rows spilled by the buffers of the view instance
+   * @param diskLimit size of the rows the buffers of the view instance may spill,
+   *                  further rows are not buffered
+   */
+  public ResultsBuffer(Cursor cursor, Executor executor, int prefetchRows,
+                       AtomicLong memoryUsed, long memoryLimit,
+                       AtomicLong diskUsed, long diskLimit) throws HiveClientException {
+    this.cursor = cursor;
+    this.schema = cursor.getSchema();
+    this.executor = executor;
+    this.prefetchRows = prefetchRows;
+    this.memoryUsed = memoryUsed;
+    this.memoryLimit = memoryLimit;
+    this.diskUsed = diskUsed;
+    this.diskLimit = diskLimit;
+    this.pageReader = new Reader(false);
+  }
+
+  public ArrayList<ColumnDescription> getSchema() {
+    return schema;
+  }
+
+  /**
+   * Reader used for pagination, it continues where the previous page ended.
+   */
+  public Reader getPageReader() {
+    return pageReader;
+  }
+
+  /**
+   * New reader from the first row. The buffer is kept until the reader
+   * is closed, even if the buffer is closed meanwhile.
+   */
+  public Reader newReader() {
+    synchronized (this) {
+      openReaders++;
+    }
+    return new Reader(true);
+  }
+
+  public synchronized long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  public synchronized long getSpilledBytes() {
+    return spillFile == null ? 0 : spillFile.length();
+  }
+
+  public synchronized long getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * True if the disk budget was exhausted before all rows were fetched.
+   */
+  public synchronized boolean isCapped() {
+    return capped;
+  }
+
+  /**
+   * Release the memory and the spill file of the buffer once the readers
+   * opened by newReader are closed. The page reader fails from now on.
+   */
+  public synchronized void close() {
+    closeRequested = true;
+    if (openReaders == 0) {
+      release();
+    }
+  }
+
+  private synchronized void closeReader() {
+    openReaders--;
+    if (closeRequested && openReaders == 0) {
+      release();
+    }
+  }
+
+  private void release() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    memoryUsed.addAndGet(-memoryBytes);
+    memoryBytes = 0;
+    memoryRows.clear();
+    overflowRows = null;
+    diskUsed.addAndGet(-spilledBytes);
+    spilledBytes = 0;
+    closeQuietly(spillStream);
+    spillStream = null;
+    if (spillFile != null && !spillFile.delete()) {
+      LOG.warn("Unable to delete results spill file " + spillFile);
+    }
+    notifyAll();
+  }
+
+  /**
+   * Make sure rows up to the target are fetched or being fetched.
+   */
+  private synchronized void requireRows(long target) {
+    if (target > fetchTarget) {
+      fetchTarget = target;
+    }
+    if (!fetching && !done && !capped && !closed && rowCount < fetchTarget) {
+      fetching = true;
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          prefetch();
+        }
+      });
+    }
+  }
+
+  /**
+   * Wait until the row at the position is fetched.
+   * @return false if there are no more rows in the buffer
+   */
+  private synchronized boolean awaitRow(long position) {
+    requireRows(position + 1 + prefetchRows);
+    while ((rowCount <= position && !done && !capped || fetching && capped) && !closed) {
+      try {
+        wait();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new ServiceFormattedException("Interrupted while waiting for results", ex);
+      }
+    }
+    checkNotClosed();
+    if (rowCount > position) {
+      return true;
+    }
+    if (error != null) {
+      throw error;
+    }
+    return false;
+  }
+
+  /**
+   * Hand the cursor over to the reader which reached the end of a capped buffer.
+   * @return rows fetched but not buffered, null if there are no more rows
+   */
+  private synchronized ArrayList<Object[]> claimCursor(Reader reader) {
+    checkNotClosed();
+    if (!capped) {
+      return null;
+    }
+    if (cursorOwner != null) {
+      throw new ServiceFormattedException("E021 Job results exceed the results buffer and are already read, " +
+          "request them again from the first row");
+    }
+    cursorOwner = reader;
+    ArrayList<Object[]> rows = overflowRows;
+    overflowRows = null;
+    return rows;
+  }
+
+  /**
+   * Read rows straight from the cursor, only by the reader owning it.
+   */
+  private int readCursor(ArrayList<Object[]> rows) {
+    synchronized (this) {
+      checkNotClosed();
+    }
+    return cursor.readRaw(rows, FETCH_SIZE);
+  }
+
+  private synchronized Object[] getMemoryRow(long position) {
+    checkNotClosed();
+    return position < memoryRows.size() ? memoryRows.get((int) position) : null;
+  }
+
+  private synchronized File getSpillFile() {
+    checkNotClosed();
+    return spillFile;
+  }
+
+  private void checkNotClosed() {
+    if (closed) {
+      throw new ServiceFormattedException("E020 Job results are expired");
+    }
+  }
+
+  private void prefetch() {
+    while (true) {
+      synchronized (this) {
+        if (closed || done || capped || rowCount >= fetchTarget) {
+          fetching = false;
+          notifyAll();
+          return;
+        }
+      }
+
+      ArrayList<Object[]> rows = new ArrayList<Object[]>(FETCH_SIZE);
+      try {
+        int read = cursor.readRaw(rows, FETCH_SIZE);
+        append(rows, read < FETCH_SIZE);
+      } catch (RuntimeException ex) {
+        fail(ex);
+        return;
+      } catch (IOException ex) {
+        fail(new ServiceFormattedException("Unable to spill results to " + spillFile, ex));
+        return;
+      }
+    }
+  }
+
+  private synchronized void append(List<Object[]> rows, boolean last) throws IOException {
+    if (closed) {
+      return;
+    }
+    int appended = 0;
+    for (Object[] row : rows) {
+      long size = estimateSize(row);
+      if (spillStream == null && memoryUsed.addAndGet(size) <= memoryLimit) {
+        memoryRows.add(row);
+        memoryBytes += size;
+        appended++;
+        continue;
+      }
+      if (spillStream == null) {
+        memoryUsed.addAndGet(-size);
+      }
+      if (diskUsed.addAndGet(size) > diskLimit) {
+        diskUsed.addAndGet(-size);
+        capped = true;
+        overflowRows = new ArrayList<Object[]>(rows.subList(appended, rows.size()));
+        LOG.info("Results disk budget exhausted, not buffering rows after row " + (rowCount + appended));
+        break;
+      }
+      if (spillStream == null) {
+        openSpillFile();
+      }
+      spilledBytes += size;
+      spillStream.writeObject(row);
+      // the stream would otherwise keep a reference to every written row
+      spillStream.reset();
+      appended++;
+    }
+    if (spillStream != null) {
+      spillStream.flush();
+    }
+    rowCount += appended;
+    if (last && !capped) {
+      done = true;
+    }
+    notifyAll();
+  }
+
+  private void openSpillFile() throws IOException {
+    spillFile = File.createTempFile("hive-results", ".spill");
+    spillFile.deleteOnExit();
+    spillStream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+    LOG.info("Results memory budget exhausted, spilling rows after row " + memoryRows.size() + " to " + spillFile);
+  }
+
+  private synchronized void fail(RuntimeException ex) {
+    LOG.error("Unable to prefetch results", ex);
+    error = ex;
+    done = true;
+    fetching = false;
+    notifyAll();
+  }
+
+  /**
+   * Rough size of the row on the heap.
+   */
+  static long estimateSize(Object[] row) {
+    long size = 16 + 8L * row.length;
+    for (Object value : row) {
+      if (value instanceof String) {
+        size += 40 + 2L * ((String) value).length();
+      } else if (value instanceof byte[]) {
+        size += 16 + ((byte[]) value).length;
+      } else if (value != null) {
+        size += 24;
+      }
+    }
+    return size;
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    } catch (IOException ex) {
+      LOG.warn("Unable to close " + closeable, ex);
+    }
+  }
+
+  /**
+   * Reads the buffered rows in order, waiting for the prefetch task where
+   * needed. A reader is not thread-safe.
+   */
+  public class Reader implements Iterator<Object[]>, Closeable {
+    private final boolean counted;
+    private boolean released;
+    private long position;
+    private ObjectInputStream spillInput;
+    private ArrayList<Object[]> directRows;
+    private int directIndex;
+    private boolean cursorDone;
+
+    private Reader(boolean counted) {
+      this.counted = counted;
+    }
+
+    public ArrayList<ColumnDescription> getSchema() {
+      return schema;
+    }
+
+    public long getPosition() {
+      return position;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (directRows == null) {
+        if (awaitRow(position)) {
+          return true;
+        }
+        directRows = claimCursor(this);
+        if (directRows == null) {
+          return false;
+        }
+      }
+      if (directIndex < directRows.size()) {
+        return true;
+      }
+      if (cursorDone) {
+        return false;
+      }
+      directRows.clear();
+      directIndex = 0;
+      cursorDone = readCursor(directRows) < FETCH_SIZE;
+      return !directRows.isEmpty();
+    }
+
+    @Override
+    public Object[] next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (directRows != null) {
+        position++;
+        return directRows.get(directIndex++);
+      }
+      Object[] row = getMemoryRow(position);
+      if (row == null) {
+        row = readSpilledRow();
+      }
+      position++;
+      return row;
+    }
+
+    public int read(List<Object[]> rows, int count) {
+      int read = 0;
+      while (read < count && hasNext()) {
+        rows.add(next());
+        read++;
+      }
+      return read;
+    }
+
+    private Object[] readSpilledRow() {
+      try {
+        if (spillInput == null) {
+          spillInput = new ObjectInputStream(new BufferedInputStream(new FileInputStream(getSpillFile())));
+        }
+        return (Object[]) spillInput.readObject();
+      } catch (IOException ex) {
+        throw new ServiceFormattedException("Unable to read spilled results", ex);
+      } catch (ClassNotFoundException ex) {
+        throw new ServiceFormattedException("Unable to read spilled results", ex);
+      }
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+      closeQuietly(spillInput);
+      spillInput = null;
+      directRows = null;
+      if (counted && !released) {
+        released = true;
+        closeReader();
+      }
+    }
+  }
+}
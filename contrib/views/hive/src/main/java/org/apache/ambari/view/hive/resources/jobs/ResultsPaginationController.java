@@ -27,43 +27,80 @@ import org.apache.ambari.view.hive.utils.HiveClientFormattedException;
 import org.apache.ambari.view.hive.utils.ServiceFormattedException;
 import org.apache.commons.collections4.map.PassiveExpiringMap;
 
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import java.lang.Object;
 import java.lang.String;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Results Pagination Controller
- * Persists cursors for result sets
+ * Persists buffers of result sets, the next pages are prefetched in the
+ * background while the current one is shown
  */
 public class ResultsPaginationController {
   public static final String DEFAULT_SEARCH_ID = "default";
   private static Map<String, ResultsPaginationController> viewSingletonObjects = new HashMap<String, ResultsPaginationController>();
   public static ResultsPaginationController getInstance(ViewContext context) {
     if (!viewSingletonObjects.containsKey(context.getInstanceName()))
-      viewSingletonObjects.put(context.getInstanceName(), new ResultsPaginationController());
+      viewSingletonObjects.put(context.getInstanceName(), new ResultsPaginationController(context.getInstanceName()));
     return viewSingletonObjects.get(context.getInstanceName());
   }
 
   public ResultsPaginationController() {
+    this("default");
+  }
+
+  public ResultsPaginationController(final String instanceName) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS,
+        60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "hive-results-prefetch-" + instanceName + "-" + threadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    executor.allowCoreThreadTimeOut(true);
+    prefetchExecutor = executor;
   }
 
   private static final long EXPIRING_TIME = 10*60*1000;  // 10 minutes
   private static final int DEFAULT_FETCH_COUNT = 50;
-  private Map<String, Cursor> resultsCache;
+  private static final int PREFETCH_PAGES = 4;
+  private static final int PREFETCH_THREADS = 4;
+  private static final long MEMORY_LIMIT = 64*1024*1024;  // 64 MB per view instance
+  private static final long DISK_LIMIT = 512*1024*1024;  // 512 MB per view instance
+  private Map<String, ResultsBuffer> resultsCache;
+  private final Set<ResultsBuffer> buffers = new HashSet<ResultsBuffer>();
+  private final ExecutorService prefetchExecutor;
+  private final AtomicLong memoryUsed = new AtomicLong();
+  private final AtomicLong diskUsed = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
 
-  public static class CustomTimeToLiveExpirationPolicy extends PassiveExpiringMap.ConstantTimeToLiveExpirationPolicy<String, Cursor> {
+  public static class CustomTimeToLiveExpirationPolicy extends PassiveExpiringMap.ConstantTimeToLiveExpirationPolicy<String, ResultsBuffer> {
     public CustomTimeToLiveExpirationPolicy(long timeToLiveMillis) {
       super(timeToLiveMillis);
     }
 
     @Override
-    public long expirationTime(String key, Cursor value) {
+    public long expirationTime(String key, ResultsBuffer value) {
       if (key.startsWith("$")) {
         return -1;  //never expire
       }
@@ -71,15 +108,93 @@ public class ResultsPaginationController {
     }
   }
 
-  private Map<String, Cursor> getResultsCache() {
+  private synchronized Map<String, ResultsBuffer> getResultsCache() {
     if (resultsCache == null) {
-      PassiveExpiringMap<String, Cursor> resultsCacheExpiringMap =
-          new PassiveExpiringMap<String, Cursor>(new CustomTimeToLiveExpirationPolicy(EXPIRING_TIME));
+      PassiveExpiringMap<String, ResultsBuffer> resultsCacheExpiringMap =
+          new PassiveExpiringMap<String, ResultsBuffer>(new CustomTimeToLiveExpirationPolicy(EXPIRING_TIME));
       resultsCache = Collections.synchronizedMap(resultsCacheExpiringMap);
     }
     return resultsCache;
   }
 
+  /**
+   * Close the buffers which expired from the cache, the expiring map drops
+   * them without notice. Buffers still read by a download are released
+   * when the download closes its reader.
+   */
+  private void closeExpiredBuffers() {
+    synchronized (buffers) {
+      Set<ResultsBuffer> cached;
+      synchronized (getResultsCache()) {
+        cached = new HashSet<ResultsBuffer>(getResultsCache().values());
+      }
+      for (ResultsBuffer buffer : new ArrayList<ResultsBuffer>(buffers)) {
+        if (!cached.contains(buffer)) {
+          buffers.remove(buffer);
+          buffer.close();
+          evictions.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  private void removeBuffer(String key) {
+    ResultsBuffer buffer = getResultsCache().remove(key);
+    if (buffer != null) {
+      synchronized (buffers) {
+        buffers.remove(buffer);
+      }
+      buffer.close();
+    }
+  }
+
+  /**
+   * Memory used by the result buffers of the view instance.
+   */
+  public long getMemoryUsed() {
+    return memoryUsed.get();
+  }
+
+  /**
+   * Estimated size of the rows spilled to disk by the result buffers of the view instance.
+   */
+  public long getDiskUsed() {
+    return diskUsed.get();
+  }
+
+  /**
+   * Count of result buffers dropped after they expired.
+   */
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  public Map<String, Object> getStatistics() {
+    closeExpiredBuffers();
+    long spilledBytes = 0;
+    int bufferCount;
+    int cappedBuffers = 0;
+    synchronized (buffers) {
+      bufferCount = buffers.size();
+      for (ResultsBuffer buffer : buffers) {
+        spilledBytes += buffer.getSpilledBytes();
+        if (buffer.isCapped()) {
+          cappedBuffers++;
+        }
+      }
+    }
+    Map<String, Object> statistics = new HashMap<String, Object>();
+    statistics.put("buffers", bufferCount);
+    statistics.put("memoryUsed", getMemoryUsed());
+    statistics.put("memoryLimit", MEMORY_LIMIT);
+    statistics.put("spilledBytes", spilledBytes);
+    statistics.put("diskUsed", getDiskUsed());
+    statistics.put("diskLimit", DISK_LIMIT);
+    statistics.put("cappedBuffers", cappedBuffers);
+    statistics.put("evictions", getEvictions());
+    return statistics;
+  }
+
   /**
    * Renew timer of cache entry.
    * @param key name/id of results request
@@ -92,25 +207,44 @@ public class ResultsPaginationController {
     if (!getResultsCache().containsKey(effectiveKey)) {
       return false;
     }
-    Cursor cursor = getResultsCache().get(effectiveKey);
-    getResultsCache().put(effectiveKey, cursor);
+    ResultsBuffer buffer = getResultsCache().get(effectiveKey);
+    getResultsCache().put(effectiveKey, buffer);
     return true;
   }
 
-  private Cursor getResultsSet(String key, Callable<Cursor> makeResultsSet) {
-    if (!getResultsCache().containsKey(key)) {
-      Cursor resultSet = null;
+  private ResultsBuffer getResultsSet(String key, Callable<Cursor> makeResultsSet) {
+    closeExpiredBuffers();
+    ResultsBuffer resultSet = getResultsCache().get(key);
+    if (resultSet == null) {
       try {
-        resultSet = makeResultsSet.call();
+        resultSet = new ResultsBuffer(makeResultsSet.call(), prefetchExecutor,
+            PREFETCH_PAGES * DEFAULT_FETCH_COUNT, memoryUsed, MEMORY_LIMIT, diskUsed, DISK_LIMIT);
       } catch (HiveClientException ex) {
         throw new HiveClientFormattedException(ex);
+      } catch (WebApplicationException ex) {
+        throw ex;
       } catch (Exception ex) {
         throw new ServiceFormattedException(ex.getMessage(), ex);
       }
-      getResultsCache().put(key, resultSet);
+      synchronized (buffers) {
+        buffers.add(resultSet);
+        getResultsCache().put(key, resultSet);
+      }
     }
 
-    return getResultsCache().get(key);
+    return resultSet;
+  }
+
+  /**
+   * Open a reader of the full result set, it is read from the same buffer
+   * as the pages of the key, so the rows already fetched are not queried again.
+   * The reader should be closed when done, the buffer is kept until then.
+   */
+  public ResultsBuffer.Reader openReader(String key, String searchId, Callable<Cursor> makeResultsSet) {
+    if (searchId == null)
+      searchId = DEFAULT_SEARCH_ID;
+    key = key + "?" + searchId;
+    return getResultsSet(key, makeResultsSet).newReader();
   }
 
   public Response.ResponseBuilder request(String key, String searchId, boolean canExpire, String fromBeginning, Integer count, String format, Callable<Cursor> makeResultsSet) throws HiveClientException {
@@ -120,15 +254,23 @@ public class ResultsPaginationController {
     if (!canExpire)
       key = "$" + key;
     if (fromBeginning != null && fromBeginning.equals("true") && getResultsCache().containsKey(key))
-      getResultsCache().remove(key);
-    Cursor resultSet = getResultsSet(key, makeResultsSet);
+      removeBuffer(key);
+    ResultsBuffer resultSet = getResultsSet(key, makeResultsSet);
+    ResultsBuffer.Reader reader = resultSet.getPageReader();
 
     if (count == null)
       count = DEFAULT_FETCH_COUNT;
 
     ArrayList<ColumnDescription> schema = resultSet.getSchema();
     ArrayList<Object[]> rows = new ArrayList<Object[]>(count);
-    int read = resultSet.readRaw(rows, count);
+    int read;
+    boolean hasNext;
+    long offset;
+    synchronized (reader) {
+      read = reader.read(rows, count);
+      hasNext = reader.hasNext();
+      offset = reader.getPosition();
+    }
     if(format != null && format.equalsIgnoreCase("d3")) {
       List<Map<String,Object>> results = new ArrayList<Map<String,Object>>();
       for(int i=0; i<rows.size(); i++) {
@@ -147,9 +289,9 @@ public class ResultsPaginationController {
       resultsResponse.setSchema(schema);
       resultsResponse.setRows(rows);
       resultsResponse.setReadCount(read);
-      resultsResponse.setHasNext(resultSet.hasNext());
+      resultsResponse.setHasNext(hasNext);
       //      resultsResponse.setSize(resultSet.size());
-      resultsResponse.setOffset(resultSet.getOffset());
+      resultsResponse.setOffset(offset);
       resultsResponse.setHasResults(true);
       return Response.ok(resultsResponse);
     }
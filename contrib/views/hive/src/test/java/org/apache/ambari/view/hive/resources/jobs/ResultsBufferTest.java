@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive.resources.jobs;
+
+import org.apache.ambari.view.hive.client.ColumnDescription;
+import org.apache.ambari.view.hive.client.ColumnDescriptionShort;
+import org.apache.ambari.view.hive.client.Connection;
+import org.apache.ambari.view.hive.client.Cursor;
+import org.apache.ambari.view.hive.utils.ServiceFormattedException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.easymock.EasyMock.createNiceMock;
+
+public class ResultsBufferTest {
+  private ExecutorService executor;
+  private AtomicLong memoryUsed;
+  private AtomicLong diskUsed;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+    memoryUsed = new AtomicLong();
+    diskUsed = new AtomicLong();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testPrefetchAndSpill() throws Exception {
+    TestCursor cursor = new TestCursor(230, -1);
+    long rowSize = ResultsBuffer.estimateSize(cursor.createRow(0));
+    ResultsBuffer buffer = new ResultsBuffer(cursor, executor, 100, memoryUsed, 20 * rowSize,
+        diskUsed, Long.MAX_VALUE);
+
+    ArrayList<Object[]> page = new ArrayList<Object[]>();
+    Assert.assertEquals(50, buffer.getPageReader().read(page, 50));
+    Assert.assertEquals("row 049", page.get(49)[1]);
+
+    // the next pages are fetched in background
+    for (int i = 0; i < 100 && buffer.getRowCount() < 151; i++) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(buffer.getRowCount() >= 151);
+
+    // the full result is read from the buffer, from memory and from disk
+    ResultsBuffer.Reader reader = buffer.newReader();
+    int read = 0;
+    while (reader.hasNext()) {
+      Object[] row = reader.next();
+      Assert.assertEquals(read, row[0]);
+      read++;
+    }
+    reader.close();
+    Assert.assertEquals(230, read);
+    Assert.assertTrue(memoryUsed.get() > 0);
+    Assert.assertTrue(memoryUsed.get() <= 20 * rowSize);
+    Assert.assertTrue(buffer.getSpilledBytes() > 0);
+
+    // the page reader continues where it stopped
+    page.clear();
+    buffer.getPageReader().read(page, 1);
+    Assert.assertEquals(50, page.get(0)[0]);
+
+    buffer.close();
+    Assert.assertEquals(0, memoryUsed.get());
+    Assert.assertEquals(0, diskUsed.get());
+    try {
+      buffer.newReader().hasNext();
+      Assert.fail("Closed buffer should not be read");
+    } catch (ServiceFormattedException expected) {
+    }
+  }
+
+  @Test
+  public void testDiskBudget() throws Exception {
+    TestCursor cursor = new TestCursor(230, -1);
+    long rowSize = ResultsBuffer.estimateSize(cursor.createRow(0));
+    ResultsBuffer buffer = new ResultsBuffer(cursor, executor, 100, memoryUsed, 20 * rowSize,
+        diskUsed, 30 * rowSize);
+
+    ArrayList<Object[]> page = new ArrayList<Object[]>();
+    Assert.assertEquals(40, buffer.getPageReader().read(page, 40));
+
+    // fetching stops when the disk budget is exhausted
+    for (int i = 0; i < 100 && !buffer.isCapped(); i++) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(buffer.isCapped());
+    Assert.assertEquals(50, buffer.getRowCount());
+    Assert.assertEquals(30 * rowSize, diskUsed.get());
+
+    // the first reader past the buffered rows reads the rest from the cursor
+    ResultsBuffer.Reader reader = buffer.newReader();
+    int read = 0;
+    while (reader.hasNext()) {
+      Assert.assertEquals(read, reader.next()[0]);
+      read++;
+    }
+    reader.close();
+    Assert.assertEquals(230, read);
+    Assert.assertEquals(50, buffer.getRowCount());
+
+    // other readers get the buffered rows only
+    page.clear();
+    Assert.assertEquals(10, buffer.getPageReader().read(page, 10));
+    try {
+      buffer.getPageReader().hasNext();
+      Assert.fail("Rows read from the cursor should not be read again");
+    } catch (ServiceFormattedException expected) {
+    }
+
+    buffer.close();
+    Assert.assertEquals(0, diskUsed.get());
+  }
+
+  @Test
+  public void testCloseWaitsForReaders() throws Exception {
+    TestCursor cursor = new TestCursor(230, -1);
+    ResultsBuffer buffer = new ResultsBuffer(cursor, executor, 100, memoryUsed, Long.MAX_VALUE,
+        diskUsed, Long.MAX_VALUE);
+
+    ResultsBuffer.Reader reader = buffer.newReader();
+    ArrayList<Object[]> rows = new ArrayList<Object[]>();
+    Assert.assertEquals(10, reader.read(rows, 10));
+
+    // the buffer expires while the download is still reading it
+    buffer.close();
+    Assert.assertTrue(memoryUsed.get() > 0);
+    Assert.assertEquals(220, reader.read(rows, 1000));
+    Assert.assertEquals(229, rows.get(229)[0]);
+
+    reader.close();
+    Assert.assertEquals(0, memoryUsed.get());
+    try {
+      buffer.getPageReader().hasNext();
+      Assert.fail("Closed buffer should not be read");
+    } catch (ServiceFormattedException expected) {
+    }
+  }
+
+  @Test
+  public void testFetchFailure() throws Exception {
+    TestCursor cursor = new TestCursor(230, 60);
+    ResultsBuffer buffer = new ResultsBuffer(cursor, executor, 0, memoryUsed, Long.MAX_VALUE,
+        diskUsed, Long.MAX_VALUE);
+
+    ResultsBuffer.Reader reader = buffer.newReader();
+    int read = 0;
+    try {
+      while (reader.hasNext()) {
+        reader.next();
+        read++;
+      }
+      Assert.fail("Fetch failure should be thrown to the reader");
+    } catch (IllegalStateException expected) {
+    }
+    Assert.assertEquals(50, read);
+  }
+
+  private static class TestCursor extends Cursor {
+    private final int size;
+    private final int failAt;
+    private int offset;
+
+    TestCursor(int size, int failAt) {
+      super(createNiceMock(Connection.class), null);
+      this.size = size;
+      this.failAt = failAt;
+    }
+
+    Object[] createRow(int index) {
+      return new Object[]{index, String.format("row %03d", index)};
+    }
+
+    @Override
+    public ArrayList<ColumnDescription> getSchema() {
+      ArrayList<ColumnDescription> schema = new ArrayList<ColumnDescription>();
+      schema.add(ColumnDescriptionShort.createShortColumnDescription("id", "INT", 1));
+      schema.add(ColumnDescriptionShort.createShortColumnDescription("name", "STRING", 2));
+      return schema;
+    }
+
+    @Override
+    public int readRaw(ArrayList<Object[]> rows, int count) {
+      int read = 0;
+      while (read < count && offset < size) {
+        if (offset == failAt) {
+          throw new IllegalStateException("Fetch failed");
+        }
+        rows.add(createRow(offset++));
+        read++;
+      }
+      return read;
+    }
+  }
+}